@@ -7,6 +7,7 @@ import android.database.sqlite.SQLiteDatabase;
 import androidx.multidex.MultiDexApplication;
 
 import com.aricneto.twistytimer.database.DatabaseHandler;
+import com.aricneto.twistytimer.database.DatabaseWriter;
 import com.aricneto.twistytimer.utils.LocaleUtils;
 
 import net.danlew.android.joda.JodaTimeAndroid;
@@ -20,6 +21,12 @@ public class TwistyTimer extends MultiDexApplication {
      */
     private static DatabaseHandler sDBHandler;
 
+    /**
+     * The singleton instance of the database writer, through which all changes to the solves in
+     * the database are made.
+     */
+    private static DatabaseWriter sDBWriter;
+
     /**
      * The cached reference to the application context.
      */
@@ -46,6 +53,7 @@ public class TwistyTimer extends MultiDexApplication {
         // two methods should really only be called from a background task, though, as opening the
         // database (particularly for the first time) can take some time.
         sDBHandler = new DatabaseHandler();
+        sDBWriter = new DatabaseWriter(sDBHandler);
 
         LocaleUtils.updateLocale(getAppContext());
     }
@@ -60,6 +68,17 @@ public class TwistyTimer extends MultiDexApplication {
         return sDBHandler;
     }
 
+    /**
+     * Gets the singleton instance of the database writer. Changes to the solves in the database
+     * should be made through this writer, not directly through the database handler, so that
+     * they are made on the writer thread and do not block the main thread.
+     *
+     * @return The database writer.
+     */
+    public static DatabaseWriter getDBWriter() {
+        return sDBWriter;
+    }
+
     /**
      * Gets a read-only database handle. Do <i>not</i> close the database when it is no longer
      * needed.
@@ -6,12 +6,14 @@ import android.content.ClipData;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
+import android.content.res.AssetFileDescriptor;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.SystemClock;
 import androidx.annotation.NonNull;
 import androidx.core.app.ActivityCompat;
 import androidx.fragment.app.Fragment;
@@ -35,7 +37,11 @@ import com.anjlab.android.iab.v3.PurchaseInfo;
 import com.aricneto.twistify.BuildConfig;
 import com.aricneto.twistify.R;
 import com.aricneto.twistytimer.TwistyTimer;
+import com.aricneto.twistytimer.database.BinaryBackupReader;
+import com.aricneto.twistytimer.database.BinaryBackupWriter;
 import com.aricneto.twistytimer.database.DatabaseHandler;
+import com.aricneto.twistytimer.database.DatabaseWriter;
+import com.aricneto.twistytimer.database.SolveImportPipeline;
 import com.aricneto.twistytimer.fragment.AlgListFragment;
 import com.aricneto.twistytimer.fragment.TimerFragment;
 import com.aricneto.twistytimer.fragment.TimerFragmentMain;
@@ -47,7 +53,9 @@ import com.aricneto.twistytimer.fragment.dialog.ThemeSelectDialog;
 import com.aricneto.twistytimer.items.Solve;
 import com.aricneto.twistytimer.listener.OnBackPressedInFragmentListener;
 import com.aricneto.twistytimer.puzzle.TrainerScrambler;
+import com.aricneto.twistytimer.utils.CountingInputStream;
 import com.aricneto.twistytimer.utils.ExportImportUtils;
+import com.aricneto.twistytimer.utils.IsoDateTimeParser;
 import com.aricneto.twistytimer.utils.LocaleUtils;
 import com.aricneto.twistytimer.utils.Prefs;
 import com.aricneto.twistytimer.utils.PuzzleUtils;
@@ -65,7 +73,10 @@ import com.opencsv.CSVReader;
 
 import org.joda.time.DateTime;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
@@ -73,6 +84,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -81,12 +93,12 @@ import butterknife.ButterKnife;
 
 import static com.aricneto.twistytimer.database.DatabaseHandler.IDX_COMMENT;
 import static com.aricneto.twistytimer.database.DatabaseHandler.IDX_DATE;
+import static com.aricneto.twistytimer.database.DatabaseHandler.IDX_ID;
 import static com.aricneto.twistytimer.database.DatabaseHandler.IDX_PENALTY;
 import static com.aricneto.twistytimer.database.DatabaseHandler.IDX_SCRAMBLE;
 import static com.aricneto.twistytimer.database.DatabaseHandler.IDX_SUBTYPE;
 import static com.aricneto.twistytimer.database.DatabaseHandler.IDX_TIME;
 import static com.aricneto.twistytimer.database.DatabaseHandler.IDX_TYPE;
-import static com.aricneto.twistytimer.database.DatabaseHandler.ProgressListener;
 import static com.aricneto.twistytimer.utils.TTIntent.ACTION_TIMES_MODIFIED;
 import static com.aricneto.twistytimer.utils.TTIntent.CATEGORY_TIME_DATA_CHANGES;
 import static com.aricneto.twistytimer.utils.TTIntent.broadcast;
@@ -124,6 +136,7 @@ public class MainActivity extends AppCompatActivity
 
     private static final int EXPORT_BACKUP      = 50;
     private static final int EXPORT_EXTERNAL    = 51;
+    private static final int EXPORT_BINARY_BACKUP = 52;
     private static final int IMPORT_BACKUP      = 60;
     private static final int IMPORT_EXTERNAL    = 61;
 
@@ -492,12 +505,14 @@ public class MainActivity extends AppCompatActivity
 
                             case DEBUG_ID:
                                 if (BuildConfig.DEBUG) {
-                                    Random rand = new Random();
-                                    DatabaseHandler dbHandler = TwistyTimer.getDBHandler();
-                                    for (int i = 0; i < 10000; i++) {
-                                        dbHandler.addSolve(new Solve(30000 + rand.nextInt(6000), "333",
-                                                                     "|<<# DEBUG #>>|", 165165l+(i*10), "", 0, "", rand.nextBoolean()));
-                                    }
+                                    final Random rand = new Random();
+                                    TwistyTimer.getDBWriter().submit(dbHandler -> {
+                                        for (int i = 0; i < 10000; i++) {
+                                            dbHandler.addSolve(new Solve(30000 + rand.nextInt(6000), "333",
+                                                                         "|<<# DEBUG #>>|", 165165l+(i*10), "", 0, "", rand.nextBoolean()));
+                                        }
+                                        return null;
+                                    }, null);
                                 }
                                 break;
                         }
@@ -583,7 +598,8 @@ public class MainActivity extends AppCompatActivity
                 Log.d(TAG, "  Returned from 'Settings'. Will recreate activity.");
             }
             onRecreateRequired();
-        } else if ((requestCode == EXPORT_BACKUP || requestCode == EXPORT_EXTERNAL)
+        } else if ((requestCode == EXPORT_BACKUP || requestCode == EXPORT_EXTERNAL
+                    || requestCode == EXPORT_BINARY_BACKUP)
                 && resultCode == Activity.RESULT_OK) {
             if (data.getData() != null) {
                 Uri uri = data.getData();
@@ -592,6 +608,8 @@ public class MainActivity extends AppCompatActivity
 
                 new ExportSolves(this,
                         (requestCode == EXPORT_BACKUP ? ExportImportDialog.EXIM_FORMAT_BACKUP
+                                : requestCode == EXPORT_BINARY_BACKUP
+                                ? ExportImportDialog.EXIM_FORMAT_BINARY_BACKUP
                                 : ExportImportDialog.EXIM_FORMAT_EXTERNAL),
                         uri, mExportPuzzleType, mExportPuzzleCategory)
                         .executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
@@ -704,6 +722,8 @@ public class MainActivity extends AppCompatActivity
         mExportPuzzleCategory = puzzleCategory;
 
         if (fileFormat == ExportImportDialog.EXIM_FORMAT_BACKUP) {
+            // A back-up may be a text file or a binary file; the format is detected on import.
+            intent.setType("*/*");
             startActivityForResult(intent, IMPORT_BACKUP);
         } else if (fileFormat == ExportImportDialog.EXIM_FORMAT_EXTERNAL) {
             startActivityForResult(intent, IMPORT_EXTERNAL);
@@ -731,6 +751,21 @@ public class MainActivity extends AppCompatActivity
             mExportPuzzleCategory = "";
 
             startActivityForResult(intent, EXPORT_BACKUP);
+        } else if (fileFormat == ExportImportDialog.EXIM_FORMAT_BINARY_BACKUP) {
+            if (puzzleType != null || puzzleCategory != null) {
+                throw new RuntimeException("Bug in the export code for the binary back-up format!");
+            }
+
+            Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+            intent.addCategory(Intent.CATEGORY_OPENABLE);
+            intent.setType("application/octet-stream");
+            intent.putExtra(Intent.EXTRA_TITLE,
+                    ExportImportUtils.getBinaryBackupFileNameForExport());
+
+            mExportPuzzleType = "";
+            mExportPuzzleCategory = "";
+
+            startActivityForResult(intent, EXPORT_BINARY_BACKUP);
         } else if (fileFormat == ExportImportDialog.EXIM_FORMAT_EXTERNAL) {
             // Expect that all other parameters are non-null, otherwise something is very wrong.
             if (puzzleType == null || puzzleCategory == null) {
@@ -776,6 +811,21 @@ public class MainActivity extends AppCompatActivity
     }
 
     private static class ExportSolves extends AsyncTask<Void, Integer, Boolean> {
+        /**
+         * The number of solves read from the database in each page.
+         */
+        private static final int EXPORT_PAGE_SIZE = 1_000;
+
+        /**
+         * The size of the buffer of the export file, in characters.
+         */
+        private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+
+        /**
+         * The minimum time between updates of the progress, in milliseconds. Each update posts a
+         * message to the UI thread, so the progress is not updated for every solve.
+         */
+        private static final long PROGRESS_INTERVAL_MS = 250;
 
         private final Activity  mContext;
         private final int      mFileFormat;
@@ -785,14 +835,37 @@ public class MainActivity extends AppCompatActivity
 
         private MaterialDialog mProgressDialog;
 
+        /**
+         * The row being written. It is reused for every row.
+         */
+        private final StringBuilder mRow = new StringBuilder(256);
+
+        /**
+         * The buffer into which each row is copied to be written. It is grown if a row does not
+         * fit.
+         */
+        private char[] mRowChars = new char[256];
+
+        /**
+         * The number of solves exported so far.
+         */
+        private int mNumExported;
+
+        /**
+         * The time at which the progress was last published, from
+         * {@link SystemClock#elapsedRealtime()}.
+         */
+        private long mLastProgressTime;
+
         /**
          * Creates a new task for exporting solve times to a file.
          *
          * @param context
          *     The context required to access resources and to report progress.
          * @param fileFormat
-         *     The solve file format, must be {@link ExportImportDialog#EXIM_FORMAT_EXTERNAL}, or
-         *     {@link ExportImportDialog#EXIM_FORMAT_BACKUP}.
+         *     The solve file format, must be {@link ExportImportDialog#EXIM_FORMAT_EXTERNAL},
+         *     {@link ExportImportDialog#EXIM_FORMAT_BACKUP}, or
+         *     {@link ExportImportDialog#EXIM_FORMAT_BINARY_BACKUP}.
          * @param uri
          *     The uri to which to export the solve times.
          * @param puzzleType
@@ -839,78 +912,229 @@ public class MainActivity extends AppCompatActivity
         @Override
         protected Boolean doInBackground(Void... voids) {
             Boolean returnCode;
-            int exports = 0;
 
             try {
                 final DatabaseHandler handler = TwistyTimer.getDBHandler();
                 final OutputStream os = mContext.getContentResolver().openOutputStream(mUri);
-                final OutputStreamWriter out = new OutputStreamWriter(os);
 
-                if (mFileFormat == ExportImportDialog.EXIM_FORMAT_BACKUP) {
-                    String csvHeader
-                            = "Puzzle,Category,Time(millis),Date(millis),Scramble,Penalty,Comment\n";
-                    Cursor cursor = handler.getAllSolves();
+                if (mFileFormat == ExportImportDialog.EXIM_FORMAT_BINARY_BACKUP) {
+                    publishProgress(0, handler.getNumSolves());
+                    exportBinaryBackup(handler, os);
+                    return true;
+                }
 
-                    try {
-                        publishProgress(0, cursor.getCount());
-                        out.write(csvHeader);
-
-                        while (cursor.moveToNext()) {
-                            out.write('"' + cursor.getString(IDX_TYPE)
-                                    + "\";\"" + cursor.getString(IDX_SUBTYPE)
-                                    + "\";\"" + cursor.getInt(IDX_TIME)
-                                    + "\";\"" + cursor.getLong(IDX_DATE)
-                                    + "\";\"" + cursor.getString(IDX_SCRAMBLE)
-                                    + "\";\"" + cursor.getInt(IDX_PENALTY)
-                                    + "\";\"" + cursor.getString(IDX_COMMENT)
-                                    + "\"\n");
-                            exports++;
-                            publishProgress(exports);
-                        }
-                    } finally {
-                        cursor.close();
-                        out.close();
+                final Writer out
+                        = new BufferedWriter(new OutputStreamWriter(os), EXPORT_BUFFER_SIZE);
+
+                try {
+                    if (mFileFormat == ExportImportDialog.EXIM_FORMAT_BACKUP) {
+                        publishProgress(0, handler.getNumSolves());
+                        out.write("Puzzle,Category,Time(millis),Date(millis),Scramble,Penalty,"
+                                + "Comment\n");
+                        exportBackup(handler, out);
+                        returnCode = true;
+                    } else if (mFileFormat == ExportImportDialog.EXIM_FORMAT_EXTERNAL) {
+                        publishProgress(0, handler.getCategories()
+                                .getNumSolves(mPuzzleType, mPuzzleCategory));
+                        exportExternal(handler, out);
+                        returnCode = true;
+                    } else {
+                        Log.e(TAG, "Unknown export file format: " + mFileFormat);
+                        returnCode = false;
                     }
-                    returnCode = true;
-                } else if (mFileFormat == ExportImportDialog.EXIM_FORMAT_EXTERNAL) {
-                    Cursor cursor = handler.getAllSolvesFrom(mPuzzleType, mPuzzleCategory);
+                } finally {
+                    out.close();
+                }
+            } catch (IOException e) {
+                returnCode = false;
+                Log.d("ERROR", "IOException: " + e.getMessage());
+            }
 
-                    try {
-                        publishProgress(0, cursor.getCount());
-
-                        while (cursor.moveToNext()) {
-                            String csvValues
-                                    = '"' + PuzzleUtils.convertTimeToString(cursor.getInt(IDX_TIME), PuzzleUtils.FORMAT_DEFAULT)
-                                    + "\";\"" + cursor.getString(IDX_SCRAMBLE)
-                                    + "\";\"" + new DateTime(cursor.getLong(IDX_DATE)).toString()
-                                    + '"';
-
-                            // Add optional "DNF" in fourth field.
-                            if (cursor.getInt(IDX_PENALTY) == PuzzleUtils.PENALTY_DNF) {
-                                csvValues += ";\"DNF\"";
+            return returnCode;
+        }
+
+        /**
+         * Writes all solves to a backup file. The solves are read a page at a time, so that the
+         * whole table is never held in a cursor window.
+         *
+         * @param handler The database handler from which to read the solves.
+         * @param out     The writer to which to write the solves.
+         *
+         * @throws IOException If the solves could not be written.
+         */
+        private void exportBackup(DatabaseHandler handler, Writer out) throws IOException {
+            long lastID = 0;
+            int numRead;
+
+            do {
+                final Cursor cursor = handler.getAllSolves(lastID, EXPORT_PAGE_SIZE);
+
+                try {
+                    numRead = cursor.getCount();
+                    while (cursor.moveToNext()) {
+                        mRow.append('"').append(cursor.getString(IDX_TYPE))
+                            .append("\";\"").append(cursor.getString(IDX_SUBTYPE))
+                            .append("\";\"").append(cursor.getInt(IDX_TIME))
+                            .append("\";\"").append(cursor.getLong(IDX_DATE))
+                            .append("\";\"").append(DatabaseHandler.getScramble(cursor, IDX_SCRAMBLE))
+                            .append("\";\"").append(cursor.getInt(IDX_PENALTY))
+                            .append("\";\"").append(cursor.getString(IDX_COMMENT))
+                            .append("\"\n");
+                        writeRow(out);
+                        lastID = cursor.getLong(IDX_ID);
+                    }
+                } finally {
+                    cursor.close();
+                }
+            } while (numRead == EXPORT_PAGE_SIZE);
+
+            publishProgressNow();
+        }
+
+        /**
+         * Writes all solves to a binary backup file. The solves of each category are written
+         * together and in order of date, which makes the file much smaller, and are read a page at
+         * a time. If the export fails, the file is left without an end marker, so that it cannot
+         * be mistaken for a complete backup.
+         *
+         * @param handler The database handler from which to read the solves.
+         * @param os      The stream to which to write the file. It is closed when done.
+         *
+         * @throws IOException If the solves could not be written.
+         */
+        private void exportBinaryBackup(DatabaseHandler handler, OutputStream os)
+                throws IOException {
+            final BinaryBackupWriter out;
+
+            try {
+                out = new BinaryBackupWriter(os);
+            } catch (IOException e) {
+                os.close();
+                throw e;
+            }
+
+            try {
+                for (String type : handler.getCategories().getTypes()) {
+                    for (String subtype : handler.getCategories().getSubtypes(type)) {
+                        long lastDate = Long.MIN_VALUE;
+                        long lastID = Long.MIN_VALUE;
+                        int numRead;
+
+                        do {
+                            final Cursor cursor = handler.getAllSolvesFrom(
+                                    type, subtype, lastDate, lastID, EXPORT_PAGE_SIZE);
+
+                            try {
+                                numRead = cursor.getCount();
+                                while (cursor.moveToNext()) {
+                                    lastDate = cursor.getLong(IDX_DATE);
+                                    lastID = cursor.getLong(IDX_ID);
+
+                                    out.write(type, subtype, cursor.getInt(IDX_TIME), lastDate,
+                                            DatabaseHandler.getEncodedScramble(
+                                                    cursor, IDX_SCRAMBLE),
+                                            cursor.getInt(IDX_PENALTY),
+                                            cursor.getString(IDX_COMMENT));
+                                    countExported();
+                                }
+                            } finally {
+                                cursor.close();
                             }
+                        } while (numRead == EXPORT_PAGE_SIZE);
+                    }
+                }
+                out.finish();
+            } finally {
+                out.close();
+            }
 
-                            csvValues += '\n';
+            publishProgressNow();
+        }
 
-                            out.write(csvValues);
-                            exports++;
-                            publishProgress(exports);
+        /**
+         * Writes the solves of the selected puzzle type and category to a file in the external
+         * format, in order of date. The solves are read a page at a time, so that the whole
+         * category is never held in a cursor window.
+         *
+         * @param handler The database handler from which to read the solves.
+         * @param out     The writer to which to write the solves.
+         *
+         * @throws IOException If the solves could not be written.
+         */
+        private void exportExternal(DatabaseHandler handler, Writer out) throws IOException {
+            long lastDate = Long.MIN_VALUE;
+            long lastID = Long.MIN_VALUE;
+            int numRead;
+
+            do {
+                final Cursor cursor = handler.getAllSolvesFrom(
+                        mPuzzleType, mPuzzleCategory, lastDate, lastID, EXPORT_PAGE_SIZE);
+
+                try {
+                    numRead = cursor.getCount();
+                    while (cursor.moveToNext()) {
+                        lastDate = cursor.getLong(IDX_DATE);
+                        lastID = cursor.getLong(IDX_ID);
+
+                        mRow.append('"').append(PuzzleUtils.convertTimeToString(
+                                    cursor.getInt(IDX_TIME), PuzzleUtils.FORMAT_DEFAULT))
+                            .append("\";\"").append(DatabaseHandler.getScramble(cursor, IDX_SCRAMBLE))
+                            .append("\";\"").append(new DateTime(lastDate).toString())
+                            .append('"');
+
+                        // Add optional "DNF" in fourth field.
+                        if (cursor.getInt(IDX_PENALTY) == PuzzleUtils.PENALTY_DNF) {
+                            mRow.append(";\"DNF\"");
                         }
-                    } finally {
-                        cursor.close();
-                        out.close();
+
+                        mRow.append('\n');
+                        writeRow(out);
                     }
-                    returnCode = true;
-                } else {
-                    Log.e(TAG, "Unknown export file format: " + mFileFormat);
-                    returnCode = false;
+                } finally {
+                    cursor.close();
                 }
-            } catch (IOException e) {
-                returnCode = false;
-                Log.d("ERROR", "IOException: " + e.getMessage());
+            } while (numRead == EXPORT_PAGE_SIZE);
+
+            publishProgressNow();
+        }
+
+        /**
+         * Writes the row held in {@link #mRow} and clears it, ready for the next row. The row is
+         * copied to a reused buffer, so that no string is created for it.
+         *
+         * @param out The writer to which to write the row.
+         *
+         * @throws IOException If the row could not be written.
+         */
+        private void writeRow(Writer out) throws IOException {
+            final int length = mRow.length();
+
+            if (mRowChars.length < length) {
+                mRowChars = new char[Math.max(length, mRowChars.length * 2)];
             }
+            mRow.getChars(0, length, mRowChars, 0);
+            out.write(mRowChars, 0, length);
+            mRow.setLength(0);
+            countExported();
+        }
 
-            return returnCode;
+        /**
+         * Counts a solve as exported. The progress is published if it has not been published
+         * recently.
+         */
+        private void countExported() {
+            mNumExported++;
+            if (SystemClock.elapsedRealtime() - mLastProgressTime >= PROGRESS_INTERVAL_MS) {
+                publishProgressNow();
+            }
+        }
+
+        /**
+         * Publishes the number of solves exported so far.
+         */
+        private void publishProgressNow() {
+            mLastProgressTime = SystemClock.elapsedRealtime();
+            publishProgress(mNumExported);
         }
 
         @Override
@@ -948,6 +1172,16 @@ public class MainActivity extends AppCompatActivity
     }
 
     private static class ImportSolves extends AsyncTask<Void, Integer, Void> {
+        /**
+         * The minimum time between updates of the progress, in milliseconds.
+         */
+        private static final long PROGRESS_INTERVAL_MS = 250;
+
+        /**
+         * The number of solves read from a binary backup file before they are added to the
+         * database.
+         */
+        private static final int BINARY_IMPORT_BATCH_SIZE = 1_000;
 
         private final Context  mContext;
         private final int      mFileFormat;
@@ -960,6 +1194,22 @@ public class MainActivity extends AppCompatActivity
         private int duplicates  = 0;
         private int successes   = 0;
 
+        /**
+         * The stream from which the file is read, which counts the bytes read for the progress.
+         */
+        private CountingInputStream mInput;
+
+        /**
+         * The size of the file in kilobytes, or -1 if it is not known.
+         */
+        private int mFileSizeKB = -1;
+
+        /**
+         * The time at which the progress was last published, from
+         * {@link SystemClock#elapsedRealtime()}.
+         */
+        private long mLastProgressTime;
+
         /**
          * Creates a new task for importing solve times from a file.
          *
@@ -969,7 +1219,8 @@ public class MainActivity extends AppCompatActivity
          *     The file uri from which to import the solve times.
          * @param fileFormat
          *     The solve file format, must be {@link ExportImportDialog#EXIM_FORMAT_EXTERNAL}, or
-         *     {@link ExportImportDialog#EXIM_FORMAT_BACKUP}.
+         *     {@link ExportImportDialog#EXIM_FORMAT_BACKUP}. A backup file may be in the text or
+         *     the binary backup format, which is detected from the content of the file.
          * @param puzzleType
          *     The type of the puzzle whose times will be imported. This is required when
          *     {@code fileFormat} is {@code EXIM_FORMAT_EXTERNAL}. For {@code EXIM_FORMAT_BACKUP},
@@ -1012,89 +1263,240 @@ public class MainActivity extends AppCompatActivity
 
         @Override
         protected Void doInBackground(Void... voids) {
-            List<Solve> solveList = new ArrayList<>();
+            final DatabaseWriter writer = TwistyTimer.getDBWriter();
+            DatabaseHandler.SolveImporter importer = null;
+            SolveImportPipeline pipeline = null;
+            Closeable reader = null;
 
             try {
-                InputStream is = mContext.getContentResolver().openInputStream(mUri);
-                InputStreamReader isr = new InputStreamReader(is);
-                BufferedReader br = new BufferedReader(isr);
-                CSVReader csvReader = new CSVReader(br, ';', '"', true);
-                String[] line;
+                mFileSizeKB = toKB(getFileSize());
+                mInput = new CountingInputStream(
+                        mContext.getContentResolver().openInputStream(mUri));
+
+                final InputStream in = new BufferedInputStream(mInput);
+
+                reader = in;
+
+                // A backup may be in the text format or in the binary format.
+                if (mFileFormat == ExportImportDialog.EXIM_FORMAT_BACKUP
+                        && BinaryBackupReader.isBinaryBackup(in)) {
+                    final BinaryBackupReader binaryReader = new BinaryBackupReader(in);
+
+                    reader = binaryReader;
+                    importer = writer.executeAndWait(
+                            handler -> handler.newSolveImporter(mFileFormat));
+                    publishProgressNow();
+                    importBinaryBackup(writer, importer, binaryReader);
+                    publishProgressNow();
+                    return null;
+                }
+
+                final CSVReader csvReader = new CSVReader(
+                        new BufferedReader(new InputStreamReader(in)), ';', '"', true);
+
+                reader = csvReader;
+
+                final SolveImportPipeline.RowParser parser;
 
                 if (mFileFormat == ExportImportDialog.EXIM_FORMAT_BACKUP) {
                     // throw away the header
                     csvReader.readNext();
-
-                    while ((line = csvReader.readNext()) != null) {
-                        try {
-                            solveList.add(new Solve(
-                                Integer.parseInt(line[2]), line[0], line[1], Long.parseLong(line[3]),
-                                line[4], Integer.parseInt(line[5]), line[6], true));
-                        } catch (Exception e) {
-                            parseErrors++;
-                        }
-                    }
+                    parser = ImportSolves::parseBackupRow;
                 } else if (mFileFormat == ExportImportDialog.EXIM_FORMAT_EXTERNAL) {
                     final long now = DateTime.now().getMillis();
 
-                    while ((line = csvReader.readNext()) != null) {
-                        if (line.length <= 4) {
-                            try {
-                                Log.d("IMPORTING EXTERNAL", "time: " + line[0]);
-
-                                int time = PuzzleUtils.parseTime(line[0]);
-                                String scramble = "";
-                                long date = now;
-                                int penalty = PuzzleUtils.NO_PENALTY;
-
-                                if (line.length >= 2) {
-                                    scramble = line[1];
-                                }
-                                if (line.length >= 3) {
-                                    try {
-                                        date = DateTime.parse(line[2]).getMillis();
-                                    } catch (Exception e) {
-                                        // "date" remains equal to "now".
-                                        e.printStackTrace();
-                                    }
-                                }
-                                // Optional fourth field (index 3) may contain "DNF". If it is
-                                // something else, ignore it.
-                                if (line.length >= 4 && "DNF".equals(line[3])) {
-                                    penalty = PuzzleUtils.PENALTY_DNF;
-                                }
-
-                                solveList.add(new Solve(
-                                        time, mPuzzleType, mPuzzleCategory,
-                                        date, scramble, penalty, "", true));
-                            } catch (Exception e) {
-                                parseErrors++;
-                            }
-                        } else {
-                            parseErrors++;
-                        }
-                    }
+                    parser = line -> parseExternalRow(line, mPuzzleType, mPuzzleCategory, now);
                 } else {
                     Log.e(TAG, "Unknown import file format: " + mFileFormat);
+                    return null;
                 }
 
-                final DatabaseHandler handler = TwistyTimer.getDBHandler();
+                // The importer keeps the keys of the existing solves for all of the batches.
+                importer = writer.executeAndWait(handler -> handler.newSolveImporter(mFileFormat));
+                pipeline = new SolveImportPipeline(writer, importer, parser);
+                publishProgressNow();
 
-                // Perform a bulk insertion of the solves.
-                successes = handler.addSolves(mFileFormat, solveList, new ProgressListener() {
-                            @Override
-                            public void onProgress(int numCompleted, int total) {
-                                publishProgress(numCompleted, total);
-                            }
-                        });
-                duplicates = solveList.size() - successes;
+                pipeline.run(csvReader, this::publishProgressIfDue);
+                publishProgressNow();
             } catch (Exception e) {
                 e.printStackTrace();
+            } finally {
+                if (importer != null) {
+                    try {
+                        writer.closeImporter(importer);
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                    }
+                }
+                if (reader != null) {
+                    try {
+                        reader.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+
+            if (pipeline != null) {
+                successes = pipeline.getNumInserted();
+                duplicates = pipeline.getNumParsed() - successes;
+                parseErrors = pipeline.getNumErrors();
             }
 
             return null;
         }
 
+        /**
+         * Imports the solves from a binary backup file, adding them to the database a batch at a
+         * time. Reading the solves takes little time compared to adding them to the database, so
+         * they are read on this thread, without the pipeline used for text files.
+         *
+         * @param writer   The database writer on whose thread the solves are added.
+         * @param importer The importer that adds the solves to the database.
+         * @param reader   The reader of the binary backup file.
+         *
+         * @throws IOException
+         *     If the file could not be read, or is not valid. Any batches of solves that were
+         *     added before the failure are kept.
+         */
+        private void importBinaryBackup(DatabaseWriter writer,
+                                        DatabaseHandler.SolveImporter importer,
+                                        BinaryBackupReader reader) throws IOException {
+            final List<Solve> batch = new ArrayList<>(BINARY_IMPORT_BATCH_SIZE);
+            Solve solve;
+
+            do {
+                solve = reader.read();
+                if (solve != null) {
+                    batch.add(solve);
+                }
+
+                if (batch.size() == BINARY_IMPORT_BATCH_SIZE
+                        || (solve == null && !batch.isEmpty())) {
+                    final int numInserted
+                            = writer.executeAndWait(handler -> importer.addSolves(batch));
+
+                    successes += numInserted;
+                    duplicates += batch.size() - numInserted;
+                    batch.clear();
+                    publishProgressIfDue();
+                }
+            } while (solve != null);
+        }
+
+        /**
+         * Parses a row of a backup file.
+         *
+         * @param line The fields of the row.
+         *
+         * @return The solve.
+         *
+         * @throws Exception If the row is not a valid solve.
+         */
+        private static Solve parseBackupRow(String[] line) throws Exception {
+            return new Solve(
+                Integer.parseInt(line[2]), line[0], line[1], Long.parseLong(line[3]),
+                line[4], Integer.parseInt(line[5]), line[6], true);
+        }
+
+        /**
+         * Parses a row of a file in the external format.
+         *
+         * @param line           The fields of the row.
+         * @param puzzleType     The type of the puzzle to which the solves are imported.
+         * @param puzzleCategory The category to which the solves are imported.
+         * @param now            The date to give the solve if the row has no valid date.
+         *
+         * @return The solve.
+         *
+         * @throws Exception If the row is not a valid solve.
+         */
+        private static Solve parseExternalRow(String[] line, String puzzleType,
+                                              String puzzleCategory, long now) throws Exception {
+            if (line.length > 4) {
+                throw new IllegalArgumentException("Too many fields: " + line.length);
+            }
+
+            int time = PuzzleUtils.parseTime(line[0]);
+            String scramble = "";
+            long date = now;
+            int penalty = PuzzleUtils.NO_PENALTY;
+
+            if (line.length >= 2) {
+                scramble = line[1];
+            }
+            if (line.length >= 3) {
+                try {
+                    date = IsoDateTimeParser.parseMillis(line[2]);
+                } catch (Exception e) {
+                    // "date" remains equal to "now".
+                    e.printStackTrace();
+                }
+            }
+            // Optional fourth field (index 3) may contain "DNF". If it is
+            // something else, ignore it.
+            if (line.length >= 4 && "DNF".equals(line[3])) {
+                penalty = PuzzleUtils.PENALTY_DNF;
+            }
+
+            return new Solve(time, puzzleType, puzzleCategory, date, scramble, penalty, "", true);
+        }
+
+        /**
+         * Publishes the progress, if it has not been published recently.
+         */
+        private void publishProgressIfDue() {
+            if (SystemClock.elapsedRealtime() - mLastProgressTime >= PROGRESS_INTERVAL_MS) {
+                publishProgressNow();
+            }
+        }
+
+        /**
+         * Publishes the progress as the number of kilobytes of the file read so far. If the size
+         * of the file is not known, the progress is shown as complete.
+         */
+        private void publishProgressNow() {
+            final int numReadKB = mInput != null ? toKB(mInput.getCount()) : 0;
+
+            mLastProgressTime = SystemClock.elapsedRealtime();
+            publishProgress(numReadKB, mFileSizeKB >= 0 ? mFileSizeKB : numReadKB);
+        }
+
+        /**
+         * Gets the size of the file to be imported.
+         *
+         * @return The size of the file in bytes, or -1 if the size is not known.
+         */
+        private long getFileSize() {
+            try {
+                final AssetFileDescriptor fd
+                        = mContext.getContentResolver().openAssetFileDescriptor(mUri, "r");
+
+                if (fd != null) {
+                    try {
+                        return fd.getLength();
+                    } finally {
+                        fd.close();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "Cannot get the size of the import file.", e);
+            }
+
+            return AssetFileDescriptor.UNKNOWN_LENGTH;
+        }
+
+        /**
+         * Converts a number of bytes to a whole number of kilobytes.
+         *
+         * @param numBytes The number of bytes, or -1 if not known.
+         *
+         * @return The number of kilobytes, rounded up, or -1 if not known.
+         */
+        private static int toKB(long numBytes) {
+            return numBytes < 0 ? -1 : (int) Math.min((numBytes + 1023) / 1024, Integer.MAX_VALUE);
+        }
+
         @Override
         protected void onPostExecute(Void aVoid) {
             if (mProgressDialog.isShowing()) {
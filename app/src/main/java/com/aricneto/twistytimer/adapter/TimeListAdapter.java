@@ -1,7 +1,6 @@
 package com.aricneto.twistytimer.adapter;
 
 import android.content.Context;
-import android.database.Cursor;
 import androidx.fragment.app.FragmentManager;
 import androidx.core.content.ContextCompat;
 import androidx.cardview.widget.CardView;
@@ -19,6 +18,8 @@ import android.widget.TextView;
 
 import com.aricneto.twistify.R;
 import com.aricneto.twistytimer.TwistyTimer;
+import com.aricneto.twistytimer.database.DatabaseWriter;
+import com.aricneto.twistytimer.database.TimeList;
 import com.aricneto.twistytimer.fragment.TimerListFragment;
 import com.aricneto.twistytimer.fragment.dialog.TimeDialog;
 import com.aricneto.twistytimer.listener.DialogListener;
@@ -39,10 +40,14 @@ import static com.aricneto.twistytimer.utils.TTIntent.*;
  * Created by Ari on 05/06/2015.
  */
 
-public class TimeCursorAdapter extends CursorRecyclerAdapter<RecyclerView.ViewHolder> implements DialogListener {
+public class TimeListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
+        implements DialogListener, TimeList.Listener {
     private final Context           mContext;  // Current context
     private final FragmentManager   mFragmentManager;
 
+    // The times shown. Each page of times is read in the background as it is scrolled into view.
+    private TimeList mTimeList;
+
     Drawable cardBackground;
     Drawable selectedCardBackground;
 
@@ -55,8 +60,7 @@ public class TimeCursorAdapter extends CursorRecyclerAdapter<RecyclerView.ViewHo
     // Locks opening new windows until the last one is dismissed
     private boolean isLocked;
 
-    public TimeCursorAdapter(Context context, Cursor cursor, TimerListFragment listFragment) {
-        super(cursor);
+    public TimeListAdapter(Context context, TimerListFragment listFragment) {
         this.mContext = context;
         this.mFragmentManager = listFragment.getFragmentManager();
 
@@ -73,11 +77,37 @@ public class TimeCursorAdapter extends CursorRecyclerAdapter<RecyclerView.ViewHo
         mDateFormatSpec = context.getString(R.string.shortDateFormat);
     }
 
-    @Override
-    public Cursor swapCursor(Cursor cursor) {
-        super.swapCursor(cursor);
+    /**
+     * Replaces the list of times shown by this adapter. The previous list is not closed, as that
+     * is the responsibility of the loader that created it.
+     *
+     * @param timeList The new list of times, or {@code null} to show no times.
+     */
+    public void swapTimeList(TimeList timeList) {
+        if (mTimeList != null) {
+            mTimeList.setListener(null);
+        }
+        mTimeList = timeList;
+        if (mTimeList != null) {
+            mTimeList.setListener(this);
+        }
         unselectAll();
-        return cursor;
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public int getItemCount() {
+        return mTimeList != null ? mTimeList.getCount() : 0;
+    }
+
+    @Override
+    public void onTimesLoaded(int firstPosition, int count) {
+        notifyItemRangeChanged(firstPosition, count);
+    }
+
+    @Override
+    public void onTimesRemoved(int firstPosition, int count) {
+        notifyItemRangeRemoved(firstPosition, count);
     }
 
     @Override
@@ -93,14 +123,18 @@ public class TimeCursorAdapter extends CursorRecyclerAdapter<RecyclerView.ViewHo
     }
 
     @Override
-    public void onBindViewHolderCursor(final RecyclerView.ViewHolder viewHolder, final Cursor cursor) {
+    public void onBindViewHolder(final RecyclerView.ViewHolder viewHolder, final int position) {
         TimeHolder holder = (TimeHolder) viewHolder;
-        handleTime(holder, cursor);
+
+        if (mTimeList.request(position))
+            handleTime(holder, position);
+        else
+            handlePlaceholder(holder);
     }
 
     @Override
     public void onUpdateDialog() {
-        broadcast(CATEGORY_TIME_DATA_CHANGES, ACTION_TIMES_MODIFIED);
+        // The "TimeDialog" broadcasts the details of the changed solve itself.
     }
 
     @Override
@@ -119,8 +153,45 @@ public class TimeCursorAdapter extends CursorRecyclerAdapter<RecyclerView.ViewHo
     }
 
     public void deleteAllSelected() {
-        TwistyTimer.getDBHandler().deleteSolvesByID(selectedItems, null); // Ignore progress.
-        broadcast(CATEGORY_TIME_DATA_CHANGES, ACTION_TIMES_MODIFIED);
+        TwistyTimer.getDBWriter().deleteSolvesByID(
+                selectedItems, newSelectedTimesModifiedCallback());
+    }
+
+    /**
+     * Applies a penalty to all of the selected times.
+     *
+     * @param penalty The penalty to apply. See {@link PuzzleUtils#applyPenalty}.
+     */
+    public void penalizeAllSelected(int penalty) {
+        TwistyTimer.getDBWriter().setPenaltyOfSolvesByID(
+                selectedItems, penalty, newSelectedTimesModifiedCallback());
+    }
+
+    /**
+     * Moves all of the selected times to or from the history.
+     *
+     * @param isHistory
+     *     {@code true} to move the times to the history, or {@code false} to move them back to
+     *     the current session.
+     */
+    public void archiveAllSelected(boolean isHistory) {
+        TwistyTimer.getDBWriter().setHistoryOfSolvesByID(
+                selectedItems, isHistory, newSelectedTimesModifiedCallback());
+    }
+
+    /**
+     * Creates a database writer callback that broadcasts a single notification that all of the
+     * selected times were modified. The selection may be cleared before the callback is
+     * notified, so the IDs of the selected times are copied now.
+     *
+     * @return The callback.
+     */
+    private DatabaseWriter.Callback<Integer> newSelectedTimesModifiedCallback() {
+        final List<Long> solveIDs = new ArrayList<>(selectedItems);
+
+        return numChanged -> new BroadcastBuilder(CATEGORY_TIME_DATA_CHANGES, ACTION_TIMES_MODIFIED)
+                .solveIDs(solveIDs)
+                .broadcast();
     }
 
     private void toggleSelection(long id, CardView card) {
@@ -140,12 +211,26 @@ public class TimeCursorAdapter extends CursorRecyclerAdapter<RecyclerView.ViewHo
         }
     }
 
-    private void handleTime(final TimeHolder holder, final Cursor cursor) {
-        final long mId = cursor.getLong(0); // id
-        final int pTime = cursor.getInt(3); // time
-        final int pPenalty = cursor.getInt(6); // penalty
-        final long pDate = cursor.getLong(4); // date
-        final String pComment = cursor.getString(7); // comment
+    /**
+     * Shows an empty card for a time that has not yet been read. The card is bound again when
+     * its page of times has been read.
+     */
+    private void handlePlaceholder(final TimeHolder holder) {
+        holder.card.setBackground(cardBackground);
+        holder.root.setOnClickListener(null);
+        holder.root.setOnLongClickListener(null);
+        holder.timeText.setText("");
+        holder.dateText.setText("");
+        holder.penaltyText.setVisibility(View.GONE);
+        holder.commentIcon.setVisibility(View.GONE);
+    }
+
+    private void handleTime(final TimeHolder holder, final int position) {
+        final long mId = mTimeList.getId(position);
+        final int pTime = mTimeList.getTime(position);
+        final int pPenalty = mTimeList.getPenalty(position);
+        final long pDate = mTimeList.getDate(position);
+        final boolean pHasComment = mTimeList.hasComment(position);
 
         holder.dateText.setText(new DateTime(pDate).toString(mDateFormatSpec));
 
@@ -163,7 +248,7 @@ public class TimeCursorAdapter extends CursorRecyclerAdapter<RecyclerView.ViewHo
                     setIsLocked(true);
                     TimeDialog timeDialog = TimeDialog.newInstance(mId);
                     timeDialog.show(mFragmentManager, "time_dialog");
-                    timeDialog.setDialogListener(TimeCursorAdapter.this);
+                    timeDialog.setDialogListener(TimeListAdapter.this);
                 }
             }
         });
@@ -197,7 +282,7 @@ public class TimeCursorAdapter extends CursorRecyclerAdapter<RecyclerView.ViewHo
                 break;
         }
 
-        if (! pComment.equals("")) {
+        if (pHasComment) {
             holder.commentIcon.setVisibility(View.VISIBLE);
         } else {
             // This else is needed because the view recycles.
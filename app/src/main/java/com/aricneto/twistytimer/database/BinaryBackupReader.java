@@ -0,0 +1,288 @@
+package com.aricneto.twistytimer.database;
+
+import com.aricneto.twistytimer.items.Solve;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static com.aricneto.twistytimer.database.BinaryBackupWriter.BLOCK_SIZE;
+import static com.aricneto.twistytimer.database.BinaryBackupWriter.MAGIC;
+import static com.aricneto.twistytimer.database.BinaryBackupWriter.TAG_END;
+import static com.aricneto.twistytimer.database.BinaryBackupWriter.TAG_SOLVES;
+import static com.aricneto.twistytimer.database.BinaryBackupWriter.UTF_8;
+import static com.aricneto.twistytimer.database.BinaryBackupWriter.VERSION;
+
+/**
+ * Reads solves from a file in the binary backup format, as written by
+ * {@link BinaryBackupWriter}. The solves are read a block at a time, so a backup of any size can
+ * be read without holding it in memory. As with the text backup format, every solve read is
+ * marked as part of the history.
+ */
+public final class BinaryBackupReader implements Closeable {
+    /**
+     * The size of the buffers before and after decompression, in bytes.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The maximum length of a name, scramble or comment, in bytes. No real value comes near this
+     * length, so a greater length means that the file is corrupt.
+     */
+    private static final int MAX_LENGTH = 1 << 24;
+
+    private final InputStream mIn;
+
+    /**
+     * The names read so far, in the order in which they were first written.
+     */
+    private final List<String> mNames = new ArrayList<>();
+
+    // The solves of the block being read. Each is created only when it is read.
+    private String mType;
+    private String mSubtype;
+    private int mNumSolves;
+    private int mNextSolve;
+    private final long[] mDates = new long[BLOCK_SIZE];
+    private final int[] mTimes = new int[BLOCK_SIZE];
+    private final int[] mPenalties = new int[BLOCK_SIZE];
+    private final byte[][] mScrambles = new byte[BLOCK_SIZE][];
+    private final String[] mComments = new String[BLOCK_SIZE];
+
+    private boolean mIsAtEnd;
+
+    /**
+     * Indicates if a stream holds a file in the binary backup format, without reading any of the
+     * file. Only the GZIP signature at the start of the stream is checked; whether the file is a
+     * supported version of the format is checked when it is opened.
+     *
+     * @param in The stream to check. It must support {@code mark} and {@code reset}.
+     *
+     * @return {@code true} if the stream is compressed, as a binary backup file is.
+     *
+     * @throws IOException If the stream could not be read.
+     */
+    public static boolean isBinaryBackup(InputStream in) throws IOException {
+        in.mark(2);
+        try {
+            final int b0 = in.read();
+            final int b1 = in.read();
+
+            return b0 == (GZIPInputStream.GZIP_MAGIC & 0xFF)
+                    && b1 == (GZIPInputStream.GZIP_MAGIC >> 8);
+        } finally {
+            in.reset();
+        }
+    }
+
+    /**
+     * Creates a new binary backup reader and reads the header of the file.
+     *
+     * @param in The stream from which to read. It is closed when this reader is closed.
+     *
+     * @throws IOException
+     *     If the header could not be read, or if the file is not a binary backup file of a
+     *     supported version.
+     */
+    public BinaryBackupReader(InputStream in) throws IOException {
+        mIn = new BufferedInputStream(new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE);
+
+        for (byte b : MAGIC) {
+            if (readByte() != b) {
+                throw new IOException("Not a binary backup file.");
+            }
+        }
+
+        final int version = readByte();
+
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary backup version: " + version);
+        }
+    }
+
+    /**
+     * Reads the next solve.
+     *
+     * @return The solve, or {@code null} if there are no more solves.
+     *
+     * @throws IOException If the file could not be read, or is not valid.
+     */
+    public Solve read() throws IOException {
+        if (mNextSolve == mNumSolves && !readBlock()) {
+            return null;
+        }
+
+        final int i = mNextSolve++;
+        final String scramble;
+
+        try {
+            scramble = ScrambleCodec.decode(mScrambles[i]);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid scramble.", e);
+        }
+
+        final Solve solve = new Solve(mTimes[i], mType, mSubtype, mDates[i], scramble,
+                mPenalties[i], mComments[i], true);
+
+        mScrambles[i] = null;
+        mComments[i] = null;
+        return solve;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mIn.close();
+    }
+
+    /**
+     * Reads the next block of solves.
+     *
+     * @return {@code true} if a block was read; or {@code false} if the end of the file was
+     *     reached.
+     *
+     * @throws IOException If the file could not be read, or is not valid.
+     */
+    private boolean readBlock() throws IOException {
+        if (mIsAtEnd) {
+            return false;
+        }
+
+        final int tag = readByte();
+
+        if (tag == TAG_END) {
+            // Reading past the end checks the length and checksum of the whole file.
+            if (mIn.read() != -1) {
+                throw new IOException("Unexpected data after the end of the backup.");
+            }
+            mIsAtEnd = true;
+            return false;
+        }
+        if (tag != TAG_SOLVES) {
+            throw new IOException("Unknown block tag: " + tag);
+        }
+
+        mType = readName();
+        mSubtype = readName();
+
+        final long n = readVarint();
+
+        if (n < 1 || n > BLOCK_SIZE) {
+            throw new IOException("Invalid number of solves in block: " + n);
+        }
+        mNumSolves = (int) n;
+        mNextSolve = 0;
+
+        long lastDate = 0;
+
+        for (int i = 0; i < mNumSolves; i++) {
+            lastDate += readSignedVarint();
+            mDates[i] = lastDate;
+        }
+        for (int i = 0; i < mNumSolves; i++) {
+            mTimes[i] = (int) readSignedVarint();
+        }
+        for (int i = 0; i < mNumSolves; i++) {
+            mPenalties[i] = (int) readSignedVarint();
+        }
+        for (int i = 0; i < mNumSolves; i++) {
+            mScrambles[i] = readBytes();
+        }
+        for (int i = 0; i < mNumSolves; i++) {
+            final byte[] comment = readBytes();
+
+            mComments[i] = comment != null ? new String(comment, UTF_8) : null;
+        }
+        return true;
+    }
+
+    /**
+     * Reads a puzzle type or category name, or a reference to a name read before.
+     *
+     * @return The name.
+     *
+     * @throws IOException If the name could not be read, or is not valid.
+     */
+    private String readName() throws IOException {
+        final long ref = readVarint();
+
+        if (ref == 0) {
+            final String name = new String(readFully(readLength(readVarint())), UTF_8);
+
+            mNames.add(name);
+            return name;
+        }
+        if (ref > mNames.size()) {
+            throw new IOException("Invalid name reference: " + ref);
+        }
+        return mNames.get((int) ref - 1);
+    }
+
+    /**
+     * Reads an array of bytes preceded by its length plus one.
+     *
+     * @return The bytes, or {@code null} if the length was zero.
+     *
+     * @throws IOException If the bytes could not be read.
+     */
+    private byte[] readBytes() throws IOException {
+        final long lengthPlusOne = readVarint();
+
+        return lengthPlusOne == 0 ? null : readFully(readLength(lengthPlusOne - 1));
+    }
+
+    private static int readLength(long length) throws IOException {
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new IOException("Invalid length: " + length);
+        }
+        return (int) length;
+    }
+
+    private byte[] readFully(int length) throws IOException {
+        final byte[] bytes = new byte[length];
+        int offset = 0;
+
+        while (offset < length) {
+            final int numRead = mIn.read(bytes, offset, length - offset);
+
+            if (numRead < 0) {
+                throw new EOFException("Unexpected end of the backup.");
+            }
+            offset += numRead;
+        }
+        return bytes;
+    }
+
+    private int readByte() throws IOException {
+        final int b = mIn.read();
+
+        if (b < 0) {
+            throw new EOFException("Unexpected end of the backup.");
+        }
+        return b;
+    }
+
+    private long readSignedVarint() throws IOException {
+        final long value = readVarint();
+
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private long readVarint() throws IOException {
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = readByte();
+
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid variable-length integer.");
+    }
+}
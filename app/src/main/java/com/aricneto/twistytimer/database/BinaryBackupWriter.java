@@ -0,0 +1,271 @@
+package com.aricneto.twistytimer.database;
+
+import com.aricneto.twistytimer.items.Solve;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p>
+ * Writes solves to a file in the binary backup format. This holds the same fields as the text
+ * backup format, but is several times smaller, and much quicker to read, as there is no text to
+ * parse. The solves are written as they are given, so a backup of any size can be written
+ * without holding it in memory.
+ * </p>
+ * <p>
+ * The whole file is compressed as a single GZIP member. The uncompressed content is:
+ * </p>
+ * <ol>
+ *     <li>The four bytes of {@link #MAGIC}, then one byte giving the {@link #VERSION} of the
+ *     format.</li>
+ *     <li>Any number of blocks of solves, each starting with the byte {@link #TAG_SOLVES}. A block
+ *     holds up to {@link #BLOCK_SIZE} solves of a single puzzle type and category. It starts with
+ *     the type and category names, then the number of solves, then each field of every solve in
+ *     turn: all of the dates, then all of the times, and so on. Grouping like values makes them
+ *     compress much better.</li>
+ *     <li>The byte {@link #TAG_END}, which shows that the file is complete.</li>
+ * </ol>
+ * <p>
+ * All numbers are variable-length integers, seven bits to a byte, least significant first.
+ * Signed numbers are first "zig-zag" encoded, so that small negative numbers are also short.
+ * Each date is written as the difference from the date of the previous solve in the block, so
+ * solves written in order of date need only a few bytes for each date. The type and category
+ * names are written in full only the first time they are used; after that, they are written as
+ * their index in the list of names written before. Scrambles are written in the form given by
+ * {@link ScrambleCodec}, the same form in which they are held in the database.
+ * </p>
+ */
+public final class BinaryBackupWriter implements Closeable {
+    /**
+     * The bytes at the start of the uncompressed content of a binary backup file.
+     */
+    static final byte[] MAGIC = { 'T', 'T', 'B', 'K' };
+
+    /**
+     * The version of the format written by this class.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The tag that starts a block of solves.
+     */
+    static final int TAG_SOLVES = 1;
+
+    /**
+     * The tag that marks the end of the file.
+     */
+    static final int TAG_END = 0;
+
+    /**
+     * The maximum number of solves in each block.
+     */
+    static final int BLOCK_SIZE = 1_000;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The size of the buffers before and after compression, in bytes.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final GZIPOutputStream mCompressor;
+    private final OutputStream mOut;
+
+    /**
+     * The index of each name already written, plus one. A reference of zero introduces a new
+     * name.
+     */
+    private final Map<String, Integer> mNames = new HashMap<>();
+
+    // The solves of the block being built. They are written when the block is full, or when a
+    // solve of another category is written.
+    private String mType;
+    private String mSubtype;
+    private int mNumSolves;
+    private final long[] mDates = new long[BLOCK_SIZE];
+    private final int[] mTimes = new int[BLOCK_SIZE];
+    private final int[] mPenalties = new int[BLOCK_SIZE];
+    private final byte[][] mScrambles = new byte[BLOCK_SIZE][];
+    private final String[] mComments = new String[BLOCK_SIZE];
+
+    /**
+     * Creates a new binary backup writer and writes the header of the file.
+     *
+     * @param out
+     *     The stream to which to write the file. It is closed when this writer is closed.
+     *
+     * @throws IOException If the header could not be written.
+     */
+    public BinaryBackupWriter(OutputStream out) throws IOException {
+        mCompressor = new GZIPOutputStream(out, BUFFER_SIZE);
+        mOut = new BufferedOutputStream(mCompressor, BUFFER_SIZE);
+
+        mOut.write(MAGIC);
+        mOut.write(VERSION);
+    }
+
+    /**
+     * Writes a solve. The solves of each category should be written together and in order of
+     * date, as the backup is then much smaller, but this is not required.
+     *
+     * @param type     The name of the puzzle type.
+     * @param subtype  The name of the category.
+     * @param time     The solve time, in milliseconds.
+     * @param date     The date of the solve, in milliseconds since the epoch.
+     * @param scramble
+     *     The scramble, as encoded by {@link ScrambleCodec#encode(String)}. May be {@code null}.
+     * @param penalty  The penalty.
+     * @param comment  The comment. May be {@code null}.
+     *
+     * @throws IOException If a block of solves could not be written.
+     */
+    public void write(String type, String subtype, int time, long date, byte[] scramble,
+                      int penalty, String comment) throws IOException {
+        if (mNumSolves == BLOCK_SIZE
+                || (mNumSolves > 0 && !(type.equals(mType) && subtype.equals(mSubtype)))) {
+            writeBlock();
+        }
+
+        mType = type;
+        mSubtype = subtype;
+        mDates[mNumSolves] = date;
+        mTimes[mNumSolves] = time;
+        mPenalties[mNumSolves] = penalty;
+        mScrambles[mNumSolves] = scramble;
+        mComments[mNumSolves] = comment;
+        mNumSolves++;
+    }
+
+    /**
+     * Writes a solve. See {@link #write(String, String, int, long, byte[], int, String)}.
+     *
+     * @param solve The solve to write.
+     *
+     * @throws IOException If a block of solves could not be written.
+     */
+    public void write(Solve solve) throws IOException {
+        write(solve.getPuzzle(), solve.getSubtype(), solve.getTime(), solve.getDate(),
+                ScrambleCodec.encode(solve.getScramble()), solve.getPenalty(), solve.getComment());
+    }
+
+    /**
+     * Writes any remaining solves and the end of the file. This must be called once all of the
+     * solves have been written, before the writer is closed.
+     *
+     * @throws IOException If the file could not be completed.
+     */
+    public void finish() throws IOException {
+        if (mNumSolves > 0) {
+            writeBlock();
+        }
+        mOut.write(TAG_END);
+        mOut.flush();
+        mCompressor.finish();
+    }
+
+    /**
+     * Closes the stream. If {@link #finish()} was not called first, such as when the solves could
+     * not all be read, the file has no end marker, so it will be rejected as incomplete when it is
+     * read.
+     *
+     * @throws IOException If the stream could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        mOut.close();
+    }
+
+    /**
+     * Writes the block of solves being built, and starts a new, empty block.
+     *
+     * @throws IOException If the block could not be written.
+     */
+    private void writeBlock() throws IOException {
+        final int n = mNumSolves;
+
+        mOut.write(TAG_SOLVES);
+        writeName(mType);
+        writeName(mSubtype);
+        writeVarint(n);
+
+        long lastDate = 0;
+
+        for (int i = 0; i < n; i++) {
+            writeSignedVarint(mDates[i] - lastDate);
+            lastDate = mDates[i];
+        }
+        for (int i = 0; i < n; i++) {
+            writeSignedVarint(mTimes[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            writeSignedVarint(mPenalties[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            writeBytes(mScrambles[i]);
+            mScrambles[i] = null;
+        }
+        for (int i = 0; i < n; i++) {
+            writeBytes(mComments[i] != null ? mComments[i].getBytes(UTF_8) : null);
+            mComments[i] = null;
+        }
+
+        mNumSolves = 0;
+    }
+
+    /**
+     * Writes a puzzle type or category name, or a reference to the same name written before.
+     *
+     * @param name The name.
+     *
+     * @throws IOException If the name could not be written.
+     */
+    private void writeName(String name) throws IOException {
+        final Integer ref = mNames.get(name);
+
+        if (ref != null) {
+            writeVarint(ref);
+        } else {
+            final byte[] bytes = name.getBytes(UTF_8);
+
+            writeVarint(0);
+            writeVarint(bytes.length);
+            mOut.write(bytes);
+            mNames.put(name, mNames.size() + 1);
+        }
+    }
+
+    /**
+     * Writes an array of bytes preceded by its length plus one, or a zero length if the array is
+     * {@code null}.
+     *
+     * @param bytes The bytes to write. May be {@code null}.
+     *
+     * @throws IOException If the bytes could not be written.
+     */
+    private void writeBytes(byte[] bytes) throws IOException {
+        if (bytes == null) {
+            writeVarint(0);
+        } else {
+            writeVarint(bytes.length + 1L);
+            mOut.write(bytes);
+        }
+    }
+
+    private void writeSignedVarint(long value) throws IOException {
+        writeVarint((value << 1) ^ (value >> 63));
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            mOut.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        mOut.write((int) value);
+    }
+}
@@ -0,0 +1,219 @@
+package com.aricneto.twistytimer.database;
+
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>
+ * A cache of the names of the categories (subtypes) of each puzzle type, with the number of
+ * solves in each category (in the current session and the history combined). The cache is loaded
+ * once, from the summary table (see {@link DatabaseHandler#TABLE_TIMES_SUMMARY}), and is then
+ * kept up to date by the {@link DatabaseHandler} as it changes the solves, so the category lists
+ * can be shown without reading the database.
+ * </p>
+ * <p>
+ * The {@link DatabaseWriter} loads the cache on its thread when the application starts. If the
+ * cache is read before then, it is loaded on the calling thread. This class is thread-safe.
+ * </p>
+ */
+public final class CategoryRegistry {
+    /**
+     * The database handler from which the cache is loaded.
+     */
+    private final DatabaseHandler mHandler;
+
+    /**
+     * The number of solves in each category, by category name, for each puzzle type. The
+     * categories are sorted by name. A category may have no solves, if it holds only the hidden
+     * solve that keeps an empty category in existence.
+     */
+    private final Map<String, TreeMap<String, Integer>> mCategoriesByType = new HashMap<>();
+
+    /**
+     * {@code true} if the cache has been loaded.
+     */
+    private boolean mIsLoaded;
+
+    /**
+     * Creates a new, empty category registry. It will be loaded when first needed.
+     *
+     * @param handler The database handler from which to load the categories.
+     */
+    CategoryRegistry(DatabaseHandler handler) {
+        mHandler = handler;
+    }
+
+    /**
+     * Creates a new category registry that holds no categories and is treated as already loaded,
+     * so it is never loaded from the database. Changes to the categories are recorded directly.
+     * This allows the cache to be tested without a database.
+     *
+     * @return The new, empty category registry.
+     */
+    static CategoryRegistry newLoadedRegistry() {
+        final CategoryRegistry registry = new CategoryRegistry(null);
+
+        registry.mIsLoaded = true;
+        return registry;
+    }
+
+    /**
+     * Gets the names of the puzzle types that have at least one category.
+     *
+     * @return A new list of the puzzle type names, sorted by name. The list may be modified.
+     */
+    public synchronized List<String> getTypes() {
+        ensureLoaded();
+
+        final List<String> types = new ArrayList<>(mCategoriesByType.keySet());
+
+        Collections.sort(types);
+        return types;
+    }
+
+    /**
+     * Gets the names of the categories of a puzzle type.
+     *
+     * @param type The name of the puzzle type.
+     *
+     * @return A new list of the category names, sorted by name. The list may be modified.
+     */
+    public synchronized List<String> getSubtypes(String type) {
+        ensureLoaded();
+
+        final TreeMap<String, Integer> categories = mCategoriesByType.get(type);
+
+        return categories != null ? new ArrayList<>(categories.keySet()) : new ArrayList<>();
+    }
+
+    /**
+     * Gets the number of solves in a category of a puzzle type, including the solves in the
+     * history.
+     *
+     * @param type    The name of the puzzle type.
+     * @param subtype The name of the category.
+     *
+     * @return The number of solves, or zero if the category does not exist.
+     */
+    public synchronized int getNumSolves(String type, String subtype) {
+        ensureLoaded();
+
+        final TreeMap<String, Integer> categories = mCategoriesByType.get(type);
+        final Integer numSolves = categories != null ? categories.get(subtype) : null;
+
+        return numSolves != null ? numSolves : 0;
+    }
+
+    /**
+     * Loads the cache, if it has not already been loaded.
+     */
+    synchronized void ensureLoaded() {
+        if (!mIsLoaded) {
+            reload();
+        }
+    }
+
+    /**
+     * Loads the cache again from the summary table. This is used after changes to the solves
+     * that cannot be applied to the cache directly, such as imports and deletions. The summary
+     * table has only a few rows for each category, so this is quick.
+     */
+    synchronized void reload() {
+        final Cursor cursor = mHandler.getReadableDatabase().rawQuery(
+                "SELECT " + DatabaseHandler.KEY_TYPE + ", " + DatabaseHandler.KEY_SUBTYPE + ", "
+                + "SUM(" + DatabaseHandler.KEY_SUMMARY_NUM_SOLVES + ")"
+                + " FROM " + DatabaseHandler.TABLE_TIMES_SUMMARY
+                + " GROUP BY " + DatabaseHandler.KEY_TYPE + ", " + DatabaseHandler.KEY_SUBTYPE,
+                null);
+
+        try {
+            mCategoriesByType.clear();
+            while (cursor.moveToNext()) {
+                if (!cursor.isNull(0) && !cursor.isNull(1)) {
+                    categoriesOf(cursor.getString(0)).put(cursor.getString(1), cursor.getInt(2));
+                }
+            }
+            mIsLoaded = true;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Records that a solve has been added. The category is added if it is new.
+     *
+     * @param type    The name of the puzzle type of the solve.
+     * @param subtype The name of the category of the solve.
+     * @param isSolve
+     *     {@code true} if this is a real solve; or {@code false} if it is a hidden solve that
+     *     holds an empty category in existence.
+     */
+    synchronized void addSolve(String type, String subtype, boolean isSolve) {
+        if (mIsLoaded && type != null && subtype != null) {
+            final TreeMap<String, Integer> categories = categoriesOf(type);
+            final Integer numSolves = categories.get(subtype);
+
+            categories.put(subtype, (numSolves != null ? numSolves : 0) + (isSolve ? 1 : 0));
+        }
+    }
+
+    /**
+     * Records that a category has been renamed. If a category with the new name already exists,
+     * the solves of the two categories are merged.
+     *
+     * @param type    The name of the puzzle type.
+     * @param subtype The old name of the category.
+     * @param newName The new name of the category.
+     */
+    synchronized void renameSubtype(String type, String subtype, String newName) {
+        final TreeMap<String, Integer> categories = mCategoriesByType.get(type);
+
+        if (categories != null && categories.containsKey(subtype) && newName != null) {
+            final Integer numMoved = categories.remove(subtype);
+            final Integer numSolves = categories.get(newName);
+
+            categories.put(newName, numMoved + (numSolves != null ? numSolves : 0));
+        }
+    }
+
+    /**
+     * Records that a category and all of its solves have been deleted. If it was the last
+     * category of its puzzle type, the puzzle type is removed, too.
+     *
+     * @param type    The name of the puzzle type.
+     * @param subtype The name of the category.
+     */
+    synchronized void removeSubtype(String type, String subtype) {
+        final TreeMap<String, Integer> categories = mCategoriesByType.get(type);
+
+        if (categories != null) {
+            categories.remove(subtype);
+            if (categories.isEmpty()) {
+                mCategoriesByType.remove(type);
+            }
+        }
+    }
+
+    /**
+     * Gets the categories of a puzzle type, adding an empty set of categories if there are none.
+     *
+     * @param type The name of the puzzle type.
+     *
+     * @return The categories.
+     */
+    private TreeMap<String, Integer> categoriesOf(String type) {
+        TreeMap<String, Integer> categories = mCategoriesByType.get(type);
+
+        if (categories == null) {
+            categories = new TreeMap<>();
+            mCategoriesByType.put(type, categories);
+        }
+        return categories;
+    }
+}
@@ -3,15 +3,21 @@ package com.aricneto.twistytimer.database;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
 import android.util.Log;
 
 import com.aricneto.twistify.R;
 import com.aricneto.twistytimer.TwistyTimer;
 import com.aricneto.twistytimer.fragment.dialog.ExportImportDialog;
 import com.aricneto.twistytimer.items.Algorithm;
+import com.aricneto.twistytimer.items.CategorySummary;
 import com.aricneto.twistytimer.items.Solve;
+import com.aricneto.twistytimer.stats.AverageCalculator;
 import com.aricneto.twistytimer.stats.ChartStatistics;
 import com.aricneto.twistytimer.stats.Statistics;
 import com.aricneto.twistytimer.utils.AlgUtils;
@@ -20,7 +26,12 @@ import com.aricneto.twistytimer.utils.PuzzleUtils;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Created by Ari on 03/06/2015.
@@ -65,6 +76,35 @@ public class DatabaseHandler extends SQLiteOpenHelper {
     public static final String SUBSET_OLL = "OLL";
     public static final String SUBSET_PLL = "PLL";
 
+    // Statistics snapshots table. One row per puzzle type and subtype. The "generation" is
+    // incremented by triggers on the "times" table whenever a change is made that cannot be
+    // applied to a snapshot by simply adding the newer solves, and the snapshot data is cleared.
+    public static final String TABLE_STATS_SNAPSHOTS  = "stats_snapshots";
+    public static final String KEY_SNAPSHOT_GENERATION = "generation";
+    public static final String KEY_SNAPSHOT_MAX_ID     = "max_id";
+    public static final String KEY_SNAPSHOT_MAX_DATE   = "max_date";
+    public static final String KEY_SNAPSHOT_DATA       = "data";
+
+    // Full-text index of the solve comments. It is an "external content" FTS4 table, so the
+    // comments are not stored twice; the "docid" of each entry is the "_id" of its solve. Only
+    // non-empty comments are indexed. The index is kept up to date by triggers on "times".
+    public static final String TABLE_COMMENTS_FTS = "times_comments_fts";
+
+    // Summary of the solves in each puzzle type, subtype and history state. It is kept up to date
+    // by triggers on "times", so the headline numbers can be read without scanning the solves.
+    // The "num_rows" counts every row, including the hidden solves that hold an empty category
+    // in existence; the other columns count only real solves. The totals, best and worst times
+    // exclude DNFs. The best and worst times and the dates are NULL if there are no such solves.
+    public static final String TABLE_TIMES_SUMMARY    = "times_summary";
+    public static final String KEY_SUMMARY_NUM_ROWS   = "num_rows";
+    public static final String KEY_SUMMARY_NUM_SOLVES = "num_solves";
+    public static final String KEY_SUMMARY_NUM_DNFS   = "num_dnfs";
+    public static final String KEY_SUMMARY_TOTAL_TIME = "total_time";
+    public static final String KEY_SUMMARY_BEST_TIME  = "best_time";
+    public static final String KEY_SUMMARY_WORST_TIME = "worst_time";
+    public static final String KEY_SUMMARY_FIRST_DATE = "first_date";
+    public static final String KEY_SUMMARY_LAST_DATE  = "last_date";
+
     private static final String RED                = "R";
     private static final String GRE                = "G";
     private static final String BLU                = "B";
@@ -73,7 +113,7 @@ public class DatabaseHandler extends SQLiteOpenHelper {
     private static final String YEL                = "Y";
     private static final String NUL                = "N";
     // Database Version
-    private static final int    DATABASE_VERSION   = 10;
+    private static final int    DATABASE_VERSION   = 18;
     // Database Name
     private static final String DATABASE_NAME      = "databaseManager";
     private static final String CREATE_TABLE_TIMES =
@@ -97,6 +137,113 @@ public class DatabaseHandler extends SQLiteOpenHelper {
             + KEY_ALGS + " TEXT,"
             + KEY_PROGRESS + " INTEGER"
             + ")";
+    /**
+     * The largest statistics snapshot that will be saved, in bytes. A snapshot includes the log
+     * of the solves, so it grows by a few bytes for each solve, and a row read through a cursor
+     * must fit in its window of 2 MB. A larger snapshot is not saved, and the last snapshot that
+     * was saved, if still valid, is restored instead.
+     */
+    private static final int MAX_SNAPSHOT_SIZE = 1_536 * 1_024;
+
+    private static final String CREATE_TABLE_STATS_SNAPSHOTS =
+        "CREATE TABLE " + TABLE_STATS_SNAPSHOTS + "("
+            + KEY_TYPE + " TEXT NOT NULL,"
+            + KEY_SUBTYPE + " TEXT NOT NULL,"
+            + KEY_SNAPSHOT_GENERATION + " INTEGER NOT NULL DEFAULT 0,"
+            + KEY_SNAPSHOT_MAX_ID + " INTEGER,"
+            + KEY_SNAPSHOT_MAX_DATE + " INTEGER,"
+            + KEY_SNAPSHOT_DATA + " BLOB,"
+            + "PRIMARY KEY (" + KEY_TYPE + ", " + KEY_SUBTYPE + ")"
+            + ")";
+    private static final String CREATE_TABLE_TIMES_SUMMARY =
+        "CREATE TABLE " + TABLE_TIMES_SUMMARY + "("
+            + KEY_TYPE + " TEXT,"
+            + KEY_SUBTYPE + " TEXT,"
+            + KEY_HISTORY + " INTEGER,"
+            + KEY_SUMMARY_NUM_ROWS + " INTEGER NOT NULL DEFAULT 0,"
+            + KEY_SUMMARY_NUM_SOLVES + " INTEGER NOT NULL DEFAULT 0,"
+            + KEY_SUMMARY_NUM_DNFS + " INTEGER NOT NULL DEFAULT 0,"
+            + KEY_SUMMARY_TOTAL_TIME + " INTEGER NOT NULL DEFAULT 0,"
+            + KEY_SUMMARY_BEST_TIME + " INTEGER,"
+            + KEY_SUMMARY_WORST_TIME + " INTEGER,"
+            + KEY_SUMMARY_FIRST_DATE + " INTEGER,"
+            + KEY_SUMMARY_LAST_DATE + " INTEGER,"
+            + "PRIMARY KEY (" + KEY_TYPE + ", " + KEY_SUBTYPE + ", " + KEY_HISTORY + ")"
+            + ")";
+
+    /**
+     * The indexes on the "times" table. Every query for solves is for a single puzzle type and
+     * subtype, so each index begins with those columns. The first index covers all of the columns
+     * read when loading the statistics for all past and current sessions in order of date, so
+     * those rows are read from the index alone. The others serve queries that select either the
+     * current session or the history, ordered by date or by time (e.g., the list of times). As
+     * the history flag follows the category, the few solves of the current session are kept
+     * together, apart from the many archived solves, and as these indexes also cover the penalty,
+     * time and date, the session statistics, charts and summaries are read from that small range
+     * of the index alone, without reading the pages of the table that hold the archived solves.
+     * In each index, the solve ID follows the date or time, so the pages of the list of times and
+     * of an export, which are ordered by date or time and then by ID, are read in index order,
+     * without being sorted.
+     */
+    private static final String[] CREATE_TIMES_INDEXES = {
+        "CREATE INDEX IF NOT EXISTS times_category_date ON " + TABLE_TIMES
+            + " (" + KEY_TYPE + ", " + KEY_SUBTYPE + ", " + KEY_DATE + ", " + KEY_ID + ", "
+            + KEY_PENALTY + ", " + KEY_TIME + ", " + KEY_HISTORY + ")",
+        "CREATE INDEX IF NOT EXISTS times_category_history_date ON " + TABLE_TIMES
+            + " (" + KEY_TYPE + ", " + KEY_SUBTYPE + ", " + KEY_HISTORY + ", " + KEY_DATE + ", "
+            + KEY_ID + ", " + KEY_PENALTY + ", " + KEY_TIME + ")",
+        "CREATE INDEX IF NOT EXISTS times_category_history_time ON " + TABLE_TIMES
+            + " (" + KEY_TYPE + ", " + KEY_SUBTYPE + ", " + KEY_HISTORY + ", " + KEY_TIME + ", "
+            + KEY_ID + ", " + KEY_PENALTY + ", " + KEY_DATE + ")",
+    };
+
+    /**
+     * The statement used to insert solves in bulk. The parameters are bound by
+     * {@link #bindSolve(SQLiteStatement, Solve)}.
+     */
+    private static final String INSERT_SOLVE = "INSERT INTO " + TABLE_TIMES + " ("
+            + KEY_TYPE + ", " + KEY_SUBTYPE + ", " + KEY_TIME + ", " + KEY_DATE + ", "
+            + KEY_SCRAMBLE + ", " + KEY_PENALTY + ", " + KEY_COMMENT + ", " + KEY_HISTORY
+            + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * The default number of solves inserted in each transaction by
+     * {@link #addSolves(int, Collection, ProgressListener)}.
+     */
+    public static final int DEFAULT_INSERT_CHUNK_SIZE = 5_000;
+
+    /**
+     * The maximum number of solve IDs matched by a single statement in a bulk delete or update.
+     * This is kept well below the SQLite limit of 999 parameters in a statement.
+     */
+    private static final int MAX_IDS_PER_STATEMENT = 500;
+
+    /**
+     * The number of solves read in each batch when converting the scrambles stored as text to
+     * their encoded form during a database upgrade.
+     */
+    private static final int SCRAMBLE_ENCODING_BATCH_SIZE = 1_000;
+
+    /**
+     * The names of the triggers on the "times" table that invalidate the statistics snapshots.
+     */
+    private static final String[] STATS_SNAPSHOT_TRIGGERS = {
+        "times_insert_invalidate_snapshot",
+        "times_update_invalidate_snapshot",
+        "times_delete_invalidate_snapshot",
+    };
+
+    /**
+     * The condition for a row of the "times" table to be a real solve, not a hidden solve that
+     * holds an empty category in existence.
+     */
+    private static final String IS_SOLVE = KEY_PENALTY + "<>" + PuzzleUtils.PENALTY_HIDETIME;
+
+    /**
+     * The condition for a row of the "times" table to be a real solve that is not a DNF.
+     */
+    private static final String IS_TIMED_SOLVE = KEY_PENALTY + " NOT IN ("
+        + PuzzleUtils.PENALTY_DNF + ", " + PuzzleUtils.PENALTY_HIDETIME + ")";
 
     /**
      * An interface for notification of the progress of bulk database operations.
@@ -115,8 +262,18 @@ public class DatabaseHandler extends SQLiteOpenHelper {
         void onProgress(int numCompleted, int total);
     }
 
+    /**
+     * The cache of the categories of each puzzle type. It is kept up to date as solves are
+     * added, deleted and moved between categories.
+     */
+    private final CategoryRegistry mCategories = new CategoryRegistry(this);
+
     public DatabaseHandler() {
         super(TwistyTimer.getAppContext(), DATABASE_NAME, null, DATABASE_VERSION);
+
+        // With write-ahead logging, the loaders can read from the database while a write (made by
+        // the "DatabaseWriter" thread) is in progress, instead of waiting for it to complete.
+        setWriteAheadLoggingEnabled(true);
     }
 
     // Creating Tables
@@ -124,9 +281,368 @@ public class DatabaseHandler extends SQLiteOpenHelper {
     public void onCreate(SQLiteDatabase db) {
         db.execSQL(CREATE_TABLE_TIMES);
         db.execSQL(CREATE_TABLE_ALGS);
+        createTimesIndexes(db);
+        createStatsSnapshots(db);
+        createCommentsIndex(db);
+        createTimesSummary(db);
         createInitialAlgs(db);
     }
 
+    /**
+     * Creates the indexes on the "times" table. See {@link #CREATE_TIMES_INDEXES}.
+     *
+     * @param db The database in which to create the indexes.
+     */
+    private void createTimesIndexes(SQLiteDatabase db) {
+        for (final String createIndex : CREATE_TIMES_INDEXES) {
+            db.execSQL(createIndex);
+        }
+    }
+
+    /**
+     * Creates the full-text index of solve comments (see {@link #TABLE_COMMENTS_FTS}), indexes
+     * the comments of any existing solves and creates the triggers that keep the index up to
+     * date. An external content table must be told of the old comment before it is changed or
+     * deleted, so those triggers run before the change. Solves with empty comments are not in
+     * the index, so they are skipped by every trigger. The update triggers fire only when the
+     * comment is changed, so changes to penalties, history, etc. do not touch the index.
+     *
+     * @param db The database in which to create the index.
+     */
+    private void createCommentsIndex(SQLiteDatabase db) {
+        final String hasOldComment = " WHEN IFNULL(OLD." + KEY_COMMENT + ", '')<>''";
+        final String hasNewComment = " WHEN IFNULL(NEW." + KEY_COMMENT + ", '')<>''";
+        final String deleteOld = " BEGIN DELETE FROM " + TABLE_COMMENTS_FTS
+            + " WHERE docid=OLD." + KEY_ID + "; END";
+        final String insertNew = " BEGIN INSERT INTO " + TABLE_COMMENTS_FTS
+            + " (docid, " + KEY_COMMENT + ") VALUES (NEW." + KEY_ID + ", NEW." + KEY_COMMENT + "); END";
+
+        db.execSQL("CREATE VIRTUAL TABLE " + TABLE_COMMENTS_FTS
+            + " USING fts4(content=\"" + TABLE_TIMES + "\", " + KEY_COMMENT + ")");
+        db.execSQL("INSERT INTO " + TABLE_COMMENTS_FTS + " (docid, " + KEY_COMMENT + ")"
+            + " SELECT " + KEY_ID + ", " + KEY_COMMENT + " FROM " + TABLE_TIMES
+            + " WHERE IFNULL(" + KEY_COMMENT + ", '')<>''");
+
+        db.execSQL("CREATE TRIGGER times_comments_fts_before_update"
+            + " BEFORE UPDATE OF " + KEY_COMMENT + " ON " + TABLE_TIMES + hasOldComment + deleteOld);
+        db.execSQL("CREATE TRIGGER times_comments_fts_before_delete"
+            + " BEFORE DELETE ON " + TABLE_TIMES + hasOldComment + deleteOld);
+        db.execSQL("CREATE TRIGGER times_comments_fts_after_update"
+            + " AFTER UPDATE OF " + KEY_COMMENT + " ON " + TABLE_TIMES + hasNewComment + insertNew);
+        db.execSQL("CREATE TRIGGER times_comments_fts_after_insert"
+            + " AFTER INSERT ON " + TABLE_TIMES + hasNewComment + insertNew);
+    }
+
+    /**
+     * Converts the text entered to search the solve comments into a full-text query of the
+     * comments index (see {@link #TABLE_COMMENTS_FTS}). The text is split into words in the same
+     * way as the comments were split when indexed, i.e., at any ASCII character that is not a
+     * letter or digit. A comment matches if it contains, for every word, a word that starts with
+     * it. ASCII letters are lower-cased, as they are in the index, so a word such as "OR" cannot
+     * be taken as a query operator; no other query syntax can get through, as it is all ASCII
+     * punctuation.
+     *
+     * @param text The search text.
+     *
+     * @return
+     *     The query for the "MATCH" operator, or {@code null} if the text does not contain any
+     *     words (e.g., it is empty or only punctuation), so the index cannot be used.
+     */
+    public static String toCommentsMatchQuery(String text) {
+        final StringBuilder query = new StringBuilder(text.length() + 8);
+        boolean isInWord = false;
+
+        for (int i = 0; i < text.length(); i++) {
+            final char ch = text.charAt(i);
+
+            if (ch >= 0x80 || Character.isLetterOrDigit(ch)) {
+                if (!isInWord && query.length() > 0) {
+                    query.append(' ');
+                }
+                query.append(ch >= 'A' && ch <= 'Z' ? (char) (ch + ('a' - 'A')) : ch);
+                isInWord = true;
+            } else if (isInWord) {
+                query.append('*');
+                isInWord = false;
+            }
+        }
+        if (isInWord) {
+            query.append('*');
+        }
+
+        return query.length() > 0 ? query.toString() : null;
+    }
+
+    /**
+     * Creates the table of statistics snapshots and the triggers that invalidate a snapshot when
+     * the solves of its puzzle type and subtype are changed in a way that cannot be caught up by
+     * adding the newer solves to the snapshot. That is, when a solve is deleted, when a solve's
+     * time, penalty, date, category or history flag is changed, or when a solve is inserted with
+     * a date earlier than the latest solve already included in the snapshot.
+     *
+     * @param db The database in which to create the table and triggers.
+     */
+    private void createStatsSnapshots(SQLiteDatabase db) {
+        db.execSQL(CREATE_TABLE_STATS_SNAPSHOTS);
+
+        db.execSQL("CREATE TRIGGER " + STATS_SNAPSHOT_TRIGGERS[0]
+            + " AFTER INSERT ON " + TABLE_TIMES
+            + " WHEN EXISTS (SELECT 1 FROM " + TABLE_STATS_SNAPSHOTS
+            + " WHERE " + KEY_TYPE + "=NEW." + KEY_TYPE + " AND " + KEY_SUBTYPE + "=NEW." + KEY_SUBTYPE
+            + " AND (NEW." + KEY_DATE + "<" + KEY_SNAPSHOT_MAX_DATE
+            + " OR NEW." + KEY_ID + "<=" + KEY_SNAPSHOT_MAX_ID + "))"
+            + " BEGIN " + invalidateSnapshotSQL("NEW") + " END");
+        db.execSQL("CREATE TRIGGER " + STATS_SNAPSHOT_TRIGGERS[1]
+            + " AFTER UPDATE OF " + KEY_TYPE + ", " + KEY_SUBTYPE + ", " + KEY_TIME + ", "
+            + KEY_DATE + ", " + KEY_PENALTY + ", " + KEY_HISTORY + " ON " + TABLE_TIMES
+            + " BEGIN " + invalidateSnapshotSQL("OLD") + invalidateSnapshotSQL("NEW") + " END");
+        db.execSQL("CREATE TRIGGER " + STATS_SNAPSHOT_TRIGGERS[2]
+            + " AFTER DELETE ON " + TABLE_TIMES
+            + " BEGIN " + invalidateSnapshotSQL("OLD") + " END");
+    }
+
+    /**
+     * Gets the trigger statements that invalidate the statistics snapshot for the category of the
+     * row being changed. The generation is incremented, so that a snapshot that was being
+     * calculated concurrently with the change will not be saved. If there is no row for the
+     * category, one is inserted at generation 1, as an absent row is taken to be generation 0.
+     *
+     * @param row The trigger row reference: "OLD" or "NEW".
+     *
+     * @return The SQL statements, each terminated by a semicolon.
+     */
+    private static String invalidateSnapshotSQL(String row) {
+        return "UPDATE " + TABLE_STATS_SNAPSHOTS + " SET "
+            + KEY_SNAPSHOT_GENERATION + "=" + KEY_SNAPSHOT_GENERATION + "+1, "
+            + KEY_SNAPSHOT_DATA + "=NULL"
+            + " WHERE " + KEY_TYPE + "=" + row + "." + KEY_TYPE
+            + " AND " + KEY_SUBTYPE + "=" + row + "." + KEY_SUBTYPE + ";"
+            + " INSERT OR IGNORE INTO " + TABLE_STATS_SNAPSHOTS
+            + " (" + KEY_TYPE + ", " + KEY_SUBTYPE + ", " + KEY_SNAPSHOT_GENERATION + ")"
+            + " VALUES (" + row + "." + KEY_TYPE + ", " + row + "." + KEY_SUBTYPE + ", 1);";
+    }
+
+    /**
+     * Creates the summary table (see {@link #TABLE_TIMES_SUMMARY}), summarises any existing
+     * solves and creates the triggers that keep the summary up to date. Counts and totals are
+     * simply adjusted for each row inserted, updated or deleted. When a row that held the best or
+     * worst time, or the first or last date, is removed from a summary, that value is found again
+     * from the "times" table; the indexes on the category, history and time or date allow this
+     * to be done with a seek, instead of a scan. A summary is deleted with its last row.
+     *
+     * @param db The database in which to create the table and triggers.
+     */
+    private void createTimesSummary(SQLiteDatabase db) {
+        db.execSQL(CREATE_TABLE_TIMES_SUMMARY);
+        summariseTimes(db);
+    }
+
+    /**
+     * Fills the empty summary table from the existing solves and creates the triggers that keep
+     * it up to date. Solves saved by old versions of the application may have no history flag.
+     * They are read as solves of the current session elsewhere, so they are first given that
+     * flag; otherwise, their summary would not be found by the triggers, as "NULL" is not equal
+     * to any value. The triggers also treat a missing flag as the current session, in case
+     * such a solve is saved again.
+     *
+     * @param db The database in which to summarise the solves.
+     */
+    private void summariseTimes(SQLiteDatabase db) {
+        db.execSQL("UPDATE " + TABLE_TIMES + " SET " + KEY_HISTORY + "=0 WHERE "
+            + KEY_HISTORY + " IS NULL");
+        db.execSQL("INSERT INTO " + TABLE_TIMES_SUMMARY + " SELECT "
+            + KEY_TYPE + ", " + KEY_SUBTYPE + ", " + KEY_HISTORY + ", COUNT(*), "
+            + "SUM(" + IS_SOLVE + "), "
+            + "SUM(" + KEY_PENALTY + "=" + PuzzleUtils.PENALTY_DNF + "), "
+            + "SUM(CASE WHEN " + IS_TIMED_SOLVE + " THEN " + KEY_TIME + " ELSE 0 END), "
+            + "MIN(CASE WHEN " + IS_TIMED_SOLVE + " THEN " + KEY_TIME + " END), "
+            + "MAX(CASE WHEN " + IS_TIMED_SOLVE + " THEN " + KEY_TIME + " END), "
+            + "MIN(CASE WHEN " + IS_SOLVE + " THEN " + KEY_DATE + " END), "
+            + "MAX(CASE WHEN " + IS_SOLVE + " THEN " + KEY_DATE + " END)"
+            + " FROM " + TABLE_TIMES
+            + " GROUP BY " + KEY_TYPE + ", " + KEY_SUBTYPE + ", " + KEY_HISTORY);
+
+        db.execSQL("CREATE TRIGGER times_summary_insert AFTER INSERT ON " + TABLE_TIMES
+            + " BEGIN " + addToSummarySQL("NEW") + " END");
+        db.execSQL("CREATE TRIGGER times_summary_update"
+            + " AFTER UPDATE OF " + KEY_TYPE + ", " + KEY_SUBTYPE + ", " + KEY_TIME + ", "
+            + KEY_DATE + ", " + KEY_PENALTY + ", " + KEY_HISTORY + " ON " + TABLE_TIMES
+            + " BEGIN " + removeFromSummarySQL("OLD") + addToSummarySQL("NEW") + " END");
+        db.execSQL("CREATE TRIGGER times_summary_delete AFTER DELETE ON " + TABLE_TIMES
+            + " BEGIN " + removeFromSummarySQL("OLD") + " END");
+    }
+
+    /**
+     * Gets the trigger statements that add a row of the "times" table to its summary. If there is
+     * no summary for the row's category and history state, an empty one is inserted first.
+     *
+     * @param row The trigger row reference: "NEW".
+     *
+     * @return The SQL statements, each terminated by a semicolon.
+     */
+    private static String addToSummarySQL(String row) {
+        final String time = row + "." + KEY_TIME;
+        final String date = row + "." + KEY_DATE;
+        final String isSolve = row + "." + IS_SOLVE;
+        final String isTimed = row + "." + IS_TIMED_SOLVE;
+
+        return "INSERT OR IGNORE INTO " + TABLE_TIMES_SUMMARY
+            + " (" + KEY_TYPE + ", " + KEY_SUBTYPE + ", " + KEY_HISTORY + ")"
+            + " VALUES (" + row + "." + KEY_TYPE + ", " + row + "." + KEY_SUBTYPE + ", "
+            + historyOfRowSQL(row) + ");"
+            + " UPDATE " + TABLE_TIMES_SUMMARY + " SET "
+            + KEY_SUMMARY_NUM_ROWS + "=" + KEY_SUMMARY_NUM_ROWS + "+1, "
+            + KEY_SUMMARY_NUM_SOLVES + "=" + KEY_SUMMARY_NUM_SOLVES + "+(" + isSolve + "), "
+            + KEY_SUMMARY_NUM_DNFS + "=" + KEY_SUMMARY_NUM_DNFS + "+("
+            + row + "." + KEY_PENALTY + "=" + PuzzleUtils.PENALTY_DNF + "), "
+            + KEY_SUMMARY_TOTAL_TIME + "=" + KEY_SUMMARY_TOTAL_TIME
+            + "+CASE WHEN " + isTimed + " THEN " + time + " ELSE 0 END, "
+            + KEY_SUMMARY_BEST_TIME + "=" + addExtremeSQL(KEY_SUMMARY_BEST_TIME, isTimed, time, "<")
+            + ", " + KEY_SUMMARY_WORST_TIME + "="
+            + addExtremeSQL(KEY_SUMMARY_WORST_TIME, isTimed, time, ">")
+            + ", " + KEY_SUMMARY_FIRST_DATE + "="
+            + addExtremeSQL(KEY_SUMMARY_FIRST_DATE, isSolve, date, "<")
+            + ", " + KEY_SUMMARY_LAST_DATE + "="
+            + addExtremeSQL(KEY_SUMMARY_LAST_DATE, isSolve, date, ">")
+            + summaryOfRowSQL(row) + ";";
+    }
+
+    /**
+     * Gets the trigger statements that remove a row of the "times" table from its summary. The
+     * summary is deleted if no rows remain in it.
+     *
+     * @param row The trigger row reference: "OLD".
+     *
+     * @return The SQL statements, each terminated by a semicolon.
+     */
+    private static String removeFromSummarySQL(String row) {
+        final String time = row + "." + KEY_TIME;
+        final String date = row + "." + KEY_DATE;
+        final String isSolve = row + "." + IS_SOLVE;
+        final String isTimed = row + "." + IS_TIMED_SOLVE;
+        final String fromSummarised = " FROM " + TABLE_TIMES + summaryOfRowSQL(row) + " AND ";
+
+        return "UPDATE " + TABLE_TIMES_SUMMARY + " SET "
+            + KEY_SUMMARY_NUM_ROWS + "=" + KEY_SUMMARY_NUM_ROWS + "-1, "
+            + KEY_SUMMARY_NUM_SOLVES + "=" + KEY_SUMMARY_NUM_SOLVES + "-(" + isSolve + "), "
+            + KEY_SUMMARY_NUM_DNFS + "=" + KEY_SUMMARY_NUM_DNFS + "-("
+            + row + "." + KEY_PENALTY + "=" + PuzzleUtils.PENALTY_DNF + "), "
+            + KEY_SUMMARY_TOTAL_TIME + "=" + KEY_SUMMARY_TOTAL_TIME
+            + "-CASE WHEN " + isTimed + " THEN " + time + " ELSE 0 END, "
+            + KEY_SUMMARY_BEST_TIME + "=" + removeExtremeSQL(KEY_SUMMARY_BEST_TIME, isTimed, time,
+                "SELECT " + KEY_TIME + fromSummarised + IS_TIMED_SOLVE + " ORDER BY " + KEY_TIME)
+            + ", " + KEY_SUMMARY_WORST_TIME + "=" + removeExtremeSQL(KEY_SUMMARY_WORST_TIME, isTimed,
+                time, "SELECT " + KEY_TIME + fromSummarised + IS_TIMED_SOLVE
+                    + " ORDER BY " + KEY_TIME + " DESC")
+            + ", " + KEY_SUMMARY_FIRST_DATE + "=" + removeExtremeSQL(KEY_SUMMARY_FIRST_DATE, isSolve,
+                date, "SELECT " + KEY_DATE + fromSummarised + IS_SOLVE + " ORDER BY " + KEY_DATE)
+            + ", " + KEY_SUMMARY_LAST_DATE + "=" + removeExtremeSQL(KEY_SUMMARY_LAST_DATE, isSolve,
+                date, "SELECT " + KEY_DATE + fromSummarised + IS_SOLVE
+                    + " ORDER BY " + KEY_DATE + " DESC")
+            + summaryOfRowSQL(row) + ";"
+            + " DELETE FROM " + TABLE_TIMES_SUMMARY + summaryOfRowSQL(row)
+            + " AND " + KEY_SUMMARY_NUM_ROWS + "<=0;";
+    }
+
+    /**
+     * Gets an expression for the new best or worst value of a summary column after a row is
+     * added to the summary.
+     *
+     * @param column    The summary column.
+     * @param condition The condition for the row to count towards the column.
+     * @param value     The value of the row.
+     * @param cmp       The comparison by which the row's value replaces the column value.
+     *
+     * @return The SQL expression.
+     */
+    private static String addExtremeSQL(String column, String condition, String value, String cmp) {
+        return "CASE WHEN " + condition + " AND (" + column + " IS NULL OR "
+            + value + cmp + column + ") THEN " + value + " ELSE " + column + " END";
+    }
+
+    /**
+     * Gets an expression for the new best or worst value of a summary column after a row is
+     * removed from the summary. The value is only found again if the row held it.
+     *
+     * @param column    The summary column.
+     * @param condition The condition for the row to count towards the column.
+     * @param value     The value of the row.
+     * @param select    The query that orders the remaining values, best or worst first.
+     *
+     * @return The SQL expression.
+     */
+    private static String removeExtremeSQL(
+            String column, String condition, String value, String select) {
+        return "CASE WHEN " + condition + " AND " + value + "=" + column
+            + " THEN (" + select + " LIMIT 1) ELSE " + column + " END";
+    }
+
+    /**
+     * Gets the "WHERE" clause that selects the summary of a row of the "times" table.
+     *
+     * @param row The trigger row reference: "OLD" or "NEW".
+     *
+     * @return The SQL clause, with a leading space.
+     */
+    private static String summaryOfRowSQL(String row) {
+        return " WHERE " + KEY_TYPE + "=" + row + "." + KEY_TYPE
+            + " AND " + KEY_SUBTYPE + "=" + row + "." + KEY_SUBTYPE
+            + " AND " + KEY_HISTORY + "=" + historyOfRowSQL(row);
+    }
+
+    /**
+     * Gets an expression for the history flag of a row of the "times" table, by which the row is
+     * summarised. A missing flag is taken to be the current session. See {@link #summariseTimes}.
+     *
+     * @param row The trigger row reference: "OLD" or "NEW".
+     *
+     * @return The SQL expression.
+     */
+    private static String historyOfRowSQL(String row) {
+        return "COALESCE(" + row + "." + KEY_HISTORY + ", 0)";
+    }
+
+    /**
+     * Converts the scrambles stored as text by older versions of the application to the compact
+     * encoding of {@link ScrambleCodec}. The solves are converted in batches, in order of their
+     * IDs, so that only one batch of scrambles is held in memory at a time. None of the triggers
+     * on the "times" table watch the scramble column, so the conversion does not disturb the
+     * summaries, snapshots or comments index. The pages freed by the smaller scrambles are
+     * reused by later solves; the database cannot be vacuumed during an upgrade.
+     *
+     * @param db The database in which to convert the scrambles.
+     */
+    private void encodeScrambles(SQLiteDatabase db) {
+        final SQLiteStatement update = db.compileStatement(
+                "UPDATE " + TABLE_TIMES + " SET " + KEY_SCRAMBLE + "=? WHERE " + KEY_ID + "=?");
+        long lastID = 0;
+        int numRead;
+
+        try {
+            do {
+                final Cursor cursor = db.rawQuery("SELECT " + KEY_ID + ", " + KEY_SCRAMBLE
+                        + " FROM " + TABLE_TIMES + " WHERE " + KEY_ID + ">?"
+                        + " AND typeof(" + KEY_SCRAMBLE + ")='text'"
+                        + " ORDER BY " + KEY_ID + " LIMIT " + SCRAMBLE_ENCODING_BATCH_SIZE,
+                        new String[] { String.valueOf(lastID) });
+
+                try {
+                    numRead = cursor.getCount();
+                    while (cursor.moveToNext()) {
+                        lastID = cursor.getLong(0);
+                        update.bindBlob(1, ScrambleCodec.encode(cursor.getString(1)));
+                        update.bindLong(2, lastID);
+                        update.executeUpdateDelete();
+                    }
+                } finally {
+                    cursor.close();
+                }
+            } while (numRead == SCRAMBLE_ENCODING_BATCH_SIZE);
+        } finally {
+            update.close();
+        }
+    }
+
     // Upgrading database
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
@@ -142,6 +658,46 @@ public class DatabaseHandler extends SQLiteOpenHelper {
                         .putInt(R.string.pk_timer_text_size,
                                 Prefs.getInt(R.string.pk_timer_text_size, 10) * 10)
                         .apply();
+                // Fall through to the next upgrade step.
+            case 9:
+            case 10:
+                createStatsSnapshots(db);
+                // Fall through to the next upgrade step.
+            case 11:
+                // The indexes on the "times" table are created once, by the last step.
+            case 12:
+                createCommentsIndex(db);
+                // Fall through to the next upgrade step.
+            case 13:
+                createTimesSummary(db);
+                // Fall through to the next upgrade step.
+            case 14:
+                encodeScrambles(db);
+                // Fall through to the next upgrade step.
+            case 15:
+                // Drop the old indexes that separate the current session from the history, as
+                // the new ones also cover the columns read for the session.
+                db.execSQL("DROP INDEX IF EXISTS times_category_history_date");
+                db.execSQL("DROP INDEX IF EXISTS times_category_history_time");
+                // Fall through to the next upgrade step.
+            case 16:
+                // Drop the old index on the category and date, as the new one also orders solves
+                // with the same date by ID, for the pages of an export.
+                db.execSQL("DROP INDEX IF EXISTS times_category_date");
+                // Create any of the indexes that do not exist, once, whatever the old version.
+                createTimesIndexes(db);
+                // Fall through to the next upgrade step.
+            case 17:
+                // Summarise again any summary created by an older version, as its triggers did
+                // not find the summary of a solve with no history flag. A summary created by an
+                // earlier step of this upgrade is already correct.
+                if (oldVersion >= 14) {
+                    db.execSQL("DROP TRIGGER IF EXISTS times_summary_insert");
+                    db.execSQL("DROP TRIGGER IF EXISTS times_summary_update");
+                    db.execSQL("DROP TRIGGER IF EXISTS times_summary_delete");
+                    db.execSQL("DELETE FROM " + TABLE_TIMES_SUMMARY);
+                    summariseTimes(db);
+                }
         }
     }
 
@@ -214,23 +770,41 @@ public class DatabaseHandler extends SQLiteOpenHelper {
     }
 
     /**
-     * Returns all solves from puzzle and category
-     * @param type
-     * @param subtype
-     * @return
+     * Gets a page of the solves of a puzzle type and subtype, in order of date, for exporting.
+     * Each page continues from the last solve of the previous page, so every page is found with
+     * a seek on the index of the category and date, however many pages precede it. The columns
+     * are those of the "times" table, so they can be read using {@link #IDX_TIME}, etc.
+     *
+     * @param type      The name of the puzzle type.
+     * @param subtype   The name of the puzzle subtype.
+     * @param afterDate
+     *     The date of the last solve of the previous page, or {@code Long.MIN_VALUE} for the first
+     *     page.
+     * @param afterID
+     *     The ID of the last solve of the previous page, or {@code Long.MIN_VALUE} for the first
+     *     page.
+     * @param limit     The maximum number of solves in the page.
+     *
+     * @return A cursor over the page of solves. The caller must close the cursor.
      */
-    public Cursor getAllSolvesFrom(String type, String subtype) {
+    public Cursor getAllSolvesFrom(
+            String type, String subtype, long afterDate, long afterID, int limit) {
         SQLiteDatabase db = this.getReadableDatabase();
 
         String sqlSelection;
         sqlSelection =
-            " WHERE type =? AND subtype =? AND penalty!=" + PuzzleUtils.PENALTY_HIDETIME;
+            " WHERE type =? AND subtype =? AND penalty!=" + PuzzleUtils.PENALTY_HIDETIME
+            + " AND date>=? AND (date>? OR _id>?) ORDER BY date, _id LIMIT " + limit;
 
-        return db.rawQuery("SELECT * FROM times" + sqlSelection, new String[] { type, subtype });
+        return db.rawQuery("SELECT * FROM times" + sqlSelection, new String[] {
+                type, subtype, String.valueOf(afterDate), String.valueOf(afterDate),
+                String.valueOf(afterID) });
     }
 
     /**
-     * Moves all current solves from puzzle and category to history
+     * Moves all current solves from puzzle and category to history. Only the solves of the
+     * current session are updated; the solves already in the history are not touched, so the
+     * cost depends on the size of the session, not on the size of the history.
      *
      * @param type
      * @param subtype
@@ -244,7 +818,8 @@ public class DatabaseHandler extends SQLiteOpenHelper {
         values.put(KEY_HISTORY, true);
 
         // Updating row
-        return db.update(TABLE_TIMES, values, KEY_TYPE + " = ? AND " + KEY_SUBTYPE + " =?",
+        return db.update(TABLE_TIMES, values,
+            KEY_TYPE + " = ? AND " + KEY_SUBTYPE + " =? AND " + KEY_HISTORY + "=0",
             new String[] { type, subtype });
     }
 
@@ -278,15 +853,46 @@ public class DatabaseHandler extends SQLiteOpenHelper {
      * @return
      */
     public long getNumArchivedSolves(String type, String subtype) {
-        SQLiteDatabase db = this.getReadableDatabase();
+        return getCategorySummary(type, subtype, true).getNumSolves();
+    }
+
+    /**
+     * Gets the summary of the solves of a puzzle type and subtype. The summary is read from the
+     * table maintained by triggers (see {@link #TABLE_TIMES_SUMMARY}), so this is quick enough to
+     * be called before the statistics have been loaded.
+     *
+     * @param type    The name of the puzzle type.
+     * @param subtype The name of the puzzle subtype.
+     * @param history
+     *     {@code true} for the summary of the solves in the history, or {@code false} for the
+     *     summary of the solves in the current session.
+     *
+     * @return The summary. If there are no solves, {@link CategorySummary#EMPTY} is returned.
+     */
+    public CategorySummary getCategorySummary(String type, String subtype, boolean history) {
+        final Cursor cursor = getReadableDatabase().query(TABLE_TIMES_SUMMARY,
+                new String[] { KEY_SUMMARY_NUM_SOLVES, KEY_SUMMARY_NUM_DNFS,
+                               KEY_SUMMARY_TOTAL_TIME, KEY_SUMMARY_BEST_TIME,
+                               KEY_SUMMARY_WORST_TIME, KEY_SUMMARY_FIRST_DATE,
+                               KEY_SUMMARY_LAST_DATE },
+                KEY_TYPE + "=? AND " + KEY_SUBTYPE + "=? AND " + KEY_HISTORY + "=?",
+                new String[] { type, subtype, history ? "1" : "0" }, null, null, null);
 
-        long count = DatabaseUtils.
-                queryNumEntries(db, TABLE_TIMES,
-                                KEY_PENALTY + " != " + PuzzleUtils.PENALTY_HIDETIME + " AND " +
-                                KEY_TYPE + " =? AND " + KEY_SUBTYPE + " =? AND " + KEY_HISTORY + " =1",
-                                new String[] { type, subtype });
-        db.close();
-        return count;
+        try {
+            if (cursor.moveToFirst() && cursor.getInt(0) > 0) {
+                return new CategorySummary(
+                        cursor.getInt(0),   // num_solves
+                        cursor.getInt(1),   // num_dnfs
+                        cursor.getLong(2),  // total_time
+                        cursor.isNull(3) ? AverageCalculator.UNKNOWN : cursor.getLong(3), // best
+                        cursor.isNull(4) ? AverageCalculator.UNKNOWN : cursor.getLong(4), // worst
+                        cursor.isNull(5) ? 0L : cursor.getLong(5),  // first_date
+                        cursor.isNull(6) ? 0L : cursor.getLong(6)); // last_date
+            }
+            return CategorySummary.EMPTY;
+        } finally {
+            cursor.close();
+        }
     }
 
     /**
@@ -307,30 +913,75 @@ public class DatabaseHandler extends SQLiteOpenHelper {
      * @return The new ID of the stored solve record.
      */
     private long addSolveInternal(SQLiteDatabase db, Solve solve) {
-        // Cutting off last digit to fix rounding errors
-        int time = solve.getTime();
-        time = time - (time % 10);
+        // Inserting Row
+        final long id = db.insert(TABLE_TIMES, null, toContentValues(solve));
+
+        if (id != -1) {
+            mCategories.addSolve(solve.getPuzzle(), solve.getSubtype(),
+                    solve.getPenalty() != PuzzleUtils.PENALTY_HIDETIME);
+        }
+        return id;
+    }
+
+    /**
+     * Adds a new solve to the database using the solve ID already set on the solve, instead of
+     * letting the database choose a new ID. The ID must have been reserved in advance (see
+     * {@link DatabaseWriter#reserveSolveID()}).
+     *
+     * @param solve The solve to be added to the database.
+     *
+     * @throws SQLiteConstraintException
+     *     If a solve record with the same ID already exists in the database.
+     * @throws SQLException
+     *     If the solve could not be added for some other reason.
+     */
+    public void addSolveWithID(Solve solve) throws SQLException {
+        final ContentValues values = toContentValues(solve);
+
+        values.put(KEY_ID, solve.getId());
+        getWritableDatabase().insertOrThrow(TABLE_TIMES, null, values);
+        mCategories.addSolve(solve.getPuzzle(), solve.getSubtype(),
+                solve.getPenalty() != PuzzleUtils.PENALTY_HIDETIME);
+    }
+
+    /**
+     * Gets the highest solve ID of any solve record in the database. The database assigns the
+     * next solve ID above this to the next new solve record.
+     *
+     * @return The highest solve ID, or zero if there are no solve records.
+     */
+    public long getLastSolveID() {
+        return DatabaseUtils.longForQuery(getReadableDatabase(),
+                "SELECT IFNULL(MAX(" + KEY_ID + "), 0) FROM " + TABLE_TIMES, null);
+    }
 
+    /**
+     * Gets the values of the columns of the solve record for a solve, except for the solve ID.
+     *
+     * @param solve The solve.
+     *
+     * @return The column values.
+     */
+    private static ContentValues toContentValues(Solve solve) {
         ContentValues values = new ContentValues();
 
         values.put(KEY_TYPE, solve.getPuzzle());
         values.put(KEY_SUBTYPE, solve.getSubtype());
-        values.put(KEY_TIME, time);
+        values.put(KEY_TIME, truncateTime(solve.getTime()));
         values.put(KEY_DATE, solve.getDate());
-        values.put(KEY_SCRAMBLE, solve.getScramble());
+        values.put(KEY_SCRAMBLE, ScrambleCodec.encode(solve.getScramble()));
         values.put(KEY_PENALTY, solve.getPenalty());
         values.put(KEY_COMMENT, solve.getComment());
         values.put(KEY_HISTORY, solve.isHistory());
 
-        // Inserting Row
-        return db.insert(TABLE_TIMES, null, values);
+        return values;
     }
 
     /**
-     * Adds a collection of new solves to the given database. The solves are added in a single
-     * transaction, so this operation is much faster than adding them one-by-one using the
-     * {@link #addSolve(Solve)} method. Any given solve that matches a solve already in the
-     * database will not be inserted.
+     * Adds a collection of new solves to the given database. The solves are added in transactions
+     * of {@link #DEFAULT_INSERT_CHUNK_SIZE} solves, so this operation is much faster than adding
+     * them one-by-one using the {@link #addSolve(Solve)} method. Any given solve that matches a
+     * solve already in the database will not be inserted.
      *
      * @param fileFormat
      *      The solve file format, must be {@link ExportImportDialog#EXIM_FORMAT_EXTERNAL}, or
@@ -339,17 +990,44 @@ public class DatabaseHandler extends SQLiteOpenHelper {
      *     The collection of solves to be added to the database. Must not be {@code null}, but may
      *     be empty.
      * @param listener
-     *     An optional progress listener that will be notified as each new solve is inserted into
+     *     An optional progress listener that will be notified as the solves are inserted into
      *     the database. Before the first new solve is added, this will be called to report that
      *     zero of the total number of solves have been inserted (even if {@code solves} is empty).
-     *     Thereafter, it will be notified after each insertion. May be {@code null} if no progress
-     *     updates are required.
+     *     Thereafter, it will be notified after each transaction is committed. May be
+     *     {@code null} if no progress updates are required.
      *
      * @return
      *     The number of unique solves inserted. Solves that are duplicates of existing solves
-     *     (by {@link #solveExists(Solve)}) are not inserted.
+     *     (by {@link #solveExists(Solve)}) are not inserted. For a backup file, existing solves
+     *     include those inserted earlier from the same collection.
      */
     public int addSolves(int fileFormat, Collection<Solve> solves, ProgressListener listener) {
+        return addSolves(fileFormat, solves, DEFAULT_INSERT_CHUNK_SIZE, listener);
+    }
+
+    /**
+     * Adds a collection of new solves to the given database, committing the solves in chunks of
+     * the given size. All solves are inserted by a single compiled statement. Committing in
+     * chunks ensures that a very large import does not hold one huge transaction and journal. If
+     * the import fails part way through, the solves in the chunks already committed are kept.
+     *
+     * @param fileFormat
+     *     The solve file format, must be {@link ExportImportDialog#EXIM_FORMAT_EXTERNAL}, or
+     *     {@link ExportImportDialog#EXIM_FORMAT_BACKUP}.
+     * @param solves
+     *     The collection of solves to be added to the database. Must not be {@code null}, but may
+     *     be empty.
+     * @param chunkSize
+     *     The number of solves to process in each transaction. Must be greater than zero.
+     * @param listener
+     *     An optional progress listener that will be notified before the first solve is added
+     *     and after each chunk is committed. May be {@code null}.
+     *
+     * @return
+     *     The number of unique solves inserted.
+     */
+    public int addSolves(int fileFormat, Collection<Solve> solves, int chunkSize,
+                         ProgressListener listener) {
         final int total = solves.size();
         int numProcessed = 0; // Whether inserted or not (i.e., includes duplicates).
 
@@ -360,31 +1038,235 @@ public class DatabaseHandler extends SQLiteOpenHelper {
         int numInserted = 0; // Only those actually inserted (i.e., excludes duplicates).
 
         if (total > 0) {
-            final SQLiteDatabase db = getWritableDatabase();
+            final SolveImporter importer = newSolveImporter(fileFormat);
+            final List<Solve> chunk = new ArrayList<>(Math.min(chunkSize, total));
+            final Iterator<Solve> iterator = solves.iterator();
+
+            try {
+                while (iterator.hasNext()) {
+                    for (int i = 0; i < chunkSize && iterator.hasNext(); i++) {
+                        chunk.add(iterator.next());
+                    }
 
-            try{
-                // Wrapping the insertions in a transaction is about 50x faster!
-                db.beginTransaction();
+                    numInserted += importer.addSolves(chunk);
+                    numProcessed += chunk.size();
+                    chunk.clear();
 
-                for (Solve solve : solves) {
-                    // Do not check for duplicates if importing from external
-                    if ((fileFormat == ExportImportDialog.EXIM_FORMAT_EXTERNAL || !solveExists(solve))) {
-                        addSolveInternal(db, solve);
-                        numInserted++;
+                    if (listener != null) {
+                        listener.onProgress(numProcessed, total);
                     }
+                }
+            } finally {
+                importer.close();
+            }
+        }
 
-                    if (listener != null) {
-                        listener.onProgress(++numProcessed, total);
+        return numInserted;
+    }
+
+    /**
+     * Creates a new importer that adds solves to the database in batches. This allows a large
+     * file to be imported as it is read, without first holding every solve in memory.
+     *
+     * @param fileFormat
+     *     The solve file format, must be {@link ExportImportDialog#EXIM_FORMAT_EXTERNAL}, or
+     *     {@link ExportImportDialog#EXIM_FORMAT_BACKUP}.
+     *
+     * @return
+     *     The new importer. The caller must close the importer when the last batch has been
+     *     added.
+     */
+    public SolveImporter newSolveImporter(int fileFormat) {
+        return new SolveImporter(fileFormat);
+    }
+
+    /**
+     * <p>
+     * Adds solves to the database in batches, each in its own transaction, using a single
+     * compiled statement. For a backup file, a solve that matches a solve already in the database,
+     * including one added in an earlier batch, is not inserted; the keys of the existing solves
+     * are loaded once and kept for all batches, so checking a batch does not load them again.
+     * </p>
+     * <p>
+     * An importer must only be used on one thread at a time, such as the {@link DatabaseWriter}
+     * thread. When the import is complete, or fails, the importer must be closed by
+     * {@link DatabaseWriter#closeImporter}, which updates the category cache to include any new
+     * categories and the writer's record of the last solve ID.
+     * </p>
+     */
+    public final class SolveImporter {
+        /**
+         * The database to which the solves are added.
+         */
+        private final SQLiteDatabase mDB;
+
+        /**
+         * The existing solves, or {@code null} if duplicates are not skipped.
+         */
+        private final ExistingSolveKeys mExistingSolves;
+
+        /**
+         * The compiled {@link #INSERT_SOLVE} statement.
+         */
+        private final SQLiteStatement mInsert;
+
+        private SolveImporter(int fileFormat) {
+            mDB = getWritableDatabase();
+            // Do not check for duplicates if importing from external
+            mExistingSolves = fileFormat == ExportImportDialog.EXIM_FORMAT_EXTERNAL
+                    ? null : new ExistingSolveKeys(mDB);
+            mInsert = mDB.compileStatement(INSERT_SOLVE);
+        }
+
+        /**
+         * Adds a batch of solves in a single transaction. If the transaction fails, none of the
+         * solves in the batch are added, but those in earlier batches are kept.
+         *
+         * @param solves The solves to add. Must not be {@code null}, but may be empty.
+         *
+         * @return
+         *     The number of unique solves inserted. Solves that are duplicates of existing solves
+         *     (by {@link #solveExists(Solve)}) are not inserted.
+         */
+        public int addSolves(Collection<Solve> solves) {
+            int numInserted = 0;
+
+            mDB.beginTransaction();
+
+            try {
+                for (final Solve solve : solves) {
+                    if (mExistingSolves == null || !mExistingSolves.contains(solve)) {
+                        bindSolve(mInsert, solve);
+                        mInsert.executeInsert();
+                        numInserted++;
+
+                        if (mExistingSolves != null) {
+                            mExistingSolves.add(solve);
+                        }
                     }
                 }
 
-                db.setTransactionSuccessful();
+                mDB.setTransactionSuccessful();
             } finally {
-                db.endTransaction();
+                mDB.endTransaction();
             }
+
+            return numInserted;
         }
 
-        return numInserted;
+        /**
+         * Closes this importer, releasing the compiled statement and reloading the categories.
+         * The categories are reloaded even if the import failed after some solves were added.
+         */
+        public void close() {
+            mInsert.close();
+            mCategories.reload();
+        }
+    }
+
+    /**
+     * Binds the details of a solve to the parameters of the {@link #INSERT_SOLVE} statement.
+     *
+     * @param insert The compiled insert statement.
+     * @param solve  The solve to be inserted.
+     */
+    private static void bindSolve(SQLiteStatement insert, Solve solve) {
+        insert.clearBindings();
+        bindStringOrNull(insert, 1, solve.getPuzzle());
+        bindStringOrNull(insert, 2, solve.getSubtype());
+        insert.bindLong(3, truncateTime(solve.getTime()));
+        insert.bindLong(4, solve.getDate());
+        bindBlobOrNull(insert, 5, ScrambleCodec.encode(solve.getScramble()));
+        insert.bindLong(6, solve.getPenalty());
+        bindStringOrNull(insert, 7, solve.getComment());
+        insert.bindLong(8, solve.isHistory() ? 1 : 0);
+    }
+
+    /**
+     * Binds a string to a statement parameter. Unlike {@link SQLiteStatement#bindString}, a
+     * {@code null} value is accepted and bound as SQL {@code NULL}, as it is by
+     * {@link ContentValues}.
+     *
+     * @param statement The compiled statement.
+     * @param index     The 1-based index of the parameter.
+     * @param value     The value to bind. May be {@code null}.
+     */
+    private static void bindStringOrNull(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * Binds a byte array to a statement parameter. A {@code null} value is accepted and bound as
+     * SQL {@code NULL}.
+     *
+     * @param statement The compiled statement.
+     * @param index     The 1-based index of the parameter.
+     * @param value     The value to bind. May be {@code null}.
+     */
+    private static void bindBlobOrNull(SQLiteStatement statement, int index, byte[] value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindBlob(index, value);
+        }
+    }
+
+    /**
+     * Gets the scramble from a column of a cursor over the "times" table. Scrambles are stored
+     * encoded by {@link ScrambleCodec}, but a scramble may still be stored as text if it was
+     * written by an older version of the application and not yet converted.
+     *
+     * @param cursor      The cursor positioned at the row from which to get the scramble.
+     * @param columnIndex The index of the scramble column.
+     *
+     * @return The scramble, or {@code null} if the solve has no scramble.
+     */
+    public static String getScramble(Cursor cursor, int columnIndex) {
+        switch (cursor.getType(columnIndex)) {
+            case Cursor.FIELD_TYPE_NULL:
+                return null;
+            case Cursor.FIELD_TYPE_BLOB:
+                return ScrambleCodec.decode(cursor.getBlob(columnIndex));
+            default:
+                return cursor.getString(columnIndex);
+        }
+    }
+
+    /**
+     * Gets the scramble from a column of a cursor over the "times" table in the form encoded by
+     * {@link ScrambleCodec}. This avoids decoding the scramble when it is only to be copied, such
+     * as to a binary backup file.
+     *
+     * @param cursor      The cursor positioned at the row from which to get the scramble.
+     * @param columnIndex The index of the scramble column.
+     *
+     * @return The encoded scramble, or {@code null} if the solve has no scramble.
+     */
+    public static byte[] getEncodedScramble(Cursor cursor, int columnIndex) {
+        switch (cursor.getType(columnIndex)) {
+            case Cursor.FIELD_TYPE_NULL:
+                return null;
+            case Cursor.FIELD_TYPE_BLOB:
+                return cursor.getBlob(columnIndex);
+            default:
+                return ScrambleCodec.encode(cursor.getString(columnIndex));
+        }
+    }
+
+    /**
+     * Truncates a solve time to hundredths of a second. The last digit is cut off to fix rounding
+     * errors.
+     *
+     * @param time The solve time in milliseconds.
+     *
+     * @return The truncated solve time.
+     */
+    private static int truncateTime(int time) {
+        return time - (time % 10);
     }
 
     public int updateSolve(Solve solve) {
@@ -395,14 +1277,52 @@ public class DatabaseHandler extends SQLiteOpenHelper {
         values.put(KEY_SUBTYPE, solve.getSubtype());
         values.put(KEY_TIME, solve.getTime());
         values.put(KEY_DATE, solve.getDate());
-        values.put(KEY_SCRAMBLE, solve.getScramble());
+        values.put(KEY_SCRAMBLE, ScrambleCodec.encode(solve.getScramble()));
         values.put(KEY_PENALTY, solve.getPenalty());
         values.put(KEY_COMMENT, solve.getComment());
         values.put(KEY_HISTORY, solve.isHistory());
 
+        // Checked before the update, as the old category is then lost. Only the writer thread
+        // updates solves, so the row cannot change in between.
+        final boolean isCategoryChanged = isCategoryChanged(db, solve);
+
         // Updating row
-        return db.update(TABLE_TIMES, values, KEY_ID + " = ?",
+        final int numUpdated = db.update(TABLE_TIMES, values, KEY_ID + " = ?",
             new String[] { String.valueOf(solve.getId()) });
+
+        if (numUpdated > 0 && isCategoryChanged) {
+            mCategories.reload();
+        }
+        return numUpdated;
+    }
+
+    /**
+     * Indicates if an update to a solve will change the category cache (see
+     * {@link #getCategories()}). That is the case if the solve is moved to another category, or
+     * is hidden or shown. The cache counts the solves of the current session and of the history
+     * together, so moving a solve to or from the history does not change it.
+     *
+     * @param db    The database holding the solve.
+     * @param solve The updated solve, matched to the stored solve by its ID.
+     *
+     * @return
+     *     {@code true} if the category cache will need to be reloaded after the update; or
+     *     {@code false} if it will not, or if there is no stored solve with the same ID.
+     */
+    private static boolean isCategoryChanged(SQLiteDatabase db, Solve solve) {
+        final Cursor cursor = db.query(TABLE_TIMES,
+                new String[] { KEY_TYPE, KEY_SUBTYPE, KEY_PENALTY },
+                KEY_ID + "=?", new String[] { String.valueOf(solve.getId()) }, null, null, null);
+
+        try {
+            return cursor.moveToFirst()
+                    && (!TextUtils.equals(cursor.getString(0), solve.getPuzzle())
+                        || !TextUtils.equals(cursor.getString(1), solve.getSubtype())
+                        || (cursor.getInt(2) == PuzzleUtils.PENALTY_HIDETIME)
+                            != (solve.getPenalty() == PuzzleUtils.PENALTY_HIDETIME));
+        } finally {
+            cursor.close();
+        }
     }
 
     /**
@@ -431,7 +1351,7 @@ public class DatabaseHandler extends SQLiteOpenHelper {
                         cursor.getString(2),
                         cursor.getString(3),
                         cursor.getLong(4),
-                        cursor.getString(5),
+                        getScramble(cursor, 5),
                         cursor.getInt(6),
                         cursor.getString(7),
                         getBoolean(cursor, 8));
@@ -448,22 +1368,25 @@ public class DatabaseHandler extends SQLiteOpenHelper {
         return ! (cursor.isNull(columnIndex) || cursor.getShort(columnIndex) == 0);
     }
 
+    /**
+     * Gets the names of the categories (subtypes) of a puzzle type. The names are read from the
+     * category cache (see {@link #getCategories()}), so the database is not usually read.
+     *
+     * @param type The name of the puzzle type.
+     *
+     * @return A new list of the category names, sorted by name.
+     */
     public List<String> getAllSubtypesFromType(String type) {
-        List<String> subtypesList = new ArrayList<>();
-
-        SQLiteDatabase db = this.getReadableDatabase();
-
-        Cursor cursor = db.rawQuery("SELECT DISTINCT " + KEY_SUBTYPE + " FROM "
-            + TABLE_TIMES + " WHERE " + KEY_TYPE + " ='" + type + "' ORDER BY " + KEY_SUBTYPE + " ASC", null);
-
-        if (cursor.moveToFirst()) {
-            do {
-                subtypesList.add(cursor.getString(cursor.getColumnIndex(KEY_SUBTYPE)));
-            } while (cursor.moveToNext());
-        }
+        return mCategories.getSubtypes(type);
+    }
 
-        cursor.close();
-        return subtypesList;
+    /**
+     * Gets the cache of the categories of each puzzle type and the number of solves in each.
+     *
+     * @return The category cache.
+     */
+    public CategoryRegistry getCategories() {
+        return mCategories;
     }
 
     /**
@@ -472,6 +1395,13 @@ public class DatabaseHandler extends SQLiteOpenHelper {
      * only from those from all past and current sessions. If all average calculators are for the
      * current session only, only the times for the current session will be read from the database.
      *
+     * If the statistics include all past sessions, a snapshot of the statistics saved by a previous
+     * call is restored, if it is still valid, and only the solves added since that snapshot was
+     * saved are read from the database. A new snapshot is then saved. The snapshot is invalidated
+     * by triggers whenever a solve for the puzzle type and subtype is deleted or changed. If the
+     * statistics keep a log of the solves, so that they can be edited, the snapshot includes the
+     * log, so the solves in the snapshot are not read again.
+     *
      * @param puzzleType
      *     The name of the puzzle type.
      * @param puzzleSubtype
@@ -480,50 +1410,197 @@ public class DatabaseHandler extends SQLiteOpenHelper {
      *     The statistics in which to record the solve times. This may contain any mix of average
      *     calculators for all sessions or only the current session. The database read will be
      *     adapted automatically to read the minimum number of rows to satisfy the collection of
-     *     the required statistics.
+     *     the required statistics. The statistics should be reset before calling this method.
      */
     public void populateStatistics(
             String puzzleType, String puzzleSubtype, Statistics statistics) {
         final boolean isStatisticsForCurrentSessionOnly = statistics.isForCurrentSessionOnly();
         final String sql;
 
+        // Snapshots are only worthwhile for the potentially large number of all-time solves.
+        final StatsSnapshotInfo snapshot = isStatisticsForCurrentSessionOnly
+                ? null : restoreStatisticsSnapshot(puzzleType, puzzleSubtype, statistics);
+        long maxID = snapshot != null && snapshot.isRestored ? snapshot.maxID : -1L;
+        long maxDate = snapshot != null && snapshot.isRestored ? snapshot.maxDate : Long.MIN_VALUE;
+
         // Sort into ascending order of date (oldest solves first), so that the "current"
         // average is, in the end, calculated to be that of the most recent solves.
         if (isStatisticsForCurrentSessionOnly) {
-            sql = "SELECT " + KEY_TIME + ", " + KEY_PENALTY + " FROM " + TABLE_TIMES
+            sql = "SELECT " + KEY_ID + ", " + KEY_TIME + ", " + KEY_PENALTY + " FROM " + TABLE_TIMES
                     + " WHERE " + KEY_TYPE + "=? AND " + KEY_SUBTYPE + "=? AND "
                     + KEY_PENALTY + "!=" + PuzzleUtils.PENALTY_HIDETIME + " AND "
-                    + KEY_HISTORY + "=0 ORDER BY " + KEY_DATE + " ASC";
+                    + KEY_HISTORY + "=0 AND " + KEY_ID + ">? ORDER BY " + KEY_DATE + " ASC";
         } else {
-            sql = "SELECT " + KEY_TIME + ", " + KEY_PENALTY + ", " + KEY_HISTORY
-                    + " FROM " + TABLE_TIMES + " WHERE " + KEY_TYPE + "=? AND "
+            sql = "SELECT " + KEY_ID + ", " + KEY_TIME + ", " + KEY_PENALTY + ", " + KEY_HISTORY
+                    + ", " + KEY_DATE + " FROM " + TABLE_TIMES + " WHERE " + KEY_TYPE + "=? AND "
                     + KEY_SUBTYPE + "=? AND " + KEY_PENALTY + "!=" + PuzzleUtils.PENALTY_HIDETIME
-                    + " ORDER BY " + KEY_DATE + " ASC";
+                    + " AND " + KEY_ID + ">? ORDER BY " + KEY_DATE + " ASC, " + KEY_ID + " ASC";
         }
 
-        final Cursor cursor
-                = getReadableDatabase().rawQuery(sql, new String[] { puzzleType, puzzleSubtype });
+        final Cursor cursor = getReadableDatabase().rawQuery(sql,
+                new String[] { puzzleType, puzzleSubtype, String.valueOf(maxID) });
+        final int capacity = cursor.getCount();
+        final long[] solveIDs = new long[capacity];
+        final long[] times = new long[capacity];
+        final boolean[] isForCurrentSession = new boolean[capacity];
+        int numRead = 0;
 
+        // The rows are decoded first, so that the statistics can then feed all of the times to
+        // each average calculator independently. See "Statistics.addSolves".
         try {
             final int timeCol = cursor.getColumnIndex(KEY_TIME);
             final int penaltyCol = cursor.getColumnIndex(KEY_PENALTY);
             final int historyCol
                     = isStatisticsForCurrentSessionOnly ? -1 : cursor.getColumnIndex(KEY_HISTORY);
+            final int idCol = cursor.getColumnIndex(KEY_ID);
+            final int dateCol = cursor.getColumnIndex(KEY_DATE); // -1 if session only.
 
-            while (cursor.moveToNext()) {
-                final boolean isForCurrentSession
+            while (numRead < capacity && cursor.moveToNext()) {
+                final long solveID = cursor.getLong(idCol);
+
+                // The solve ID allows the statistics to be corrected if the solve is changed.
+                solveIDs[numRead] = solveID;
+                times[numRead] = cursor.getInt(penaltyCol) == PuzzleUtils.PENALTY_DNF
+                        ? AverageCalculator.DNF : cursor.getLong(timeCol);
+                isForCurrentSession[numRead]
                         = isStatisticsForCurrentSessionOnly || cursor.getInt(historyCol) == 0;
 
-                if (cursor.getInt(penaltyCol) == PuzzleUtils.PENALTY_DNF) {
-                    statistics.addDNF(isForCurrentSession);
-                } else {
-                    statistics.addTime(cursor.getLong(timeCol), isForCurrentSession);
+                if (dateCol >= 0) {
+                    maxID = Math.max(maxID, solveID);
+                    maxDate = Math.max(maxDate, cursor.getLong(dateCol));
                 }
+                numRead++;
             }
         } finally {
             // As elsewhere in this class, assume "cursor" is not null.
             cursor.close();
         }
+
+        statistics.addSolves(solveIDs, times, isForCurrentSession, numRead);
+
+        if (snapshot != null && (numRead > 0 || !snapshot.isRestored)) {
+            saveStatisticsSnapshot(puzzleType, puzzleSubtype, statistics,
+                    snapshot.generation, maxID, maxDate);
+        }
+    }
+
+    /**
+     * The details of a statistics snapshot read from the database.
+     */
+    private static final class StatsSnapshotInfo {
+        /**
+         * The generation of the snapshot record. This is zero if there is no record.
+         */
+        long generation;
+
+        /**
+         * Indicates if the snapshot was valid and was restored into the statistics.
+         */
+        boolean isRestored;
+
+        /**
+         * The highest solve ID of all solves included in the restored snapshot.
+         */
+        long maxID;
+
+        /**
+         * The latest solve date of all solves included in the restored snapshot.
+         */
+        long maxDate;
+    }
+
+    /**
+     * Restores the statistics from the saved snapshot for the given puzzle type and subtype.
+     *
+     * @param puzzleType    The name of the puzzle type.
+     * @param puzzleSubtype The name of the puzzle subtype.
+     * @param statistics    The statistics into which to restore the snapshot.
+     *
+     * @return
+     *     The details of the snapshot. If no valid snapshot was restored, the statistics are left
+     *     in their reset state and the generation must be passed back when saving a new snapshot.
+     */
+    private StatsSnapshotInfo restoreStatisticsSnapshot(
+            String puzzleType, String puzzleSubtype, Statistics statistics) {
+        final StatsSnapshotInfo info = new StatsSnapshotInfo();
+        final Cursor cursor = getReadableDatabase().query(TABLE_STATS_SNAPSHOTS,
+                new String[] {
+                        KEY_SNAPSHOT_GENERATION, KEY_SNAPSHOT_MAX_ID, KEY_SNAPSHOT_MAX_DATE,
+                        KEY_SNAPSHOT_DATA },
+                KEY_TYPE + "=? AND " + KEY_SUBTYPE + "=?", new String[] { puzzleType, puzzleSubtype },
+                null, null, null);
+
+        try {
+            if (cursor.moveToFirst()) {
+                info.generation = cursor.getLong(0);
+
+                if (!cursor.isNull(3) && statistics.readSnapshot(cursor.getBlob(3))) {
+                    info.isRestored = true;
+                    info.maxID = cursor.getLong(1);
+                    info.maxDate = cursor.getLong(2);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return info;
+    }
+
+    /**
+     * Saves a snapshot of the statistics for the given puzzle type and subtype. The snapshot is
+     * not saved if the solves were changed after the statistics began loading, as the statistics
+     * may not reflect those changes, or if it is larger than {@link #MAX_SNAPSHOT_SIZE}.
+     *
+     * @param puzzleType    The name of the puzzle type.
+     * @param puzzleSubtype The name of the puzzle subtype.
+     * @param statistics    The statistics to be saved.
+     * @param generation    The generation of the snapshot record when loading began.
+     * @param maxID         The highest solve ID of all solves included in the statistics.
+     * @param maxDate       The latest solve date of all solves included in the statistics.
+     */
+    private void saveStatisticsSnapshot(String puzzleType, String puzzleSubtype,
+            Statistics statistics, long generation, long maxID, long maxDate) {
+        final byte[] data = statistics.writeSnapshot();
+
+        if (data.length > MAX_SNAPSHOT_SIZE) {
+            Log.w("DatabaseHandler", "Statistics snapshot too large to save: " + data.length);
+            return;
+        }
+
+        final SQLiteDatabase db = getWritableDatabase();
+
+        db.beginTransaction();
+        try {
+            final String[] args = { puzzleType, puzzleSubtype };
+            final long currentGeneration = DatabaseUtils.longForQuery(db,
+                    "SELECT IFNULL((SELECT " + KEY_SNAPSHOT_GENERATION + " FROM "
+                    + TABLE_STATS_SNAPSHOTS + " WHERE " + KEY_TYPE + "=? AND " + KEY_SUBTYPE
+                    + "=?), 0)", args);
+            // A back-dated solve inserted during the load would not have triggered invalidation
+            // if there was no snapshot at the time, so check for one explicitly.
+            final boolean hasBackDatedSolve = DatabaseUtils.queryNumEntries(db, TABLE_TIMES,
+                    KEY_TYPE + "=? AND " + KEY_SUBTYPE + "=? AND " + KEY_ID + ">? AND "
+                    + KEY_DATE + "<?", new String[] { puzzleType, puzzleSubtype,
+                    String.valueOf(maxID), String.valueOf(maxDate) }) > 0;
+
+            if (currentGeneration == generation && !hasBackDatedSolve) {
+                final ContentValues values = new ContentValues();
+
+                values.put(KEY_TYPE, puzzleType);
+                values.put(KEY_SUBTYPE, puzzleSubtype);
+                values.put(KEY_SNAPSHOT_GENERATION, generation);
+                values.put(KEY_SNAPSHOT_MAX_ID, maxID);
+                values.put(KEY_SNAPSHOT_MAX_DATE, maxDate);
+                values.put(KEY_SNAPSHOT_DATA, data);
+                db.insertWithOnConflict(
+                        TABLE_STATS_SNAPSHOTS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
     }
 
     /**
@@ -619,11 +1696,11 @@ public class DatabaseHandler extends SQLiteOpenHelper {
      *     The IDs of the solve records in the "times" table of the database to be deleted. Must
      *     not be {@code null}, but may be empty.
      * @param listener
-     *     An optional progress listener that will be notified as each solve is deleted from the
+     *     An optional progress listener that will be notified as the solves are deleted from the
      *     database. Before the first solve is deleted, this will be called to report that zero of
      *     the total number of solves have been deleted (even if {@code solveIDs} is empty).
-     *     Thereafter, it will be notified after each attempted deletion by ID, whether a matching
-     *     solve was found or not. May be {@code null} if no progress reports are required.
+     *     Thereafter, it will be notified after each chunk of IDs is deleted, whether matching
+     *     solves were found or not. May be {@code null} if no progress reports are required.
      *
      * @return
      *     The number of records deleted. If an ID from {@code solveIDs} does not match any record,
@@ -631,38 +1708,169 @@ public class DatabaseHandler extends SQLiteOpenHelper {
      *     so the result may be less than the number of solve IDs in the collection.
      */
     public int deleteSolvesByID(Collection<Long> solveIDs, ProgressListener listener) {
+        final int numDeleted
+                = executeForSolveIDs("DELETE FROM " + TABLE_TIMES + " WHERE ", solveIDs, listener);
+
+        if (numDeleted > 0) {
+            mCategories.reload();
+        }
+        return numDeleted;
+    }
+
+    /**
+     * Applies a penalty to multiple solves in the database that match the solve record IDs in the
+     * given collection. As for {@link PuzzleUtils#applyPenalty(Solve, int)}, two seconds are
+     * added to the time of a solve that is given a "+2" penalty and are removed from the time of
+     * a solve that loses a "+2" penalty. The solves are updated in a single transaction.
+     *
+     * @param solveIDs
+     *     The IDs of the solve records to be updated. Must not be {@code null}.
+     * @param penalty
+     *     The new penalty: {@link PuzzleUtils#NO_PENALTY}, {@link PuzzleUtils#PENALTY_PLUSTWO} or
+     *     {@link PuzzleUtils#PENALTY_DNF}.
+     * @param listener
+     *     An optional progress listener that will be notified after each chunk of IDs is updated.
+     *     May be {@code null}.
+     *
+     * @return The number of records updated.
+     */
+    public int setPenaltyOfSolvesByID(
+            Collection<Long> solveIDs, int penalty, ProgressListener listener) {
+        final int plusTwo = PuzzleUtils.PENALTY_PLUSTWO;
+
+        // Hidden solves (see "PuzzleUtils.PENALTY_HIDETIME") are not shown, so are not changed.
+        return executeForSolveIDs("UPDATE " + TABLE_TIMES + " SET "
+                + KEY_TIME + "=CASE"
+                + " WHEN " + KEY_PENALTY + "=" + plusTwo + " AND " + penalty + "!=" + plusTwo
+                + " THEN " + KEY_TIME + "-2000"
+                + " WHEN " + KEY_PENALTY + "!=" + plusTwo + " AND " + penalty + "=" + plusTwo
+                + " THEN " + KEY_TIME + "+2000"
+                + " ELSE " + KEY_TIME + " END, "
+                + KEY_PENALTY + "=" + penalty
+                + " WHERE " + KEY_PENALTY + "!=" + PuzzleUtils.PENALTY_HIDETIME + " AND ",
+                solveIDs, listener);
+    }
+
+    /**
+     * Moves multiple solves in the database that match the solve record IDs in the given
+     * collection to or from the history of past sessions. The solves are updated in a single
+     * transaction.
+     *
+     * @param solveIDs
+     *     The IDs of the solve records to be updated. Must not be {@code null}.
+     * @param isHistory
+     *     {@code true} to move the solves to the history, or {@code false} to move them to the
+     *     current session.
+     * @param listener
+     *     An optional progress listener that will be notified after each chunk of IDs is updated.
+     *     May be {@code null}.
+     *
+     * @return The number of records updated.
+     */
+    public int setHistoryOfSolvesByID(
+            Collection<Long> solveIDs, boolean isHistory, ProgressListener listener) {
+        return executeForSolveIDs("UPDATE " + TABLE_TIMES + " SET "
+                + KEY_HISTORY + "=" + (isHistory ? 1 : 0) + " WHERE ", solveIDs, listener);
+    }
+
+    /**
+     * Executes a set-based delete or update of the solves that match the solve record IDs in the
+     * given collection. Rather than executing one statement per solve, each statement matches a
+     * chunk of up to {@link #MAX_IDS_PER_STATEMENT} IDs with an "IN" clause. All chunks are
+     * executed in a single transaction.
+     *
+     * @param sqlPrefix
+     *     The statement up to and including "WHERE " (and any other conditions joined by
+     *     "AND "). The "IN" clause for the chunk of IDs is appended to this.
+     * @param solveIDs
+     *     The IDs of the solve records. Must not be {@code null}, but may be empty.
+     * @param listener
+     *     An optional progress listener that will be notified before the first chunk and after
+     *     each chunk is executed. May be {@code null}.
+     *
+     * @return The number of records deleted or updated.
+     */
+    private int executeForSolveIDs(
+            String sqlPrefix, Collection<Long> solveIDs, ProgressListener listener) {
         final int total = solveIDs.size();
-        int numProcessed = 0; // Whether deleted or not (i.e., includes RNF and duplicates).
+        int numProcessed = 0; // Whether matched or not (i.e., includes RNF and duplicates).
 
         if (listener != null) {
             listener.onProgress(numProcessed, total);
         }
 
-        int numDeleted = 0; // Only those actually deleted (i.e., excludes RNF and duplicates).
+        int numChanged = 0; // Only those actually matched (i.e., excludes RNF and duplicates).
 
         if (total > 0) {
             final SQLiteDatabase db = getWritableDatabase();
+            final Iterator<Long> iterator = solveIDs.iterator();
+            SQLiteStatement fullChunk = null;
 
             try{
-                // Wrap the bulk delete operations in a transaction; it is *much* faster,
+                // Wrap the bulk operations in a transaction; it is *much* faster,
                 db.beginTransaction();
 
-                for (long id : solveIDs) {
-                    // May not change if RNF or if ID is a duplicate and is already deleted.
-                    numDeleted += deleteSolveByIDInternal(db, id);
+                while (iterator.hasNext()) {
+                    final int chunkSize = Math.min(MAX_IDS_PER_STATEMENT, total - numProcessed);
+                    final SQLiteStatement statement;
+
+                    // Every chunk is full but the last, so the same statement is used for them all.
+                    if (chunkSize == MAX_IDS_PER_STATEMENT) {
+                        if (fullChunk == null) {
+                            fullChunk = db.compileStatement(inClauseSQL(sqlPrefix, chunkSize));
+                        }
+                        statement = fullChunk;
+                    } else {
+                        statement = db.compileStatement(inClauseSQL(sqlPrefix, chunkSize));
+                    }
 
+                    try {
+                        statement.clearBindings();
+                        for (int i = 1; i <= chunkSize; i++) {
+                            statement.bindLong(i, iterator.next());
+                        }
+                        numChanged += statement.executeUpdateDelete();
+                    } finally {
+                        if (statement != fullChunk) {
+                            statement.close();
+                        }
+                    }
+
+                    numProcessed += chunkSize;
                     if (listener != null) {
-                        listener.onProgress(++numProcessed, total);
+                        listener.onProgress(numProcessed, total);
                     }
                 }
 
                 db.setTransactionSuccessful();
             } finally {
                 db.endTransaction();
+                if (fullChunk != null) {
+                    fullChunk.close();
+                }
             }
         }
 
-        return numDeleted;
+        return numChanged;
+    }
+
+    /**
+     * Appends an "IN" clause with the given number of parameters for solve IDs to a statement.
+     *
+     * @param sqlPrefix The statement up to and including "WHERE ".
+     * @param numIDs    The number of parameters.
+     *
+     * @return The complete statement.
+     */
+    private static String inClauseSQL(String sqlPrefix, int numIDs) {
+        final StringBuilder sql = new StringBuilder(sqlPrefix.length() + 16 + numIDs * 2)
+                .append(sqlPrefix).append(KEY_ID).append(" IN (?");
+
+        for (int i = 1; i < numIDs; i++) {
+            sql.append(",?");
+        }
+
+        return sql.append(')').toString();
     }
 
     /**
@@ -677,13 +1885,24 @@ public class DatabaseHandler extends SQLiteOpenHelper {
      *     The number of records deleted. If no record matches {@code solveID}, the result is zero.
      */
     private int deleteSolveByIDInternal(SQLiteDatabase db, long solveID) {
-        return db.delete(TABLE_TIMES, KEY_ID + "=?", new String[] { Long.toString(solveID) });
+        final int numDeleted
+                = db.delete(TABLE_TIMES, KEY_ID + "=?", new String[] { Long.toString(solveID) });
+
+        if (numDeleted > 0) {
+            mCategories.reload();
+        }
+        return numDeleted;
     }
 
     // Delete entries from session
     public int deleteAllFromSession(String type, String subtype) {
         SQLiteDatabase db = this.getWritableDatabase();
-        return db.delete(TABLE_TIMES, KEY_TYPE + "=? AND " + KEY_SUBTYPE + " = ? AND " + KEY_HISTORY + "=0", new String[] { type, subtype });
+        final int numDeleted = db.delete(TABLE_TIMES, KEY_TYPE + "=? AND " + KEY_SUBTYPE + " = ? AND " + KEY_HISTORY + "=0", new String[] { type, subtype });
+
+        if (numDeleted > 0) {
+            mCategories.reload();
+        }
+        return numDeleted;
     }
 
     /**
@@ -693,8 +1912,11 @@ public class DatabaseHandler extends SQLiteOpenHelper {
      */
     public int deleteSubtype(String type, String subtype) {
         SQLiteDatabase db = this.getWritableDatabase();
-        return db.delete(TABLE_TIMES, KEY_TYPE + "=? AND " + KEY_SUBTYPE + " = ?",
+        final int numDeleted = db.delete(TABLE_TIMES, KEY_TYPE + "=? AND " + KEY_SUBTYPE + " = ?",
             new String[] { type, subtype });
+
+        mCategories.removeSubtype(type, subtype);
+        return numDeleted;
     }
 
     /**
@@ -706,18 +1928,171 @@ public class DatabaseHandler extends SQLiteOpenHelper {
         SQLiteDatabase db = this.getWritableDatabase();
         ContentValues contentValues = new ContentValues();
         contentValues.put(KEY_SUBTYPE, newName);
-        return db.update(TABLE_TIMES, contentValues, KEY_TYPE + "=? AND " + KEY_SUBTYPE + "=?", new String[] { type, subtype });
+        final int numUpdated = db.update(TABLE_TIMES, contentValues, KEY_TYPE + "=? AND " + KEY_SUBTYPE + "=?", new String[] { type, subtype });
+
+        mCategories.renameSubtype(type, subtype, newName);
+        return numUpdated;
     }
 
-    public Cursor getAllSolves() {
+    /**
+     * Gets a page of all of the solves, in order of their IDs, for exporting a backup. Each page
+     * continues from the last solve of the previous page, so the pages are read by a range scan
+     * of the table, however many pages precede them. The columns are those of the "times" table,
+     * so they can be read using {@link #IDX_TIME}, etc.
+     *
+     * @param afterID
+     *     The ID of the last solve of the previous page, or zero for the first page.
+     * @param limit The maximum number of solves in the page.
+     *
+     * @return A cursor over the page of solves. The caller must close the cursor.
+     */
+    public Cursor getAllSolves(long afterID, int limit) {
         SQLiteDatabase db = this.getReadableDatabase();
-        return db.rawQuery("SELECT * FROM times WHERE penalty!=" + PuzzleUtils.PENALTY_HIDETIME, null);
+        return db.rawQuery("SELECT * FROM times WHERE penalty!=" + PuzzleUtils.PENALTY_HIDETIME
+                + " AND _id>? ORDER BY _id LIMIT " + limit,
+                new String[] { String.valueOf(afterID) });
+    }
+
+    /**
+     * Gets the number of solves of all puzzle types and subtypes, not including the hidden
+     * solves that keep empty categories in existence. The number is read from the summary table,
+     * so the solves are not counted.
+     *
+     * @return The number of solves.
+     */
+    public int getNumSolves() {
+        return (int) DatabaseUtils.longForQuery(getReadableDatabase(),
+                "SELECT IFNULL(SUM(" + KEY_SUMMARY_NUM_SOLVES + "), 0) FROM "
+                + TABLE_TIMES_SUMMARY, null);
     }
 
     public boolean solveExists(Solve solve) {
-        SQLiteDatabase db = this.getReadableDatabase();
+        if (solve.getScramble() == null) {
+            // A null scramble does not match any other value in SQL.
+            return false;
+        }
+
+        // The scramble is compared in its encoded form, which must be bound as a blob.
+        final SQLiteStatement query = getReadableDatabase().compileStatement(
+                "SELECT COUNT(*) FROM " + TABLE_TIMES + " WHERE type=? AND subtype=? AND time=?"
+                + " AND scramble=? AND date=?");
+
+        try {
+            bindStringOrNull(query, 1, solve.getPuzzle());
+            bindStringOrNull(query, 2, solve.getSubtype());
+            query.bindLong(3, solve.getTime());
+            query.bindBlob(4, ScrambleCodec.encode(solve.getScramble()));
+            query.bindLong(5, solve.getDate());
+
+            return query.simpleQueryForLong() > 0;
+        } finally {
+            query.close();
+        }
+    }
+
+    /**
+     * <p>
+     * The solves in the database, for finding duplicates when importing a backup. Checking each
+     * imported solve with {@link #solveExists(Solve)} would query the database once per solve, so
+     * instead, a hash of the time, date and scramble of every solve in a category is loaded into
+     * memory the first time a solve for that category is checked. The database is only queried
+     * to confirm that a solve with a matching hash really is a duplicate, so a hash collision
+     * cannot cause a solve to be skipped.
+     * </p>
+     * <p>
+     * As with {@code solveExists}, a solve with no scramble is never a duplicate, as a null value
+     * does not match any other value in SQL.
+     * </p>
+     */
+    private final class ExistingSolveKeys {
+        /**
+         * The database from which to load the solves.
+         */
+        private final SQLiteDatabase mDB;
 
-        return DatabaseUtils.queryNumEntries(db, TABLE_TIMES, "type=? AND subtype =? AND time=? AND scramble=? AND date=?", new String[] { solve.getPuzzle(), solve.getSubtype(), String.valueOf(solve.getTime()), solve.getScramble(), String.valueOf(solve.getDate()) }) > 0;
+        /**
+         * The hashes of the solves in each category, keyed by the puzzle type and subtype.
+         */
+        private final Map<String, Set<Long>> mKeysByCategory = new HashMap<>();
+
+        ExistingSolveKeys(SQLiteDatabase db) {
+            mDB = db;
+        }
+
+        /**
+         * Indicates if a matching solve exists in the database.
+         *
+         * @param solve The solve to check.
+         *
+         * @return {@code true} if a solve with the same category, time, date and scramble exists.
+         */
+        boolean contains(Solve solve) {
+            return solve.getScramble() != null
+                    && getKeys(solve.getPuzzle(), solve.getSubtype()).contains(
+                            hash(solve.getTime(), solve.getDate(), solve.getScramble()))
+                    && solveExists(solve);
+        }
+
+        /**
+         * Records a solve that has been added to the database, so that later duplicates of that
+         * solve are found.
+         *
+         * @param solve The solve that was added.
+         */
+        void add(Solve solve) {
+            if (solve.getScramble() != null) {
+                getKeys(solve.getPuzzle(), solve.getSubtype()).add(
+                        hash(solve.getTime(), solve.getDate(), solve.getScramble()));
+            }
+        }
+
+        /**
+         * Gets the hashes of the solves in a category, loading them from the database if they
+         * have not been loaded already.
+         *
+         * @param type    The name of the puzzle type.
+         * @param subtype The name of the puzzle subtype.
+         *
+         * @return The hashes of the solves.
+         */
+        private Set<Long> getKeys(String type, String subtype) {
+            final String category = type + '\u0000' + subtype;
+            Set<Long> keys = mKeysByCategory.get(category);
+
+            if (keys == null) {
+                keys = new HashSet<>();
+
+                final Cursor cursor = mDB.query(TABLE_TIMES,
+                        new String[] { KEY_TIME, KEY_DATE, KEY_SCRAMBLE },
+                        KEY_TYPE + "=? AND " + KEY_SUBTYPE + "=? AND " + KEY_SCRAMBLE + " NOT NULL",
+                        new String[] { type, subtype }, null, null, null);
+
+                try {
+                    while (cursor.moveToNext()) {
+                        keys.add(hash(cursor.getLong(0), cursor.getLong(1), getScramble(cursor, 2)));
+                    }
+                } finally {
+                    cursor.close();
+                }
+
+                mKeysByCategory.put(category, keys);
+            }
+
+            return keys;
+        }
+
+        /**
+         * Calculates the hash of the natural key of a solve within its category.
+         *
+         * @param time     The solve time.
+         * @param date     The date of the solve.
+         * @param scramble The scramble. Must not be {@code null}.
+         *
+         * @return The hash of the key.
+         */
+        private long hash(long time, long date, String scramble) {
+            return (time * 31L + date) * 31L + scramble.hashCode();
+        }
     }
 
     // TODO: this info should REALLY be in a separate file. I'll get to it when I add other alg sets.
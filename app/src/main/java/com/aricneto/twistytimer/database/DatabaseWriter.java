@@ -0,0 +1,424 @@
+package com.aricneto.twistytimer.database;
+
+import android.database.SQLException;
+import android.database.sqlite.SQLiteConstraintException;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.aricneto.twistytimer.items.Solve;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>
+ * The single writer of the database. Every change to the solves in the database is submitted to
+ * this writer as a command and the commands are executed one at a time, in the order in which
+ * they were submitted, on a single background thread. The main thread is never blocked by a
+ * write and two writes never contend for the database lock.
+ * </p>
+ * <p>
+ * As the database uses write-ahead logging (see {@link DatabaseHandler}), the loaders that read
+ * from the database on their own background threads are not blocked by a write either, even by a
+ * long import or bulk delete; they see the database as it was before that write was committed.
+ * </p>
+ * <p>
+ * A callback can be given with each command. It is notified on the main thread once the command
+ * has completed, so it is the place to broadcast the change that was made (e.g., with
+ * {@link com.aricneto.twistytimer.utils.TTIntent.BroadcastBuilder}), as the loaders will then be
+ * able to see that change. If a command fails, the error is logged and the callback is not
+ * notified.
+ * </p>
+ * <p>
+ * Because commands are executed in order, a command that uses the ID of a solve will see the ID
+ * set by an {@link #addSolve(Solve, Callback)} command that was submitted before it, even if
+ * that command has not yet completed when the later command is submitted.
+ * </p>
+ * <p>
+ * A new solve from the timer can also be saved "write-behind". A solve ID is reserved for it on
+ * the main thread with {@link #reserveSolveID()}, so the solve can be shown in the statistics
+ * and broadcast straight away, and the solve is then saved under that ID by
+ * {@link #saveNewSolve(Solve, Callback)}. The write is retried if it fails.
+ * </p>
+ */
+public final class DatabaseWriter {
+    /**
+     * A "tag" used to identify this class as the source of log messages.
+     */
+    private static final String TAG = DatabaseWriter.class.getSimpleName();
+
+    /**
+     * The number of attempts made to save a new solve before giving up.
+     */
+    private static final int MAX_SAVE_ATTEMPTS = 5;
+
+    /**
+     * The delay (in milliseconds) before the first retry of a failed save of a new solve. The
+     * delay is doubled before each further retry.
+     */
+    private static final long FIRST_RETRY_DELAY = 50;
+
+    /**
+     * A command that writes to the database.
+     *
+     * @param <T> The type of the result of the command.
+     */
+    public interface Command<T> {
+        /**
+         * Executes the command on the writer thread.
+         *
+         * @param handler The database handler through which to write to the database.
+         *
+         * @return The result of the command.
+         */
+        T execute(DatabaseHandler handler);
+    }
+
+    /**
+     * A callback that is notified on the main thread when a command has completed.
+     *
+     * @param <T> The type of the result of the command.
+     */
+    public interface Callback<T> {
+        /**
+         * Notifies the callback that the command has completed successfully.
+         *
+         * @param result The result of the command.
+         */
+        void onComplete(T result);
+    }
+
+    /**
+     * The database handler passed to each command.
+     */
+    private final DatabaseHandler mHandler;
+
+    /**
+     * The executor of the commands. It has a single thread, so commands are executed in order.
+     */
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "DatabaseWriter"));
+
+    /**
+     * The handler used to notify callbacks on the main thread.
+     */
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * The highest solve ID that has been reserved or is known to be in use, or -1 if it has not
+     * yet been read from the database.
+     */
+    private long mLastSolveID = -1;
+
+    /**
+     * Creates a new database writer.
+     *
+     * @param handler The database handler through which to write to the database.
+     */
+    public DatabaseWriter(DatabaseHandler handler) {
+        mHandler = handler;
+
+        // Read the last solve ID and the categories now, so they will not be read on the main
+        // thread when the first solve ID is reserved or a category list is first shown.
+        submit(h -> {
+            ensureLastSolveIDLoaded();
+            h.getCategories().ensureLoaded();
+            return null;
+        }, null);
+    }
+
+    /**
+     * Reserves a new solve ID for a new solve that will be saved by
+     * {@link #saveNewSolve(Solve, Callback)}. This is usually very fast, but the first call may
+     * need to read the last solve ID from the database if that has not yet been done in the
+     * background.
+     *
+     * @return The reserved solve ID.
+     */
+    public synchronized long reserveSolveID() {
+        ensureLastSolveIDLoaded();
+        return ++mLastSolveID;
+    }
+
+    /**
+     * Reads the last solve ID from the database, if it has not already been read.
+     */
+    private synchronized void ensureLastSolveIDLoaded() {
+        if (mLastSolveID < 0) {
+            mLastSolveID = mHandler.getLastSolveID();
+        }
+    }
+
+    /**
+     * Records that a solve ID is in use, so that it will not be reserved for another solve.
+     *
+     * @param solveID The solve ID.
+     */
+    private synchronized void recordSolveIDInUse(long solveID) {
+        mLastSolveID = Math.max(mLastSolveID, solveID);
+    }
+
+    /**
+     * Submits a command to be executed on the writer thread after all previously submitted
+     * commands have completed.
+     *
+     * @param command  The command to execute.
+     * @param callback
+     *     The callback to notify on the main thread when the command has completed. May be
+     *     {@code null} if no notification is required.
+     * @param <T>      The type of the result of the command.
+     */
+    public <T> void submit(final Command<T> command, final Callback<T> callback) {
+        mExecutor.execute(() -> {
+            final T result;
+
+            try {
+                result = command.execute(mHandler);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Database write failed.", e);
+                return;
+            }
+
+            if (callback != null) {
+                mMainHandler.post(() -> callback.onComplete(result));
+            }
+        });
+    }
+
+    /**
+     * Executes a command on the writer thread after all previously submitted commands have
+     * completed, and waits for it to complete. This must not be called on the main thread, or
+     * on the writer thread itself. It is intended for background tasks, such as an import, that
+     * need the result before they can continue.
+     *
+     * @param command The command to execute.
+     * @param <T>     The type of the result of the command.
+     *
+     * @return The result of the command.
+     *
+     * @throws RuntimeException
+     *     If the command failed, or if the waiting thread was interrupted.
+     */
+    public <T> T executeAndWait(final Command<T> command) {
+        try {
+            return mExecutor.submit(() -> command.execute(mHandler)).get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException
+                    ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for a database write.", e);
+        }
+    }
+
+    /**
+     * Closes an importer created by {@link DatabaseHandler#newSolveImporter(int)} once the import
+     * is complete, or has failed, and waits for it to be closed. The imported solves were given
+     * their IDs by the database, so the last solve ID is read again, so that no ID already in use
+     * will be reserved for a new solve.
+     *
+     * @param importer The importer to close.
+     *
+     * @throws RuntimeException
+     *     If the importer could not be closed, or if the waiting thread was interrupted.
+     */
+    public void closeImporter(final DatabaseHandler.SolveImporter importer) {
+        executeAndWait(handler -> {
+            importer.close();
+            recordSolveIDInUse(handler.getLastSolveID());
+            return null;
+        });
+    }
+
+    /**
+     * Adds a new solve to the database. The ID of the new solve record is set on the solve
+     * before any later command is executed.
+     *
+     * @param solve    The solve to add.
+     * @param callback The callback to notify with the new solve ID. May be {@code null}.
+     */
+    public void addSolve(final Solve solve, Callback<Long> callback) {
+        submit(handler -> {
+            final long id = handler.addSolve(solve);
+
+            if (id != -1) {
+                recordSolveIDInUse(id);
+            }
+            solve.setId(id);
+            return id;
+        }, callback);
+    }
+
+    /**
+     * Saves a new solve to the database under the solve ID already reserved for it by
+     * {@link #reserveSolveID()}. If the write fails, it is retried a few times, with an
+     * increasing delay. Later commands wait for the retries, so they still see the solve. If
+     * the reserved ID was taken by a solve that was added in another way (e.g., by an import),
+     * the solve is saved under a new ID chosen by the database and the new ID is set on the
+     * solve. The callback is then notified with that new ID, so the caller can tell that the ID
+     * it broadcast is no longer valid.
+     *
+     * @param solve
+     *     The solve to save. Its ID must be the reserved ID.
+     * @param callback
+     *     The callback to notify with the ID of the saved solve record, or with -1 if the solve
+     *     could not be saved. May be {@code null}.
+     */
+    public void saveNewSolve(final Solve solve, Callback<Long> callback) {
+        submit(handler -> {
+            long retryDelay = FIRST_RETRY_DELAY;
+
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    handler.addSolveWithID(solve);
+                    return solve.getId();
+                } catch (SQLiteConstraintException e) {
+                    Log.w(TAG, "Reserved solve ID " + solve.getId() + " is in use.", e);
+
+                    final long id = handler.addSolve(solve);
+
+                    if (id != -1) {
+                        recordSolveIDInUse(id);
+                        solve.setId(id);
+                    }
+                    return id;
+                } catch (SQLException e) {
+                    if (attempt == MAX_SAVE_ATTEMPTS) {
+                        Log.e(TAG, "Failed to save new solve. Giving up.", e);
+                        return -1L;
+                    }
+                    Log.w(TAG, "Failed to save new solve. Will retry.", e);
+                    SystemClock.sleep(retryDelay);
+                    retryDelay *= 2;
+                }
+            }
+        }, callback);
+    }
+
+    /**
+     * Updates a solve in the database.
+     *
+     * @param solve    The solve to update, matched by its ID.
+     * @param callback The callback to notify with the number of records updated. May be
+     *                 {@code null}.
+     */
+    public void updateSolve(final Solve solve, Callback<Integer> callback) {
+        submit(handler -> handler.updateSolve(solve), callback);
+    }
+
+    /**
+     * Deletes a solve from the database.
+     *
+     * @param solve    The solve to delete, matched by its ID.
+     * @param callback The callback to notify with the number of records deleted. May be
+     *                 {@code null}.
+     */
+    public void deleteSolve(final Solve solve, Callback<Integer> callback) {
+        submit(handler -> handler.deleteSolve(solve), callback);
+    }
+
+    /**
+     * Deletes a solve from the database.
+     *
+     * @param solveID  The ID of the solve to delete.
+     * @param callback The callback to notify with the number of records deleted. May be
+     *                 {@code null}.
+     */
+    public void deleteSolveByID(final long solveID, Callback<Integer> callback) {
+        submit(handler -> handler.deleteSolveByID(solveID), callback);
+    }
+
+    /**
+     * Deletes multiple solves from the database. The collection of IDs is copied, so it may be
+     * changed once this method returns.
+     *
+     * @param solveIDs The IDs of the solves to delete.
+     * @param callback The callback to notify with the number of records deleted. May be
+     *                 {@code null}.
+     */
+    public void deleteSolvesByID(Collection<Long> solveIDs, Callback<Integer> callback) {
+        final Collection<Long> ids = new ArrayList<>(solveIDs);
+
+        submit(handler -> handler.deleteSolvesByID(ids, null), callback);
+    }
+
+    /**
+     * Applies a penalty to multiple solves in the database. The collection of IDs is copied, so
+     * it may be changed once this method returns.
+     *
+     * @param solveIDs The IDs of the solves to update.
+     * @param penalty  The new penalty.
+     * @param callback The callback to notify with the number of records updated. May be
+     *                 {@code null}.
+     *
+     * @see DatabaseHandler#setPenaltyOfSolvesByID(Collection, int, DatabaseHandler.ProgressListener)
+     */
+    public void setPenaltyOfSolvesByID(
+            Collection<Long> solveIDs, final int penalty, Callback<Integer> callback) {
+        final Collection<Long> ids = new ArrayList<>(solveIDs);
+
+        submit(handler -> handler.setPenaltyOfSolvesByID(ids, penalty, null), callback);
+    }
+
+    /**
+     * Moves multiple solves in the database to or from the history. The collection of IDs is
+     * copied, so it may be changed once this method returns.
+     *
+     * @param solveIDs  The IDs of the solves to update.
+     * @param isHistory {@code true} to move the solves to the history, or {@code false} to move
+     *                  them to the current session.
+     * @param callback  The callback to notify with the number of records updated. May be
+     *                  {@code null}.
+     */
+    public void setHistoryOfSolvesByID(
+            Collection<Long> solveIDs, final boolean isHistory, Callback<Integer> callback) {
+        final Collection<Long> ids = new ArrayList<>(solveIDs);
+
+        submit(handler -> handler.setHistoryOfSolvesByID(ids, isHistory, null), callback);
+    }
+
+    /**
+     * Moves all solves of a puzzle category to the history.
+     *
+     * @param type     The puzzle type.
+     * @param subtype  The puzzle category.
+     * @param callback The callback to notify with the number of records updated. May be
+     *                 {@code null}.
+     */
+    public void moveAllSolvesToHistory(
+            final String type, final String subtype, Callback<Integer> callback) {
+        submit(handler -> handler.moveAllSolvesToHistory(type, subtype), callback);
+    }
+
+    /**
+     * Deletes all solves of the current session of a puzzle category.
+     *
+     * @param type     The puzzle type.
+     * @param subtype  The puzzle category.
+     * @param callback The callback to notify with the number of records deleted. May be
+     *                 {@code null}.
+     */
+    public void deleteAllFromSession(
+            final String type, final String subtype, Callback<Integer> callback) {
+        submit(handler -> handler.deleteAllFromSession(type, subtype), callback);
+    }
+
+    /**
+     * Moves the most recent solves of a puzzle category from the history to the current session.
+     *
+     * @param type      The puzzle type.
+     * @param subtype   The puzzle category.
+     * @param numSolves The number of solves to move.
+     * @param callback  The callback to notify with the number of records updated. May be
+     *                  {@code null}.
+     */
+    public void unarchiveSolves(final String type, final String subtype, final int numSolves,
+                                Callback<Integer> callback) {
+        submit(handler -> handler.unarchiveSolves(type, subtype, numSolves), callback);
+    }
+}
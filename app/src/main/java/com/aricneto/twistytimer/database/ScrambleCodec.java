@@ -0,0 +1,299 @@
+package com.aricneto.twistytimer.database;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Encodes scrambles compactly for storage in the database. A scramble is a sequence of moves
+ * separated by single spaces, and almost every move is drawn from a small vocabulary: the face
+ * turns of the cubes (e.g., "R'", "Uw2", "3Fw'"), the moves of the megaminx, pyraminx, skewb and
+ * clock, and the turns of the square-1. Each such move is encoded as a single byte. A square-1
+ * turn (e.g., "(-3,4)") is encoded as two bytes. Any other text between the spaces (e.g., from a
+ * scramble typed in by hand, or imported from another timer) is stored as a literal, so any
+ * scramble is encoded without loss. Long cube scrambles are stored in about a third of the space
+ * needed for the text.
+ * </p>
+ * <p>
+ * The first byte of the encoding identifies the format, so that other formats can be added later.
+ * <i>The codes of the moves are stored in the database, so the order of {@link #MOVES} must never
+ * be changed; new moves may only be added to the end.</i>
+ * </p>
+ */
+public final class ScrambleCodec {
+    /**
+     * The format identifier of a scramble encoded as a sequence of move codes.
+     */
+    private static final byte FORMAT_MOVES = 1;
+
+    /**
+     * The code that introduces a square-1 turn. It is followed by one byte that holds the turns
+     * of the top and bottom layers, as described for {@link #encodeSquareOneTurn(String)}.
+     */
+    private static final int CODE_SQUARE_ONE_TURN = 0xFE;
+
+    /**
+     * The code that introduces a literal. It is followed by the length of the UTF-8 encoding of
+     * the literal (as a variable-length integer) and then by that encoding.
+     */
+    private static final int CODE_LITERAL = 0xFF;
+
+    /**
+     * The lowest and highest turn of a square-1 layer, in twelfths of a turn.
+     */
+    private static final int SQ1_MIN_TURN = -5;
+    private static final int SQ1_MAX_TURN = 6;
+    private static final int SQ1_NUM_TURNS = SQ1_MAX_TURN - SQ1_MIN_TURN + 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * The moves that are encoded as a single byte, in order of their codes. The empty move allows
+     * consecutive spaces to be encoded compactly.
+     */
+    private static final String[] MOVES;
+
+    /**
+     * The codes of the moves in {@link #MOVES}, by move.
+     */
+    private static final Map<String, Integer> CODES_BY_MOVE = new HashMap<>();
+
+    static {
+        final List<String> moves = new ArrayList<>();
+
+        moves.add("");
+
+        // Cubes: face turns, wide turns and the deeper wide turns of the 6x6x6 and 7x7x7 cubes.
+        for (final String prefix : new String[] { "", "3" }) {
+            for (final String face : new String[] { "U", "D", "L", "R", "F", "B" }) {
+                for (final String width : new String[] { "", "w" }) {
+                    if (prefix.isEmpty() || !width.isEmpty()) {
+                        for (final String amount : new String[] { "", "'", "2" }) {
+                            moves.add(prefix + face + width + amount);
+                        }
+                    }
+                }
+            }
+        }
+
+        // Cube rotations.
+        for (final String axis : new String[] { "x", "y", "z" }) {
+            for (final String amount : new String[] { "", "'", "2" }) {
+                moves.add(axis + amount);
+            }
+        }
+
+        // Pyraminx tips. The face turns are the same as those of the cubes.
+        for (final String tip : new String[] { "u", "l", "r", "b" }) {
+            moves.add(tip);
+            moves.add(tip + "'");
+        }
+
+        // Megaminx. The "U" turns are the same as those of the cubes.
+        for (final String move : new String[] { "R++", "R--", "D++", "D--" }) {
+            moves.add(move);
+        }
+
+        // Clock: the pin positions and the turns of the dials.
+        for (final String pin : new String[] { "UR", "DR", "DL", "UL" }) {
+            moves.add(pin);
+        }
+        for (final String dial : new String[] { "UR", "DR", "DL", "UL", "U", "R", "D", "L", "ALL" }) {
+            for (int amount = 0; amount <= 6; amount++) {
+                moves.add(dial + amount + "+");
+                moves.add(dial + amount + "-");
+            }
+        }
+
+        // Square-1 slice. Its turns are encoded separately.
+        moves.add("/");
+
+        MOVES = moves.toArray(new String[0]);
+        for (int code = 0; code < MOVES.length; code++) {
+            CODES_BY_MOVE.put(MOVES[code], code);
+        }
+    }
+
+    private ScrambleCodec() {
+    }
+
+    /**
+     * Encodes a scramble.
+     *
+     * @param scramble The scramble. May be {@code null}.
+     *
+     * @return The encoded scramble, or {@code null} if the scramble is {@code null}.
+     */
+    public static byte[] encode(String scramble) {
+        if (scramble == null) {
+            return null;
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(scramble.length() / 2 + 8);
+
+        out.write(FORMAT_MOVES);
+
+        if (!scramble.isEmpty()) {
+            int start = 0;
+
+            while (true) {
+                final int end = scramble.indexOf(' ', start);
+                final String move = scramble.substring(start, end < 0 ? scramble.length() : end);
+                final Integer code = CODES_BY_MOVE.get(move);
+                final int sq1Turn;
+
+                if (code != null) {
+                    out.write(code);
+                } else if ((sq1Turn = encodeSquareOneTurn(move)) >= 0) {
+                    out.write(CODE_SQUARE_ONE_TURN);
+                    out.write(sq1Turn);
+                } else {
+                    final byte[] literal = move.getBytes(UTF_8);
+
+                    out.write(CODE_LITERAL);
+                    writeLength(out, literal.length);
+                    out.write(literal, 0, literal.length);
+                }
+
+                if (end < 0) {
+                    break;
+                }
+                start = end + 1;
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a scramble encoded by {@link #encode(String)}.
+     *
+     * @param encoded The encoded scramble. May be {@code null}.
+     *
+     * @return The scramble, or {@code null} if the encoded scramble is {@code null}.
+     *
+     * @throws IllegalArgumentException If the encoded scramble is not valid.
+     */
+    public static String decode(byte[] encoded) {
+        if (encoded == null) {
+            return null;
+        }
+        if (encoded.length == 0 || encoded[0] != FORMAT_MOVES) {
+            throw new IllegalArgumentException("Unknown scramble encoding.");
+        }
+
+        final StringBuilder scramble = new StringBuilder(encoded.length * 3);
+
+        try {
+            for (int i = 1; i < encoded.length; ) {
+                final int code = encoded[i++] & 0xFF;
+
+                if (i > 2) {
+                    scramble.append(' ');
+                }
+
+                if (code == CODE_SQUARE_ONE_TURN) {
+                    final int turns = encoded[i++] & 0xFF;
+
+                    scramble.append('(').append(turns / SQ1_NUM_TURNS + SQ1_MIN_TURN)
+                            .append(',').append(turns % SQ1_NUM_TURNS + SQ1_MIN_TURN).append(')');
+                } else if (code == CODE_LITERAL) {
+                    int length = 0;
+                    int shift = 0;
+                    int b;
+
+                    do {
+                        b = encoded[i++] & 0xFF;
+                        length |= (b & 0x7F) << shift;
+                        shift += 7;
+                    } while ((b & 0x80) != 0);
+
+                    if (length > encoded.length - i) {
+                        throw new IllegalArgumentException("Invalid scramble encoding.");
+                    }
+                    scramble.append(new String(encoded, i, length, UTF_8));
+                    i += length;
+                } else if (code < MOVES.length) {
+                    scramble.append(MOVES[code]);
+                } else {
+                    throw new IllegalArgumentException("Unknown scramble move code: " + code);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Truncated scramble encoding.", e);
+        }
+
+        return scramble.toString();
+    }
+
+    /**
+     * Encodes a square-1 turn, such as "(-3,4)", as a single byte. The turn of the top layer is
+     * multiplied by the number of possible turns and added to the turn of the bottom layer, after
+     * both are offset to start from zero.
+     *
+     * @param move The move to encode.
+     *
+     * @return
+     *     The encoded turn (0-143), or -1 if the move is not a square-1 turn written exactly as it
+     *     would be decoded (e.g., it has spaces, a "+" sign or leading zeros).
+     */
+    private static int encodeSquareOneTurn(String move) {
+        final int comma = move.indexOf(',');
+
+        if (comma < 0 || !move.startsWith("(") || !move.endsWith(")")) {
+            return -1;
+        }
+
+        final int top = parseSquareOneLayerTurn(move, 1, comma);
+        final int bottom = parseSquareOneLayerTurn(move, comma + 1, move.length() - 1);
+
+        if (top == Integer.MIN_VALUE || bottom == Integer.MIN_VALUE) {
+            return -1;
+        }
+        return (top - SQ1_MIN_TURN) * SQ1_NUM_TURNS + (bottom - SQ1_MIN_TURN);
+    }
+
+    /**
+     * Parses the turn of one layer of a square-1 turn.
+     *
+     * @param move  The move.
+     * @param start The index of the first character of the layer turn.
+     * @param end   The index after the last character of the layer turn.
+     *
+     * @return
+     *     The layer turn, or {@code Integer.MIN_VALUE} if it is not in the range of a layer turn,
+     *     or is not written as it would be decoded.
+     */
+    private static int parseSquareOneLayerTurn(String move, int start, int end) {
+        final boolean isNegative = start < end && move.charAt(start) == '-';
+        final int digit = isNegative ? start + 1 : start;
+
+        if (end - digit != 1 || move.charAt(digit) < '0' || move.charAt(digit) > '9'
+                || (isNegative && move.charAt(digit) == '0')) {
+            return Integer.MIN_VALUE;
+        }
+
+        final int turn = isNegative ? '0' - move.charAt(digit) : move.charAt(digit) - '0';
+
+        return turn >= SQ1_MIN_TURN && turn <= SQ1_MAX_TURN ? turn : Integer.MIN_VALUE;
+    }
+
+    /**
+     * Writes the length of a literal as a variable-length integer: seven bits in each byte, least
+     * significant first, with the high bit set on every byte but the last.
+     *
+     * @param out    The output to which to write the length.
+     * @param length The length. Must not be negative.
+     */
+    private static void writeLength(ByteArrayOutputStream out, int length) {
+        while (length >= 0x80) {
+            out.write((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        out.write(length);
+    }
+}
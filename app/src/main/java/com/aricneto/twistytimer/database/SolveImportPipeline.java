@@ -0,0 +1,273 @@
+package com.aricneto.twistytimer.database;
+
+import com.aricneto.twistytimer.items.Solve;
+import com.opencsv.CSVReader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Imports solves from a CSV file in three stages that run at the same time:
+ * </p>
+ * <ol>
+ *     <li>The calling thread reads the rows of the file in blocks.</li>
+ *     <li>A small pool of parser threads converts each block of rows to solves. Parsing the times
+ *     and dates of the rows is the most costly part of an import, so it is spread across the
+ *     available processors.</li>
+ *     <li>A single insertion thread takes the parsed blocks in the order in which they were read
+ *     and adds each block to the database on the {@link DatabaseWriter} thread, so the solves are
+ *     inserted in the order of the file, and are given IDs in that order.</li>
+ * </ol>
+ * <p>
+ * The stages are connected by a bounded queue, so if the database falls behind, reading stops
+ * until it catches up. No more than a few blocks of rows and solves are held in memory, however
+ * large the file.
+ * </p>
+ */
+public final class SolveImportPipeline {
+    /**
+     * Converts a row of a CSV file to a solve. The parser is called on several threads at once,
+     * so it must be thread-safe.
+     */
+    public interface RowParser {
+        /**
+         * Converts a row to a solve.
+         *
+         * @param row The fields of the row.
+         *
+         * @return The solve. Must not be {@code null}.
+         *
+         * @throws Exception If the row is not a valid solve. The row is counted as an error.
+         */
+        Solve parse(String[] row) throws Exception;
+    }
+
+    /**
+     * The number of rows read in each block.
+     */
+    private static final int BLOCK_SIZE = 1_000;
+
+    /**
+     * The maximum number of parser threads. Beyond this, the database is the bottleneck.
+     */
+    private static final int MAX_PARSERS = 4;
+
+    /**
+     * The marker that follows the last block in the queue of parsed blocks.
+     */
+    private static final Future<ParsedBlock> END_OF_INPUT = new FutureTask<>(() -> null);
+
+    /**
+     * The solves parsed from a block of rows.
+     */
+    private static final class ParsedBlock {
+        final List<Solve> solves;
+        int numErrors;
+
+        ParsedBlock(int numRows) {
+            solves = new ArrayList<>(numRows);
+        }
+    }
+
+    private final DatabaseWriter mWriter;
+    private final DatabaseHandler.SolveImporter mImporter;
+    private final RowParser mParser;
+    private final int mNumParsers;
+
+    // Only changed by the insertion thread; read when the import is complete.
+    private volatile int mNumParsed;
+    private volatile int mNumErrors;
+    private volatile int mNumInserted;
+
+    /**
+     * Creates a new import pipeline.
+     *
+     * @param writer   The database writer on whose thread the solves are added.
+     * @param importer The importer that adds the solves to the database.
+     * @param parser   The parser that converts rows of the file to solves.
+     */
+    public SolveImportPipeline(DatabaseWriter writer, DatabaseHandler.SolveImporter importer,
+                               RowParser parser) {
+        mWriter = writer;
+        mImporter = importer;
+        mParser = parser;
+        mNumParsers = Math.max(1,
+                Math.min(MAX_PARSERS, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * Imports the remaining rows of a CSV file, returning when all of the solves have been added
+     * to the database. This must not be called on the main thread, or on the database writer
+     * thread.
+     *
+     * @param reader
+     *     The reader of the CSV file. Any header must already have been read.
+     * @param onBlockRead
+     *     A task to run on the calling thread after each block of rows is read, such as to report
+     *     the progress. May be {@code null}.
+     *
+     * @throws IOException
+     *     If the file could not be read, or the solves could not be added to the database. Any
+     *     blocks of solves that were added before the failure are kept.
+     */
+    public void run(CSVReader reader, Runnable onBlockRead) throws IOException {
+        final ExecutorService parsers = Executors.newFixedThreadPool(mNumParsers);
+        final ExecutorService inserter = Executors.newSingleThreadExecutor();
+        final BlockingQueue<Future<ParsedBlock>> parsedBlocks
+                = new ArrayBlockingQueue<>(2 * mNumParsers);
+        final Future<Void> insertion = inserter.submit(() -> {
+            insertBlocks(parsedBlocks);
+            return null;
+        });
+
+        try {
+            List<String[]> rows = new ArrayList<>(BLOCK_SIZE);
+            String[] row;
+
+            while ((row = reader.readNext()) != null) {
+                rows.add(row);
+
+                if (rows.size() == BLOCK_SIZE) {
+                    enqueue(parsedBlocks, parsers.submit(parseTask(rows)), insertion);
+                    rows = new ArrayList<>(BLOCK_SIZE);
+
+                    if (onBlockRead != null) {
+                        onBlockRead.run();
+                    }
+                }
+            }
+
+            if (!rows.isEmpty()) {
+                enqueue(parsedBlocks, parsers.submit(parseTask(rows)), insertion);
+            }
+            enqueue(parsedBlocks, END_OF_INPUT, insertion);
+
+            insertion.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to import the solves.", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while importing the solves.", e);
+        } finally {
+            // If reading failed, stop the other stages. This has no effect if they are finished.
+            insertion.cancel(true);
+            parsers.shutdownNow();
+            inserter.shutdownNow();
+        }
+    }
+
+    /**
+     * Gets the number of rows that were parsed as solves and passed to the database, including
+     * any that were duplicates of existing solves. Solves parsed from a block that could not be
+     * added are not counted. This is complete once {@link #run} has returned.
+     *
+     * @return The number of solves parsed.
+     */
+    public int getNumParsed() {
+        return mNumParsed;
+    }
+
+    /**
+     * Gets the number of rows that could not be parsed as solves.
+     *
+     * @return The number of parse errors.
+     */
+    public int getNumErrors() {
+        return mNumErrors;
+    }
+
+    /**
+     * Gets the number of solves added to the database, which excludes any duplicates.
+     *
+     * @return The number of solves inserted.
+     */
+    public int getNumInserted() {
+        return mNumInserted;
+    }
+
+    /**
+     * Creates a task that parses a block of rows.
+     *
+     * @param rows The rows to parse.
+     *
+     * @return The task.
+     */
+    private Callable<ParsedBlock> parseTask(final List<String[]> rows) {
+        return () -> {
+            final ParsedBlock block = new ParsedBlock(rows.size());
+
+            for (final String[] row : rows) {
+                try {
+                    block.solves.add(mParser.parse(row));
+                } catch (Exception e) {
+                    block.numErrors++;
+                }
+            }
+            return block;
+        };
+    }
+
+    /**
+     * Adds a block to the queue of parsed blocks, waiting while the queue is full. If the
+     * insertion stage stops while waiting, its failure is reported.
+     *
+     * @param parsedBlocks The queue of parsed blocks.
+     * @param block        The block to add.
+     * @param insertion    The insertion stage.
+     *
+     * @throws ExecutionException   If the insertion stage failed.
+     * @throws InterruptedException If the calling thread was interrupted while waiting.
+     */
+    private static void enqueue(BlockingQueue<Future<ParsedBlock>> parsedBlocks,
+                                Future<ParsedBlock> block, Future<Void> insertion)
+            throws ExecutionException, InterruptedException {
+        while (!parsedBlocks.offer(block, 100, TimeUnit.MILLISECONDS)) {
+            if (insertion.isDone()) {
+                insertion.get();
+                throw new ExecutionException(
+                        new IllegalStateException("The insertion of solves stopped early."));
+            }
+        }
+    }
+
+    /**
+     * Takes the parsed blocks from the queue in order and adds their solves to the database,
+     * until the end of the input is reached.
+     *
+     * @param parsedBlocks The queue of parsed blocks.
+     *
+     * @throws ExecutionException   If a block could not be parsed.
+     * @throws InterruptedException If the import was stopped.
+     */
+    private void insertBlocks(BlockingQueue<Future<ParsedBlock>> parsedBlocks)
+            throws ExecutionException, InterruptedException {
+        while (true) {
+            final Future<ParsedBlock> next = parsedBlocks.take();
+
+            if (next == END_OF_INPUT) {
+                return;
+            }
+
+            final ParsedBlock block = next.get();
+
+            mNumErrors += block.numErrors;
+            if (!block.solves.isEmpty()) {
+                mNumInserted += mWriter.executeAndWait(
+                        handler -> mImporter.addSolves(block.solves));
+                // Not counted until added, in case the import fails or is stopped.
+                mNumParsed += block.solves.size();
+            }
+        }
+    }
+}
@@ -0,0 +1,546 @@
+package com.aricneto.twistytimer.database;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.aricneto.twistytimer.TwistyTimer;
+import com.aricneto.twistytimer.utils.PuzzleUtils;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>
+ * A read-only list of the solves of one puzzle type and subtype, from either the current session
+ * or the history, optionally filtered by a search of the comments, and sorted by date or by time.
+ * The solves are read from the database in pages, as they are needed, instead of through one
+ * cursor over every solve.
+ * </p>
+ * <p>
+ * Each page is read by "keyset": the query for a page starts after the sort key and solve ID of
+ * the last solve of the page before it, so SQLite can seek straight to the page in the index,
+ * instead of stepping over all of the earlier solves as it would for an "OFFSET". If the page
+ * before is not known (e.g., after a jump in the scroll position), the page is read from the
+ * nearest earlier page that is known, with a (smaller) offset. The boundary keys of every page
+ * read are kept, but only a few recently used pages are kept in memory.
+ * </p>
+ * <p>
+ * Pages are read on a background thread. When a position is requested with
+ * {@link #request(int)} and its page is not in memory, that page is read, along with the next
+ * few pages ahead of it. The listener is notified on the main thread when each page arrives.
+ * Apart from the constructor and {@link #loadFirstPage()}, which are called by the loader on its
+ * background thread, all methods must be called on the main thread.
+ * </p>
+ * <p>
+ * The list is a view of the database at the time each page is read. It is not updated when the
+ * solves are changed; a new list should be loaded instead. However, if solves are deleted or
+ * moved after the solves are counted, a page may hold fewer solves than expected. The list is
+ * then cut short after the last solve of that page, as there are no more solves after it, and
+ * the listener is notified of the positions removed.
+ * </p>
+ */
+public final class TimeList {
+    /**
+     * A "tag" used to identify this class as the source of log messages.
+     */
+    private static final String TAG = TimeList.class.getSimpleName();
+
+    /**
+     * The number of solves in each page.
+     */
+    static final int PAGE_SIZE = 100;
+
+    /**
+     * The number of pages ahead of the requested page (in the direction of scrolling) that are
+     * read in advance.
+     */
+    private static final int PREFETCH_PAGES = 2;
+
+    /**
+     * The maximum number of pages kept in memory. The least recently used page is discarded
+     * when another is added.
+     */
+    private static final int MAX_CACHED_PAGES = 12;
+
+    /**
+     * The columns read for each solve. The sort key is read last, so it is at the same index,
+     * whether the solves are sorted by date or by time.
+     */
+    private static final int COL_ID = 0;
+    private static final int COL_TIME = 1;
+    private static final int COL_PENALTY = 2;
+    private static final int COL_DATE = 3;
+    private static final int COL_HAS_COMMENT = 4;
+    private static final int COL_SORT_KEY = 5;
+
+    /**
+     * The executor on which pages are read. A single thread is shared by all lists, so a list
+     * that is being replaced does not compete with its replacement.
+     */
+    private static final ExecutorService PAGE_READER = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "TimeListPageReader"));
+
+    /**
+     * The handler used to deliver pages on the main thread.
+     */
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    /**
+     * A listener notified when the solves at a range of positions have been read.
+     */
+    public interface Listener {
+        /**
+         * Notifies the listener that the solves at a range of positions have been read and can
+         * now be shown.
+         *
+         * @param firstPosition The position of the first solve that was read.
+         * @param count         The number of solves that were read.
+         */
+        void onTimesLoaded(int firstPosition, int count);
+
+        /**
+         * Notifies the listener that the list was cut short, as a page held fewer solves than
+         * expected. The positions removed are at the end of the list.
+         *
+         * @param firstPosition The position of the first solve that was removed.
+         * @param count         The number of solves that were removed.
+         */
+        void onTimesRemoved(int firstPosition, int count);
+    }
+
+    /**
+     * The SQL statement that reads a page of solves. It is completed by {@link #pageSQL}.
+     */
+    private final String mSelectSQL;
+
+    /**
+     * The selection (the "WHERE" clause) that chooses the solves in this list.
+     */
+    private final String mSelection;
+
+    /**
+     * The arguments for the parameters in {@link #mSelection}.
+     */
+    private final String[] mSelectionArgs;
+
+    /**
+     * The name of the column by which the solves are sorted.
+     */
+    private final String mOrderByKey;
+
+    /**
+     * {@code true} if the solves are sorted in descending order.
+     */
+    private final boolean mIsDescending;
+
+    /**
+     * The total number of solves in this list.
+     */
+    private int mCount;
+
+    /**
+     * The pages in memory, by page number, in order of use, least recently used first.
+     */
+    private final LinkedHashMap<Integer, Page> mPages
+            = new LinkedHashMap<Integer, Page>(MAX_CACHED_PAGES * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+
+    /**
+     * The sort key and solve ID of the last solve of every page that has been read, by page
+     * number. These allow a page to be read by keyset after its page has been discarded.
+     */
+    private final TreeMap<Integer, long[]> mPageEndKeys = new TreeMap<>();
+
+    /**
+     * The numbers of the pages that are being read.
+     */
+    private final Set<Integer> mPagesReading = new HashSet<>();
+
+    /**
+     * The number of the most recently requested page, used to tell the direction of scrolling.
+     */
+    private int mLastRequestedPage;
+
+    /**
+     * The listener to notify when pages are read. May be {@code null}.
+     */
+    private Listener mListener;
+
+    /**
+     * {@code true} if this list has been closed and pages should no longer be read.
+     */
+    private boolean mIsClosed;
+
+    /**
+     * A page of solves.
+     */
+    private static final class Page {
+        final long[] ids;
+        final int[] times;
+        final int[] penalties;
+        final long[] dates;
+        final boolean[] hasComments;
+        final long[] sortKeys;
+        final int size;
+
+        Page(Cursor cursor) {
+            size = cursor.getCount();
+            ids = new long[size];
+            times = new int[size];
+            penalties = new int[size];
+            dates = new long[size];
+            hasComments = new boolean[size];
+            sortKeys = new long[size];
+
+            for (int i = 0; cursor.moveToNext(); i++) {
+                ids[i] = cursor.getLong(COL_ID);
+                times[i] = cursor.getInt(COL_TIME);
+                penalties[i] = cursor.getInt(COL_PENALTY);
+                dates[i] = cursor.getLong(COL_DATE);
+                hasComments[i] = cursor.getInt(COL_HAS_COMMENT) != 0;
+                sortKeys[i] = cursor.getLong(COL_SORT_KEY);
+            }
+        }
+    }
+
+    /**
+     * Creates a new list of solves. The solves are not counted or read until
+     * {@link #loadFirstPage()} is called.
+     *
+     * @param puzzleType    The name of the puzzle type.
+     * @param puzzleSubtype The name of the puzzle subtype.
+     * @param history       {@code true} for the solves from the history, or {@code false} for the
+     *                      solves from the current session.
+     * @param comment       The text for which to search the comments, or "" to list every solve.
+     * @param orderByKey    The column by which to sort: {@link DatabaseHandler#KEY_DATE} or
+     *                      {@link DatabaseHandler#KEY_TIME}.
+     * @param orderByDir    The sort direction: {@link TimeTaskLoader#DIR_ASC} or
+     *                      {@link TimeTaskLoader#DIR_DESC}.
+     */
+    public TimeList(String puzzleType, String puzzleSubtype, boolean history, String comment,
+                    String orderByKey, String orderByDir) {
+        final String commentsMatchQuery = DatabaseHandler.toCommentsMatchQuery(comment);
+        final String commonSelection = DatabaseHandler.KEY_SUBTYPE + "=? AND "
+                + DatabaseHandler.KEY_HISTORY + "=" + (history ? 1 : 0) + " AND "
+                + DatabaseHandler.KEY_PENALTY + "!=" + PuzzleUtils.PENALTY_HIDETIME;
+
+        if (commentsMatchQuery != null) {
+            // Search the full-text index of comments. The "+" before "type" stops SQLite from
+            // choosing to scan the whole category by index and then test each solve against the
+            // matches; the few matching solves are looked up directly by their IDs instead.
+            mSelection = "+" + DatabaseHandler.KEY_TYPE + "=? AND " + commonSelection + " AND "
+                    + DatabaseHandler.KEY_ID + " IN (SELECT docid FROM "
+                    + DatabaseHandler.TABLE_COMMENTS_FTS + " WHERE "
+                    + DatabaseHandler.TABLE_COMMENTS_FTS + " MATCH ?)";
+            mSelectionArgs = new String[] { puzzleType, puzzleSubtype, commentsMatchQuery };
+        } else if (comment.isEmpty()) {
+            mSelection = DatabaseHandler.KEY_TYPE + "=? AND " + commonSelection;
+            mSelectionArgs = new String[] { puzzleType, puzzleSubtype };
+        } else {
+            // The search text is only punctuation, which is not indexed, so it must be found
+            // by scanning the comments.
+            mSelection = DatabaseHandler.KEY_TYPE + "=? AND " + commonSelection + " AND "
+                    + DatabaseHandler.KEY_COMMENT + " LIKE ?";
+            mSelectionArgs = new String[] { puzzleType, puzzleSubtype, "%" + comment + "%" };
+        }
+
+        mOrderByKey = orderByKey;
+        mIsDescending = TimeTaskLoader.DIR_DESC.equals(orderByDir);
+        mSelectSQL = "SELECT " + DatabaseHandler.KEY_ID + ", " + DatabaseHandler.KEY_TIME + ", "
+                + DatabaseHandler.KEY_PENALTY + ", " + DatabaseHandler.KEY_DATE + ", "
+                + "IFNULL(" + DatabaseHandler.KEY_COMMENT + ", '')<>'', " + orderByKey
+                + " FROM " + DatabaseHandler.TABLE_TIMES + " WHERE " + mSelection;
+    }
+
+    /**
+     * Counts the solves in this list and reads the first page. This must be called on a
+     * background thread before the list is used.
+     */
+    void loadFirstPage() {
+        mCount = (int) DatabaseUtils.queryNumEntries(TwistyTimer.getReadableDB(),
+                DatabaseHandler.TABLE_TIMES, mSelection, mSelectionArgs);
+
+        if (mCount > 0) {
+            addPage(0, readPage(null, 0));
+        }
+    }
+
+    /**
+     * Sets the listener to be notified when pages are read.
+     *
+     * @param listener The listener, or {@code null} to remove the listener.
+     */
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Closes this list. Pages will no longer be read and the listener will not be notified.
+     */
+    public void close() {
+        mIsClosed = true;
+        mListener = null;
+    }
+
+    /**
+     * Gets the number of solves in this list.
+     *
+     * @return The number of solves.
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Requests the solve at the given position. If it is not in memory, it will be read in the
+     * background and the listener will be notified. The pages ahead of it are also read in
+     * advance, if they are not in memory.
+     *
+     * @param position The position of the solve.
+     *
+     * @return
+     *     {@code true} if the solve is in memory and the {@code get...} methods may be called
+     *     for the position now; or {@code false} if it is not.
+     */
+    public boolean request(int position) {
+        final int pageNumber = position / PAGE_SIZE;
+        final int step = pageNumber >= mLastRequestedPage ? 1 : -1;
+        final int lastPage = (mCount - 1) / PAGE_SIZE;
+
+        mLastRequestedPage = pageNumber;
+
+        for (int i = 0, p = pageNumber; i <= PREFETCH_PAGES && p >= 0 && p <= lastPage;
+             i++, p += step) {
+            if (!mPages.containsKey(p)) {
+                readPageInBackground(p);
+            }
+        }
+
+        // Also marks the page as the most recently used.
+        final Page page = mPages.get(pageNumber);
+
+        // The page may hold fewer solves than expected, if the list is being cut short.
+        return page != null && position % PAGE_SIZE < page.size;
+    }
+
+    /**
+     * Gets the solve ID of the solve at the given position. The solve must be in memory (see
+     * {@link #request(int)}).
+     *
+     * @param position The position of the solve.
+     *
+     * @return The solve ID.
+     */
+    public long getId(int position) {
+        return page(position).ids[position % PAGE_SIZE];
+    }
+
+    /**
+     * Gets the time of the solve at the given position. The solve must be in memory.
+     *
+     * @param position The position of the solve.
+     *
+     * @return The solve time in milliseconds, including any "+2" penalty.
+     */
+    public int getTime(int position) {
+        return page(position).times[position % PAGE_SIZE];
+    }
+
+    /**
+     * Gets the penalty of the solve at the given position. The solve must be in memory.
+     *
+     * @param position The position of the solve.
+     *
+     * @return The penalty. See {@link PuzzleUtils#applyPenalty}.
+     */
+    public int getPenalty(int position) {
+        return page(position).penalties[position % PAGE_SIZE];
+    }
+
+    /**
+     * Gets the date of the solve at the given position. The solve must be in memory.
+     *
+     * @param position The position of the solve.
+     *
+     * @return The date in milliseconds since the epoch.
+     */
+    public long getDate(int position) {
+        return page(position).dates[position % PAGE_SIZE];
+    }
+
+    /**
+     * Indicates if the solve at the given position has a comment. The solve must be in memory.
+     *
+     * @param position The position of the solve.
+     *
+     * @return {@code true} if the solve has a non-empty comment.
+     */
+    public boolean hasComment(int position) {
+        return page(position).hasComments[position % PAGE_SIZE];
+    }
+
+    /**
+     * Gets the page that holds the solve at the given position.
+     *
+     * @param position The position of the solve.
+     *
+     * @return The page.
+     *
+     * @throws IllegalStateException If the page is not in memory.
+     */
+    private Page page(int position) {
+        final Page page = mPages.get(position / PAGE_SIZE);
+
+        if (page == null || position % PAGE_SIZE >= page.size) {
+            throw new IllegalStateException("Solve not in memory at position " + position);
+        }
+        return page;
+    }
+
+    /**
+     * Adds a page that has been read and records the key of its last solve. If the page holds
+     * fewer solves than expected, there are no solves after it, so the list is cut short after
+     * its last solve and any later pages are discarded.
+     *
+     * @param pageNumber The page number.
+     * @param page       The page.
+     *
+     * @return The number of solves removed from the end of the list, or zero if none were.
+     */
+    private int addPage(int pageNumber, Page page) {
+        mPages.put(pageNumber, page);
+
+        if (page.size > 0) {
+            mPageEndKeys.put(pageNumber,
+                    new long[] { page.sortKeys[page.size - 1], page.ids[page.size - 1] });
+        }
+
+        final int endPosition = pageNumber * PAGE_SIZE + page.size;
+
+        if (page.size < PAGE_SIZE && endPosition < mCount) {
+            final int numRemoved = mCount - endPosition;
+
+            mCount = endPosition;
+            for (Iterator<Integer> pages = mPages.keySet().iterator(); pages.hasNext(); ) {
+                if (pages.next() > pageNumber) {
+                    pages.remove();
+                }
+            }
+            mPageEndKeys.tailMap(pageNumber, false).clear();
+            return numRemoved;
+        }
+        return 0;
+    }
+
+    /**
+     * Reads a page in the background, if it is not already being read. The key from which to
+     * read is chosen now, on the main thread, from the nearest earlier page that has been read.
+     *
+     * @param pageNumber The page number.
+     */
+    private void readPageInBackground(final int pageNumber) {
+        if (mIsClosed || !mPagesReading.add(pageNumber)) {
+            return;
+        }
+
+        final Map.Entry<Integer, long[]> before = mPageEndKeys.lowerEntry(pageNumber);
+        final long[] afterKey = before != null ? before.getValue() : null;
+        final int offset = (pageNumber - (before != null ? before.getKey() + 1 : 0)) * PAGE_SIZE;
+
+        PAGE_READER.execute(() -> {
+            if (mIsClosed) {
+                return;
+            }
+
+            Page page = null;
+
+            try {
+                page = readPage(afterKey, offset);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Failed to read page " + pageNumber + " of times.", e);
+            }
+
+            final Page readPage = page;
+
+            MAIN_HANDLER.post(() -> {
+                mPagesReading.remove(pageNumber);
+                // The list may have been cut short after the page was requested.
+                if (!mIsClosed && readPage != null && pageNumber * PAGE_SIZE < mCount) {
+                    final int numRemoved = addPage(pageNumber, readPage);
+
+                    if (mListener != null) {
+                        if (numRemoved > 0) {
+                            mListener.onTimesRemoved(mCount, numRemoved);
+                        }
+                        mListener.onTimesLoaded(pageNumber * PAGE_SIZE, readPage.size);
+                    }
+                }
+            });
+        });
+    }
+
+    /**
+     * Reads a page of solves from the database.
+     *
+     * @param afterKey
+     *     The sort key and solve ID of the solve before the first solve to read, or {@code null}
+     *     to read from the first solve.
+     * @param offset
+     *     The number of solves after that solve to skip before the first solve to read.
+     *
+     * @return The page.
+     */
+    private Page readPage(long[] afterKey, int offset) {
+        final String[] args;
+        final String sql;
+
+        if (afterKey != null) {
+            // The sort key and the ID are compared separately, as SQLite on older versions of
+            // Android does not support row values. The first comparison allows the index to be
+            // used to seek to the sort key; the second skips the solves before the ID.
+            final String cmp = mIsDescending ? "<" : ">";
+
+            args = Arrays.copyOf(mSelectionArgs, mSelectionArgs.length + 3);
+            args[args.length - 3] = Long.toString(afterKey[0]);
+            args[args.length - 2] = Long.toString(afterKey[0]);
+            args[args.length - 1] = Long.toString(afterKey[1]);
+            sql = mSelectSQL + " AND " + mOrderByKey + cmp + "=? AND (" + mOrderByKey + cmp + "?"
+                    + " OR " + DatabaseHandler.KEY_ID + cmp + "?)" + pageSQL(offset);
+        } else {
+            args = mSelectionArgs;
+            sql = mSelectSQL + pageSQL(offset);
+        }
+
+        try (Cursor cursor = TwistyTimer.getReadableDB().rawQuery(sql, args)) {
+            return new Page(cursor);
+        }
+    }
+
+    /**
+     * Gets the "ORDER BY" and "LIMIT" clauses that complete the statement to read a page.
+     *
+     * @param offset The number of solves to skip.
+     *
+     * @return The SQL clauses.
+     */
+    private String pageSQL(int offset) {
+        final String dir = mIsDescending ? " DESC" : " ASC";
+
+        return " ORDER BY " + mOrderByKey + dir + ", " + DatabaseHandler.KEY_ID + dir
+                + " LIMIT " + PAGE_SIZE + (offset > 0 ? " OFFSET " + offset : "");
+    }
+}
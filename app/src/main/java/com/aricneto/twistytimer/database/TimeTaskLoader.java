@@ -1,13 +1,14 @@
 package com.aricneto.twistytimer.database;
 
-import android.database.Cursor;
-
-import androidx.loader.content.CursorLoader;
+import androidx.loader.content.AsyncTaskLoader;
 
 import com.aricneto.twistytimer.TwistyTimer;
-import com.aricneto.twistytimer.utils.PuzzleUtils;
 
-public class TimeTaskLoader extends CursorLoader {
+/**
+ * A loader for the list of times. The loader counts the times and reads the first page; the
+ * remaining pages are read by the {@link TimeList} as the list is scrolled.
+ */
+public class TimeTaskLoader extends AsyncTaskLoader<TimeList> {
 
     public static final String DIR_DESC = "DESC";
     public static final String DIR_ASC = "ASC";
@@ -20,6 +21,11 @@ public class TimeTaskLoader extends CursorLoader {
 
     boolean history = false;
 
+    /**
+     * The most recently loaded list. It is closed when it is replaced or when the loader is reset.
+     */
+    private TimeList timeList;
+
     public TimeTaskLoader(String puzzleType, String puzzleSubtype, boolean history, String comment, String orderByKey, String orderByDir) {
         super(TwistyTimer.getAppContext());
         this.puzzleType = puzzleType;
@@ -31,14 +37,67 @@ public class TimeTaskLoader extends CursorLoader {
     }
 
     @Override
-    public Cursor loadInBackground() {
-        return TwistyTimer.getReadableDB().query(DatabaseHandler.TABLE_TIMES, null,
-                DatabaseHandler.KEY_PENALTY + "!=" + PuzzleUtils.PENALTY_HIDETIME + " AND "
-                        + DatabaseHandler.KEY_TYPE + "=?" + " AND "
-                        + DatabaseHandler.KEY_SUBTYPE + "=?" + " AND "
-                        + DatabaseHandler.KEY_COMMENT + " LIKE ?" + " AND "
-                        + DatabaseHandler.KEY_HISTORY + "=" + (history ? 1 : 0),
-                new String[]{puzzleType, puzzleSubtype, "%" + comment + "%"}, null, null,
-                orderByKey + " " + orderByDir, null);
+    public TimeList loadInBackground() {
+        final TimeList list
+                = new TimeList(puzzleType, puzzleSubtype, history, comment, orderByKey, orderByDir);
+
+        list.loadFirstPage();
+        return list;
+    }
+
+    @Override
+    public void deliverResult(TimeList list) {
+        if (isReset()) {
+            if (list != null) {
+                list.close();
+            }
+            return;
+        }
+
+        final TimeList oldList = timeList;
+
+        timeList = list;
+
+        if (isStarted()) {
+            super.deliverResult(list);
+        }
+
+        if (oldList != null && oldList != list) {
+            oldList.close();
+        }
+    }
+
+    @Override
+    public void onCanceled(TimeList list) {
+        if (list != null) {
+            list.close();
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (timeList != null) {
+            deliverResult(timeList);
+        }
+
+        if (takeContentChanged() || timeList == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+
+        if (timeList != null) {
+            timeList.close();
+            timeList = null;
+        }
     }
 }
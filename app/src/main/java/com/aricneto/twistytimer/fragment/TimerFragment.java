@@ -54,19 +54,22 @@ import android.widget.Toast;
 import com.afollestad.materialdialogs.MaterialDialog;
 import com.aricneto.twistify.R;
 import com.aricneto.twistytimer.TwistyTimer;
-import com.aricneto.twistytimer.database.DatabaseHandler;
+import com.aricneto.twistytimer.database.DatabaseWriter;
 import com.aricneto.twistytimer.fragment.dialog.AddTimeDialog;
 import com.aricneto.twistytimer.fragment.dialog.BottomSheetDetailDialog;
+import com.aricneto.twistytimer.items.CategorySummary;
 import com.aricneto.twistytimer.items.Solve;
 import com.aricneto.twistytimer.layout.ChronometerMilli;
 import com.aricneto.twistytimer.listener.OnBackPressedInFragmentListener;
 import com.aricneto.twistytimer.puzzle.TrainerScrambler;
 import com.aricneto.twistytimer.solver.RubiksCubeOptimalCross;
 import com.aricneto.twistytimer.solver.RubiksCubeOptimalXCross;
+import com.aricneto.twistytimer.stats.AverageCalculator;
 import com.aricneto.twistytimer.stats.Statistics;
 import com.aricneto.twistytimer.stats.StatisticsCache;
 import com.aricneto.twistytimer.utils.CountdownWarning;
 import com.aricneto.twistytimer.utils.DefaultPrefs;
+import com.aricneto.twistytimer.utils.LatencyStats;
 import com.aricneto.twistytimer.utils.Prefs;
 import com.aricneto.twistytimer.utils.PuzzleUtils;
 import com.aricneto.twistytimer.utils.ScrambleGenerator;
@@ -99,6 +102,7 @@ import static com.aricneto.twistytimer.utils.TTIntent.ACTION_TIMER_STOPPED;
 import static com.aricneto.twistytimer.utils.TTIntent.ACTION_TIMES_MODIFIED;
 import static com.aricneto.twistytimer.utils.TTIntent.ACTION_TIME_ADDED;
 import static com.aricneto.twistytimer.utils.TTIntent.ACTION_TIME_ADDED_MANUALLY;
+import static com.aricneto.twistytimer.utils.TTIntent.ACTION_TIME_SAVED;
 import static com.aricneto.twistytimer.utils.TTIntent.ACTION_TOOLBAR_RESTORED;
 import static com.aricneto.twistytimer.utils.TTIntent.BroadcastBuilder;
 import static com.aricneto.twistytimer.utils.TTIntent.CATEGORY_TIME_DATA_CHANGES;
@@ -159,6 +163,20 @@ public class
 
     private Solve  currentSolve    = null;
 
+    // The new solve most recently passed to the database writer, until it has been saved.
+    private Solve unsavedSolve = null;
+
+    // True if "unsavedSolve" was broadcast before it was saved. Its saving will be broadcast, too,
+    // so that the list of times can include it.
+    private boolean isUnsavedSolveBroadcast;
+
+    // The value of "System.nanoTime()" when the timer was last stopped.
+    private long timerStoppedAt;
+
+    // The latency from the stopping of the timer until the new solve has been handed to the
+    // database writer and the timer is ready to start the next solve.
+    private final LatencyStats stopToReadyLatency = new LatencyStats("Timer stop to ready");
+
     CountDownTimer countdown;
     boolean countingDown = false;
 
@@ -195,6 +213,7 @@ public class
 
     private GenerateScrambleSequence scrambleGeneratorAsync;
     private GetOptimalCross optimalCrossAsync;
+    private LoadSessionSummary sessionSummaryAsync;
 
     private int currentPenalty = NO_PENALTY;
 
@@ -350,13 +369,12 @@ public class
     private final View.OnClickListener buttonClickListener = new View.OnClickListener() {
         @Override
         public void onClick(View view) {
-            final DatabaseHandler dbHandler = TwistyTimer.getDBHandler();
+            final DatabaseWriter dbWriter = TwistyTimer.getDBWriter();
 
             // On most of these changes to the current solve, the Statistics and ChartStatistics
-            // need to be updated to reflect the change. It would probably be too complicated to
-            // add facilities to "AverageCalculator" to handle modification of the last added time
-            // or an "undo" facility and then to integrate that into the loaders. Therefore, a full
-            // reload will probably be required.
+            // need to be updated to reflect the change. The changed solve is included in the
+            // broadcast intent, so that the "StatisticsLoader" can correct the statistics
+            // directly instead of reloading them from the database.
 
             switch (view.getId()) {
                 case R.id.qa_remove:
@@ -366,11 +384,15 @@ public class
                             .negativeText(R.string.delete_dialog_cancel_button)
                             .onPositive((dialog, which) -> {
                                 if (currentSolve != null) { // FIXME: if solve is null, it should just hide the buttons
-                                    dbHandler.deleteSolve(currentSolve);
+                                    final Solve deletedSolve = currentSolve;
+
+                                    dbWriter.deleteSolve(deletedSolve, numDeleted ->
+                                            new BroadcastBuilder(CATEGORY_TIME_DATA_CHANGES, ACTION_TIMES_MODIFIED)
+                                                    .solveDeleted(deletedSolve)
+                                                    .broadcast());
                                     if (!isRunning)
                                         chronometer.reset(); // Reset to "0.00".
                                     congratsText.setVisibility(View.GONE);
-                                    broadcast(CATEGORY_TIME_DATA_CHANGES, ACTION_TIMES_MODIFIED);
                                 }
                                 hideButtons(true, true);
                             })
@@ -379,16 +401,14 @@ public class
                 case R.id.qa_dnf:
                     currentSolve = PuzzleUtils.applyPenalty(currentSolve, PENALTY_DNF);
                     chronometer.setPenalty(PuzzleUtils.PENALTY_DNF);
-                    dbHandler.updateSolve(currentSolve);
                     hideButtons(true, false);
-                    broadcast(CATEGORY_TIME_DATA_CHANGES, ACTION_TIMES_MODIFIED);
+                    updateAndBroadcastChangedSolve();
                     break;
                 case R.id.qa_plustwo:
                     if (currentPenalty != PENALTY_PLUSTWO) {
                         currentSolve = PuzzleUtils.applyPenalty(currentSolve, PENALTY_PLUSTWO);
                         chronometer.setPenalty(PuzzleUtils.PENALTY_PLUSTWO);
-                        dbHandler.updateSolve(currentSolve);
-                        broadcast(CATEGORY_TIME_DATA_CHANGES, ACTION_TIMES_MODIFIED);
+                        updateAndBroadcastChangedSolve();
                     }
                     hideButtons(true, false);
                     break;
@@ -397,9 +417,8 @@ public class
                             .title(R.string.add_comment)
                             .input("", "", (dialog12, input) -> {
                                 currentSolve.setComment(input.toString());
-                                dbHandler.updateSolve(currentSolve);
-
-                                broadcast(CATEGORY_TIME_DATA_CHANGES, ACTION_COMMENT_ADDED);
+                                dbWriter.updateSolve(currentSolve, numUpdated ->
+                                        broadcast(CATEGORY_TIME_DATA_CHANGES, ACTION_COMMENT_ADDED));
                                 Toast.makeText(mContext, getString(R.string.added_comment), Toast.LENGTH_SHORT).show();
                                 hideButtons(false, true);
                             })
@@ -420,9 +439,8 @@ public class
                     // Undo the setting of a DNF or +2 penalty (does not undo a delete or comment).
                     currentSolve = PuzzleUtils.applyPenalty(currentSolve, NO_PENALTY);
                     chronometer.setPenalty(PuzzleUtils.NO_PENALTY);
-                    dbHandler.updateSolve(currentSolve);
                     hideButtons(false, true);
-                    broadcast(CATEGORY_TIME_DATA_CHANGES, ACTION_TIMES_MODIFIED);
+                    updateAndBroadcastChangedSolve();
                     break;
                 case R.id.scramble_button_reset:
                     broadcast(CATEGORY_UI_INTERACTIONS, ACTION_GENERATE_SCRAMBLE);
@@ -1005,11 +1023,55 @@ public class
             declareRecordTimes(currentSolve);
         }
 
-        currentSolve.setId(TwistyTimer.getDBHandler().addSolve(currentSolve));
+        // The new solve is saved "write-behind". Its solve ID is reserved now, so it can be
+        // broadcast (and added to the statistics) without waiting for the database.
+        final DatabaseWriter dbWriter = TwistyTimer.getDBWriter();
+        final Solve newSolve = currentSolve;
+        final long reservedID = dbWriter.reserveSolveID();
+
+        newSolve.setId(reservedID);
+        unsavedSolve = newSolve;
+        isUnsavedSolveBroadcast = false;
+        dbWriter.saveNewSolve(newSolve, solveID -> {
+            final boolean isBroadcast = unsavedSolve != newSolve || isUnsavedSolveBroadcast;
+
+            if (unsavedSolve == newSolve) {
+                unsavedSolve = null;
+            }
+
+            if (isBroadcast) {
+                if (solveID == reservedID) {
+                    broadcast(CATEGORY_TIME_DATA_CHANGES, ACTION_TIME_SAVED);
+                } else {
+                    // The solve was broadcast with an ID that is not valid. Reload everything.
+                    broadcast(CATEGORY_TIME_DATA_CHANGES, ACTION_TIMES_MODIFIED);
+                }
+            } // else the solve will be broadcast later, with its new ID if it was changed.
+        });
         currentPenalty = NO_PENALTY;
+
+        stopToReadyLatency.recordSince(timerStoppedAt);
+        if (DEBUG_ME) Log.d(TAG, stopToReadyLatency.toString());
+    }
+
+    private void updateAndBroadcastChangedSolve() {
+        final Solve changedSolve = currentSolve;
+
+        // The receiver might be able to correct its data for the changed solve and avoid
+        // accessing the database, so parcel it up in the intent. The update is made after any
+        // pending addition of the solve, so the solve ID will be known by then.
+        TwistyTimer.getDBWriter().updateSolve(changedSolve, numUpdated ->
+                new BroadcastBuilder(CATEGORY_TIME_DATA_CHANGES, ACTION_TIMES_MODIFIED)
+                        .solve(changedSolve)
+                        .broadcast());
     }
 
     private void broadcastNewSolve() {
+        if (currentSolve != null && currentSolve == unsavedSolve) {
+            // Receivers reading from the database will need to know when the solve is saved.
+            isUnsavedSolveBroadcast = true;
+        }
+
         // The receiver might be able to use the new solve and avoid accessing the database, so
         // parcel it up in the intent.
         new BroadcastBuilder(CATEGORY_TIME_DATA_CHANGES, ACTION_TIME_ADDED)
@@ -1084,6 +1146,26 @@ public class
         }
     }
 
+    /**
+     * Shows the session deviation, mean, best time and number of solves below the timer.
+     *
+     * @param deviation The standard deviation. May be {@link AverageCalculator#UNKNOWN}.
+     * @param mean      The mean time. May be {@link AverageCalculator#UNKNOWN}.
+     * @param best      The best time. May be {@link AverageCalculator#UNKNOWN}.
+     * @param numSolves The number of solves, including DNFs.
+     */
+    private void showSessionDetailOther(long deviation, long mean, long best, int numSolves) {
+        // detailTextNamesArray should be in the same order as shown in the timer
+        // (keep R.arrays.timer_detail_stats in sync with the order!)
+        StringBuilder stringDetailOther = new StringBuilder();
+        stringDetailOther.append(detailTextNamesArray[4]).append(": ").append(convertTimeToString(tr(deviation), FORMAT_DEFAULT)).append("\n");
+        stringDetailOther.append(detailTextNamesArray[5]).append(": ").append(convertTimeToString(tr(mean), FORMAT_DEFAULT)).append("\n");
+        stringDetailOther.append(detailTextNamesArray[6]).append(": ").append(convertTimeToString(tr(best), FORMAT_DEFAULT)).append("\n");
+        stringDetailOther.append(detailTextNamesArray[7]).append(": ").append(String.format(Locale.getDefault(), "%,d", numSolves));
+
+        detailTextOther.setText(stringDetailOther.toString());
+    }
+
     /**
      * Refreshes the display of the statistics. If this fragment has no view, or if the given
      * statistics are {@code null}, no update will be attempted.
@@ -1105,15 +1187,21 @@ public class
         // new solve time to be added via "addNewSolve".
         mRecentStatistics = stats; // May be null.
 
+        if (sessionSummaryAsync != null) {
+            sessionSummaryAsync.cancel(false);
+            sessionSummaryAsync = null;
+        }
+
         if (stats == null) {
+            // The statistics are still loading. Show what can be read quickly from the summary
+            // of the session's solves; the standard deviation is not summarised.
+            sessionSummaryAsync = new LoadSessionSummary(currentPuzzle, currentPuzzleCategory);
+            sessionSummaryAsync.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
             return;
         }
 
-        String sessionDeviation = convertTimeToString(tr(stats.getSessionStdDeviation()), PuzzleUtils
-                .FORMAT_DEFAULT);
-        String sessionCount = String.format(Locale.getDefault(), "%,d", stats.getSessionNumSolves());
-        String sessionBestTime = convertTimeToString(tr(stats.getSessionBestTime()), PuzzleUtils.FORMAT_DEFAULT);
-        String sessionMean = convertTimeToString(tr(stats.getSessionMeanTime()), PuzzleUtils.FORMAT_DEFAULT);
+        showSessionDetailOther(stats.getSessionStdDeviation(), stats.getSessionMeanTime(),
+                stats.getSessionBestTime(), stats.getSessionNumSolves());
 
         long allTimeBestAvg[] = new long[4];
         long sessionCurrentAvg[] = new long[4];
@@ -1128,16 +1216,6 @@ public class
         sessionCurrentAvg[2] = tr(stats.getAverageOf(50, true).getCurrentAverage());
         sessionCurrentAvg[3] = tr(stats.getAverageOf(100, true).getCurrentAverage());
 
-        // detailTextNamesArray should be in the same order as shown in the timer
-        // (keep R.arrays.timer_detail_stats in sync with the order!)
-        StringBuilder stringDetailOther = new StringBuilder();
-        stringDetailOther.append(detailTextNamesArray[4]).append(": ").append(sessionDeviation).append("\n");
-        stringDetailOther.append(detailTextNamesArray[5]).append(": ").append(sessionMean).append("\n");
-        stringDetailOther.append(detailTextNamesArray[6]).append(": ").append(sessionBestTime).append("\n");
-        stringDetailOther.append(detailTextNamesArray[7]).append(": ").append(sessionCount);
-
-        detailTextOther.setText(stringDetailOther.toString());
-
         // To prevent the record message being animated more than once in case the user sets
         // two or more average records at the same time.
         boolean hasShownRecordMessage = false;
@@ -1352,6 +1430,7 @@ public class
      * Stops the chronometer
      */
     private void stopChronometer() {
+        timerStoppedAt = System.nanoTime();
         chronometer.stop();
         chronometer.setHighlighted(false);
         isRunning = false;
@@ -1389,6 +1468,8 @@ public class
         // To fix memory leaks
         unregisterReceiver(mUIInteractionReceiver);
         scrambleGeneratorAsync.cancel(true);
+        if (sessionSummaryAsync != null)
+            sessionSummaryAsync.cancel(false);
     }
 
     @Override
@@ -1645,6 +1726,36 @@ public class
         }
     };
 
+    /**
+     * Reads the summary of the current session's solves, which is shown while the full statistics
+     * are loading. The database may need to be opened, or even upgraded, so it is not read on the
+     * main thread.
+     */
+    private class LoadSessionSummary extends AsyncTask<Void, Void, CategorySummary> {
+        private final String puzzle;
+        private final String puzzleCategory;
+
+        LoadSessionSummary(String puzzle, String puzzleCategory) {
+            this.puzzle = puzzle;
+            this.puzzleCategory = puzzleCategory;
+        }
+
+        @Override
+        protected CategorySummary doInBackground(Void... voids) {
+            return TwistyTimer.getDBHandler().getCategorySummary(puzzle, puzzleCategory, false);
+        }
+
+        @Override
+        protected void onPostExecute(CategorySummary summary) {
+            super.onPostExecute(summary);
+            // Not cancelled, so the full statistics have not yet arrived.
+            if (getView() != null && sessionStatsEnabled) {
+                showSessionDetailOther(AverageCalculator.UNKNOWN, summary.getMeanTime(),
+                        summary.getBestTime(), summary.getNumSolves());
+            }
+        }
+    }
+
     private class GenerateScrambleImage extends AsyncTask<Void, Void, Drawable> {
 
         @Override
@@ -44,6 +44,7 @@ import android.widget.LinearLayout;
 import android.widget.RelativeLayout;
 import android.widget.TextView;
 
+import com.afollestad.materialdialogs.MaterialDialog;
 import com.aricneto.twistify.R;
 import com.aricneto.twistytimer.TwistyTimer;
 import com.aricneto.twistytimer.activity.MainActivity;
@@ -64,11 +65,13 @@ import butterknife.Unbinder;
 
 import static com.aricneto.twistytimer.fragment.TimerFragment.TIMER_MODE_TIMER;
 import static com.aricneto.twistytimer.fragment.TimerFragment.TIMER_MODE_TRAINER;
+import static com.aricneto.twistytimer.utils.TTIntent.ACTION_ARCHIVE_SELECTED_TIMES;
 import static com.aricneto.twistytimer.utils.TTIntent.ACTION_CHANGED_CATEGORY;
 import static com.aricneto.twistytimer.utils.TTIntent.ACTION_CHANGED_THEME;
 import static com.aricneto.twistytimer.utils.TTIntent.ACTION_DELETE_SELECTED_TIMES;
 import static com.aricneto.twistytimer.utils.TTIntent.ACTION_GENERATE_SCRAMBLE;
 import static com.aricneto.twistytimer.utils.TTIntent.ACTION_HISTORY_TIMES_SHOWN;
+import static com.aricneto.twistytimer.utils.TTIntent.ACTION_PENALIZE_SELECTED_TIMES;
 import static com.aricneto.twistytimer.utils.TTIntent.ACTION_SCROLLED_PAGE;
 import static com.aricneto.twistytimer.utils.TTIntent.ACTION_SELECTION_MODE_OFF;
 import static com.aricneto.twistytimer.utils.TTIntent.ACTION_SELECTION_MODE_ON;
@@ -78,6 +81,7 @@ import static com.aricneto.twistytimer.utils.TTIntent.ACTION_TIMER_STOPPED;
 import static com.aricneto.twistytimer.utils.TTIntent.ACTION_TIME_SELECTED;
 import static com.aricneto.twistytimer.utils.TTIntent.ACTION_TIME_UNSELECTED;
 import static com.aricneto.twistytimer.utils.TTIntent.ACTION_TOOLBAR_RESTORED;
+import static com.aricneto.twistytimer.utils.TTIntent.BroadcastBuilder;
 import static com.aricneto.twistytimer.utils.TTIntent.CATEGORY_TIME_DATA_CHANGES;
 import static com.aricneto.twistytimer.utils.TTIntent.CATEGORY_UI_INTERACTIONS;
 import static com.aricneto.twistytimer.utils.TTIntent.TTFragmentBroadcastReceiver;
@@ -212,7 +216,11 @@ public class TimerFragmentMain extends BaseFragment implements OnBackPressedInFr
             //if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
                 //getActivity().getWindow().setStatusBarColor(ThemeUtils.fetchAttrColor(mContext, R.attr.colorPrimaryDark));
             //}
-            return true; // Return false if nothing is done
+            // Times selected in the history are moved back to the current session.
+            menu.findItem(R.id.archive)
+                    .setTitle(history ? R.string.list_options_item_from_history : R.string.action_archive)
+                    .setIcon(history ? R.drawable.ic_outline_unarchive_24dp : R.drawable.ic_outline_archive_24dp);
+            return true;
         }
 
         // Called when the user selects a contextual menu item
@@ -224,6 +232,25 @@ public class TimerFragmentMain extends BaseFragment implements OnBackPressedInFr
                     broadcast(CATEGORY_UI_INTERACTIONS, ACTION_DELETE_SELECTED_TIMES);
                     mode.finish();
                     return true;
+                case R.id.penalty:
+                    ThemeUtils.roundAndShowDialog(mContext, new MaterialDialog.Builder(mContext)
+                            .title(R.string.select_penalty)
+                            .items(R.array.array_penalties)
+                            .itemsCallback((dialog, itemView, which, text) -> {
+                                // The items are in the order of the penalty values.
+                                new BroadcastBuilder(CATEGORY_UI_INTERACTIONS, ACTION_PENALIZE_SELECTED_TIMES)
+                                        .longValue(which)
+                                        .broadcast();
+                                mode.finish();
+                            })
+                            .negativeText(R.string.action_cancel)
+                            .build());
+                    return true;
+                case R.id.archive:
+                    // Receiver will move the times and then broadcast "ACTION_TIMES_MODIFIED".
+                    broadcast(CATEGORY_UI_INTERACTIONS, ACTION_ARCHIVE_SELECTED_TIMES);
+                    mode.finish();
+                    return true;
                 default:
                     return false;
             }
@@ -7,7 +7,6 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.res.Configuration;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -45,8 +44,9 @@ import com.aricneto.twistify.BuildConfig;
 import com.aricneto.twistify.R;
 import com.aricneto.twistytimer.TwistyTimer;
 import com.aricneto.twistytimer.activity.MainActivity;
-import com.aricneto.twistytimer.adapter.TimeCursorAdapter;
+import com.aricneto.twistytimer.adapter.TimeListAdapter;
 import com.aricneto.twistytimer.database.DatabaseHandler;
+import com.aricneto.twistytimer.database.TimeList;
 import com.aricneto.twistytimer.database.TimeTaskLoader;
 import com.aricneto.twistytimer.fragment.dialog.AddTimeDialog;
 import com.aricneto.twistytimer.items.Theme;
@@ -69,7 +69,7 @@ import butterknife.Unbinder;
 import static com.aricneto.twistytimer.utils.TTIntent.*;
 
 public class TimerListFragment extends BaseFragment
-        implements LoaderManager.LoaderCallbacks<Cursor>, OnBackPressedInFragmentListener,
+        implements LoaderManager.LoaderCallbacks<TimeList>, OnBackPressedInFragmentListener,
         StatisticsCache.StatisticsObserver {
     /**
      * Flag to enable debug logging for this class.
@@ -113,7 +113,7 @@ public class TimerListFragment extends BaseFragment
     // Stores the current comment search query
     private String searchComment = "";
 
-    private TimeCursorAdapter timeCursorAdapter;
+    private TimeListAdapter timeListAdapter;
 
     /**
      * The most recently notified solve time statistics. These may be used when sharing averages.
@@ -146,9 +146,18 @@ public class TimerListFragment extends BaseFragment
                             .onPositive(new MaterialDialog.SingleButtonCallback() {
                                 @Override
                                 public void onClick(MaterialDialog dialog, DialogAction which) {
-                                    TwistyTimer.getDBHandler().moveAllSolvesToHistory(
-                                            currentPuzzle, currentPuzzleCategory);
-                                    broadcast(CATEGORY_TIME_DATA_CHANGES, ACTION_TIMES_MOVED_TO_HISTORY);
+                                    final String puzzle = currentPuzzle;
+                                    final String category = currentPuzzleCategory;
+
+                                    TwistyTimer.getDBWriter().moveAllSolvesToHistory(
+                                            puzzle, category, numUpdated ->
+                                                    // The puzzle allows the statistics loaders to
+                                                    // check that they can just clear their
+                                                    // session statistics.
+                                                    new BroadcastBuilder(CATEGORY_TIME_DATA_CHANGES,
+                                                                         ACTION_TIMES_MOVED_TO_HISTORY)
+                                                            .puzzle(puzzle, category)
+                                                            .broadcast());
                                 }
                             })
                             .build());
@@ -162,9 +171,9 @@ public class TimerListFragment extends BaseFragment
                             .onPositive(new MaterialDialog.SingleButtonCallback() {
                                 @Override
                                 public void onClick(MaterialDialog dialog, DialogAction which) {
-                                    TwistyTimer.getDBHandler().deleteAllFromSession(
-                                            currentPuzzle, currentPuzzleCategory);
-                                    broadcast(CATEGORY_TIME_DATA_CHANGES, ACTION_TIMES_MODIFIED);
+                                    TwistyTimer.getDBWriter().deleteAllFromSession(
+                                            currentPuzzle, currentPuzzleCategory, numDeleted ->
+                                                    broadcast(CATEGORY_TIME_DATA_CHANGES, ACTION_TIMES_MODIFIED));
                                 }
                             })
                             .build());
@@ -185,9 +194,9 @@ public class TimerListFragment extends BaseFragment
                                                                    .getNumArchivedSolves(currentPuzzle, currentPuzzleCategory)))
                                         .inputType(InputType.TYPE_CLASS_NUMBER)
                                         .input(null, null, false, (dialog, input) -> {
-                                            TwistyTimer.getDBHandler().unarchiveSolves(
-                                                    currentPuzzle, currentPuzzleCategory, Integer.parseInt(input.toString()));
-                                            broadcast(CATEGORY_TIME_DATA_CHANGES, ACTION_TIME_ADDED);
+                                            TwistyTimer.getDBWriter().unarchiveSolves(
+                                                    currentPuzzle, currentPuzzleCategory, Integer.parseInt(input.toString()),
+                                                    numUpdated -> broadcast(CATEGORY_TIME_DATA_CHANGES, ACTION_TIME_ADDED));
                                         })
                                         .positiveText(R.string.list_options_item_from_history)
                                         .negativeText(R.string.action_cancel)
@@ -266,6 +275,13 @@ public class TimerListFragment extends BaseFragment
                     }
                     break;
 
+                case ACTION_TIME_SAVED:
+                    // The new time was notified by "ACTION_TIME_ADDED" before it was saved, so
+                    // it may have been missing when the list was reloaded.
+                    if (! history)
+                        reloadList();
+                    break;
+
                 case ACTION_TIMES_MOVED_TO_HISTORY:
                 case ACTION_TIMES_MODIFIED:
                     reloadList();
@@ -292,7 +308,14 @@ public class TimerListFragment extends BaseFragment
             switch (intent.getAction()) {
                 case ACTION_DELETE_SELECTED_TIMES:
                     // Operation will delete times and then broadcast "ACTION_TIMES_MODIFIED".
-                    timeCursorAdapter.deleteAllSelected();
+                    timeListAdapter.deleteAllSelected();
+                    break;
+                case ACTION_PENALIZE_SELECTED_TIMES:
+                    timeListAdapter.penalizeAllSelected((int) TTIntent.getLongValue(intent));
+                    break;
+                case ACTION_ARCHIVE_SELECTED_TIMES:
+                    // Times shown in the history are moved back to the current session.
+                    timeListAdapter.archiveAllSelected(!history);
                     break;
                 case ACTION_SCRAMBLE_MODIFIED:
                     // A new scramble was generated
@@ -457,27 +480,26 @@ public class TimerListFragment extends BaseFragment
     }
 
     @Override
-    public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
+    public Loader<TimeList> onCreateLoader(int i, Bundle bundle) {
         if (DEBUG_ME) Log.d(TAG, "onCreateLoader()");
         return new TimeTaskLoader(currentPuzzle, currentPuzzleCategory, history, searchComment, orderByKey, orderByDir);
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> cursorLoader, Cursor cursor) {
+    public void onLoadFinished(Loader<TimeList> timeListLoader, TimeList timeList) {
         if (DEBUG_ME) Log.d(TAG, "onLoadFinished()");
-        timeCursorAdapter.swapCursor(cursor);
-        recyclerView.getAdapter().notifyDataSetChanged();
-        setEmptyState(cursor);
+        timeListAdapter.swapTimeList(timeList);
+        setEmptyState(timeList);
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> cursorLoader) {
+    public void onLoaderReset(Loader<TimeList> timeListLoader) {
         if (DEBUG_ME) Log.d(TAG, "onLoaderReset()");
-        timeCursorAdapter.swapCursor(null);
+        timeListAdapter.swapTimeList(null);
     }
 
-    public void setEmptyState(Cursor cursor) {
-        if (cursor.getCount() == 0) {
+    public void setEmptyState(TimeList timeList) {
+        if (timeList.getCount() == 0) {
             nothingHere.setVisibility(View.VISIBLE);
             nothingText.setVisibility(View.VISIBLE);
             if (history) {
@@ -494,7 +516,7 @@ public class TimerListFragment extends BaseFragment
     private void setupRecyclerView() {
         Activity parentActivity = getActivity();
 
-        timeCursorAdapter = new TimeCursorAdapter(getActivity(), null, this);
+        timeListAdapter = new TimeListAdapter(getActivity(), this);
 
         // Set different managers to support different orientations
         StaggeredGridLayoutManager gridLayoutManagerHorizontal =
@@ -508,7 +530,7 @@ public class TimerListFragment extends BaseFragment
         else
             recyclerView.setLayoutManager(gridLayoutManagerHorizontal);
 
-        recyclerView.setAdapter(timeCursorAdapter);
+        recyclerView.setAdapter(timeListAdapter);
     }
 
     private void updateEasterEggs(RelativeLayout root) {
@@ -100,12 +100,12 @@ public class AddTimeDialog extends DialogFragment {
                                 mCurrentComment,
                                 false);
 
-                        TwistyTimer.getDBHandler().addSolve(solve);
                         // The receiver might be able to use the new solve and avoid
-                        // accessing the database.
-                        new TTIntent.BroadcastBuilder(CATEGORY_UI_INTERACTIONS, ACTION_TIME_ADDED_MANUALLY)
-                                .solve(solve)
-                                .broadcast();
+                        // accessing the database, so broadcast it once its ID is known.
+                        TwistyTimer.getDBWriter().addSolve(solve, solveID ->
+                                new TTIntent.BroadcastBuilder(CATEGORY_UI_INTERACTIONS, ACTION_TIME_ADDED_MANUALLY)
+                                        .solve(solve)
+                                        .broadcast());
 
                         // Generate new scramble
                         broadcast(CATEGORY_UI_INTERACTIONS, ACTION_GENERATE_SCRAMBLE);
@@ -21,6 +21,7 @@ import com.afollestad.materialdialogs.MaterialDialog;
 import com.aricneto.twistify.R;
 import com.aricneto.twistytimer.TwistyTimer;
 import com.aricneto.twistytimer.adapter.BottomSheetSpinnerAdapter;
+import com.aricneto.twistytimer.database.CategoryRegistry;
 import com.aricneto.twistytimer.database.DatabaseHandler;
 import com.aricneto.twistytimer.fragment.TimerFragment;
 import com.aricneto.twistytimer.items.Solve;
@@ -226,9 +227,16 @@ public class CategorySelectDialog extends DialogFragment {
     }
 
     private void updateList(DatabaseHandler dbHandler) {
-        subtypeList = dbHandler.getAllSubtypesFromType(currentPuzzle);
+        // The categories and their solve counts are cached, so this does not read the database.
+        final CategoryRegistry categories = dbHandler.getCategories();
+        subtypeList = categories.getSubtypes(currentPuzzle);
+        String[] titles = new String[subtypeList.size()];
+        for (int i = 0; i < titles.length; i++) {
+            titles[i] = getString(R.string.category_with_solve_count, subtypeList.get(i),
+                    categories.getNumSolves(currentPuzzle, subtypeList.get(i)));
+        }
         int[] icons = {};
-        mAdapter = new BottomSheetSpinnerAdapter(getContext(), subtypeList.toArray(new String[0]), icons);
+        mAdapter = new BottomSheetSpinnerAdapter(getContext(), titles, icons);
         listView.setAdapter(mAdapter);
     }
 
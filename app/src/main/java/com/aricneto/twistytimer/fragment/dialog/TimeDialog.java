@@ -32,7 +32,7 @@ import android.widget.Toast;
 import com.afollestad.materialdialogs.MaterialDialog;
 import com.aricneto.twistify.R;
 import com.aricneto.twistytimer.TwistyTimer;
-import com.aricneto.twistytimer.database.DatabaseHandler;
+import com.aricneto.twistytimer.database.DatabaseWriter;
 import com.aricneto.twistytimer.items.Solve;
 import com.aricneto.twistytimer.listener.DialogListener;
 import com.aricneto.twistytimer.utils.AnimUtils;
@@ -72,7 +72,6 @@ public class TimeDialog extends DialogFragment {
     private View.OnClickListener clickListener = new View.OnClickListener() {
         @Override
         public void onClick(View view) {
-            final DatabaseHandler dbHandler = TwistyTimer.getDBHandler();
 
             switch (view.getId()) {
                 case R.id.overflowButton:
@@ -97,22 +96,17 @@ public class TimeDialog extends DialogFragment {
                                     getContext().startActivity(shareIntent);
                                     break;
                                 case R.id.remove:
-                                    dbHandler.deleteSolveByID(mId);
-                                    updateList();
+                                    saveAndUpdateList(true);
                                     break;
                                 case R.id.history_to:
                                     solve.setHistory(true);
                                     Toast.makeText(getContext(), getString(R.string.sent_to_history), Toast.LENGTH_SHORT).show();
-                                    dbHandler.updateSolve(solve);
-                                    updateList();
-                                    dismiss();
+                                    saveAndUpdateList(false);
                                     break;
                                 case R.id.history_from:
                                     solve.setHistory(false);
                                     Toast.makeText(getContext(), getString(R.string.sent_to_session), Toast.LENGTH_SHORT).show();
-                                    dbHandler.updateSolve(solve);
-                                    updateList();
-                                    dismiss();
+                                    saveAndUpdateList(false);
                                     break;
                             }
                             return true;
@@ -136,9 +130,8 @@ public class TimeDialog extends DialogFragment {
                                         solve = PuzzleUtils.applyPenalty(solve, PuzzleUtils.PENALTY_DNF);
                                         break;
                                 }
-                                dbHandler.updateSolve(solve);
                                 // dismiss dialog
-                                updateList();
+                                saveAndUpdateList(false);
                                 return true;
                             })
                             .negativeText(R.string.action_cancel)
@@ -149,9 +142,8 @@ public class TimeDialog extends DialogFragment {
                             .title(R.string.edit_comment)
                             .input("", solve.getComment(), (dialog1, input) -> {
                                 solve.setComment(input.toString());
-                                dbHandler.updateSolve(solve);
                                 Toast.makeText(getContext(), getString(R.string.added_comment), Toast.LENGTH_SHORT).show();
-                                updateList();
+                                saveAndUpdateList(false);
                             })
                             .inputType(InputType.TYPE_TEXT_FLAG_MULTI_LINE)
                             .positiveText(R.string.action_done)
@@ -246,11 +238,35 @@ public class TimeDialog extends DialogFragment {
         dialogListener = listener;
     }
 
-    private void updateList() {
-        if (dialogListener != null) {
-            dialogListener.onUpdateDialog();
+    /**
+     * Saves the change to the solve, or deletes the solve, and dismisses this dialog. Once the
+     * database writer has made the change, the listener is notified and the change is broadcast.
+     *
+     * @param isDeleted {@code true} if the solve is to be deleted.
+     */
+    private void saveAndUpdateList(final boolean isDeleted) {
+        final Solve changedSolve = solve;
+        final DialogListener listener = dialogListener;
+        final DatabaseWriter.Callback<Integer> callback = numChanged -> {
+            if (listener != null) {
+                listener.onUpdateDialog();
+            }
+
+            final TTIntent.BroadcastBuilder builder = new TTIntent.BroadcastBuilder(
+                    TTIntent.CATEGORY_TIME_DATA_CHANGES, TTIntent.ACTION_TIMES_MODIFIED);
+
+            if (isDeleted) {
+                builder.solveDeleted(changedSolve);
+            } else {
+                builder.solve(changedSolve);
+            }
+            builder.broadcast();
+        };
+
+        if (isDeleted) {
+            TwistyTimer.getDBWriter().deleteSolveByID(mId, callback);
         } else {
-            TTIntent.broadcast(TTIntent.CATEGORY_TIME_DATA_CHANGES, TTIntent.ACTION_TIMES_MODIFIED);
+            TwistyTimer.getDBWriter().updateSolve(changedSolve, callback);
         }
         dismiss();
     }
@@ -0,0 +1,112 @@
+package com.aricneto.twistytimer.items;
+
+import com.aricneto.twistytimer.stats.AverageCalculator;
+
+/**
+ * A summary of the solves of one puzzle type and subtype, from either the current session or the
+ * history. The summary is read from a table that the database keeps up to date as solves are
+ * changed, so it is available at once, before the full statistics have been loaded. Times are
+ * in milliseconds and dates in milliseconds since the epoch.
+ */
+public final class CategorySummary {
+    /**
+     * A summary of no solves.
+     */
+    public static final CategorySummary EMPTY
+            = new CategorySummary(0, 0, 0L, AverageCalculator.UNKNOWN, AverageCalculator.UNKNOWN,
+                                  0L, 0L);
+
+    private final int  numSolves;
+    private final int  numDNFs;
+    private final long totalTime;
+    private final long bestTime;
+    private final long worstTime;
+    private final long firstDate;
+    private final long lastDate;
+
+    public CategorySummary(int numSolves, int numDNFs, long totalTime, long bestTime,
+                           long worstTime, long firstDate, long lastDate) {
+        this.numSolves = numSolves;
+        this.numDNFs = numDNFs;
+        this.totalTime = totalTime;
+        this.bestTime = bestTime;
+        this.worstTime = worstTime;
+        this.firstDate = firstDate;
+        this.lastDate = lastDate;
+    }
+
+    /**
+     * Gets the number of solves, including DNFs.
+     *
+     * @return The number of solves.
+     */
+    public int getNumSolves() {
+        return numSolves;
+    }
+
+    /**
+     * Gets the number of DNF solves.
+     *
+     * @return The number of DNFs.
+     */
+    public int getNumDNFs() {
+        return numDNFs;
+    }
+
+    /**
+     * Gets the total time of all solves that are not DNFs.
+     *
+     * @return The total time, or zero if there are no such solves.
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * Gets the mean time of all solves that are not DNFs, truncated to whole milliseconds, as
+     * for {@link AverageCalculator#getMeanTime()}.
+     *
+     * @return The mean time, or {@link AverageCalculator#UNKNOWN} if there are no such solves.
+     */
+    public long getMeanTime() {
+        final int numTimed = numSolves - numDNFs;
+
+        return numTimed > 0 ? totalTime / numTimed : AverageCalculator.UNKNOWN;
+    }
+
+    /**
+     * Gets the best time of all solves that are not DNFs.
+     *
+     * @return The best time, or {@link AverageCalculator#UNKNOWN} if there are no such solves.
+     */
+    public long getBestTime() {
+        return bestTime;
+    }
+
+    /**
+     * Gets the worst time of all solves that are not DNFs.
+     *
+     * @return The worst time, or {@link AverageCalculator#UNKNOWN} if there are no such solves.
+     */
+    public long getWorstTime() {
+        return worstTime;
+    }
+
+    /**
+     * Gets the date of the first solve.
+     *
+     * @return The date, or zero if there are no solves.
+     */
+    public long getFirstDate() {
+        return firstDate;
+    }
+
+    /**
+     * Gets the date of the last solve.
+     *
+     * @return The date, or zero if there are no solves.
+     */
+    public long getLastDate() {
+        return lastDate;
+    }
+}
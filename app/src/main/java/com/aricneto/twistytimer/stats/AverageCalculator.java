@@ -2,14 +2,11 @@ package com.aricneto.twistytimer.stats;
 
 import android.util.Log;
 
-import com.aricneto.twistytimer.items.AverageComponent;
 import com.aricneto.twistytimer.utils.PuzzleUtils;
-import com.aricneto.twistytimer.utils.StatUtils;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 /**
  * Calculates the average time of a number of puzzle solves. Running averages are easily calculated
@@ -23,21 +20,11 @@ import java.util.List;
  */
 public final class AverageCalculator {
     // NOTE: This implementation is reasonably efficient, as it can calculate an average without
-    // iterating over the array of recorded times. Iteration is only required when the known best
-    // or worst values are ejected to make room for new times. Storing times in sorted order would
-    // reduce this explicit iteration, but a second data structure would be required to record the
-    // insertion order and the insertion operations would be more costly, as the sort order would
-    // need to be maintained.
-    //
-    // Discarding only the single best and single worst values is standard for average-of-5
-    // calculations, but for higher values of "n", it might be better to exclude, say, the best 10%
-    // and worst 10%. However, that would make the implementation significantly more complicated if
-    // arrays of best and worst values (or the limits of the ranges of each set of values and the
-    // sums of those sets) were to be maintained. One approach might be to support calculation of
-    // the median value instead, which would be relatively simple to do: sort the times, eliminate
-    // the allowed DNFs and then find the time value in the middle position of the remaining times
-    // in their sorted order (or the mean of the two middle values, if there are an even number of
-    // remaining times).
+    // iterating over the recorded times. A "RecentTimes" buffer records the insertion order, so
+    // that the oldest time can be ejected, and a "SlidingTrimmedMean" keeps the same times in sorted
+    // order. The sorted order gives the current best and worst times and the sums of the trimmed
+    // and untrimmed times for any trim size, each in O(log n) time for every added time. Where a
+    // "Statistics" object feeds the same times to several calculators, they share one buffer.
     //
     // There are several alternative "streaming" algorithms that would not require the times to
     // be stored. However, all of those would introduce some amount of error due to rounding or
@@ -80,25 +67,31 @@ public final class AverageCalculator {
     private final boolean mDisqualifyDNFs;
 
     /**
-     * The array holding the most recently added solve times. A solve time can also be recorded as
-     * a {@link #DNF}. This is managed as a circular queue. Once full, the oldest added time is
-     * overwritten when the next new time is added.
+     * The buffer holding the most recently added solve times. A solve time can also be recorded
+     * as a {@link #DNF}. The buffer holds at least the most recent {@link #mN} + 1 times, so that
+     * the time ejected from the average can be found. The buffer may be shared with other
+     * calculators that are fed the same times.
+     */
+    private final RecentTimes mTimes;
+
+    /**
+     * Indicates if {@link #mTimes} is shared with other calculators. If shared, the owner of the
+     * buffer adds each new time to it and clears it; this calculator only reads from it.
      */
-    private final long[] mTimes;
+    private final boolean mIsSharedTimes;
 
-    // TODO: comment these variables
-    public AverageComponent mUpperTrim;
-    public AverageComponent mMiddleTrim;
-    public AverageComponent mLowerTrim;
-    private int mLowerTrimBound;
-    private int mUpperTrimBound;
-    private int mTrimSize;
+    /**
+     * The times currently recorded in {@link #mTimes}, held in sorted order to support the
+     * calculation of the truncated mean and of the current best and worst times.
+     */
+    private final SlidingTrimmedMean mWindow;
 
     /**
-     * The index in {@link #mTimes} at which to add the next time. If this is equal to the length
-     * of the array, it will be wrapped back to zero.
+     * The number of the best times and the number of the worst times that are discarded before
+     * calculating the truncated mean. The same number of DNFs is tolerated before the average is
+     * disqualified.
      */
-    private int mNext;
+    private final int mTrimSize;
 
     /**
      * The total number of solve times that have been added to the array. This may exceed
@@ -124,21 +117,13 @@ public final class AverageCalculator {
 
 
     /**
-     * The Welford algorithm for variance is one of the most well-known and used online methods of
-     * calculating the variance of a given sample data. The algorithm itself has several
-     * variables, which are listed here. I won't pretend to fully understand it myself, but there
-     * are a lot of references online for it.
+     * The sum of the squares of all non-DNF results ever recorded in {@code #mTimes}. Together
+     * with {@link #mAllTimeSum}, this gives the mean and variance of those results. Both sums are
+     * exact, so the mean and variance are the same whether the times were all added in order or
+     * later changed or removed; an incremental update of a floating-point mean would drift. The
+     * sum of the squares will not overflow for fewer than about 700,000 results of an hour each.
      */
-    private double mMean = 0;
-    private double mVarianceDelta = 0;
-    private double mVarianceDelta2 = 0;
-    private double mVarianceM2 = 0;
-
-    /**
-     * The current variance of all solves ever recorded. A value of {@link #UNKNOWN} indicates
-     * the sample size is not enough for it to be calculated yet.
-     */
-    private long mVariance;
+    private long mAllTimeSumOfSquares;
 
     /**
      * The sum of all non-DNF results currently recorded in {@code #mTimes}. The number of such
@@ -197,33 +182,73 @@ public final class AverageCalculator {
      */
     private long mAllTimeBestAverage;
 
+    /**
+     * The best averages of the blocks of full windows of "n" consecutive times added to date. This
+     * allows the best average to be found again after a time is changed or removed by
+     * {@link #editTime}. It is {@code null} until the first edit, as most calculators are never
+     * edited, and is then kept up to date as further times are added.
+     */
+    private WindowAverages mWindowAverages;
+
     /**
      * Creates a new calculator for the "average of <i>n</i>" solve times.
      *
      * @param n
      *     The number of solve times that will be averaged (e.g., 3, 5, 12, ...). Must be greater
      *     than zero.
+     * @param trimPercent
+     *     The percentage of the best times and of the worst times to be discarded when calculating
+     *     the truncated mean. The number of times discarded from each end is rounded up, but is
+     *     limited so that at least one time remains. For example, 5% of an average-of-5 discards
+     *     one time from each end and 5% of an average-of-1000 discards 50.
      *
      * @throws IllegalArgumentException
      *     If {@code n} is not greater than zero.
      */
     AverageCalculator(int n, int trimPercent) {
+        this(n, trimPercent, null);
+    }
+
+    /**
+     * Creates a new calculator for the "average of <i>n</i>" solve times that reads the recently
+     * added times from a buffer that is shared with other calculators. Each time must be added to
+     * the shared buffer <i>before</i> it is passed to {@link #addTime(long)} and only times that
+     * are passed to {@code addTime} may be added to the buffer. The shared buffer is not cleared
+     * by {@link #reset()}.
+     *
+     * @param n
+     *     The number of solve times that will be averaged (e.g., 3, 5, 12, ...). Must be greater
+     *     than zero.
+     * @param trimPercent
+     *     The percentage of the best times and of the worst times to be discarded when calculating
+     *     the truncated mean. See {@link #AverageCalculator(int, int)}.
+     * @param sharedTimes
+     *     The shared buffer of recent times. Its capacity will be increased if it is too small to
+     *     hold "n" + 1 times. If {@code null}, a buffer will be created for this calculator alone.
+     *
+     * @throws IllegalArgumentException
+     *     If {@code n} is not greater than zero.
+     */
+    AverageCalculator(int n, int trimPercent, RecentTimes sharedTimes) {
         if (n <= 0) {
             throw new IllegalArgumentException("Number of solves must be > 0: " + n);
         }
 
         mN = n;
-        mTimes = new long[n];
         mDisqualifyDNFs = true;
 
-        mTrimSize = (int) Math.ceil (mN * (trimPercent / 100f));
-        mNumAcceptableDNFs = mTrimSize;
-        mLowerTrimBound = mTrimSize;
-        mUpperTrimBound = mN - mTrimSize;
+        if (sharedTimes != null) {
+            sharedTimes.ensureCapacity(n + 1);
+            mTimes = sharedTimes;
+            mIsSharedTimes = true;
+        } else {
+            mTimes = new RecentTimes(n + 1);
+            mIsSharedTimes = false;
+        }
 
-        mUpperTrim = new AverageComponent();
-        mMiddleTrim = new AverageComponent();
-        mLowerTrim = new AverageComponent();
+        mTrimSize = Math.min((int) Math.ceil(mN * (trimPercent / 100f)), (mN - 1) / 2);
+        mNumAcceptableDNFs = mTrimSize;
+        mWindow = new SlidingTrimmedMean(mN, mTrimSize);
 
         // As "reset()" needs to be supported to ensure a sane state can be guaranteed before
         // populating statistics from the database, it makes sense to use it to initialise the
@@ -235,21 +260,16 @@ public final class AverageCalculator {
      * Resets all statistics and averages that have been collected previously.
      */
     public void reset() {
-        Arrays.fill(mTimes, 0L);
-        mNext = 0;
+        if (!mIsSharedTimes) {
+            mTimes.clear();
+        }
         mNumSolves = 0;
         mNumCurrentDNFs = 0;
         mNumAllTimeDNFs = 0;
 
-        // Variance variables
-        mMean = 0;
-        mVarianceDelta = 0;
-        mVarianceDelta2 = 0;
-        mVarianceM2 = 0;
+        mAllTimeSumOfSquares = 0;
 
-        mMiddleTrim = new AverageComponent();
-        mLowerTrim = new AverageComponent();
-        mUpperTrim = new AverageComponent();
+        mWindow.clear();
 
         mCurrentSum = UNKNOWN;
         mAllTimeSum = UNKNOWN;
@@ -259,7 +279,7 @@ public final class AverageCalculator {
         mAllTimeBestTime = UNKNOWN;
         mAllTimeWorstTime = UNKNOWN;
         mAllTimeBestAverage = UNKNOWN;
-        mVariance = UNKNOWN;
+        mWindowAverages = null;
     }
 
     /**
@@ -276,6 +296,16 @@ public final class AverageCalculator {
         return mN;
     }
 
+    /**
+     * Gets the number of the best times and the number of the worst times that are discarded
+     * before calculating the truncated mean.
+     *
+     * @return The trim size.
+     */
+    public int getTrimSize() {
+        return mTrimSize;
+    }
+
     /**
      * Adds a solve time to be included in the calculation of the average. Solve times should be
      * added in chronological order (i.e., by solve time-stamp, not solve time).
@@ -299,71 +329,83 @@ public final class AverageCalculator {
 
             // throw new IllegalArgumentException("Time must be > 0 or be 'DNF': " + time);
         } else {
+            if (!mIsSharedTimes) {
+                mTimes.add(time);
+            }
 
-            mNumSolves++;
+            // The new time is now the most recent time (age zero), so once more than "mN" times
+            // have been added, the oldest time that has just left the average is at age "mN".
+            updateForAddedTime(time, mNumSolves >= mN ? mTimes.get(mN) : UNKNOWN);
+        }
+    }
 
+    /**
+     * <p>
+     * Adds a run of solve times to be included in the calculation of the average. The result is
+     * exactly the same as passing each time to {@link #addTime(long)} in turn, but the times that
+     * leave the average are read from the array instead of from the buffer of recent times. This
+     * allows calculators that share a buffer to add the same times concurrently, as long as the
+     * owner of the shared buffer adds the times to the buffer only after every calculator has
+     * finished.
+     * </p>
+     * <p>
+     * Unlike {@code addTime}, the times are not validated. Each time must be greater than zero or
+     * be {@link #DNF}.
+     * </p>
+     *
+     * @param times The array holding the solve times in chronological order.
+     * @param from  The index of the first time to add.
+     * @param to    The index after the last time to add.
+     */
+    void addTimes(long[] times, int from, int to) {
+        for (int i = from; i < to; i++) {
             final long ejectedTime;
 
-            // If the array has just been filled, store a sorted version of it
-            // If the array is full, "mNext" points to the oldest result that needs to be ejected first.
-            //      We also need to remove the oldest solve from the sorted array and insert the new solve
-            // If the array is not full, then "mNext" points to an empty entry, so no special handling
-            // is needed.
-            if (mNumSolves >= mN) {
-                if (mNext == mN) {
-                    // Need to wrap around to the start (index zero).
-                    mNext = 0;
-                }
-                ejectedTime = mTimes[mNext]; // May be DNF.
-
-                // Create the sorted list as soon as numSolves reaches N
-                // We only need to sort it once. Subsequent added solves will use
-                // an algorithm to insert the new solves in the correct (sorted) position
-                if (mNumSolves == mN) {
-                    mTimes[mNext] = time;
-
-                    // Sort mTimes
-                    List<Long> sortedTimes = new ArrayList<>(StatUtils.asList(mTimes));
-                    Collections.sort(sortedTimes);
-
-                    // Distribute the sorted times into the trims
-                    int count = 0;
-                    for (long solve : sortedTimes) {
-                        if (count < mLowerTrimBound)
-                            mLowerTrim.put(solve);
-                        else if (count >= mUpperTrimBound)
-                            mUpperTrim.put(solve);
-                        else
-                            mMiddleTrim.put(solve);
-                        count++;
-                    }
-                }
-
+            if (mNumSolves < mN) {
+                ejectedTime = UNKNOWN;
+            } else if (i - mN >= from) {
+                ejectedTime = times[i - mN];
             } else {
-                // "mNext" must be less than "mN" if "mNumSolves" is less than "mN".
-                ejectedTime = UNKNOWN; // Nothing ejected.
+                // Not in the array, so it is in the buffer. The time before "from" is at age zero.
+                ejectedTime = mTimes.get(from - 1 - (i - mN));
             }
 
-            mTimes[mNext] = time;
-            mNext++;
-
-            //Log.d("AverageCalculator", "N: " + mN + " | Set: " + mSortedTimes);
-
-            // Order is important here, as these methods change fields and some methods depend on the
-            // fields being updated by other methods before they are called. All depend on the new
-            // time being stored already (see above) and any ejected time being known (also above).
-            updateDNFCounts(time, ejectedTime);
-            updateCurrentBestAndWorstTimes(time, ejectedTime);
-            updateSums(time, ejectedTime);
-            updateCurrentTrims(time, ejectedTime);
-            updateVariance(time);
-            updateCurrentAverage();
+            updateForAddedTime(times[i], ejectedTime);
+        }
 
-            updateAllTimeBestAndWorstTimes();
-            updateAllTimeBestAverage();
+        if (!mIsSharedTimes) {
+            for (int i = Math.max(from, to - mTimes.getCapacity()); i < to; i++) {
+                mTimes.add(times[i]);
+            }
         }
     }
 
+    /**
+     * Updates the statistics and averages for a newly added time.
+     *
+     * @param time
+     *     The newly added time. May be {@link #DNF}.
+     * @param ejectedTime
+     *     The old time that has left the average to make room for the new time. May be
+     *     {@code DNF}. Use {@link #UNKNOWN} if fewer than "N" times were added previously.
+     */
+    private void updateForAddedTime(long time, long ejectedTime) {
+        mNumSolves++;
+
+        // Order is important here, as these methods change fields and some methods depend on the
+        // fields being updated by other methods before they are called. All depend on the new
+        // time being counted already (see above) and any ejected time being known.
+        updateDNFCounts(time, ejectedTime);
+        updateCurrentTrims(time, ejectedTime);
+        updateCurrentBestAndWorstTimes();
+        updateSums(time, ejectedTime);
+        updateCurrentAverage();
+
+        updateAllTimeBestAndWorstTimes();
+        updateAllTimeBestAverage(mCurrentAverage);
+        recordWindowAverage();
+    }
+
     /**
      * Adds solve times to be included in the calculation of the average. Solve times should be
      * added in chronological order (i.e., by solve time-stamp, not solve time). This method can be
@@ -410,150 +452,30 @@ public final class AverageCalculator {
     }
 
     /**
-     * Updates the current best and worst times after a new time is added. The count of DNFs must
-     * be updated by {@link #updateDNFCounts(long, long)} before calling this method.
+     * Updates the sorted window of the times currently stored. The window is used to find the
+     * current best and worst times and to calculate the truncated mean.
      *
      * @param addedTime
-     *     The newly added time. May be {@link #DNF}. Must already be stored.
+     *     The newly added time. May be {@link #DNF}.
      * @param ejectedTime
      *     An old time that was ejected to make room for the newly added time. May be {@code DNF}.
      *     Use {@link #UNKNOWN} if no old time was ejected.
      */
-    private void updateCurrentBestAndWorstTimes(long addedTime, long ejectedTime) {
-        // The logic here will set one or both of "mCurrentBestTime" and "mCurrentWorstTime" to
-        // "UNKNOWN" if knowledge of the best or worst time has been lost. If either value becomes
-        // "UNKNOWN", a new iteration over "mTimes" will recalculate both values.
-
-        if (addedTime == DNF) {
-            // Newly added time does not change the current best or worst time, but has either of
-            // the best or worst times (not a DNF) just been ejected and is recalculation required?
-            if (ejectedTime == mCurrentBestTime || ejectedTime == mCurrentWorstTime) {
-                // It does not matter which has been ejected, just recalculate both.
-                mCurrentBestTime = UNKNOWN;
-                mCurrentWorstTime = UNKNOWN;
-            }
-        } else {
-            // Newly added time is not a DNF and may be the new best or worst time (or both).
-            // However, if it is not the new (or equal) best or worst time, then check if we are
-            // ejecting the old best or worst time. If either is ejected, there may be another best
-            // or worst time in "mTimes" (with respect to "addedTime") and it must be found. There
-            // if no need to check if "ejectedTime" is DNF or UNKNOWN.
-            if (mCurrentBestTime == UNKNOWN || addedTime <= mCurrentBestTime) {
-                mCurrentBestTime = addedTime;
-            } else if (ejectedTime == mCurrentBestTime) {
-                mCurrentBestTime = UNKNOWN;
-            }
-
-            if (mCurrentWorstTime == UNKNOWN || addedTime >= mCurrentWorstTime) {
-                mCurrentWorstTime = addedTime;
-            } else if (ejectedTime == mCurrentWorstTime) {
-                mCurrentWorstTime = UNKNOWN;
-            }
-        }
-
-        // Recalculate the best and worst times. We can skip this if every stored time is a DNF.
-        // In that case, both "mCurrentBestTime" and "mCurrentWorstTime" will remain UNKNOWN.
-        final int numCurrentSolves = Math.min(mNumSolves, mN);
-
-        if (mNumCurrentDNFs != numCurrentSolves
-                && (mCurrentBestTime == UNKNOWN || mCurrentWorstTime == UNKNOWN)) {
-            // At least one stored time is not a DNF and is > 0, so reset the fields and rescan.
-            mCurrentBestTime = Long.MAX_VALUE;
-            mCurrentWorstTime = 0L;
-
-            // There is no need to follow the chronological insertion order here. The array may
-            // not be full yet.
-            for (int i = 0; i < numCurrentSolves; i++) {
-                final long time = mTimes[i];
-
-                if (time != DNF) {
-                    mCurrentBestTime = Math.min(mCurrentBestTime, time);
-                    mCurrentWorstTime = Math.max(mCurrentWorstTime, time);
-                }
-            }
+    private void updateCurrentTrims(long addedTime, long ejectedTime) {
+        if (ejectedTime != UNKNOWN && !mWindow.remove(ejectedTime)) {
+            Log.e("AverageCalculator", "Ejected time not found in window: " + ejectedTime);
         }
+        mWindow.add(addedTime);
     }
 
-    private void updateCurrentTrims(long addedTime, long ejectedTime) {
-        if (mNumSolves > mN && mLowerTrimBound > 0) {
-            // Ejected time belongs to lower trim
-            if (ejectedTime <= mLowerTrim.getGreatest()) {
-                // Remove the ejected time
-                mLowerTrim.remove(ejectedTime);
-
-                if (addedTime <= mMiddleTrim.getLeast()) {
-                    // Added time belongs to lower trim
-                    mLowerTrim.put(addedTime);
-                } else if (addedTime >= mUpperTrim.getLeast()) {
-                    // Added time belongs to upper trim
-                    // Move least elements to the left
-                    mLowerTrim.put(mMiddleTrim.getLeast());
-                    mMiddleTrim.remove(mMiddleTrim.getLeast());
-                    mMiddleTrim.put(mUpperTrim.getLeast());
-                    mUpperTrim.remove(mUpperTrim.getLeast());
-                    mUpperTrim.put(addedTime);
-                } else {
-                    // Added time belongs to middle trim
-                    // Move least elements to the left
-                    mLowerTrim.put(mMiddleTrim.getLeast());
-                    mMiddleTrim.remove(mMiddleTrim.getLeast());
-                    mMiddleTrim.put(addedTime);
-                }
-            }
-
-            // Ejected time belongs to upper trim
-            else if (ejectedTime >= mUpperTrim.getLeast()) {
-                // Remove the ejected time
-                mUpperTrim.remove(ejectedTime);
-
-                if (addedTime >= mMiddleTrim.getGreatest()) {
-                    // Added time belongs to upper trim
-                    mUpperTrim.put(addedTime);
-                } else if (addedTime <= mLowerTrim.getGreatest()) {
-                    // Added time belongs to lower trim
-                    // Move greatest elements to right
-                    mUpperTrim.put(mMiddleTrim.getGreatest());
-                    mMiddleTrim.remove(mMiddleTrim.getGreatest());
-                    mMiddleTrim.put(mLowerTrim.getGreatest());
-                    mLowerTrim.remove(mLowerTrim.getGreatest());
-                    mLowerTrim.put(addedTime);
-                } else {
-                    // Added time belongs to middle trim
-                    // Move greatest elements to right
-                    mUpperTrim.put(mMiddleTrim.getGreatest());
-                    mMiddleTrim.remove(mMiddleTrim.getGreatest());
-                    mMiddleTrim.put(addedTime);
-                }
-            }
-
-            // Ejected time belongs to middle trim
-            else {
-                // Remove the ejected time
-                mMiddleTrim.remove(ejectedTime);
-
-                if (addedTime >= mUpperTrim.getLeast()) {
-                    // Added time belongs to upper trim
-                    // Move least elements to left
-                    mMiddleTrim.put(mUpperTrim.getLeast());
-                    mUpperTrim.remove(mUpperTrim.getLeast());
-                    mUpperTrim.put(addedTime);
-                } else if (addedTime <= mLowerTrim.getGreatest()) {
-                    // Added time belongs to lower trim
-                    // Move greatest elements to right
-                    mMiddleTrim.put(mLowerTrim.getGreatest());
-                    mLowerTrim.remove(mLowerTrim.getGreatest());
-                    mLowerTrim.put(addedTime);
-                } else {
-                    // Added time belongs to middle trim
-                    mMiddleTrim.put(addedTime);
-                }
-            }
-        } else if (mNumSolves > mN) {
-            // If the bound is 0, mLowerTrim and mUpperTrim will be null
-            // All operations will be done on mMiddleTrim
-            mMiddleTrim.remove(ejectedTime);
-            mMiddleTrim.put(addedTime);
-        }
+    /**
+     * Updates the current best and worst times after a new time is added. The sorted window must
+     * be updated by {@link #updateCurrentTrims(long, long)} before calling this method.
+     */
+    private void updateCurrentBestAndWorstTimes() {
+        // Both are "UNKNOWN" if every stored time is a DNF.
+        mCurrentBestTime = mWindow.getBestTime();
+        mCurrentWorstTime = mWindow.getWorstTime();
     }
 
     /**
@@ -571,6 +493,7 @@ public final class AverageCalculator {
         if (addedTime != DNF) {
             mCurrentSum = addedTime + (mCurrentSum == UNKNOWN ? 0L : mCurrentSum);
             mAllTimeSum = addedTime + (mAllTimeSum == UNKNOWN ? 0L : mAllTimeSum);
+            mAllTimeSumOfSquares += addedTime * addedTime;
         }
         if (ejectedTime != DNF && ejectedTime != UNKNOWN) {
             mCurrentSum -= ejectedTime;
@@ -583,28 +506,10 @@ public final class AverageCalculator {
         }
     }
 
-    /**
-     * The Welford algorithm for variance is one of the most well-known and used online methods of
-     * calculating the variance of a given sample data. I won't pretend to fully understand it
-     * myself, but there are a lot of references online for it.
-     */
-    private void updateVariance(long addedTime) {
-        long totalValidSolves = (mNumSolves - mNumAllTimeDNFs);
-        if (addedTime != DNF) {
-            mVarianceDelta = ((double) addedTime) - mMean;
-            mMean += mVarianceDelta / totalValidSolves;
-            mVarianceDelta2 = ((double) addedTime) - mMean;
-            mVarianceM2 += mVarianceDelta * mVarianceDelta2;
-        }
-        if (totalValidSolves > 2) {
-            mVariance = (long) (mVarianceM2 / (totalValidSolves - 1));
-        }
-    }
-
     /**
      * Updates the average value of the most recently added times. See {@link #getCurrentAverage()}
      * for details. The sum, best and worst values and other fields must be updated by first calling
-     * {@link #updateSums(long, long)} and {@link #updateCurrentBestAndWorstTimes(long, long)} and
+     * {@link #updateSums(long, long)} and {@link #updateCurrentBestAndWorstTimes()} and
      * their dependent methods before calling this method.
      */
     private void updateCurrentAverage() {
@@ -628,7 +533,7 @@ public final class AverageCalculator {
                 // Calculate a truncated arithmetic mean. "mCurrentSum" is the sum of all non-DNF
                 // times. Discard the upper and lower trims, discard all other DNFs, if any.
                 // One DNF may already have been discarded as the worst time; do not discard it twice.
-                mCurrentAverage = mMiddleTrim.getSum() /
+                mCurrentAverage = mWindow.getMiddleTrimSum() /
                                   (mN - (mTrimSize * 2) -
                                    (mNumCurrentDNFs > 1 ? mNumCurrentDNFs - 1 : 0));
             }
@@ -648,7 +553,7 @@ public final class AverageCalculator {
 
     /**
      * Updates the all-time best and worst times after a new time is added. The current best and
-     * worst times must be updated by {@link #updateCurrentBestAndWorstTimes(long, long)} before
+     * worst times must be updated by {@link #updateCurrentBestAndWorstTimes()} before
      * calling this method.
      */
     private void updateAllTimeBestAndWorstTimes() {
@@ -669,18 +574,257 @@ public final class AverageCalculator {
     /**
      * Updates the all-time best average after a new time is added. The current average must be
      * updated by {@link #updateCurrentAverage()} before calling this method.
+     *
+     * @param average
+     *     The average of the window of times to be compared to the best average.
      */
-    private void updateAllTimeBestAverage() {
+    private void updateAllTimeBestAverage(long average) {
         if (mAllTimeBestAverage == UNKNOWN || mAllTimeBestAverage == DNF) {
-            // "mCurrentAverage" may still be UNKNOWN or DNF, but cannot change back to UNKNOWN once
-            // set to a different value, as UNKNOWN is cleared once "mN" solves have been added.
+            // "average" may still be UNKNOWN or DNF, but cannot change back to UNKNOWN once set
+            // to a different value, as UNKNOWN is cleared once "mN" solves have been added.
             // Therefore, we never set "mAllTimeBestAverage" to a value worse than it already has.
-            mAllTimeBestAverage = mCurrentAverage;
-        } else if (mCurrentAverage != DNF) {
-            mAllTimeBestAverage = Math.min(mAllTimeBestAverage, mCurrentAverage);
+            mAllTimeBestAverage = average;
+        } else if (average != DNF) {
+            mAllTimeBestAverage = Math.min(mAllTimeBestAverage, average);
         }
     }
 
+    /**
+     * Records the current average as the average of the latest window of times, if the window
+     * averages have been recorded since an earlier edit and enough times have been added to fill
+     * a window.
+     */
+    private void recordWindowAverage() {
+        if (mWindowAverages != null && mNumSolves >= mN) {
+            mWindowAverages.add(mCurrentAverage);
+        }
+    }
+
+    /**
+     * <p>
+     * Corrects the statistics after a time that was added previously is changed, or is removed,
+     * or after a time is inserted before other times. The all-time sums and counts, from which
+     * the mean and variance are calculated, are adjusted directly. Only the averages of the windows of "n" times in the blocks
+     * of windows that include the edited position are calculated again; the best average is then
+     * found from the recorded best average of each block (see {@link WindowAverages}). On the
+     * first edit, the averages of all windows must be calculated to record the blocks. The
+     * all-time best and worst times are only found again by searching all times if the edited
+     * time was the best or the worst time.
+     * </p>
+     * <p>
+     * If the buffer of recent times is shared, the owner of the buffer must refill it from the
+     * edited times.
+     * </p>
+     *
+     * @param times
+     *     All of the times added to this calculator, in order, <i>after</i> the edit was applied.
+     * @param index
+     *     The index in {@code times} of the edited time. For a removal, this is the index at
+     *     which the removed time was held.
+     * @param oldTime
+     *     The time before the edit, or {@link #UNKNOWN} if a new time was inserted. May be
+     *     {@link #DNF}.
+     * @param newTime
+     *     The time after the edit, or {@code UNKNOWN} if the time was removed. May be {@code DNF}.
+     */
+    void editTime(SolveLog times, int index, long oldTime, long newTime) {
+        final int numRemoved = oldTime != UNKNOWN ? 1 : 0;
+        final int numInserted = newTime != UNKNOWN ? 1 : 0;
+
+        if (numRemoved > 0) {
+            if (oldTime == DNF) {
+                mNumAllTimeDNFs--;
+            } else {
+                mAllTimeSum -= oldTime;
+                mAllTimeSumOfSquares -= oldTime * oldTime;
+            }
+            mNumSolves--;
+        }
+
+        if (numInserted > 0) {
+            mNumSolves++;
+            if (newTime == DNF) {
+                mNumAllTimeDNFs++;
+            } else {
+                mAllTimeSum = newTime + (mAllTimeSum == UNKNOWN ? 0L : mAllTimeSum);
+                mAllTimeSumOfSquares += newTime * newTime;
+            }
+        }
+
+        final int numValidSolves = mNumSolves - mNumAllTimeDNFs;
+
+        if (numValidSolves == 0) {
+            mAllTimeSum = UNKNOWN;
+        }
+
+        if (oldTime != UNKNOWN && oldTime != DNF
+                && (oldTime == mAllTimeBestTime || oldTime == mAllTimeWorstTime)) {
+            findAllTimeBestAndWorstTimes(times);
+        } else if (newTime != UNKNOWN && newTime != DNF) {
+            mAllTimeBestTime
+                    = mAllTimeBestTime == UNKNOWN ? newTime : Math.min(mAllTimeBestTime, newTime);
+            mAllTimeWorstTime
+                    = mAllTimeWorstTime == UNKNOWN ? newTime : Math.max(mAllTimeWorstTime, newTime);
+        }
+
+        final int numWindows = Math.max(0, mNumSolves - mN + 1);
+
+        if (mWindowAverages == null) {
+            mWindowAverages = new WindowAverages();
+            for (int w = 0; w < numWindows; w++) {
+                slideWindow(times, w, w == 0);
+                mWindowAverages.add(mCurrentAverage);
+            }
+        } else {
+            // The windows that end before the edited position are not affected. Those that end
+            // at least "n" times after it hold the same times as before, but may have moved up or
+            // down. One window is added or removed at the edited position, if the number of
+            // windows changed, and its block must be calculated again.
+            int firstBlock = Integer.MAX_VALUE;
+            int lastBlock = -1;
+
+            if (mWindowAverages.size() > numWindows) {
+                firstBlock = lastBlock
+                        = mWindowAverages.remove(Math.min(index, mWindowAverages.size() - 1));
+            } else if (mWindowAverages.size() < numWindows) {
+                firstBlock = lastBlock
+                        = mWindowAverages.insert(Math.min(index, mWindowAverages.size()));
+            }
+
+            // The windows that include the edited position.
+            final int from = Math.max(0, index - mN + 1);
+            final int to = Math.min(numWindows, index + numInserted);
+
+            if (from < to) {
+                firstBlock = Math.min(firstBlock, mWindowAverages.getBlock(from));
+                lastBlock = Math.max(lastBlock, mWindowAverages.getBlock(to - 1));
+            }
+
+            for (int block = firstBlock; block <= lastBlock; block++) {
+                final int first = mWindowAverages.getFirstWindow(block);
+                final int end = first + mWindowAverages.getNumWindows(block);
+                long best = WindowAverages.NO_AVERAGE;
+
+                for (int w = first; w < end; w++) {
+                    slideWindow(times, w, w == first);
+                    best = Math.min(best, mCurrentAverage);
+                }
+                mWindowAverages.setBestAverage(block, best);
+            }
+        }
+
+        mAllTimeBestAverage = mWindowAverages.getBestAverage();
+
+        // Restore the state of the current (most recent) window.
+        loadCurrentTimes(times, times.size());
+
+        if (!mIsSharedTimes) {
+            mTimes.clear();
+            for (int i = Math.max(0, times.size() - mTimes.getCapacity()); i < times.size(); i++) {
+                mTimes.add(times.getTime(i));
+            }
+        }
+    }
+
+    /**
+     * Finds the all-time best and worst times by searching all times.
+     *
+     * @param times All of the times added to this calculator.
+     */
+    private void findAllTimeBestAndWorstTimes(SolveLog times) {
+        mAllTimeBestTime = UNKNOWN;
+        mAllTimeWorstTime = UNKNOWN;
+
+        for (int i = 0; i < times.size(); i++) {
+            final long time = times.getTime(i);
+
+            if (time != DNF) {
+                if (mAllTimeBestTime == UNKNOWN) {
+                    mAllTimeBestTime = time;
+                    mAllTimeWorstTime = time;
+                } else {
+                    mAllTimeBestTime = Math.min(mAllTimeBestTime, time);
+                    mAllTimeWorstTime = Math.max(mAllTimeWorstTime, time);
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves the current window to a window of "n" times and calculates its average. The window
+     * is either loaded afresh or slid along by one from the previous window.
+     *
+     * @param times  The times from which to load the window.
+     * @param window The index of the first time in the window.
+     * @param isLoad
+     *     {@code true} to load the window afresh; or {@code false} if the current window is the
+     *     window before it.
+     */
+    private void slideWindow(SolveLog times, int window, boolean isLoad) {
+        if (isLoad) {
+            loadCurrentTimes(times, window + mN);
+        } else {
+            slideCurrentTimes(times.getTime(window + mN - 1), times.getTime(window - 1));
+        }
+    }
+
+    /**
+     * Loads the current window with up to "n" times and calculates its average.
+     *
+     * @param times The times from which to load the window.
+     * @param end   The index after the last time to be included in the window.
+     */
+    private void loadCurrentTimes(SolveLog times, int end) {
+        mWindow.clear();
+        mNumCurrentDNFs = 0;
+        mCurrentSum = UNKNOWN;
+
+        for (int i = Math.max(0, end - mN); i < end; i++) {
+            final long time = times.getTime(i);
+
+            mWindow.add(time);
+            if (time == DNF) {
+                mNumCurrentDNFs++;
+            } else {
+                mCurrentSum = time + (mCurrentSum == UNKNOWN ? 0L : mCurrentSum);
+            }
+        }
+
+        updateCurrentBestAndWorstTimes();
+        updateCurrentAverage();
+    }
+
+    /**
+     * Moves the full current window along by one time and calculates its average. Unlike
+     * {@link #addTime(long)}, this does not affect the all-time statistics.
+     *
+     * @param addedTime   The time entering the window. May be {@link #DNF}.
+     * @param ejectedTime The time leaving the window. May be {@code DNF}.
+     */
+    private void slideCurrentTimes(long addedTime, long ejectedTime) {
+        mWindow.remove(ejectedTime);
+        mWindow.add(addedTime);
+
+        if (addedTime == DNF) {
+            mNumCurrentDNFs++;
+        } else {
+            mCurrentSum = addedTime + (mCurrentSum == UNKNOWN ? 0L : mCurrentSum);
+        }
+
+        if (ejectedTime == DNF) {
+            mNumCurrentDNFs--;
+        } else {
+            mCurrentSum -= ejectedTime;
+        }
+
+        if (mCurrentSum == 0L) {
+            mCurrentSum = UNKNOWN;
+        }
+
+        updateCurrentBestAndWorstTimes();
+        updateCurrentAverage();
+    }
+
     /**
      * <p>
      * Gets the current value of the average. This is calculated from the most recently added
@@ -796,8 +940,20 @@ public final class AverageCalculator {
      *      Will be {@link #UNKNOWN} if no times have been added, or if all added solve times
      *      were {@link #DNF}s.
      */
-    public long getStandardDeviation() { return mVariance != UNKNOWN ? (long) Math.sqrt
-            (mVariance) : UNKNOWN; }
+    public long getStandardDeviation() {
+        final long numValidSolves = mNumSolves - mNumAllTimeDNFs;
+
+        if (numValidSolves <= 2) {
+            return UNKNOWN;
+        }
+
+        // The squared deviations from the mean sum to the sum of the squares less the sum
+        // multiplied by the mean.
+        final double variance = (mAllTimeSumOfSquares
+                - (double) mAllTimeSum * mAllTimeSum / numValidSolves) / (numValidSolves - 1);
+
+        return (long) Math.sqrt(Math.max(0L, (long) variance));
+    }
 
     /**
      * Gets the simple arithmetic mean time of all non-DNF solves that were added to this
@@ -810,7 +966,87 @@ public final class AverageCalculator {
      *     {@link #DNF}s.
      */
     public long getMeanTime() {
-        return (long) mMean != 0 ? (long) mMean : UNKNOWN;
+        final int numValidSolves = mNumSolves - mNumAllTimeDNFs;
+
+        return numValidSolves > 0 ? mAllTimeSum / numValidSolves : UNKNOWN;
+    }
+
+    /**
+     * Writes the state of this calculator, so that it can be restored later by
+     * {@link #readState(DataInput)}. If the buffer of recent times is shared, the owner of the
+     * buffer must write and restore it; otherwise, it is written here.
+     *
+     * @param out The output to which to write the state.
+     *
+     * @throws IOException If the state cannot be written.
+     */
+    void writeState(DataOutput out) throws IOException {
+        out.writeInt(mN);
+        out.writeInt(mTrimSize);
+        out.writeInt(mNumSolves);
+        out.writeInt(mNumCurrentDNFs);
+        out.writeInt(mNumAllTimeDNFs);
+        out.writeLong(mAllTimeSumOfSquares);
+        out.writeLong(mCurrentSum);
+        out.writeLong(mAllTimeSum);
+        out.writeLong(mCurrentAverage);
+        out.writeLong(mAllTimeBestTime);
+        out.writeLong(mAllTimeWorstTime);
+        out.writeLong(mAllTimeBestAverage);
+
+        if (!mIsSharedTimes) {
+            mTimes.writeTo(out);
+        }
+    }
+
+    /**
+     * Restores the state of this calculator from that written by {@link #writeState(DataOutput)}.
+     * If the buffer of recent times is shared, it must be restored before calling this method.
+     * The current best and worst times and the sorted window are not stored, as they can be
+     * re-built from the recent times.
+     *
+     * @param in The input from which to read the state.
+     *
+     * @throws IOException
+     *     If the state cannot be read, or if it was written by a calculator with a different
+     *     value of "n" or a different trim size. The state of this calculator is then undefined
+     *     and it should be reset.
+     */
+    void readState(DataInput in) throws IOException {
+        if (in.readInt() != mN || in.readInt() != mTrimSize) {
+            throw new IOException("State is for a different average calculation.");
+        }
+
+        mNumSolves = in.readInt();
+        mNumCurrentDNFs = in.readInt();
+        mNumAllTimeDNFs = in.readInt();
+        mAllTimeSumOfSquares = in.readLong();
+        mCurrentSum = in.readLong();
+        mAllTimeSum = in.readLong();
+        mCurrentAverage = in.readLong();
+        mAllTimeBestTime = in.readLong();
+        mAllTimeWorstTime = in.readLong();
+        mAllTimeBestAverage = in.readLong();
+
+        if (!mIsSharedTimes) {
+            mTimes.readFrom(in);
+        }
+
+        final int numCurrentSolves = Math.min(mNumSolves, mN);
+
+        if (mTimes.size() < numCurrentSolves) {
+            throw new IOException("Too few recent times for the number of solves.");
+        }
+
+        mWindow.clear();
+        for (int age = 0; age < numCurrentSolves; age++) {
+            mWindow.add(mTimes.get(age));
+        }
+        updateCurrentBestAndWorstTimes();
+
+        // The averages of the earlier windows are not saved. They will be calculated from the
+        // times if any time is edited.
+        mWindowAverages = null;
     }
 
     /**
@@ -903,22 +1139,13 @@ public final class AverageCalculator {
             final int n = ac.getN();
 
             mAverage = ac.getCurrentAverage();
-            mUpperTrimSum = ac.mUpperTrim.getSum();
-            mMiddleTrimSum = ac.mMiddleTrim.getSum();
-            mLowerTrimSum = ac.mLowerTrim.getSum();
+            mUpperTrimSum = ac.mWindow.getUpperTrimSum();
+            mMiddleTrimSum = ac.mWindow.getMiddleTrimSum();
+            mLowerTrimSum = ac.mWindow.getLowerTrimSum();
 
             if (mAverage != UNKNOWN && ac.getNumSolves() >= n) {
                 mTimes = new long[n];
-
-                // The oldest time recorded in "ac.mTimes" is not necessarily the first one, as
-                // that array operates as a circular queue. "ac.mNext" marks one index past the
-                // last added time. However, the array should be full, so this should also be the
-                // index of the first (oldest) time. If "ac.mNext" equals "n", then we wrap around
-                // to start at index zero.
-                final int oldestIndex = ac.mNext == n ? 0 : ac.mNext;
-
-                System.arraycopy(ac.mTimes, oldestIndex, mTimes, 0, n - oldestIndex);
-                System.arraycopy(ac.mTimes, 0, mTimes, n - oldestIndex, oldestIndex);
+                ac.mTimes.copyOldestFirst(n, mTimes);
 
                 // "-1" is the convention for an unknown *index*, so "UNKNOWN" is not used.
                 int bestIdx = -1;
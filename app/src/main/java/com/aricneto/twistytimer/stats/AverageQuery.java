@@ -0,0 +1,383 @@
+package com.aricneto.twistytimer.stats;
+
+import android.util.Log;
+
+import com.aricneto.twistytimer.stats.AverageCalculator.AverageOfN;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.aricneto.twistytimer.stats.AverageCalculator.DNF;
+import static com.aricneto.twistytimer.stats.AverageCalculator.UNKNOWN;
+
+/**
+ * <p>
+ * A query for the best and current average-of-N of a sequence of solve times, for any value of
+ * "N". Unlike the {@link AverageCalculator} instances held by {@link Statistics}, which must be
+ * created before the times are added and are then updated as each time is added, a query can be
+ * made at any time for a value of "N" that is only needed occasionally (e.g., an average of 25 or
+ * of 5,000), without the cost of keeping another calculator running.
+ * </p>
+ * <p>
+ * The query works on its own compact copy of the solve times and solve IDs, which is taken when
+ * the query is created by {@link Statistics#newAverageQuery(int, boolean)}. The query can then be
+ * run by {@link #run()} on a background thread while the statistics continue to be updated.
+ * </p>
+ * <p>
+ * Each window of "N" times is averaged in a single pass by sliding an {@link AverageCalculator}
+ * along the times, so each average is calculated exactly as for the averages in the statistics
+ * table. When the number of windows is very large, the windows are split into contiguous chunks
+ * that are scanned in parallel, one per processor core. Each chunk costs an extra "N" times to
+ * fill its first window, so chunks are never made shorter than "N" windows.
+ * </p>
+ */
+public final class AverageQuery {
+    /**
+     * A "tag" used to identify this class as the source of log messages.
+     */
+    private static final String TAG = AverageQuery.class.getSimpleName();
+
+    /**
+     * The minimum number of windows before the scan is split across several threads. Below this,
+     * the cost of starting the threads is greater than the time saved.
+     */
+    private static final int MIN_WINDOWS_FOR_PARALLEL_SCAN = 20_000;
+
+    /**
+     * The solve times, oldest first. DNFs are recorded as {@link AverageCalculator#DNF}.
+     */
+    private final long[] mTimes;
+
+    /**
+     * The solve IDs corresponding to the times in {@link #mTimes}.
+     */
+    private final long[] mSolveIDs;
+
+    /**
+     * The number of times in each average.
+     */
+    private final int mN;
+
+    /**
+     * The percentage of the best times and of the worst times to trim from each average.
+     */
+    private final int mTrimPercent;
+
+    /**
+     * Creates a new query over a copy of solve times.
+     *
+     * @param times
+     *     The solve times, oldest first. DNFs must be recorded as {@link AverageCalculator#DNF}.
+     *     The array is not copied and must not be changed.
+     * @param solveIDs
+     *     The solve IDs corresponding to the times. The array is not copied.
+     * @param n
+     *     The number of times in each average. Must be greater than zero.
+     * @param trimPercent
+     *     The percentage of the best times and of the worst times to be trimmed. See
+     *     {@link AverageCalculator#AverageCalculator(int, int)}.
+     *
+     * @throws IllegalArgumentException
+     *     If {@code n} is not greater than zero.
+     */
+    AverageQuery(long[] times, long[] solveIDs, int n, int trimPercent) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("Number of solves must be > 0: " + n);
+        }
+
+        mTimes = times;
+        mSolveIDs = solveIDs;
+        mN = n;
+        mTrimPercent = trimPercent;
+    }
+
+    /**
+     * Runs the query. This may take some time if there are many solve times and "N" is large, so
+     * it should not be called on the main thread.
+     *
+     * @return The result of the query.
+     */
+    public Result run() {
+        final int numWindows = Math.max(0, mTimes.length - mN + 1);
+        final int numChunks = Math.min(Runtime.getRuntime().availableProcessors(),
+                numWindows / Math.max(mN, MIN_WINDOWS_FOR_PARALLEL_SCAN / 4));
+
+        Scan scan = null;
+
+        if (numWindows >= MIN_WINDOWS_FOR_PARALLEL_SCAN && numChunks > 1) {
+            scan = scanInParallel(numWindows, numChunks);
+        }
+
+        if (scan == null) {
+            scan = new Scan(0, numWindows).call();
+        }
+
+        return new Result(scan);
+    }
+
+    /**
+     * Scans the windows in contiguous chunks on several threads and combines the results.
+     *
+     * @param numWindows The total number of windows to scan.
+     * @param numChunks  The number of chunks into which to divide the windows.
+     *
+     * @return The combined result of the scans, or {@code null} if the parallel scan failed.
+     */
+    private Scan scanInParallel(int numWindows, int numChunks) {
+        final ExecutorService executor = Executors.newFixedThreadPool(numChunks);
+
+        try {
+            final List<Future<Scan>> futures = new ArrayList<>(numChunks);
+
+            for (int c = 0; c < numChunks; c++) {
+                futures.add(executor.submit(new Scan(
+                        (int) ((long) numWindows * c / numChunks),
+                        (int) ((long) numWindows * (c + 1) / numChunks))));
+            }
+
+            // Combine in order, so that the earliest of equal best averages is reported.
+            Scan combined = futures.get(0).get();
+
+            for (int c = 1; c < numChunks; c++) {
+                combined = combined.combine(futures.get(c).get());
+            }
+
+            return combined;
+        } catch (Exception e) {
+            Log.w(TAG, "Parallel scan failed. Scanning on one thread.", e);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates a calculator that has been fed the times from the start of one window up to, but
+     * not including, the given end.
+     *
+     * @param windowStart The index of the first time to add.
+     * @param end         The index after the last time to add.
+     *
+     * @return The calculator.
+     */
+    private AverageCalculator newCalculator(int windowStart, int end) {
+        final AverageCalculator ac = new AverageCalculator(mN, mTrimPercent);
+
+        for (int i = windowStart; i < end; i++) {
+            ac.addTime(mTimes[i]);
+        }
+
+        return ac;
+    }
+
+    /**
+     * Gets the details of the average of the window starting at the given index.
+     *
+     * @param windowStart The index of the first time in the window.
+     *
+     * @return The details of the average.
+     */
+    private AverageOfN getAverageOfN(int windowStart) {
+        return newCalculator(windowStart, windowStart + mN).getAverageOfN();
+    }
+
+    /**
+     * A scan of a contiguous range of windows. The window with index "w" holds the times from
+     * index "w" to index "w + N - 1".
+     */
+    private final class Scan implements Callable<Scan> {
+        /**
+         * The index of the first window to scan.
+         */
+        private final int mFromWindow;
+
+        /**
+         * The index after the last window to scan.
+         */
+        private final int mToWindow;
+
+        /**
+         * The best average of the scanned windows, {@link AverageCalculator#DNF} if all were
+         * disqualified, or {@link AverageCalculator#UNKNOWN} if there were no windows.
+         */
+        long mBestAverage = UNKNOWN;
+
+        /**
+         * The index of the window with the best average, or -1 if there is no best average.
+         */
+        int mBestWindow = -1;
+
+        /**
+         * The average of the last scanned window.
+         */
+        long mLastAverage = UNKNOWN;
+
+        Scan(int fromWindow, int toWindow) {
+            mFromWindow = fromWindow;
+            mToWindow = toWindow;
+        }
+
+        @Override
+        public Scan call() {
+            if (mFromWindow < mToWindow) {
+                final AverageCalculator ac
+                        = newCalculator(mFromWindow, mFromWindow + mN - 1);
+
+                for (int w = mFromWindow; w < mToWindow; w++) {
+                    ac.addTime(mTimes[w + mN - 1]);
+                    mLastAverage = ac.getCurrentAverage();
+                    offer(mLastAverage, w);
+                }
+            }
+
+            return this;
+        }
+
+        /**
+         * Compares an average to the best average found so far. The earliest window is kept if
+         * the averages are equal.
+         *
+         * @param average The average of the window.
+         * @param window  The index of the window.
+         */
+        private void offer(long average, int window) {
+            if (average != DNF && average != UNKNOWN) {
+                if (mBestWindow == -1 || average < mBestAverage) {
+                    mBestAverage = average;
+                    mBestWindow = window;
+                }
+            } else if (average == DNF && mBestAverage == UNKNOWN) {
+                mBestAverage = DNF;
+            }
+        }
+
+        /**
+         * Combines this scan with the scan of the windows that follow it.
+         *
+         * @param next The scan of the following windows.
+         *
+         * @return This scan, updated to cover the windows of both scans.
+         */
+        Scan combine(Scan next) {
+            offer(next.mBestAverage, next.mBestWindow);
+            mLastAverage = next.mLastAverage;
+            return this;
+        }
+    }
+
+    /**
+     * The result of an average query.
+     */
+    public final class Result {
+        /**
+         * The best average, or {@link AverageCalculator#DNF}, or
+         * {@link AverageCalculator#UNKNOWN}.
+         */
+        private final long mBestAverage;
+
+        /**
+         * The index of the first time in the best average, or -1 if there is no best average.
+         */
+        private final int mBestAverageStart;
+
+        /**
+         * The average of the most recent "N" times.
+         */
+        private final long mCurrentAverage;
+
+        private Result(Scan scan) {
+            mBestAverage = scan.mBestAverage;
+            mBestAverageStart = scan.mBestWindow;
+            mCurrentAverage = scan.mLastAverage;
+        }
+
+        /**
+         * Gets the number of times in each average.
+         *
+         * @return The value of "N".
+         */
+        public int getN() {
+            return mN;
+        }
+
+        /**
+         * Gets the number of solve times that were queried.
+         *
+         * @return The number of solve times, including DNFs.
+         */
+        public int getNumSolves() {
+            return mTimes.length;
+        }
+
+        /**
+         * Gets the best average of any "N" consecutive times.
+         *
+         * @return
+         *     The best average. If there are fewer than "N" times, the result will be
+         *     {@link AverageCalculator#UNKNOWN}. If every average is disqualified by DNFs, the
+         *     result will be {@link AverageCalculator#DNF}.
+         */
+        public long getBestAverage() {
+            return mBestAverage;
+        }
+
+        /**
+         * Gets the position of the first solve of the best average.
+         *
+         * @return
+         *     The number of solves that were added before the first solve of the best average,
+         *     or -1 if there is no best average.
+         */
+        public int getBestAverageStart() {
+            return mBestAverageStart;
+        }
+
+        /**
+         * Gets the ID of the first solve of the best average.
+         *
+         * @return
+         *     The solve ID, or -1 if there is no best average or if the solve ID is not known.
+         */
+        public long getBestAverageStartSolveID() {
+            return mBestAverageStart >= 0 ? mSolveIDs[mBestAverageStart] : -1L;
+        }
+
+        /**
+         * Gets the details of the best average, including the times of which it is made.
+         *
+         * @return The details of the best average, or {@code null} if there is no best average.
+         */
+        public AverageOfN getBestAverageOfN() {
+            return mBestAverageStart >= 0 ? getAverageOfN(mBestAverageStart) : null;
+        }
+
+        /**
+         * Gets the average of the most recent "N" times.
+         *
+         * @return
+         *     The current average. If there are fewer than "N" times, the result will be
+         *     {@link AverageCalculator#UNKNOWN}. If the average is disqualified by DNFs, the
+         *     result will be {@link AverageCalculator#DNF}.
+         */
+        public long getCurrentAverage() {
+            return mCurrentAverage;
+        }
+
+        /**
+         * Gets the details of the average of the most recent "N" times.
+         *
+         * @return The details of the current average, or {@code null} if there are fewer than
+         *     "N" times.
+         */
+        public AverageOfN getCurrentAverageOfN() {
+            return mTimes.length >= mN ? getAverageOfN(mTimes.length - mN) : null;
+        }
+    }
+}
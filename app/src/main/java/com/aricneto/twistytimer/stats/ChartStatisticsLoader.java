@@ -143,11 +143,9 @@ public class ChartStatisticsLoader extends AsyncTaskLoader<Wrapper<ChartStatisti
                     // If session times were moved to the history, AND THE FULL HISTORY IS BEING
                     // SHOWN, then the chart is already up-to-date, as the charted full history of
                     // times already includes the times from the current session. If the chart is
-                    // showing only the current session, then a full re-load is required. (There
-                    // is no check if the current session is already empty, as that would just be
-                    // an over-complication and the database re-load will be very quick, anyway.)
-                    if (mLoader.isForCurrentSessionOnly()) {
-                        // The chart is showing only session times and these have moved, so re-load.
+                    // showing only the current session, then the chart is now empty and can be
+                    // cleared without re-loading, unless the puzzle of the session is not known.
+                    if (mLoader.isForCurrentSessionOnly() && !mLoader.deliverEmptySession(intent)) {
                         if (DEBUG_ME) Log.d(TAG, "  Session moved to history. Will reload!");
                         mLoader.onContentChanged();
                     } // else the chart is already up to date.
@@ -313,6 +311,38 @@ public class ChartStatisticsLoader extends AsyncTaskLoader<Wrapper<ChartStatisti
         return false;
     }
 
+    /**
+     * Attempts a quick update of the chart statistics for the current session after all solves
+     * for the current session were moved to the history. The chart statistics are cleared and
+     * delivered without resorting to a full read of the database.
+     *
+     * @param intent
+     *     The intent that identifies the puzzle type and subtype of the moved session.
+     *
+     * @return
+     *     {@code true} if the chart statistics were loaded previously and were cleared (or were
+     *     not affected by the move); or {@code false} if a full database reload will still be
+     *     required.
+     */
+    private boolean deliverEmptySession(Intent intent) {
+        final String puzzleType = TTIntent.getPuzzleType(intent);
+        final String puzzleSubtype = TTIntent.getPuzzleSubtype(intent);
+
+        if (mLoadedData.isEmpty() || puzzleType == null || puzzleSubtype == null) {
+            return false;
+        }
+
+        if (mPuzzleType.equals(puzzleType) && mPuzzleSubtype.equals(puzzleSubtype)) {
+            mChartStats.reset();
+            mLoadedData = mLoadedData.rewrap(); // See explanation in "loadInBackground".
+
+            if (DEBUG_ME) Log.d(TAG, "  Delivering empty session to chart statistics!");
+            deliverResult(mLoadedData); // Will trigger "onLoadFinished" in Fragment/Activity.
+        }
+
+        return true;
+    }
+
     /**
      * Starts loading the statistics from the database. If statistics were previously loaded, they
      * will be re-delivered. If the statistics that were so delivered are out of date, or if no
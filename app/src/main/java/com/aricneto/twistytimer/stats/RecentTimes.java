@@ -0,0 +1,161 @@
+package com.aricneto.twistytimer.stats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * <p>
+ * A circular buffer of the most recently added solve times. Once the buffer is full, the oldest
+ * time is overwritten when the next new time is added.
+ * </p>
+ * <p>
+ * A single buffer can be shared by several {@link AverageCalculator} instances that are fed the
+ * same sequence of times (e.g., the averages of 3, 5, 12, ... 1,000 for all past and current
+ * sessions). Each calculator looks back into the shared buffer to find the time that is ejected
+ * from its own window of "n" times, so the times are stored only once, not once per calculator.
+ * The capacity must be at least one greater than the largest "n" to retain the time that has just
+ * left that window.
+ * </p>
+ */
+final class RecentTimes {
+    /**
+     * The most recently added times, managed as a circular queue.
+     */
+    private long[] mTimes;
+
+    /**
+     * The index in {@link #mTimes} at which the next time will be added.
+     */
+    private int mNext;
+
+    /**
+     * The number of times held in the buffer. This will not exceed the capacity.
+     */
+    private int mSize;
+
+    /**
+     * Creates a new, empty buffer.
+     *
+     * @param capacity The maximum number of times to retain. Must be greater than zero.
+     */
+    RecentTimes(int capacity) {
+        mTimes = new long[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Removes all times from this buffer.
+     */
+    void clear() {
+        mNext = 0;
+        mSize = 0;
+    }
+
+    /**
+     * Gets the maximum number of times that can be retained.
+     *
+     * @return The capacity of this buffer.
+     */
+    int getCapacity() {
+        return mTimes.length;
+    }
+
+    /**
+     * Increases the capacity of this buffer, if necessary. Any times already held are retained.
+     *
+     * @param capacity The minimum required capacity.
+     */
+    void ensureCapacity(int capacity) {
+        if (capacity > mTimes.length) {
+            final long[] times = new long[capacity];
+
+            copyOldestFirst(mSize, times);
+            mTimes = times;
+            mNext = mSize;
+        }
+    }
+
+    /**
+     * Adds a new time to this buffer. If the buffer is full, the oldest time is overwritten.
+     *
+     * @param time The time to be added.
+     */
+    void add(long time) {
+        mTimes[mNext] = time;
+        mNext = mNext + 1 == mTimes.length ? 0 : mNext + 1;
+
+        if (mSize < mTimes.length) {
+            mSize++;
+        }
+    }
+
+    /**
+     * Gets the number of times held in this buffer.
+     *
+     * @return The number of times, which will not exceed the capacity.
+     */
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * Gets a recently added time.
+     *
+     * @param age
+     *     The number of times that have been added since the required time. Zero is the most
+     *     recently added time. Must be less than {@link #size()}.
+     *
+     * @return The time.
+     */
+    long get(int age) {
+        final int index = mNext - 1 - age;
+
+        return mTimes[index < 0 ? index + mTimes.length : index];
+    }
+
+    /**
+     * Writes the times held in this buffer, oldest first.
+     *
+     * @param out The output to which to write the times.
+     *
+     * @throws IOException If the times cannot be written.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(mSize);
+        for (int age = mSize - 1; age >= 0; age--) {
+            out.writeLong(get(age));
+        }
+    }
+
+    /**
+     * Replaces the times held in this buffer with those written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in The input from which to read the times.
+     *
+     * @throws IOException If the times cannot be read or there are too many for this buffer.
+     */
+    void readFrom(DataInput in) throws IOException {
+        final int size = in.readInt();
+
+        if (size < 0 || size > mTimes.length) {
+            throw new IOException("Invalid number of recent times: " + size);
+        }
+
+        clear();
+        for (int i = 0; i < size; i++) {
+            add(in.readLong());
+        }
+    }
+
+    /**
+     * Copies the most recently added times into an array, with the oldest of those times first.
+     *
+     * @param count The number of times to copy. Must not be greater than {@link #size()}.
+     * @param dest  The array into which to copy the times, starting at index zero.
+     */
+    void copyOldestFirst(int count, long[] dest) {
+        for (int i = 0; i < count; i++) {
+            dest[i] = get(count - 1 - i);
+        }
+    }
+}
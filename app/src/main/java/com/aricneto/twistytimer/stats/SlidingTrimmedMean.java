@@ -0,0 +1,194 @@
+package com.aricneto.twistytimer.stats;
+
+import com.aricneto.twistytimer.structures.LongOrderStatisticTree;
+
+import static com.aricneto.twistytimer.stats.AverageCalculator.DNF;
+import static com.aricneto.twistytimer.stats.AverageCalculator.UNKNOWN;
+
+/**
+ * <p>
+ * Maintains the times in a sliding window of "n" solves in sorted order, so that the sums of the
+ * lower trim (the best times), the middle trim and the upper trim (the worst times) can be found
+ * for any trim size. All of the times are held in a single {@link LongOrderStatisticTree} and the
+ * trim sums are derived from sums over ranges of ranks, so adding or removing a time costs
+ * O(log n), regardless of "n" or of the trim size.
+ * </p>
+ * <p>
+ * The caller is responsible for recording the order in which times were added, so that it can
+ * remove the oldest time from the window when a new time is added to a full window. This class
+ * does not store the insertion order.
+ * </p>
+ * <p>
+ * {@link AverageCalculator#DNF} is the greatest possible time value, so any DNFs always sort
+ * after all other times in the window and fall into the upper trim before the middle trim. DNFs
+ * are never included in any of the reported sums.
+ * </p>
+ */
+final class SlidingTrimmedMean {
+    /**
+     * The number of times in a full window.
+     */
+    private final int mN;
+
+    /**
+     * The number of times in each of the lower and upper trims. The middle trim holds the
+     * remaining {@code mN - 2 * mTrimSize} times.
+     */
+    private final int mTrimSize;
+
+    /**
+     * The times currently in the window in sorted order.
+     */
+    private final LongOrderStatisticTree mSortedTimes;
+
+    /**
+     * Creates a new, empty window.
+     *
+     * @param n
+     *     The number of times in a full window. Must be greater than zero.
+     * @param trimSize
+     *     The number of times to trim from each end of a full window. Must not be negative and
+     *     must leave at least one time in the middle trim.
+     *
+     * @throws IllegalArgumentException
+     *     If {@code n} or {@code trimSize} is out of range.
+     */
+    SlidingTrimmedMean(int n, int trimSize) {
+        if (n <= 0 || trimSize < 0 || n - 2 * trimSize <= 0) {
+            throw new IllegalArgumentException("Invalid window size or trim: " + n + ", " + trimSize);
+        }
+
+        mN = n;
+        mTrimSize = trimSize;
+        mSortedTimes = new LongOrderStatisticTree(n);
+    }
+
+    /**
+     * Removes all times from the window.
+     */
+    void clear() {
+        mSortedTimes.clear();
+    }
+
+    /**
+     * Adds a time to the window. The window must not already be full.
+     *
+     * @param time The time to be added. May be {@link AverageCalculator#DNF}.
+     */
+    void add(long time) {
+        mSortedTimes.add(time);
+    }
+
+    /**
+     * Removes a time from the window. The time should be the oldest time in the window.
+     *
+     * @param time The time to be removed. May be {@link AverageCalculator#DNF}.
+     *
+     * @return {@code true} if the time was found in the window and removed.
+     */
+    boolean remove(long time) {
+        return mSortedTimes.remove(time);
+    }
+
+    /**
+     * Indicates if the window holds the full "n" times.
+     *
+     * @return {@code true} if the window is full; or {@code false} if it is not.
+     */
+    boolean isFull() {
+        return mSortedTimes.size() >= mN;
+    }
+
+    /**
+     * Gets the number of times in each of the lower and upper trims.
+     *
+     * @return The trim size.
+     */
+    int getTrimSize() {
+        return mTrimSize;
+    }
+
+    /**
+     * Gets the best time in the window.
+     *
+     * @return The best time, or {@link AverageCalculator#UNKNOWN} if the window is empty or if
+     *     every time in the window is a DNF.
+     */
+    long getBestTime() {
+        return getNumNonDNFs() > 0 ? mSortedTimes.getLeast() : UNKNOWN;
+    }
+
+    /**
+     * Gets the worst time in the window that is not a DNF.
+     *
+     * @return The worst non-DNF time, or {@link AverageCalculator#UNKNOWN} if the window is empty
+     *     or if every time in the window is a DNF.
+     */
+    long getWorstTime() {
+        final int numNonDNFs = getNumNonDNFs();
+
+        return numNonDNFs > 0 ? mSortedTimes.select(numNonDNFs - 1) : UNKNOWN;
+    }
+
+    /**
+     * Gets the sum of the non-DNF times in the lower trim (the best times) of a full window.
+     *
+     * @return The sum, or {@link AverageCalculator#UNKNOWN} if the window is not full, or if the
+     *     trim holds no non-DNF times.
+     */
+    long getLowerTrimSum() {
+        return getTrimSum(0, mTrimSize);
+    }
+
+    /**
+     * Gets the sum of the non-DNF times in the middle trim of a full window.
+     *
+     * @return The sum, or {@link AverageCalculator#UNKNOWN} if the window is not full, or if the
+     *     trim holds no non-DNF times.
+     */
+    long getMiddleTrimSum() {
+        return getTrimSum(mTrimSize, mN - mTrimSize);
+    }
+
+    /**
+     * Gets the sum of the non-DNF times in the upper trim (the worst times) of a full window.
+     *
+     * @return The sum, or {@link AverageCalculator#UNKNOWN} if the window is not full, or if the
+     *     trim holds no non-DNF times.
+     */
+    long getUpperTrimSum() {
+        return getTrimSum(mN - mTrimSize, mN);
+    }
+
+    /**
+     * Gets the sum of the non-DNF times in a range of ranks in a full window. As DNFs sort last,
+     * the non-DNF times occupy the lowest ranks, so the range only needs to be clipped to exclude
+     * the DNFs.
+     *
+     * @param fromRank The first rank in the range (inclusive).
+     * @param toRank   The last rank in the range (exclusive).
+     *
+     * @return The sum, or {@link AverageCalculator#UNKNOWN} if the window is not full, or if the
+     *     range holds no non-DNF times.
+     */
+    private long getTrimSum(int fromRank, int toRank) {
+        if (!isFull()) {
+            return UNKNOWN;
+        }
+
+        final int numNonDNFs = getNumNonDNFs();
+        final int from = Math.min(fromRank, numNonDNFs);
+        final int to = Math.min(toRank, numNonDNFs);
+
+        return from < to ? mSortedTimes.sumOfRange(from, to) : UNKNOWN;
+    }
+
+    /**
+     * Gets the number of times in the window that are not DNFs.
+     *
+     * @return The number of non-DNF times.
+     */
+    private int getNumNonDNFs() {
+        return mSortedTimes.rank(DNF);
+    }
+}
@@ -0,0 +1,314 @@
+package com.aricneto.twistytimer.stats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A record of every solve time added to a {@link Statistics} object, in the order in which the
+ * times were added, together with the ID of each solve and a flag indicating if the solve is for
+ * the current session. The record allows the statistics to be corrected in place when a solve is
+ * later changed or deleted, instead of re-reading every solve time from the database.
+ * </p>
+ * <p>
+ * Times are held in primitive arrays, so the cost is sixteen bytes and one flag for each solve.
+ * A solve is found by its ID with a linear search from the most recently added solve, as it is
+ * usually the most recent solves that are edited. The log is written to a statistics snapshot in
+ * a compact form of a few bytes for each solve, so that the solves in the snapshot do not need to
+ * be read from the database again when the snapshot is restored.
+ * </p>
+ */
+final class SolveLog {
+    /**
+     * The ID recorded for a solve time that was added without a solve ID. Such times cannot be
+     * found by {@link #indexOf(long)}.
+     */
+    static final long NO_ID = -1L;
+
+    /**
+     * The initial capacity of a new log.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * The solve IDs in the order the solves were added.
+     */
+    private long[] mIDs = new long[INITIAL_CAPACITY];
+
+    /**
+     * The solve times corresponding to the IDs in {@link #mIDs}. A time may be
+     * {@link AverageCalculator#DNF}.
+     */
+    private long[] mTimes = new long[INITIAL_CAPACITY];
+
+    /**
+     * The current-session flags corresponding to the IDs in {@link #mIDs}.
+     */
+    private boolean[] mIsForCurrentSession = new boolean[INITIAL_CAPACITY];
+
+    /**
+     * The number of solves in the log.
+     */
+    private int mSize;
+
+    /**
+     * Removes all solves from this log.
+     */
+    void clear() {
+        mSize = 0;
+    }
+
+    /**
+     * Gets the number of solves in this log.
+     *
+     * @return The number of solves.
+     */
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * Adds a solve after all other solves in this log.
+     *
+     * @param solveID             The ID of the solve, or {@link #NO_ID} if it is not known.
+     * @param time                The solve time. May be {@link AverageCalculator#DNF}.
+     * @param isForCurrentSession {@code true} if the solve is for the current session.
+     */
+    void add(long solveID, long time, boolean isForCurrentSession) {
+        insert(mSize, solveID, time, isForCurrentSession);
+    }
+
+    /**
+     * Inserts a solve into this log. Solves at or after the given index are moved up by one.
+     *
+     * @param index               The index at which to insert the solve.
+     * @param solveID             The ID of the solve, or {@link #NO_ID} if it is not known.
+     * @param time                The solve time. May be {@link AverageCalculator#DNF}.
+     * @param isForCurrentSession {@code true} if the solve is for the current session.
+     */
+    void insert(int index, long solveID, long time, boolean isForCurrentSession) {
+        if (mSize == mIDs.length) {
+            final int capacity = mSize * 2;
+
+            mIDs = Arrays.copyOf(mIDs, capacity);
+            mTimes = Arrays.copyOf(mTimes, capacity);
+            mIsForCurrentSession = Arrays.copyOf(mIsForCurrentSession, capacity);
+        }
+
+        if (index < mSize) {
+            System.arraycopy(mIDs, index, mIDs, index + 1, mSize - index);
+            System.arraycopy(mTimes, index, mTimes, index + 1, mSize - index);
+            System.arraycopy(
+                    mIsForCurrentSession, index, mIsForCurrentSession, index + 1, mSize - index);
+        }
+
+        mIDs[index] = solveID;
+        mTimes[index] = time;
+        mIsForCurrentSession[index] = isForCurrentSession;
+        mSize++;
+    }
+
+    /**
+     * Removes a solve from this log. Solves after the given index are moved down by one.
+     *
+     * @param index The index of the solve to remove.
+     */
+    void remove(int index) {
+        final int numMoved = mSize - index - 1;
+
+        if (numMoved > 0) {
+            System.arraycopy(mIDs, index + 1, mIDs, index, numMoved);
+            System.arraycopy(mTimes, index + 1, mTimes, index, numMoved);
+            System.arraycopy(mIsForCurrentSession, index + 1, mIsForCurrentSession, index, numMoved);
+        }
+        mSize--;
+    }
+
+    /**
+     * Finds a solve in this log.
+     *
+     * @param solveID The ID of the solve to find.
+     *
+     * @return The index of the solve, or -1 if the solve is not in this log.
+     */
+    int indexOf(long solveID) {
+        if (solveID != NO_ID) {
+            for (int i = mSize - 1; i >= 0; i--) {
+                if (mIDs[i] == solveID) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the ID of a solve in this log.
+     *
+     * @param index The index of the solve.
+     *
+     * @return The ID of the solve, or {@link #NO_ID} if it was added without an ID.
+     */
+    long getID(int index) {
+        return mIDs[index];
+    }
+
+    /**
+     * Gets the time of a solve in this log.
+     *
+     * @param index The index of the solve.
+     *
+     * @return The solve time. May be {@link AverageCalculator#DNF}.
+     */
+    long getTime(int index) {
+        return mTimes[index];
+    }
+
+    /**
+     * Sets the time of a solve in this log.
+     *
+     * @param index The index of the solve.
+     * @param time  The new solve time. May be {@link AverageCalculator#DNF}.
+     */
+    void setTime(int index, long time) {
+        mTimes[index] = time;
+    }
+
+    /**
+     * Indicates if a solve in this log is for the current session.
+     *
+     * @param index The index of the solve.
+     *
+     * @return {@code true} if the solve is for the current session.
+     */
+    boolean isForCurrentSession(int index) {
+        return mIsForCurrentSession[index];
+    }
+
+    /**
+     * Sets the current-session flag of a solve in this log.
+     *
+     * @param index               The index of the solve.
+     * @param isForCurrentSession {@code true} if the solve is for the current session.
+     */
+    void setForCurrentSession(int index, boolean isForCurrentSession) {
+        mIsForCurrentSession[index] = isForCurrentSession;
+    }
+
+    /**
+     * Copies the solve times in this log into a new array, in the order they were added.
+     *
+     * @return The solve times. DNFs are recorded as {@link AverageCalculator#DNF}.
+     */
+    long[] copyTimes() {
+        return Arrays.copyOf(mTimes, mSize);
+    }
+
+    /**
+     * Copies the solve IDs in this log into a new array, in the order they were added.
+     *
+     * @return The solve IDs. Solves added without an ID are recorded as {@link #NO_ID}.
+     */
+    long[] copyIDs() {
+        return Arrays.copyOf(mIDs, mSize);
+    }
+
+    /**
+     * Clears the current-session flag of every solve in this log.
+     */
+    void clearCurrentSession() {
+        Arrays.fill(mIsForCurrentSession, 0, mSize, false);
+    }
+
+    /**
+     * Counts the solves for the current session that come before a given index in this log.
+     *
+     * @param index The index before which to count.
+     *
+     * @return The number of solves for the current session before the index.
+     */
+    int countCurrentSessionBefore(int index) {
+        int count = 0;
+
+        for (int i = 0; i < index; i++) {
+            if (mIsForCurrentSession[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes the solves held in this log, in order. Each solve is written as the difference
+     * between its ID and the ID of the previous solve, followed by its time and current-session
+     * flag together. Both are written as variable-length integers, as the IDs of the solves in a
+     * category are usually close together and the times are small, so most solves take no more
+     * than four or five bytes.
+     *
+     * @param out The output to which to write the solves.
+     *
+     * @throws IOException If the solves cannot be written.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        long lastID = 0;
+
+        out.writeInt(mSize);
+        for (int i = 0; i < mSize; i++) {
+            final long idDelta = mIDs[i] - lastID;
+
+            // Zig-zag encoded, as an ID may be lower than the previous one, or "NO_ID".
+            writeVarint(out, (idDelta << 1) ^ (idDelta >> 63));
+            writeVarint(out, (mTimes[i] << 1) | (mIsForCurrentSession[i] ? 1 : 0));
+            lastID = mIDs[i];
+        }
+    }
+
+    /**
+     * Replaces the solves held in this log with those written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in The input from which to read the solves.
+     *
+     * @throws IOException If the solves cannot be read.
+     */
+    void readFrom(DataInput in) throws IOException {
+        final int size = in.readInt();
+        long lastID = 0;
+
+        if (size < 0) {
+            throw new IOException("Invalid number of logged solves: " + size);
+        }
+
+        clear();
+        for (int i = 0; i < size; i++) {
+            final long zigZagDelta = readVarint(in);
+            final long timeAndFlag = readVarint(in);
+
+            lastID += (zigZagDelta >>> 1) ^ -(zigZagDelta & 1);
+            add(lastID, timeAndFlag >>> 1, (timeAndFlag & 1) != 0);
+        }
+    }
+
+    private static void writeVarint(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarint(DataInput in) throws IOException {
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.readUnsignedByte();
+
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid variable-length integer.");
+    }
+}
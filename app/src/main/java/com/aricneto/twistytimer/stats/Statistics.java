@@ -1,13 +1,29 @@
 package com.aricneto.twistytimer.stats;
 
+import android.util.Log;
+
 import com.aricneto.twistify.R;
 import com.aricneto.twistytimer.utils.Prefs;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static com.aricneto.twistytimer.stats.AverageCalculator.DNF;
 import static com.aricneto.twistytimer.stats.AverageCalculator.UNKNOWN;
@@ -23,6 +39,42 @@ import static com.aricneto.twistytimer.stats.AverageCalculator.tr;
  * @author damo
  */
 public class Statistics {
+    /**
+     * The version of the format written by {@link #writeSnapshot()}. Increment this whenever the
+     * layout of a snapshot (including the state written by each {@link AverageCalculator})
+     * changes, so that old snapshots are discarded instead of being mis-read.
+     */
+    private static final int SNAPSHOT_VERSION = 3;
+
+    /**
+     * The minimum number of solve times passed to
+     * {@link #addSolves(long[], long[], boolean[], int)} before the calculators are fed the times
+     * in parallel. Below this, the cost of handing the tasks to other threads is greater than the
+     * time saved.
+     */
+    private static final int MIN_SOLVES_FOR_PARALLEL_ADD = 2_000;
+
+    /**
+     * The number of threads on which times are added in parallel.
+     */
+    private static final int NUM_ADD_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The holder of the executor on which times are added in parallel. The executor is created
+     * when first used and is then shared by every load of the statistics, so threads are not
+     * created and destroyed each time a category is loaded or refreshed. Its threads are daemon
+     * threads, so they do not keep the process alive.
+     */
+    private static final class AddExecutorHolder {
+        static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(NUM_ADD_THREADS,
+                runnable -> {
+                    final Thread thread = new Thread(runnable, "StatisticsAdder");
+
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
     /**
      * The average calculators for averages of times across all sessions. The calculators are keyed
      * by the number of times used to calculate the average.
@@ -35,6 +87,19 @@ public class Statistics {
      */
     private final Map<Integer, AverageCalculator> mSessionACs = new HashMap<>();
 
+    /**
+     * The most recent times across all sessions. This buffer is shared by all of the calculators
+     * in {@link #mAllTimeACs}, so each time is stored once, not once per calculator. Its capacity
+     * is increased as each calculator is added.
+     */
+    private final RecentTimes mAllTimeRecentTimes = new RecentTimes(1);
+
+    /**
+     * The most recent times for the current session. This buffer is shared by all of the
+     * calculators in {@link #mSessionACs}.
+     */
+    private final RecentTimes mSessionRecentTimes = new RecentTimes(1);
+
     /**
      * The frequencies of solve times across all sessions. The keys are the solve times in
      * milliseconds, but truncated to whole seconds, and the values are the number of solve times.
@@ -50,6 +115,19 @@ public class Statistics {
      */
     private final TreeMap<Long, Integer> mSessionTimeFreqs = new TreeMap<>();
 
+    /**
+     * The log of all solves across all sessions, in the order they were added. This is
+     * {@code null} unless these statistics support the editing of solves. See
+     * {@link #updateSolve(long, long, boolean)}.
+     */
+    private SolveLog mAllTimeLog;
+
+    /**
+     * The log of the solves for the current session, in the order they were added. This is
+     * {@code null} unless these statistics support the editing of solves.
+     */
+    private SolveLog mSessionLog;
+
     /**
      * An average calculator for solves across all past sessions and the current session. May be
      * {@code null}.
@@ -83,9 +161,24 @@ public class Statistics {
      * @return The detailed set of all-time solve time statistics for the statistics/graph tab.
      */
     public static Statistics newAllTimeStatistics() {
+        return newAllTimeStatistics(Prefs.getInt(
+                R.string.pk_stat_trim_size, Prefs.getDefaultIntValue(R.integer.defaultTrimSize)));
+    }
+
+    /**
+     * Creates a new set of statistical averages for the detailed table of all-time and session
+     * statistics. See {@link #newAllTimeStatistics()}.
+     *
+     * @param trimSize
+     *     The percentage of the best and worst times to discard from the averages of 50, 100 and
+     *     1,000.
+     *
+     * @return The detailed set of all-time solve time statistics.
+     */
+    static Statistics newAllTimeStatistics(int trimSize) {
         final Statistics stats = new Statistics();
 
-        mTrimSize = Prefs.getInt(R.string.pk_stat_trim_size, Prefs.getDefaultIntValue(R.integer.defaultTrimSize));
+        mTrimSize = trimSize;
 
         // Averages for all sessions.
         stats.addAverageOf(3, 0, false);
@@ -103,6 +196,8 @@ public class Statistics {
         stats.addAverageOf(100, mTrimSize,true);
         stats.addAverageOf(1_000, mTrimSize,true);
 
+        stats.enableSolveEdits();
+
         return stats;
     }
 
@@ -142,6 +237,15 @@ public class Statistics {
         return stats;
     }
 
+    /**
+     * Enables the logging of each solve, so that solves can be edited or deleted after they are
+     * added.
+     */
+    private void enableSolveEdits() {
+        mAllTimeLog = new SolveLog();
+        mSessionLog = new SolveLog();
+    }
+
     /**
      * Resets all statistics and averages that have been collected previously. The average-of-N
      * calculators and time frequencies are reset, but the average-of-N calculators are not removed.
@@ -155,8 +259,15 @@ public class Statistics {
             sessionAC.reset();
         }
 
+        mAllTimeRecentTimes.clear();
+        mSessionRecentTimes.clear();
         mAllTimeTimeFreqs.clear();
         mSessionTimeFreqs.clear();
+
+        if (mAllTimeLog != null) {
+            mAllTimeLog.clear();
+            mSessionLog.clear();
+        }
     }
 
     /**
@@ -221,7 +332,8 @@ public class Statistics {
      *     If {@code n} is not greater than zero.
      */
     private void addAverageOf(int n, int trimPercent, boolean isForCurrentSessionOnly) {
-        final AverageCalculator ac = new AverageCalculator(n, trimPercent);
+        final AverageCalculator ac = new AverageCalculator(n, trimPercent,
+                isForCurrentSessionOnly ? mSessionRecentTimes : mAllTimeRecentTimes);
 
         if (isForCurrentSessionOnly) {
             mSessionACs.put(n, ac);
@@ -257,6 +369,34 @@ public class Statistics {
         return mAllTimeACs.get(n);
     }
 
+    /**
+     * Creates a query for the best and current "average of <i>n</i>" solve times for any value
+     * of "N", including values for which no calculator was added to these statistics. The query
+     * takes a copy of the solve times, so it can be run on a background thread while these
+     * statistics continue to be updated. The percentage of times trimmed is the same as that of
+     * the standard averages: none for fewer than 5 times, 5% for fewer than 50 times and the
+     * trim size set in the preferences for 50 times or more.
+     *
+     * @param n
+     *     The number of solve times to average. Must be greater than zero.
+     * @param isForCurrentSessionOnly
+     *     {@code true} to query the times for the current session only, or {@code false} to query
+     *     the times across all past and current sessions.
+     *
+     * @return
+     *     The query, or {@code null} if these statistics do not keep a log of every solve time.
+     */
+    public AverageQuery newAverageQuery(int n, boolean isForCurrentSessionOnly) {
+        if (mAllTimeLog == null) {
+            return null;
+        }
+
+        final SolveLog log = isForCurrentSessionOnly ? mSessionLog : mAllTimeLog;
+        final int trimPercent = n < 5 ? 0 : n < 50 ? 5 : mTrimSize;
+
+        return new AverageQuery(log.copyTimes(), log.copyIDs(), n, trimPercent);
+    }
+
     /**
      * Records a solve time. The time value should be in milliseconds. If the solve is a DNF,
      * call {@link #addDNF} instead.
@@ -272,27 +412,222 @@ public class Statistics {
      *     If the time is not greater than zero and is not {@code DNF}.
      */
     public void addTime(long time, boolean isForCurrentSession) throws IllegalArgumentException {
-        // "time" is validated on the first call to "AverageCalculator.addTime".
+        addSolve(SolveLog.NO_ID, time, isForCurrentSession);
+    }
+
+    /**
+     * Records a solve time for a solve that can later be edited by
+     * {@link #updateSolve(long, long, boolean)} or {@link #deleteSolve(long)}. The time value
+     * should be in milliseconds.
+     *
+     * @param solveID
+     *     The ID of the solve.
+     * @param time
+     *     The solve time in milliseconds. Must be positive, or {@link AverageCalculator#DNF}.
+     * @param isForCurrentSession
+     *     {@code true} if the solve was added during the current session; or {@code false} if
+     *     the solve was added in a previous session.
+     */
+    public void addSolve(long solveID, long time, boolean isForCurrentSession) {
+        // The calculators would each ignore an invalid time, but it must not be added to the
+        // shared buffers of recent times, either, or the calculators would get out of step.
+        if (time <= 0L && time != DNF) {
+            Log.e("Statistics", "Time must be > 0 or be 'DNF': " + time);
+            return;
+        }
+
+        if (mAllTimeLog != null) {
+            mAllTimeLog.add(solveID, time, isForCurrentSession);
+            if (isForCurrentSession) {
+                mSessionLog.add(solveID, time, true);
+            }
+        }
+
+        // Each calculator expects the new time to be in its shared buffer already.
+        mAllTimeRecentTimes.add(time);
         for (final AverageCalculator allTimeAC : mAllTimeACs.values()) {
             allTimeAC.addTime(time);
         }
 
         if (isForCurrentSession) {
+            mSessionRecentTimes.add(time);
             for (final AverageCalculator sessionAC : mSessionACs.values()) {
                 sessionAC.addTime(time);
             }
         }
 
         // Updated the time frequencies.
-        final long timeForFreq = time == DNF ? DNF : (time - time % 1_000);
-        Integer oldFreq;
-
-        oldFreq = mAllTimeTimeFreqs.get(timeForFreq);
-        mAllTimeTimeFreqs.put(timeForFreq, oldFreq == null ? 1 : oldFreq + 1);
+        updateFrequency(mAllTimeTimeFreqs, time, 1);
 
         if (isForCurrentSession) {
-            oldFreq = mSessionTimeFreqs.get(timeForFreq);
-            mSessionTimeFreqs.put(timeForFreq, oldFreq == null ? 1 : oldFreq + 1);
+            updateFrequency(mSessionTimeFreqs, time, 1);
+        }
+    }
+
+    /**
+     * <p>
+     * Records many solve times at once, such as when loading the statistics from the database.
+     * The result is exactly the same as passing each solve to
+     * {@link #addSolve(long, long, boolean)} in turn.
+     * </p>
+     * <p>
+     * Each average calculator and each table of time frequencies is independent of the others, so
+     * when there are many times, each is fed the whole run of times as a separate task and the
+     * tasks are run in parallel across the available processor cores. The shared buffers of
+     * recent times are updated only after all of the tasks have finished.
+     * </p>
+     *
+     * @param solveIDs
+     *     The IDs of the solves.
+     * @param times
+     *     The solve times in milliseconds, in chronological order. Each must be positive, or
+     *     {@link AverageCalculator#DNF}. Invalid times are ignored.
+     * @param isForCurrentSession
+     *     The flags indicating which of the solves were added during the current session.
+     * @param count
+     *     The number of solves to add from the start of each array.
+     */
+    public void addSolves(long[] solveIDs, long[] times, boolean[] isForCurrentSession, int count) {
+        final long[] allTimeTimes = new long[count];
+        final long[] sessionTimes = new long[count];
+        int numAllTime = 0;
+        int numSession = 0;
+
+        for (int i = 0; i < count; i++) {
+            final long time = times[i];
+
+            if (time <= 0L && time != DNF) {
+                Log.e("Statistics", "Time must be > 0 or be 'DNF': " + time);
+                continue;
+            }
+
+            if (mAllTimeLog != null) {
+                mAllTimeLog.add(solveIDs[i], time, isForCurrentSession[i]);
+                if (isForCurrentSession[i]) {
+                    mSessionLog.add(solveIDs[i], time, true);
+                }
+            }
+
+            allTimeTimes[numAllTime++] = time;
+            if (isForCurrentSession[i]) {
+                sessionTimes[numSession++] = time;
+            }
+        }
+
+        final List<Runnable> tasks = new ArrayList<>();
+
+        addBulkTasks(tasks, mAllTimeACs.values(), mAllTimeTimeFreqs, allTimeTimes, numAllTime);
+        addBulkTasks(tasks, mSessionACs.values(), mSessionTimeFreqs, sessionTimes, numSession);
+
+        if (NUM_ADD_THREADS > 1 && tasks.size() > 1 && numAllTime >= MIN_SOLVES_FOR_PARALLEL_ADD) {
+            runInParallel(tasks);
+        } else {
+            for (final Runnable task : tasks) {
+                task.run();
+            }
+        }
+
+        // The calculators had no need of the shared buffers while adding the times, but they
+        // will need them for any further times that are added.
+        for (int i = Math.max(0, numAllTime - mAllTimeRecentTimes.getCapacity()); i < numAllTime; i++) {
+            mAllTimeRecentTimes.add(allTimeTimes[i]);
+        }
+        for (int i = Math.max(0, numSession - mSessionRecentTimes.getCapacity()); i < numSession; i++) {
+            mSessionRecentTimes.add(sessionTimes[i]);
+        }
+    }
+
+    /**
+     * Creates the tasks that add a run of times to each of a set of calculators and to the
+     * corresponding time frequencies.
+     *
+     * @param tasks The list to which to add the new tasks.
+     * @param acs   The average calculators.
+     * @param freqs The time frequencies.
+     * @param times The solve times to add. May include {@link AverageCalculator#DNF}.
+     * @param count The number of times to add from the start of the array.
+     */
+    private static void addBulkTasks(List<Runnable> tasks, Collection<AverageCalculator> acs,
+                                     final Map<Long, Integer> freqs, final long[] times,
+                                     final int count) {
+        if (count == 0) {
+            return;
+        }
+
+        for (final AverageCalculator ac : acs) {
+            tasks.add(new Runnable() {
+                @Override
+                public void run() {
+                    ac.addTimes(times, 0, count);
+                }
+            });
+        }
+
+        tasks.add(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    updateFrequency(freqs, times[i], 1);
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs tasks on the shared pool of threads and waits for all of them to finish. The calling
+     * thread is not interrupted while waiting, as the statistics would be left in an inconsistent
+     * state if some tasks did not finish. The interrupt is restored when all tasks have finished.
+     *
+     * @param tasks The tasks to run.
+     *
+     * @throws IllegalStateException If any task failed.
+     */
+    private static void runInParallel(List<Runnable> tasks) {
+        final ExecutorService executor = AddExecutorHolder.EXECUTOR;
+        boolean isInterrupted = false;
+
+        try {
+            final List<Future<?>> futures = new ArrayList<>(tasks.size());
+
+            for (final Runnable task : tasks) {
+                futures.add(executor.submit(task));
+            }
+
+            for (final Future<?> future : futures) {
+                while (true) {
+                    try {
+                        future.get();
+                        break;
+                    } catch (InterruptedException e) {
+                        isInterrupted = true;
+                    } catch (ExecutionException e) {
+                        throw new IllegalStateException("Failed to add solve times.", e.getCause());
+                    }
+                }
+            }
+        } finally {
+            if (isInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Adds to or subtracts from the frequency of a solve time.
+     *
+     * @param freqs The time frequencies to be updated.
+     * @param time  The solve time. May be {@link AverageCalculator#DNF}.
+     * @param delta The change in the frequency of the time.
+     */
+    private static void updateFrequency(Map<Long, Integer> freqs, long time, int delta) {
+        final long timeForFreq = time == DNF ? DNF : (time - time % 1_000);
+        final Integer oldFreq = freqs.get(timeForFreq);
+        final int newFreq = (oldFreq == null ? 0 : oldFreq) + delta;
+
+        if (newFreq > 0) {
+            freqs.put(timeForFreq, newFreq);
+        } else {
+            freqs.remove(timeForFreq);
         }
     }
 
@@ -308,6 +643,319 @@ public class Statistics {
         addTime(DNF, isForCurrentSession);
     }
 
+    /**
+     * Moves all solves for the current session to the history of past sessions. The statistics
+     * for all past and current sessions are not affected by such a move, so only the average
+     * calculators and time frequencies for the current session are reset. This avoids a full
+     * re-load of the statistics when a new session is started.
+     */
+    public void moveSessionToHistory() {
+        if (isForCurrentSessionOnly()) {
+            // Only session solves were added, so the "all-time" frequencies also need clearing.
+            reset();
+            return;
+        }
+
+        for (final AverageCalculator sessionAC : mSessionACs.values()) {
+            sessionAC.reset();
+        }
+
+        mSessionRecentTimes.clear();
+        mSessionTimeFreqs.clear();
+
+        if (mAllTimeLog != null) {
+            mSessionLog.clear();
+            mAllTimeLog.clearCurrentSession();
+        }
+    }
+
+    /**
+     * Corrects these statistics after the time or the session of a solve added previously by
+     * {@link #addSolve(long, long, boolean)} is changed (e.g., when a penalty is applied, or the
+     * solve is moved to the history). The solve keeps its position in the order of solves.
+     *
+     * @param solveID
+     *     The ID of the changed solve.
+     * @param time
+     *     The new solve time in milliseconds. Must be positive, or {@link AverageCalculator#DNF}.
+     * @param isForCurrentSession
+     *     {@code true} if the solve is now for the current session; or {@code false} if it is for
+     *     a previous session.
+     *
+     * @return
+     *     {@code true} if these statistics were corrected; or {@code false} if they do not
+     *     support editing, or the solve is not known to them. If {@code false}, the statistics
+     *     are unchanged and must be re-loaded to reflect the change to the solve.
+     */
+    public boolean updateSolve(long solveID, long time, boolean isForCurrentSession) {
+        final int allTimeIndex = findSolve(solveID);
+
+        if (allTimeIndex < 0 || (time <= 0L && time != DNF)) {
+            return false;
+        }
+
+        final long oldTime = mAllTimeLog.getTime(allTimeIndex);
+        final boolean wasForCurrentSession = mAllTimeLog.isForCurrentSession(allTimeIndex);
+        final int sessionIndex = mAllTimeLog.countCurrentSessionBefore(allTimeIndex);
+
+        if (oldTime != time) {
+            mAllTimeLog.setTime(allTimeIndex, time);
+            editTime(mAllTimeACs, mAllTimeLog, mAllTimeRecentTimes, allTimeIndex, oldTime, time);
+            updateFrequency(mAllTimeTimeFreqs, oldTime, -1);
+            updateFrequency(mAllTimeTimeFreqs, time, 1);
+        }
+        mAllTimeLog.setForCurrentSession(allTimeIndex, isForCurrentSession);
+
+        if (wasForCurrentSession && isForCurrentSession) {
+            if (oldTime != time) {
+                mSessionLog.setTime(sessionIndex, time);
+                editTime(mSessionACs, mSessionLog, mSessionRecentTimes,
+                        sessionIndex, oldTime, time);
+            }
+        } else if (wasForCurrentSession) {
+            mSessionLog.remove(sessionIndex);
+            editTime(mSessionACs, mSessionLog, mSessionRecentTimes, sessionIndex, oldTime, UNKNOWN);
+        } else if (isForCurrentSession) {
+            mSessionLog.insert(sessionIndex, solveID, time, true);
+            editTime(mSessionACs, mSessionLog, mSessionRecentTimes, sessionIndex, UNKNOWN, time);
+        }
+
+        if (wasForCurrentSession) {
+            updateFrequency(mSessionTimeFreqs, oldTime, -1);
+        }
+        if (isForCurrentSession) {
+            updateFrequency(mSessionTimeFreqs, time, 1);
+        }
+
+        return true;
+    }
+
+    /**
+     * Corrects these statistics after a solve added previously by
+     * {@link #addSolve(long, long, boolean)} is deleted.
+     *
+     * @param solveID
+     *     The ID of the deleted solve.
+     *
+     * @return
+     *     {@code true} if these statistics were corrected; or {@code false} if they do not
+     *     support editing, or the solve is not known to them. If {@code false}, the statistics
+     *     are unchanged and must be re-loaded to reflect the deletion of the solve.
+     */
+    public boolean deleteSolve(long solveID) {
+        final int allTimeIndex = findSolve(solveID);
+
+        if (allTimeIndex < 0) {
+            return false;
+        }
+
+        final long oldTime = mAllTimeLog.getTime(allTimeIndex);
+
+        if (mAllTimeLog.isForCurrentSession(allTimeIndex)) {
+            final int sessionIndex = mAllTimeLog.countCurrentSessionBefore(allTimeIndex);
+
+            mSessionLog.remove(sessionIndex);
+            editTime(mSessionACs, mSessionLog, mSessionRecentTimes, sessionIndex, oldTime, UNKNOWN);
+            updateFrequency(mSessionTimeFreqs, oldTime, -1);
+        }
+
+        mAllTimeLog.remove(allTimeIndex);
+        editTime(mAllTimeACs, mAllTimeLog, mAllTimeRecentTimes, allTimeIndex, oldTime, UNKNOWN);
+        updateFrequency(mAllTimeTimeFreqs, oldTime, -1);
+
+        return true;
+    }
+
+    /**
+     * Finds a solve in the log of all solves.
+     *
+     * @param solveID The ID of the solve.
+     *
+     * @return
+     *     The index of the solve in {@link #mAllTimeLog}, or -1 if solves cannot be edited or the
+     *     solve is not found.
+     */
+    private int findSolve(long solveID) {
+        return mAllTimeLog != null ? mAllTimeLog.indexOf(solveID) : -1;
+    }
+
+    /**
+     * Applies an edit of a logged solve time to a set of average calculators and refills their
+     * shared buffer of recent times from the log.
+     *
+     * @param acs         The average calculators to be corrected.
+     * @param log         The log of solve times, with the edit already applied.
+     * @param recentTimes The buffer of recent times shared by the calculators.
+     * @param index       The index of the edited time in the log.
+     * @param oldTime     The time before the edit, or {@code UNKNOWN} if it was inserted.
+     * @param newTime     The time after the edit, or {@code UNKNOWN} if it was removed.
+     */
+    private static void editTime(Map<Integer, AverageCalculator> acs, SolveLog log,
+            RecentTimes recentTimes, int index, long oldTime, long newTime) {
+        recentTimes.clear();
+        for (int i = Math.max(0, log.size() - recentTimes.getCapacity()); i < log.size(); i++) {
+            recentTimes.add(log.getTime(i));
+        }
+
+        for (final AverageCalculator ac : acs.values()) {
+            ac.editTime(log, index, oldTime, newTime);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the current state of these statistics. The snapshot can be stored and
+     * later restored by {@link #readSnapshot(byte[])} into a {@code Statistics} object created by
+     * the same factory method, so that the statistics do not need to be re-calculated from every
+     * solve time. Further times can then be added to the restored statistics as normal. If these
+     * statistics keep a log of the solves, the log is included, so that the solves can still be
+     * edited or deleted after the snapshot is restored.
+     *
+     * @return The snapshot of the statistics.
+     */
+    public byte[] writeSnapshot() {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+
+        try {
+            out.writeInt(SNAPSHOT_VERSION);
+
+            mAllTimeRecentTimes.writeTo(out);
+            writeCalculators(out, mAllTimeACs);
+            writeFrequencies(out, mAllTimeTimeFreqs);
+
+            mSessionRecentTimes.writeTo(out);
+            writeCalculators(out, mSessionACs);
+            writeFrequencies(out, mSessionTimeFreqs);
+
+            // The session log holds the same solves as those flagged in the all-time log, so it
+            // is not written.
+            out.writeBoolean(mAllTimeLog != null);
+            if (mAllTimeLog != null) {
+                mAllTimeLog.writeTo(out);
+            }
+
+            out.flush();
+        } catch (IOException e) {
+            // Not expected, as the output is only written to memory.
+            throw new IllegalStateException("Failed to write statistics snapshot.", e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Restores the state of these statistics from a snapshot written by {@link #writeSnapshot()}.
+     * Any statistics collected previously are discarded. If the snapshot cannot be restored, the
+     * statistics are left in their reset state and must be re-calculated from the solve times.
+     *
+     * @param snapshot
+     *     The snapshot to be restored. The snapshot will be rejected if it was written in a
+     *     different format version, or if it was written by statistics that have a different set
+     *     of average calculators (e.g., if the trim size preference was changed), or that did not
+     *     keep a log of the solves when these statistics do.
+     *
+     * @return
+     *     {@code true} if the snapshot was restored; or {@code false} if it was rejected.
+     */
+    public boolean readSnapshot(byte[] snapshot) {
+        reset();
+
+        try {
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot));
+
+            if (in.readInt() != SNAPSHOT_VERSION) {
+                return false;
+            }
+
+            mAllTimeRecentTimes.readFrom(in);
+            readCalculators(in, mAllTimeACs);
+            readFrequencies(in, mAllTimeTimeFreqs);
+
+            mSessionRecentTimes.readFrom(in);
+            readCalculators(in, mSessionACs);
+            readFrequencies(in, mSessionTimeFreqs);
+
+            readSolveLogs(in);
+
+            return true;
+        } catch (IOException e) {
+            Log.w("Statistics", "Discarding statistics snapshot: " + e.getMessage());
+            reset();
+            return false;
+        }
+    }
+
+    /**
+     * Restores the solve logs from a snapshot, if these statistics keep them. The session log is
+     * rebuilt from the solves flagged in the all-time log.
+     *
+     * @param in The input from which to read the logs.
+     *
+     * @throws IOException
+     *     If the logs cannot be read, if these statistics keep logs but the snapshot does not
+     *     include them, or if the logs do not hold the number of solves in the snapshot.
+     */
+    private void readSolveLogs(DataInput in) throws IOException {
+        final boolean hasLog = in.readBoolean();
+
+        if (mAllTimeLog == null) {
+            // The log, if any, is the last part of the snapshot, so it need not be skipped.
+            return;
+        }
+        if (!hasLog) {
+            throw new IOException("Snapshot does not include the solve log.");
+        }
+
+        mAllTimeLog.readFrom(in);
+        for (int i = 0; i < mAllTimeLog.size(); i++) {
+            if (mAllTimeLog.isForCurrentSession(i)) {
+                mSessionLog.add(mAllTimeLog.getID(i), mAllTimeLog.getTime(i), true);
+            }
+        }
+
+        if (mAllTimeLog.size() != getAllTimeNumSolves()
+                || mSessionLog.size() != getSessionNumSolves()) {
+            throw new IOException("Solve log does not match the statistics.");
+        }
+    }
+
+    private static void writeCalculators(DataOutput out, Map<Integer, AverageCalculator> acs)
+            throws IOException {
+        out.writeInt(acs.size());
+        // Order by "n", as the iteration order of the "HashMap" is not defined.
+        for (final AverageCalculator ac : new TreeMap<>(acs).values()) {
+            ac.writeState(out);
+        }
+    }
+
+    private static void readCalculators(DataInput in, Map<Integer, AverageCalculator> acs)
+            throws IOException {
+        if (in.readInt() != acs.size()) {
+            throw new IOException("Snapshot is for a different set of averages.");
+        }
+        for (final AverageCalculator ac : new TreeMap<>(acs).values()) {
+            ac.readState(in);
+        }
+    }
+
+    private static void writeFrequencies(DataOutput out, Map<Long, Integer> freqs)
+            throws IOException {
+        out.writeInt(freqs.size());
+        for (final Map.Entry<Long, Integer> freq : freqs.entrySet()) {
+            out.writeLong(freq.getKey());
+            out.writeInt(freq.getValue());
+        }
+    }
+
+    private static void readFrequencies(DataInput in, Map<Long, Integer> freqs)
+            throws IOException {
+        final int size = in.readInt();
+
+        for (int i = 0; i < size; i++) {
+            freqs.put(in.readLong(), in.readInt());
+        }
+    }
+
     /**
      * Gets the best solve time of all those added to these statistics for a solve in the current
      * session.
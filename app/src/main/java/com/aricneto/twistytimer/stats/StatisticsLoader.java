@@ -131,18 +131,29 @@ public class StatisticsLoader extends AsyncTaskLoader<Wrapper<Statistics>> {
                     break;
 
                 case ACTION_TIMES_MODIFIED:
-                case ACTION_TIMES_MOVED_TO_HISTORY:
-                    // If times were moved to the history or other unspecified modifications were
-                    // made (e.g., deletions, changes to penalties, etc.), then "mStatistics"
-                    // cannot be simply updated. A full re-load will be needed.
+                    // If a single solve was changed (e.g., a penalty was applied) or deleted, the
+                    // intent identifies the solve and "mStatistics" can be corrected directly. If
+                    // other unspecified modifications were made (e.g., bulk deletions or imports),
+                    // then "mStatistics" cannot be simply updated. A full re-load will be needed.
                     //
                     // NOTE: The default implementation of "onContentChanged" will only force a
                     // re-load if the loader is currently started (i.e., in use by a live fragment).
                     // If the loader is not started, a reload will not occur until the next time it
                     // is restarted (which might never happen). The test of "takeContentChanged()"
                     // in "onStartLoading" picks up on any such deferred reloading task.
-                    if (DEBUG_ME) Log.d(TAG, "  Unknown changes or history toggle. Will reload!");
-                    mLoader.onContentChanged();
+                    if (!mLoader.deliverQuickEdit(intent)) {
+                        if (DEBUG_ME) Log.d(TAG, "  Unknown changes. Will reload!");
+                        mLoader.onContentChanged();
+                    }
+                    break;
+
+                case ACTION_TIMES_MOVED_TO_HISTORY:
+                    // If the session for this puzzle was moved to the history, the all-time
+                    // statistics are unchanged and the session statistics are simply cleared.
+                    if (!mLoader.deliverQuickSessionMove(intent)) {
+                        if (DEBUG_ME) Log.d(TAG, "  Unknown history toggle. Will reload!");
+                        mLoader.onContentChanged();
+                    }
                     break;
 
                 // Switching between the history of all times and the session times does
@@ -206,11 +217,8 @@ public class StatisticsLoader extends AsyncTaskLoader<Wrapper<Statistics>> {
             final Solve solve = TTIntent.getSolve(intent);
 
             if (solve != null) {
-                if (solve.getPenalty() == PuzzleUtils.PENALTY_DNF) {
-                    mStatistics.addDNF(true);
-                } else {
-                    mStatistics.addTime(solve.getTime(), true);
-                }
+                // Record the ID, so that the solve can be corrected later by "deliverQuickEdit".
+                mStatistics.addSolve(solve.getId(), getStatisticsTime(solve), true);
 
                 mLoadedData = mLoadedData.rewrap(); // See explanation in "loadInBackground".
 
@@ -224,6 +232,101 @@ public class StatisticsLoader extends AsyncTaskLoader<Wrapper<Statistics>> {
         return false;
     }
 
+    /**
+     * Attempts a quick correction of the statistics without resorting to a full read of the
+     * database. If the statistics were previously read from the database, and the intent
+     * identifies a single solve that was changed or deleted, the statistics can be corrected
+     * directly and the update can be delivered to the activity or fragment.
+     *
+     * @param intent
+     *     The intent that may contain details of a changed or deleted solve.
+     *
+     * @return
+     *     {@code true} if the statistics were up-to-date with respect to the database and were
+     *     corrected for the change to the solve identified by the intent, or were not affected by
+     *     that change; or {@code false} if a full database reload will still be required.
+     */
+    private boolean deliverQuickEdit(Intent intent) {
+        final Solve solve = TTIntent.getSolve(intent);
+
+        if (mLoadedData.isEmpty() || solve == null) {
+            return false;
+        }
+
+        if (!mPuzzleType.equals(solve.getPuzzle()) || !mPuzzleSubtype.equals(solve.getSubtype())) {
+            if (DEBUG_ME) Log.d(TAG, "  Solve is for a different puzzle. No update required.");
+            return true;
+        }
+
+        final boolean isCorrected;
+
+        if (TTIntent.isSolveDeleted(intent)
+                || solve.getPenalty() == PuzzleUtils.PENALTY_HIDETIME) {
+            // Solves with hidden times are never included in the statistics.
+            isCorrected = mStatistics.deleteSolve(solve.getId());
+        } else {
+            isCorrected = mStatistics.updateSolve(
+                    solve.getId(), getStatisticsTime(solve), !solve.isHistory());
+        }
+
+        if (!isCorrected) {
+            if (DEBUG_ME) Log.d(TAG, "  Quick correction not possible. Will reload!");
+            return false;
+        }
+
+        mLoadedData = mLoadedData.rewrap(); // See explanation in "loadInBackground".
+
+        if (DEBUG_ME) Log.d(TAG, "  Delivering quick correction to statistics!");
+        deliverResult(mLoadedData); // Will trigger "onLoadFinished" in Fragment/Activity.
+
+        return true;
+    }
+
+    /**
+     * Attempts a quick update of the statistics after all solves for the current session were
+     * moved to the history, without resorting to a full read of the database.
+     *
+     * @param intent
+     *     The intent that identifies the puzzle type and subtype of the moved session.
+     *
+     * @return
+     *     {@code true} if the statistics were up-to-date with respect to the database and were
+     *     updated for the move, or were not affected by it; or {@code false} if a full database
+     *     reload will still be required.
+     */
+    private boolean deliverQuickSessionMove(Intent intent) {
+        final String puzzleType = TTIntent.getPuzzleType(intent);
+        final String puzzleSubtype = TTIntent.getPuzzleSubtype(intent);
+
+        if (mLoadedData.isEmpty() || puzzleType == null || puzzleSubtype == null) {
+            return false;
+        }
+
+        if (!mPuzzleType.equals(puzzleType) || !mPuzzleSubtype.equals(puzzleSubtype)) {
+            if (DEBUG_ME) Log.d(TAG, "  Session moved for a different puzzle. No update required.");
+            return true;
+        }
+
+        mStatistics.moveSessionToHistory();
+        mLoadedData = mLoadedData.rewrap(); // See explanation in "loadInBackground".
+
+        if (DEBUG_ME) Log.d(TAG, "  Delivering quick session move to statistics!");
+        deliverResult(mLoadedData); // Will trigger "onLoadFinished" in Fragment/Activity.
+
+        return true;
+    }
+
+    /**
+     * Gets the time of a solve in the form recorded in the statistics.
+     *
+     * @param solve The solve.
+     *
+     * @return The solve time, or {@link AverageCalculator#DNF} if the solve is a DNF.
+     */
+    private static long getStatisticsTime(Solve solve) {
+        return solve.getPenalty() == PuzzleUtils.PENALTY_DNF ? AverageCalculator.DNF : solve.getTime();
+    }
+
     /**
      * Starts loading the statistics from the database. If statistics were previously loaded, they
      * will be re-delivered. If the statistics that were so delivered are out of date, or if no
@@ -0,0 +1,254 @@
+package com.aricneto.twistytimer.stats;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A record of the best average of the windows of "n" consecutive times added to an
+ * {@link AverageCalculator}, kept so that the best average can be found again after a time is
+ * edited. The windows are divided, in order, into blocks of up to {@link #BLOCK_SIZE} windows.
+ * Only the number of windows in each block and the best average of each block are held, not the
+ * average of every window, so the memory used is a small fraction of that needed for the times.
+ * </p>
+ * <p>
+ * The counts and best averages are held in a complete binary tree laid out in arrays, with the
+ * blocks as the leaves. Each parent node holds the total count and the best average of its
+ * children, so the best average of all windows is held at the root, and the block holding any
+ * window can be found by descending from the root. Each change takes O(log b) time, where "b" is
+ * the number of blocks. When a time is edited, a window is added to or removed from the block
+ * holding the edited position by adjusting its count, and the calculator then re-calculates the
+ * best average of only those blocks that hold windows whose averages have changed.
+ * </p>
+ * <p>
+ * A block may hold fewer windows after windows are removed, or more after windows are inserted.
+ * Windows are only inserted when a solve from a previous session is moved back into the current
+ * session, so the blocks do not grow much beyond their original size in practice.
+ * </p>
+ */
+final class WindowAverages {
+    /**
+     * The number of windows in each block as the windows are added.
+     */
+    static final int BLOCK_SIZE = 256;
+
+    /**
+     * The best average of a block that holds no windows. This is worse than any average,
+     * including {@link AverageCalculator#DNF}.
+     */
+    static final long NO_AVERAGE = Long.MAX_VALUE;
+
+    /**
+     * The initial number of leaves in the tree.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The number of leaves in the tree. This is always a power of two. The root is at index 1,
+     * the children of node "i" are at "2i" and "2i + 1" and the leaf for block "b" is at
+     * {@code mCapacity + b}.
+     */
+    private int mCapacity = INITIAL_CAPACITY;
+
+    /**
+     * The number of windows held under each node of the tree.
+     */
+    private int[] mCounts = new int[2 * INITIAL_CAPACITY];
+
+    /**
+     * The best average of the windows held under each node of the tree, or {@link #NO_AVERAGE}
+     * if there are none.
+     */
+    private long[] mBests = newBests(2 * INITIAL_CAPACITY);
+
+    /**
+     * The number of blocks in use.
+     */
+    private int mNumBlocks;
+
+    private static long[] newBests(int length) {
+        final long[] bests = new long[length];
+
+        Arrays.fill(bests, NO_AVERAGE);
+        return bests;
+    }
+
+    /**
+     * Gets the number of windows.
+     *
+     * @return The number of windows.
+     */
+    int size() {
+        return mCounts[1];
+    }
+
+    /**
+     * Gets the best average of all windows.
+     *
+     * @return
+     *     The best average. This is {@link AverageCalculator#DNF} if every window is a DNF, or
+     *     {@link AverageCalculator#UNKNOWN} if there are no windows.
+     */
+    long getBestAverage() {
+        return mBests[1] == NO_AVERAGE ? AverageCalculator.UNKNOWN : mBests[1];
+    }
+
+    /**
+     * Adds the average of a new window after all other windows.
+     *
+     * @param average The average of the window. May be {@link AverageCalculator#DNF}.
+     */
+    void add(long average) {
+        if (mNumBlocks == 0 || mCounts[mCapacity + mNumBlocks - 1] >= BLOCK_SIZE) {
+            addBlock();
+        }
+
+        final int block = mNumBlocks - 1;
+
+        mCounts[mCapacity + block]++;
+        mBests[mCapacity + block] = Math.min(mBests[mCapacity + block], average);
+        update(block);
+    }
+
+    /**
+     * Inserts a window. The best average of the block holding the new window is not changed, so
+     * it must then be set by {@link #setBestAverage(int, long)}.
+     *
+     * @param window The index of the new window. Windows at or after this index are moved up.
+     *
+     * @return The index of the block that holds the new window.
+     */
+    int insert(int window) {
+        if (mNumBlocks == 0) {
+            addBlock();
+        }
+
+        final int block = window < size() ? getBlock(window) : mNumBlocks - 1;
+
+        mCounts[mCapacity + block]++;
+        update(block);
+        return block;
+    }
+
+    /**
+     * Removes a window. The best average of the block that held the window is not changed, so
+     * it must then be set by {@link #setBestAverage(int, long)}.
+     *
+     * @param window The index of the window. Windows after this index are moved down.
+     *
+     * @return The index of the block that held the window.
+     */
+    int remove(int window) {
+        final int block = getBlock(window);
+
+        mCounts[mCapacity + block]--;
+        update(block);
+        return block;
+    }
+
+    /**
+     * Gets the number of blocks.
+     *
+     * @return The number of blocks.
+     */
+    int getNumBlocks() {
+        return mNumBlocks;
+    }
+
+    /**
+     * Gets the block that holds a window.
+     *
+     * @param window The index of the window. Must be less than {@link #size()}.
+     *
+     * @return The index of the block.
+     */
+    int getBlock(int window) {
+        int node = 1;
+
+        while (node < mCapacity) {
+            node *= 2;
+            if (window >= mCounts[node]) {
+                window -= mCounts[node];
+                node++;
+            }
+        }
+        return node - mCapacity;
+    }
+
+    /**
+     * Gets the index of the first window held in a block.
+     *
+     * @param block The index of the block.
+     *
+     * @return The index of the first window. If the block is empty, this is the index of the first
+     *     window in the next block that is not empty.
+     */
+    int getFirstWindow(int block) {
+        int window = 0;
+
+        for (int node = mCapacity + block; node > 1; node /= 2) {
+            if ((node & 1) != 0) {
+                window += mCounts[node - 1];
+            }
+        }
+        return window;
+    }
+
+    /**
+     * Gets the number of windows held in a block.
+     *
+     * @param block The index of the block.
+     *
+     * @return The number of windows.
+     */
+    int getNumWindows(int block) {
+        return mCounts[mCapacity + block];
+    }
+
+    /**
+     * Sets the best average of the windows in a block.
+     *
+     * @param block   The index of the block.
+     * @param average
+     *     The best average of the windows in the block, or {@link #NO_AVERAGE} if it holds no
+     *     windows.
+     */
+    void setBestAverage(int block, long average) {
+        mBests[mCapacity + block] = average;
+        update(block);
+    }
+
+    /**
+     * Adds a new, empty block after all other blocks. The tree is doubled in size if it is full.
+     */
+    private void addBlock() {
+        if (mNumBlocks == mCapacity) {
+            final int capacity = mCapacity * 2;
+            final int[] counts = new int[2 * capacity];
+            final long[] bests = newBests(2 * capacity);
+
+            System.arraycopy(mCounts, mCapacity, counts, capacity, mCapacity);
+            System.arraycopy(mBests, mCapacity, bests, capacity, mCapacity);
+            mCapacity = capacity;
+            mCounts = counts;
+            mBests = bests;
+
+            for (int node = capacity - 1; node >= 1; node--) {
+                mCounts[node] = mCounts[2 * node] + mCounts[2 * node + 1];
+                mBests[node] = Math.min(mBests[2 * node], mBests[2 * node + 1]);
+            }
+        }
+        mNumBlocks++;
+    }
+
+    /**
+     * Updates the parent nodes of a block after its count or best average is changed.
+     *
+     * @param block The index of the changed block.
+     */
+    private void update(int block) {
+        for (int node = (mCapacity + block) / 2; node >= 1; node /= 2) {
+            mCounts[node] = mCounts[2 * node] + mCounts[2 * node + 1];
+            mBests[node] = Math.min(mBests[2 * node], mBests[2 * node + 1]);
+        }
+    }
+}
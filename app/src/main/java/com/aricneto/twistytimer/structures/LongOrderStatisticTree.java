@@ -0,0 +1,595 @@
+package com.aricneto.twistytimer.structures;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * A balanced (AVL) order-statistic tree of primitive {@code long} values. The tree is a multiset:
+ * equal values are collapsed into a single node that records how many times the value was added.
+ * Each node also records the total number and the sum of the values in its sub-tree, so the value
+ * at any rank, the rank of any value and the sum of the values in any range of ranks can be found
+ * in O(log n) time.
+ * </p>
+ * <p>
+ * Unlike {@link RedBlackTree}, the nodes are not objects. They are slots in a set of parallel
+ * primitive arrays, and slots freed by removals are recycled through a free list. Once the arrays
+ * have grown to accommodate the largest number of distinct values held at any one time, adding
+ * and removing values does not allocate any memory and no values are ever boxed. This matters for
+ * the average calculators, which add and remove a value for every solve time loaded from the
+ * database.
+ * </p>
+ */
+public class LongOrderStatisticTree {
+    /**
+     * The index of the "null" node. Slot zero of each array is reserved for this sentinel, which
+     * has a height and size of zero, so that the balancing code does not need to test for it.
+     */
+    private static final int NIL = 0;
+
+    /**
+     * The default number of node slots allocated when the tree is created.
+     */
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * The value held by each node.
+     */
+    private long[] mValues;
+
+    /**
+     * The number of times the value of each node has been added to the tree.
+     */
+    private int[] mCounts;
+
+    /**
+     * The total number of values (including repeated values) held in the sub-tree rooted at each
+     * node.
+     */
+    private int[] mSizes;
+
+    /**
+     * The sum of all values (including repeated values) held in the sub-tree rooted at each node.
+     * The caller must ensure that the values added to the tree are small enough that this sum
+     * cannot overflow.
+     */
+    private long[] mSums;
+
+    /**
+     * The height of the sub-tree rooted at each node. A leaf node has a height of one.
+     */
+    private int[] mHeights;
+
+    /**
+     * The index of the left (lesser) child of each node, or {@link #NIL}. For nodes on the free
+     * list, this is the index of the next free node instead.
+     */
+    private int[] mLeft;
+
+    /**
+     * The index of the right (greater) child of each node, or {@link #NIL}.
+     */
+    private int[] mRight;
+
+    /**
+     * The index of the root node, or {@link #NIL} if the tree is empty.
+     */
+    private int mRoot;
+
+    /**
+     * The index of the first node slot on the free list, or {@link #NIL} if the list is empty.
+     */
+    private int mFreeHead;
+
+    /**
+     * The index of the next node slot that has never been used.
+     */
+    private int mNextUnused;
+
+    /**
+     * Set by {@link #remove(int, long)} to indicate if a matching value was found and removed.
+     */
+    private boolean mRemoved;
+
+    /**
+     * Creates a new, empty tree with a default initial capacity.
+     */
+    public LongOrderStatisticTree() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new, empty tree.
+     *
+     * @param initialCapacity
+     *     The number of distinct values that can be stored before the tree must grow its arrays.
+     *     Pass the expected maximum size to avoid any allocation once the tree is in use.
+     */
+    public LongOrderStatisticTree(int initialCapacity) {
+        final int capacity = Math.max(initialCapacity, 1) + 1; // "+ 1" for the NIL sentinel.
+
+        mValues = new long[capacity];
+        mCounts = new int[capacity];
+        mSizes = new int[capacity];
+        mSums = new long[capacity];
+        mHeights = new int[capacity];
+        mLeft = new int[capacity];
+        mRight = new int[capacity];
+
+        clear();
+    }
+
+    /**
+     * Removes all values from the tree. The storage already allocated is retained for re-use.
+     */
+    public void clear() {
+        mRoot = NIL;
+        mFreeHead = NIL;
+        mNextUnused = 1;
+    }
+
+    /**
+     * Gets the number of values held in the tree. Repeated values are counted each time they
+     * were added.
+     *
+     * @return The number of values in the tree.
+     */
+    public int size() {
+        return mSizes[mRoot];
+    }
+
+    /**
+     * Indicates if the tree holds no values.
+     *
+     * @return {@code true} if the tree is empty; or {@code false} if it holds at least one value.
+     */
+    public boolean isEmpty() {
+        return mRoot == NIL;
+    }
+
+    /**
+     * Adds a value to the tree. The value may already be present in the tree.
+     *
+     * @param value The value to be added.
+     */
+    public void add(long value) {
+        // The arrays must be grown before descending into the tree: the recursive calls assign
+        // the result of the call to an element of "mLeft" or "mRight" and Java evaluates the array
+        // reference *before* the call, so a re-allocation during the call would be lost.
+        ensureCapacity();
+        mRoot = add(mRoot, value);
+    }
+
+    /**
+     * Removes one occurrence of a value from the tree.
+     *
+     * @param value The value to be removed.
+     *
+     * @return {@code true} if the value was found and removed; or {@code false} if it was not.
+     */
+    public boolean remove(long value) {
+        mRemoved = false;
+        mRoot = remove(mRoot, value);
+
+        return mRemoved;
+    }
+
+    /**
+     * Indicates if the tree contains at least one occurrence of a value.
+     *
+     * @param value The value to be found.
+     *
+     * @return {@code true} if the value is present in the tree; or {@code false} if it is not.
+     */
+    public boolean contains(long value) {
+        int node = mRoot;
+
+        while (node != NIL) {
+            if (value < mValues[node]) {
+                node = mLeft[node];
+            } else if (value > mValues[node]) {
+                node = mRight[node];
+            } else {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets the smallest value in the tree.
+     *
+     * @return The smallest value.
+     *
+     * @throws NoSuchElementException If the tree is empty.
+     */
+    public long getLeast() {
+        if (mRoot == NIL) {
+            throw new NoSuchElementException("Tree is empty.");
+        }
+
+        int node = mRoot;
+
+        while (mLeft[node] != NIL) {
+            node = mLeft[node];
+        }
+
+        return mValues[node];
+    }
+
+    /**
+     * Gets the greatest value in the tree.
+     *
+     * @return The greatest value.
+     *
+     * @throws NoSuchElementException If the tree is empty.
+     */
+    public long getGreatest() {
+        if (mRoot == NIL) {
+            throw new NoSuchElementException("Tree is empty.");
+        }
+
+        int node = mRoot;
+
+        while (mRight[node] != NIL) {
+            node = mRight[node];
+        }
+
+        return mValues[node];
+    }
+
+    /**
+     * Gets the value at the given rank in the sorted order of all values in the tree. Repeated
+     * values occupy one rank for each time they were added.
+     *
+     * @param rank
+     *     The zero-based rank of the value. Zero is the rank of the smallest value and
+     *     {@code size() - 1} is the rank of the greatest value.
+     *
+     * @return The value at the given rank.
+     *
+     * @throws IndexOutOfBoundsException If the rank is negative or not less than {@link #size()}.
+     */
+    public long select(int rank) {
+        if (rank < 0 || rank >= size()) {
+            throw new IndexOutOfBoundsException("Rank: " + rank + ", size: " + size());
+        }
+
+        int node = mRoot;
+
+        while (true) {
+            final int leftSize = mSizes[mLeft[node]];
+
+            if (rank < leftSize) {
+                node = mLeft[node];
+            } else if (rank < leftSize + mCounts[node]) {
+                return mValues[node];
+            } else {
+                rank -= leftSize + mCounts[node];
+                node = mRight[node];
+            }
+        }
+    }
+
+    /**
+     * Gets the number of values in the tree that are strictly less than the given value. If the
+     * value is present, this is the rank of its first occurrence.
+     *
+     * @param value The value for which to find the rank. It need not be present in the tree.
+     *
+     * @return The number of values in the tree that are less than the given value.
+     */
+    public int rank(long value) {
+        int node = mRoot;
+        int rank = 0;
+
+        while (node != NIL) {
+            if (value <= mValues[node]) {
+                if (value == mValues[node]) {
+                    return rank + mSizes[mLeft[node]];
+                }
+                node = mLeft[node];
+            } else {
+                rank += mSizes[mLeft[node]] + mCounts[node];
+                node = mRight[node];
+            }
+        }
+
+        return rank;
+    }
+
+    /**
+     * Gets the sum of the smallest values in the tree. Repeated values are included in the sum
+     * once for each time they were added.
+     *
+     * @param count
+     *     The number of the smallest values to be summed. If zero, the result is zero.
+     *
+     * @return The sum of the given number of the smallest values.
+     *
+     * @throws IndexOutOfBoundsException If the count is negative or greater than {@link #size()}.
+     */
+    public long sumOfSmallest(int count) {
+        if (count < 0 || count > size()) {
+            throw new IndexOutOfBoundsException("Count: " + count + ", size: " + size());
+        }
+
+        int node = mRoot;
+        long sum = 0L;
+
+        while (count > 0) {
+            final int left = mLeft[node];
+
+            if (count <= mSizes[left]) {
+                node = left;
+            } else {
+                final int numHere = Math.min(count - mSizes[left], mCounts[node]);
+
+                sum += mSums[left] + numHere * mValues[node];
+                count -= mSizes[left] + numHere;
+                node = mRight[node];
+            }
+        }
+
+        return sum;
+    }
+
+    /**
+     * Gets the sum of the values with ranks in the given range. See {@link #select(int)} for a
+     * description of ranks.
+     *
+     * @param fromRank The rank of the first value to include in the sum (inclusive).
+     * @param toRank   The rank of the last value to include in the sum (exclusive).
+     *
+     * @return The sum of the values in the range of ranks. If the range is empty, the result is
+     *     zero.
+     *
+     * @throws IndexOutOfBoundsException
+     *     If either rank is negative or greater than {@link #size()}, or if {@code fromRank} is
+     *     greater than {@code toRank}.
+     */
+    public long sumOfRange(int fromRank, int toRank) {
+        if (fromRank > toRank) {
+            throw new IndexOutOfBoundsException("From rank " + fromRank + " > to rank " + toRank);
+        }
+
+        return sumOfSmallest(toRank) - sumOfSmallest(fromRank);
+    }
+
+    /**
+     * Validates the ordering, balance and sizes of every node in the tree.
+     *
+     * @return {@code true} if the tree is valid; or {@code false} if any invariant is broken.
+     */
+    public boolean validate() {
+        return validate(mRoot, Long.MIN_VALUE, Long.MAX_VALUE) >= 0;
+    }
+
+    /**
+     * Copies all values in the tree into a new array in ascending order. Repeated values appear
+     * once for each time they were added.
+     *
+     * @return The sorted values. This will be empty if the tree is empty.
+     */
+    public long[] toArray() {
+        final long[] values = new long[size()];
+
+        toArray(mRoot, values, 0);
+
+        return values;
+    }
+
+    private int add(int node, long value) {
+        if (node == NIL) {
+            return newNode(value);
+        }
+
+        if (value < mValues[node]) {
+            mLeft[node] = add(mLeft[node], value);
+        } else if (value > mValues[node]) {
+            mRight[node] = add(mRight[node], value);
+        } else {
+            // No structural change, so there is no need to re-balance the path to the root.
+            mCounts[node]++;
+            mSizes[node]++;
+            mSums[node] += value;
+            return node;
+        }
+
+        return balance(node);
+    }
+
+    private int remove(int node, long value) {
+        if (node == NIL) {
+            return NIL; // Not found.
+        }
+
+        if (value < mValues[node]) {
+            mLeft[node] = remove(mLeft[node], value);
+        } else if (value > mValues[node]) {
+            mRight[node] = remove(mRight[node], value);
+        } else {
+            mRemoved = true;
+
+            if (mCounts[node] > 1) {
+                mCounts[node]--;
+                mSizes[node]--;
+                mSums[node] -= value;
+                return node;
+            }
+
+            final int left = mLeft[node];
+            final int right = mRight[node];
+
+            if (left == NIL || right == NIL) {
+                freeNode(node);
+                return left == NIL ? right : left;
+            }
+
+            // Two children: take over the value of the in-order successor and then unlink it.
+            int successor = right;
+
+            while (mLeft[successor] != NIL) {
+                successor = mLeft[successor];
+            }
+
+            mValues[node] = mValues[successor];
+            mCounts[node] = mCounts[successor];
+            mRight[node] = removeLeast(right);
+        }
+
+        return balance(node);
+    }
+
+    private int removeLeast(int node) {
+        if (mLeft[node] == NIL) {
+            final int right = mRight[node];
+
+            freeNode(node);
+            return right;
+        }
+
+        mLeft[node] = removeLeast(mLeft[node]);
+
+        return balance(node);
+    }
+
+    private int balance(int node) {
+        update(node);
+
+        final int left = mLeft[node];
+        final int right = mRight[node];
+        final int balance = mHeights[left] - mHeights[right];
+
+        if (balance > 1) {
+            if (mHeights[mLeft[left]] < mHeights[mRight[left]]) {
+                mLeft[node] = rotateLeft(left);
+            }
+            return rotateRight(node);
+        }
+
+        if (balance < -1) {
+            if (mHeights[mRight[right]] < mHeights[mLeft[right]]) {
+                mRight[node] = rotateRight(right);
+            }
+            return rotateLeft(node);
+        }
+
+        return node;
+    }
+
+    private int rotateLeft(int node) {
+        final int pivot = mRight[node];
+
+        mRight[node] = mLeft[pivot];
+        mLeft[pivot] = node;
+        update(node);
+        update(pivot);
+
+        return pivot;
+    }
+
+    private int rotateRight(int node) {
+        final int pivot = mLeft[node];
+
+        mLeft[node] = mRight[pivot];
+        mRight[pivot] = node;
+        update(node);
+        update(pivot);
+
+        return pivot;
+    }
+
+    private void update(int node) {
+        final int left = mLeft[node];
+        final int right = mRight[node];
+
+        mHeights[node] = 1 + Math.max(mHeights[left], mHeights[right]);
+        mSizes[node] = mCounts[node] + mSizes[left] + mSizes[right];
+        mSums[node] = mCounts[node] * mValues[node] + mSums[left] + mSums[right];
+    }
+
+    private int newNode(long value) {
+        final int node;
+
+        if (mFreeHead != NIL) {
+            node = mFreeHead;
+            mFreeHead = mLeft[node];
+        } else {
+            node = mNextUnused++;
+        }
+
+        mValues[node] = value;
+        mCounts[node] = 1;
+        mSizes[node] = 1;
+        mSums[node] = value;
+        mHeights[node] = 1;
+        mLeft[node] = NIL;
+        mRight[node] = NIL;
+
+        return node;
+    }
+
+    private void freeNode(int node) {
+        mLeft[node] = mFreeHead;
+        mFreeHead = node;
+    }
+
+    private void ensureCapacity() {
+        if (mFreeHead == NIL && mNextUnused == mValues.length) {
+            final int capacity = mValues.length + (mValues.length >> 1) + 1;
+
+            mValues = Arrays.copyOf(mValues, capacity);
+            mCounts = Arrays.copyOf(mCounts, capacity);
+            mSizes = Arrays.copyOf(mSizes, capacity);
+            mSums = Arrays.copyOf(mSums, capacity);
+            mHeights = Arrays.copyOf(mHeights, capacity);
+            mLeft = Arrays.copyOf(mLeft, capacity);
+            mRight = Arrays.copyOf(mRight, capacity);
+        }
+    }
+
+    /**
+     * Validates the sub-tree rooted at the given node.
+     *
+     * @return The height of the sub-tree, or -1 if the sub-tree is not valid.
+     */
+    private int validate(int node, long min, long max) {
+        if (node == NIL) {
+            return 0;
+        }
+
+        final long value = mValues[node];
+
+        if (value < min || value > max || mCounts[node] < 1) {
+            return -1;
+        }
+
+        final int leftHeight = validate(mLeft[node], min, value);
+        final int rightHeight = validate(mRight[node], value, max);
+
+        if (leftHeight < 0 || rightHeight < 0
+                || Math.abs(leftHeight - rightHeight) > 1
+                || mHeights[node] != 1 + Math.max(leftHeight, rightHeight)
+                || mSizes[node] != mCounts[node] + mSizes[mLeft[node]] + mSizes[mRight[node]]
+                || mSums[node] != mCounts[node] * value + mSums[mLeft[node]] + mSums[mRight[node]]) {
+            return -1;
+        }
+
+        return mHeights[node];
+    }
+
+    private int toArray(int node, long[] values, int index) {
+        if (node == NIL) {
+            return index;
+        }
+
+        index = toArray(mLeft[node], values, index);
+        for (int i = 0; i < mCounts[node]; i++) {
+            values[index++] = mValues[node];
+        }
+
+        return toArray(mRight[node], values, index);
+    }
+}
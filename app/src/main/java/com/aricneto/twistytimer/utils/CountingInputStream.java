@@ -0,0 +1,73 @@
+package com.aricneto.twistytimer.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream that counts the bytes read from another input stream. This allows the progress
+ * of reading a file to be reported as the proportion of its bytes that have been read, without
+ * knowing in advance how many records the file holds. The count may be read from any thread.
+ */
+public class CountingInputStream extends FilterInputStream {
+    /**
+     * The number of bytes read or skipped so far.
+     */
+    private volatile long mCount;
+
+    /**
+     * Creates a new counting input stream.
+     *
+     * @param in The input stream from which to read.
+     */
+    public CountingInputStream(InputStream in) {
+        super(in);
+    }
+
+    /**
+     * Gets the number of bytes read or skipped so far.
+     *
+     * @return The number of bytes.
+     */
+    public long getCount() {
+        return mCount;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int b = super.read();
+
+        if (b >= 0) {
+            mCount++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        final int numRead = super.read(buffer, offset, length);
+
+        if (numRead > 0) {
+            mCount += numRead;
+        }
+        return numRead;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        final long numSkipped = super.skip(n);
+
+        mCount += numSkipped;
+        return numSkipped;
+    }
+
+    /**
+     * Marking is not supported, as a reset would make the count inaccurate.
+     *
+     * @return {@code false}.
+     */
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
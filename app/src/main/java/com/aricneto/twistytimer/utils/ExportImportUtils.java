@@ -28,6 +28,13 @@ public final class ExportImportUtils {
      */
     private static final String BACKUP_FILE_NAME_TEMPLATE = "Backup_%s" + FILE_NAME_EXT;
 
+    /**
+     * The file name template for binary back-up format files. There is one string placeholder for
+     * the time-stamp. The content is GZIP-compressed, but the extension is not ".gz", so that the
+     * file is not mistaken for an archive and decompressed by other applications.
+     */
+    private static final String BINARY_BACKUP_FILE_NAME_TEMPLATE = "Backup_%s.ttb";
+
     /**
      * The characters that might be problematic if used in file names on some filesystems. Most
      * common filesystems allows most of these characters, but some command shells, file managers,
@@ -88,6 +95,16 @@ public final class ExportImportUtils {
         return String.format(BACKUP_FILE_NAME_TEMPLATE, getFileTimeStamp());
     }
 
+    /**
+     * Gets the file name to create when exporting all solve times in the binary back-up format.
+     * The file name will include a time-stamp.
+     *
+     * @return The file name to use when exporting the solve times.
+     */
+    public static String getBinaryBackupFileNameForExport() {
+        return String.format(BINARY_BACKUP_FILE_NAME_TEMPLATE, getFileTimeStamp());
+    }
+
     /**
      * Gets the file name to create when exporting solve times in the "external" format. The file
      * name will include the puzzle type and category.
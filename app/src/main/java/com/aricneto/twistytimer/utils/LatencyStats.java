@@ -0,0 +1,101 @@
+package com.aricneto.twistytimer.utils;
+
+import java.util.Locale;
+
+/**
+ * Summary statistics for the latency of a repeated operation, such as the time taken from the
+ * stopping of the timer until the timer is ready to start the next solve. The latencies are
+ * measured with {@link System#nanoTime()}. This class is not thread-safe; it is intended to be
+ * used only on the main thread.
+ */
+public final class LatencyStats {
+    /**
+     * The name of the operation, used when formatting the statistics.
+     */
+    private final String mName;
+
+    /**
+     * The number of latencies recorded.
+     */
+    private int mCount;
+
+    /**
+     * The most recently recorded latency (in nanoseconds).
+     */
+    private long mLast;
+
+    /**
+     * The sum of all recorded latencies (in nanoseconds).
+     */
+    private long mTotal;
+
+    /**
+     * The greatest recorded latency (in nanoseconds).
+     */
+    private long mMax;
+
+    /**
+     * Creates a new, empty set of latency statistics.
+     *
+     * @param name The name of the operation whose latency is recorded.
+     */
+    public LatencyStats(String name) {
+        mName = name;
+    }
+
+    /**
+     * Records the latency of an operation that started at the given time and has just ended.
+     *
+     * @param startNanos The value of {@link System#nanoTime()} when the operation started.
+     */
+    public void recordSince(long startNanos) {
+        final long latency = System.nanoTime() - startNanos;
+
+        mCount++;
+        mLast = latency;
+        mTotal += latency;
+        mMax = Math.max(mMax, latency);
+    }
+
+    /**
+     * Gets the number of latencies that have been recorded.
+     *
+     * @return The number of latencies.
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Gets the most recently recorded latency.
+     *
+     * @return The latency in milliseconds, or zero if none have been recorded.
+     */
+    public double getLastMillis() {
+        return mLast / 1e6;
+    }
+
+    /**
+     * Gets the mean of the recorded latencies.
+     *
+     * @return The mean latency in milliseconds, or zero if none have been recorded.
+     */
+    public double getMeanMillis() {
+        return mCount > 0 ? mTotal / 1e6 / mCount : 0;
+    }
+
+    /**
+     * Gets the greatest recorded latency.
+     *
+     * @return The greatest latency in milliseconds, or zero if none have been recorded.
+     */
+    public double getMaxMillis() {
+        return mMax / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s: last=%.2f ms, mean=%.2f ms, max=%.2f ms, count=%d",
+                mName, getLastMillis(), getMeanMillis(), getMaxMillis(), mCount);
+    }
+}
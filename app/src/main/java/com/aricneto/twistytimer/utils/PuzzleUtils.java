@@ -11,6 +11,7 @@ import com.aricneto.twistify.R;
 import com.aricneto.twistytimer.items.Solve;
 import com.aricneto.twistytimer.solver.StringUtils;
 import com.aricneto.twistytimer.stats.AverageCalculator;
+import com.aricneto.twistytimer.stats.AverageQuery;
 import com.aricneto.twistytimer.stats.Statistics;
 
 import org.joda.time.Period;
@@ -326,22 +327,36 @@ public class PuzzleUtils {
      * Formats the details of the most recent average-of-N calculation for times recorded in the
      * current session. The string shows the average value and the list of times that contributed
      * to the calculation of that average. If the average calculation requires the elimination of
-     * the best and worst times, these times are shown in parentheses.
+     * the best and worst times, these times are shown in parentheses. If there is no calculator for
+     * that value of "N", the average is queried from the current session times instead.
      *
      * @param n     The value of "N" for which the "average-of-N" is required.
      * @param stats The statistics from which to get the details of the average calculation.
      *
      * @return
-     *     The average-of-N in string format; or {@code null} if there is no average calculated for
-     *     that value of "N", or if insufficient (less than "N") times have been recorded in the
-     *     current session, of if {@code stats} is {@code null}.
+     *     The average-of-N in string format; or {@code null} if there is no average calculated or
+     *     queried for that value of "N", or if insufficient (less than "N") times have been
+     *     recorded in the current session, of if {@code stats} is {@code null}.
      */
     private static String formatAverageOfN(int n, Statistics stats) {
-        if (stats == null || stats.getAverageOf(n, true) == null) {
+        if (stats == null) {
+            return null;
+        }
+
+        final AverageCalculator.AverageOfN aoN;
+
+        if (stats.getAverageOf(n, true) != null) {
+            aoN = stats.getAverageOf(n, true).getAverageOfN();
+        } else {
+            final AverageQuery query = stats.newAverageQuery(n, true);
+
+            aoN = query != null ? query.run().getCurrentAverageOfN() : null;
+        }
+
+        if (aoN == null) {
             return null;
         }
 
-        final AverageCalculator.AverageOfN aoN = stats.getAverageOf(n, true).getAverageOfN();
         final long[] times = aoN.getTimes();
         final long average = aoN.getAverage();
 
@@ -450,7 +465,7 @@ public class PuzzleUtils {
             shareIntent.setAction(Intent.ACTION_SEND);
             shareIntent.putExtra(Intent.EXTRA_TEXT,
                     activityContext.getString(getPuzzleName(puzzleType))
-                            + ": " + formatAverageOfN(n, stats));
+                            + ": " + averageOfN);
             shareIntent.setType("text/plain");
             activityContext.startActivity(shareIntent);
 
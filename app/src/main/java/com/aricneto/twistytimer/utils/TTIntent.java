@@ -14,6 +14,7 @@ import com.aricneto.twistytimer.TwistyTimer;
 import com.aricneto.twistytimer.items.Solve;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -78,6 +79,14 @@ public final class TTIntent {
      */
     public static final String ACTION_TIME_ADDED = ACTION_PREFIX + "TIME_ADDED";
 
+    /**
+     * A new solve time that was already notified by {@link #ACTION_TIME_ADDED} has now been saved
+     * to the database. The solve is notified before it is saved, so that the statistics can be
+     * updated without waiting for the database. A receiver that reads the solve times from the
+     * database (e.g., to list them) may need to read them again when notified of this action.
+     */
+    public static final String ACTION_TIME_SAVED = ACTION_PREFIX + "TIME_SAVED";
+
     /**
      * One new solve time has been added manually via the TimerList FAB.
      */
@@ -87,7 +96,10 @@ public final class TTIntent {
      * One or more solve times have been modified in unspecified ways. Modifications include adding
      * times (bulk import), deleting selected times, or changing the penalties, comments, history
      * status or other properties of one or more times. A full refresh of any displayed time data
-     * may be required.
+     * may be required. If only a single solve was changed or deleted, the intent may identify it
+     * (see {@link #getSolve(Intent)} and {@link #isSolveDeleted(Intent)}), allowing receivers to
+     * apply the change directly instead. After a bulk operation on the selected times, the intent
+     * may identify all of the affected solves (see {@link #getSolveIDs(Intent)}).
      */
     public static final String ACTION_TIMES_MODIFIED = ACTION_PREFIX + "TIMES_MODIFIED";
 
@@ -167,6 +179,22 @@ public final class TTIntent {
     public static final String ACTION_DELETE_SELECTED_TIMES
             = ACTION_PREFIX + "DELETE_SELECTED_TIMES";
 
+    /**
+     * The user has chosen the action to apply a penalty to all of the selected times. The penalty
+     * is given by {@link #getLongValue(Intent)}. The receiver should perform that operation and
+     * broadcast {@link #ACTION_TIMES_MODIFIED}.
+     */
+    public static final String ACTION_PENALIZE_SELECTED_TIMES
+            = ACTION_PREFIX + "PENALIZE_SELECTED_TIMES";
+
+    /**
+     * The user has chosen the action to move all of the selected times to the history, or back to
+     * the current session if the history is shown. The receiver should perform that operation and
+     * broadcast {@link #ACTION_TIMES_MODIFIED}.
+     */
+    public static final String ACTION_ARCHIVE_SELECTED_TIMES
+            = ACTION_PREFIX + "ARCHIVE_SELECTED_TIMES";
+
     /**
      * The timer has been started.
      */
@@ -212,6 +240,17 @@ public final class TTIntent {
      */
     public static final String EXTRA_SOLVE = EXTRA_PREFIX + "SOLVE";
 
+    /**
+     * The name of an intent extra that indicates if the solve recorded in {@link #EXTRA_SOLVE}
+     * was deleted.
+     */
+    public static final String EXTRA_SOLVE_DELETED = EXTRA_PREFIX + "SOLVE_DELETED";
+
+    /**
+     * The name of an intent extra that can hold the IDs of the solves affected by an action.
+     */
+    public static final String EXTRA_SOLVE_IDS = EXTRA_PREFIX + "SOLVE_IDS";
+
     /**
      * The name of an intent extra that can be used to record a scramble
      */
@@ -238,6 +277,7 @@ public final class TTIntent {
             = new HashMap<String, String[]>() {{
         put(CATEGORY_TIME_DATA_CHANGES, new String[] {
                 ACTION_TIME_ADDED,
+                ACTION_TIME_SAVED,
                 ACTION_TIMES_MODIFIED,
                 ACTION_TIMES_MOVED_TO_HISTORY,
                 ACTION_HISTORY_TIMES_SHOWN,
@@ -254,6 +294,8 @@ public final class TTIntent {
                 ACTION_TIME_SELECTED,
                 ACTION_TIME_UNSELECTED,
                 ACTION_DELETE_SELECTED_TIMES,
+                ACTION_PENALIZE_SELECTED_TIMES,
+                ACTION_ARCHIVE_SELECTED_TIMES,
                 ACTION_SELECTION_MODE_ON,
                 ACTION_SELECTION_MODE_OFF,
                 ACTION_TIMER_STARTED,
@@ -449,6 +491,27 @@ public final class TTIntent {
         return solve == null ? null : (Solve) solve;
     }
 
+    /**
+     * Indicates if the solve specified in an intent extra was deleted. If not deleted, the solve
+     * in the intent extra gives the new details of a changed solve.
+     *
+     * @param intent The intent from which to get the flag.
+     * @return {@code true} if the solve was deleted; or {@code false} if it was not.
+     */
+    public static boolean isSolveDeleted(Intent intent) {
+        return intent.getBooleanExtra(EXTRA_SOLVE_DELETED, false);
+    }
+
+    /**
+     * Gets the IDs of the solves specified in an intent extra.
+     *
+     * @param intent The intent from which to get the solve IDs.
+     * @return The solve IDs, or {@code null} if the intent does not specify any solve IDs.
+     */
+    public static long[] getSolveIDs(Intent intent) {
+        return intent.getLongArrayExtra(EXTRA_SOLVE_IDS);
+    }
+
     /**
      * Gets the scramble specified in an intent extra.
      *
@@ -564,6 +627,47 @@ public final class TTIntent {
             return this;
         }
 
+        /**
+         * Sets optional extras that identify a solve that was deleted. The receiver can call
+         * {@link TTIntent#getSolve(Intent)} to retrieve the solve from the intent and
+         * {@link TTIntent#isSolveDeleted(Intent)} to check that it was deleted.
+         *
+         * @param solve The deleted solve to be added to the broadcast intent.
+         *
+         * @return {@code this} broadcast builder, allowing method calls to be chained.
+         */
+        public BroadcastBuilder solveDeleted(Solve solve) {
+            if (solve != null) {
+                mIntent.putExtra(EXTRA_SOLVE, solve);
+                mIntent.putExtra(EXTRA_SOLVE_DELETED, true);
+            }
+
+            return this;
+        }
+
+        /**
+         * Sets an optional extra that identifies the solves affected by the action of the intent
+         * that will be broadcast. The receiver can call {@link TTIntent#getSolveIDs(Intent)} to
+         * retrieve the solve IDs from the intent.
+         *
+         * @param solveIDs The IDs of the solves to be added to the broadcast intent.
+         *
+         * @return {@code this} broadcast builder, allowing method calls to be chained.
+         */
+        public BroadcastBuilder solveIDs(Collection<Long> solveIDs) {
+            if (solveIDs != null) {
+                final long[] ids = new long[solveIDs.size()];
+                int i = 0;
+
+                for (long id : solveIDs) {
+                    ids[i++] = id;
+                }
+                mIntent.putExtra(EXTRA_SOLVE_IDS, ids);
+            }
+
+            return this;
+        }
+
         /**
          * Sets an optional extra that identifies a scramble string related to the action of the intent
          * that will be broadcast. The receiver can call {@link TTIntent#getScramble(Intent)} to
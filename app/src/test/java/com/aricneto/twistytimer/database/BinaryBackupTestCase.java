@@ -0,0 +1,179 @@
+package com.aricneto.twistytimer.database;
+
+import com.aricneto.twistytimer.items.Solve;
+
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the {@link BinaryBackupWriter} and {@link BinaryBackupReader} classes. Every solve
+ * written must be read back unchanged, in the same order, and a file that is incomplete or not a
+ * binary backup must be rejected.
+ */
+public class BinaryBackupTestCase {
+    private static Solve solve(String type, String subtype, int time, long date, String scramble,
+                               int penalty, String comment) {
+        return new Solve(time, type, subtype, date, scramble, penalty, comment, true);
+    }
+
+    private static byte[] write(List<Solve> solves) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final BinaryBackupWriter writer = new BinaryBackupWriter(bytes);
+
+        for (Solve solve : solves) {
+            writer.write(solve);
+        }
+        writer.finish();
+        writer.close();
+        return bytes.toByteArray();
+    }
+
+    private static List<Solve> read(byte[] backup) throws IOException {
+        final BinaryBackupReader reader
+                = new BinaryBackupReader(new ByteArrayInputStream(backup));
+        final List<Solve> solves = new ArrayList<>();
+        Solve solve;
+
+        while ((solve = reader.read()) != null) {
+            solves.add(solve);
+        }
+        assertNull(reader.read());
+        reader.close();
+        return solves;
+    }
+
+    private static void assertSolvesEqual(List<Solve> expected, List<Solve> actual) {
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+            final Solve e = expected.get(i);
+            final Solve a = actual.get(i);
+
+            assertEquals(e.getPuzzle(), a.getPuzzle());
+            assertEquals(e.getSubtype(), a.getSubtype());
+            assertEquals(e.getTime(), a.getTime());
+            assertEquals(e.getDate(), a.getDate());
+            assertEquals(e.getScramble(), a.getScramble());
+            assertEquals(e.getPenalty(), a.getPenalty());
+            assertEquals(e.getComment(), a.getComment());
+            assertTrue(a.isHistory());
+        }
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        assertTrue(read(write(new ArrayList<>())).isEmpty());
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final List<Solve> solves = Arrays.asList(
+                solve("333", "Normal", 12_340, 1_466_329_029_619L,
+                        "B' F' L2 F D2 L2 R2 B' R2 B F' D' B' F2 R F' L B2 R' B' U2", 0, null),
+                solve("333", "Normal", 9_870, 1_466_329_090_000L, null, 1, ""),
+                // Dates out of order, and before the epoch.
+                solve("333", "Normal", 0, 1_000L, "R U R' U'", 2, "Ünïcödé 😀"),
+                solve("333", "Normal", Integer.MAX_VALUE, -86_400_000L, "", 3, "a\nb;\"c\""),
+                solve("222", "Normal", 3_210, 1_466_329_100_000L, "R U2 F'", 0, null),
+                solve("333", "OH", 30_000, 1_466_329_200_000L, "(1,0) / (-5,6)", 0, null),
+                // Back to a category that was written before.
+                solve("333", "Normal", 11_110, 1_466_329_300_000L, "U", 0, null));
+
+        assertSolvesEqual(solves, read(write(solves)));
+    }
+
+    @Test
+    public void testManyBlocks() throws Exception {
+        final List<Solve> solves = new ArrayList<>();
+        long date = 1_400_000_000_000L;
+
+        for (int i = 0; i < 2 * BinaryBackupWriter.BLOCK_SIZE + 123; i++) {
+            date += 10_000 + i;
+            solves.add(solve("333", i < 1_500 ? "Normal" : "Big", 10_000 + i * 10, date,
+                    "R U R' U' R' F R2 U' R' U' R U R' F'", i % 3, i % 7 == 0 ? "PB" : null));
+        }
+
+        final byte[] backup = write(solves);
+
+        assertSolvesEqual(solves, read(backup));
+        // Each solve takes a few bytes for its time and date, and the repeated scramble
+        // compresses to almost nothing.
+        assertTrue("Backup too large: " + backup.length, backup.length < solves.size() * 6);
+    }
+
+    @Test
+    public void testDetection() throws Exception {
+        final InputStream binary = new BufferedInputStream(
+                new ByteArrayInputStream(write(new ArrayList<>())));
+        final InputStream text = new BufferedInputStream(new ByteArrayInputStream(
+                "Puzzle,Category,Time(millis),Date(millis),Scramble,Penalty,Comment\n"
+                        .getBytes("UTF-8")));
+        final InputStream empty = new BufferedInputStream(new ByteArrayInputStream(new byte[0]));
+
+        assertTrue(BinaryBackupReader.isBinaryBackup(binary));
+        assertFalse(BinaryBackupReader.isBinaryBackup(text));
+        assertFalse(BinaryBackupReader.isBinaryBackup(empty));
+
+        // Nothing is consumed by the detection.
+        assertTrue(BinaryBackupReader.isBinaryBackup(binary));
+        assertEquals('P', text.read());
+    }
+
+    @Test
+    public void testIncompleteBackup() throws Exception {
+        final List<Solve> solves = new ArrayList<>();
+
+        for (int i = 0; i < BinaryBackupWriter.BLOCK_SIZE + 1; i++) {
+            solves.add(solve("333", "Normal", 10_000, i, null, 0, null));
+        }
+
+        // Not finished, as if the export failed part way through.
+        final ByteArrayOutputStream unfinished = new ByteArrayOutputStream();
+        final BinaryBackupWriter writer = new BinaryBackupWriter(unfinished);
+
+        for (Solve solve : solves) {
+            writer.write(solve);
+        }
+        writer.close();
+        assertRejected(unfinished.toByteArray());
+
+        // Truncated, as if the file was not completely copied.
+        final byte[] backup = write(solves);
+
+        assertRejected(Arrays.copyOf(backup, backup.length - 4));
+    }
+
+    @Test
+    public void testNotABackup() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final GZIPOutputStream out = new GZIPOutputStream(bytes);
+
+        out.write("Puzzle,Category".getBytes("UTF-8"));
+        out.close();
+        assertRejected(bytes.toByteArray());
+    }
+
+    private static void assertRejected(byte[] backup) {
+        try {
+            read(backup);
+            fail("Expected an exception.");
+        } catch (IOException e) {
+            // Expected.
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.aricneto.twistytimer.database;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the {@link CategoryRegistry} class. The cache must list the same puzzle types,
+ * categories and numbers of solves as would be loaded from the database after the same changes.
+ */
+public class CategoryRegistryTestCase {
+    @Test
+    public void testAddSolves() throws Exception {
+        final CategoryRegistry registry = CategoryRegistry.newLoadedRegistry();
+
+        registry.addSolve("333", "Normal", true);
+        registry.addSolve("333", "Normal", true);
+        registry.addSolve("333", "OH", false);
+        registry.addSolve("222", "Normal", true);
+
+        assertEquals(Arrays.asList("222", "333"), registry.getTypes());
+        assertEquals(Arrays.asList("Normal", "OH"), registry.getSubtypes("333"));
+        assertEquals(2, registry.getNumSolves("333", "Normal"));
+        // A hidden solve holds the category in existence, but is not counted.
+        assertEquals(0, registry.getNumSolves("333", "OH"));
+        assertEquals(0, registry.getNumSolves("444", "Normal"));
+    }
+
+    @Test
+    public void testRenameSubtype() throws Exception {
+        final CategoryRegistry registry = CategoryRegistry.newLoadedRegistry();
+
+        registry.addSolve("333", "Normal", true);
+        registry.addSolve("333", "OH", true);
+        registry.addSolve("333", "OH", true);
+
+        // Renamed onto an existing category, so the solves are merged.
+        registry.renameSubtype("333", "OH", "Normal");
+        assertEquals(Collections.singletonList("Normal"), registry.getSubtypes("333"));
+        assertEquals(3, registry.getNumSolves("333", "Normal"));
+    }
+
+    @Test
+    public void testRemoveLastSubtype() throws Exception {
+        final CategoryRegistry registry = CategoryRegistry.newLoadedRegistry();
+
+        registry.addSolve("333", "Normal", true);
+        registry.addSolve("333", "OH", true);
+        registry.addSolve("222", "Normal", true);
+
+        registry.removeSubtype("333", "OH");
+        assertEquals(Arrays.asList("222", "333"), registry.getTypes());
+        assertEquals(Collections.singletonList("Normal"), registry.getSubtypes("333"));
+
+        // The puzzle type is no longer listed once its last category is removed.
+        registry.removeSubtype("333", "Normal");
+        assertEquals(Collections.singletonList("222"), registry.getTypes());
+        assertEquals(Collections.emptyList(), registry.getSubtypes("333"));
+
+        // A solve added later brings the puzzle type back.
+        registry.addSolve("333", "Normal", true);
+        assertEquals(Arrays.asList("222", "333"), registry.getTypes());
+    }
+}
@@ -0,0 +1,100 @@
+package com.aricneto.twistytimer.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the {@link ScrambleCodec} class. Scrambles of each puzzle must be encoded compactly, and
+ * any text at all must be decoded exactly as it was before it was encoded.
+ */
+public class ScrambleCodecTestCase {
+    /**
+     * Encodes and decodes a scramble, checking that it is unchanged.
+     *
+     * @param scramble The scramble.
+     *
+     * @return The length of the encoded scramble.
+     */
+    private static int assertRoundTrip(String scramble) {
+        final byte[] encoded = ScrambleCodec.encode(scramble);
+
+        assertEquals(scramble, ScrambleCodec.decode(encoded));
+        return encoded.length;
+    }
+
+    @Test
+    public void testNull() throws Exception {
+        assertNull(ScrambleCodec.encode(null));
+        assertNull(ScrambleCodec.decode(null));
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        assertEquals(1, assertRoundTrip(""));
+    }
+
+    @Test
+    public void testCubeScrambles() throws Exception {
+        final String s333 = "B' F' L2 F D2 L2 R2 B' R2 B F' D' B' F2 R F' L B2 R' B' U2";
+
+        // One byte for the format and one for each of the 21 moves.
+        assertEquals(22, assertRoundTrip(s333));
+        assertRoundTrip("Uw2 Rw' Fw 3Rw2 3Uw' 3Bw x y' z2 L");
+    }
+
+    @Test
+    public void testOtherPuzzleScrambles() throws Exception {
+        // Megaminx.
+        assertEquals(12, assertRoundTrip("R++ D-- R-- D++ R++ D-- R-- D++ R++ D-- U'"));
+        // Pyraminx.
+        assertRoundTrip("U' R L' B R' U B' u' l r' b");
+        // Clock.
+        assertEquals(11, assertRoundTrip("UR5- DR2+ DL0+ UL6+ U3- R4+ D1- L2+ ALL6+ y2"));
+        assertRoundTrip("UR DR5- UL");
+        // Square-1: each turn is two bytes and each slice is one.
+        assertEquals(1 + 2 + 1 + 2 + 1 + 2, assertRoundTrip("(1,0) / (-5,6) / (0,-3)"));
+    }
+
+    @Test
+    public void testLiterals() throws Exception {
+        assertRoundTrip("R U R' U' and then some text");
+        assertRoundTrip("R  U   R'");
+        assertRoundTrip(" R U ");
+        assertRoundTrip("R\tU\nF'");
+        assertRoundTrip("(1, 0) (+1,0) (01,0) (7,0) (-0,0) (1,0");
+        assertRoundTrip("Ünïcödé スクランブル 😀");
+
+        final StringBuilder longLiteral = new StringBuilder();
+
+        for (int i = 0; i < 300; i++) {
+            longLiteral.append('x');
+        }
+        assertRoundTrip(longLiteral.toString());
+        assertRoundTrip("R " + longLiteral + " U");
+    }
+
+    @Test
+    public void testInvalidEncodings() throws Exception {
+        final byte[][] invalid = {
+                {},
+                { 99, 0 },
+                { 1, (byte) 0xFE },
+                { 1, (byte) 0xFF, 5, 'a' },
+                { 1, (byte) 0xFF, (byte) 0x80 },
+                { 1, (byte) 0xFA },
+        };
+
+        for (byte[] encoded : invalid) {
+            try {
+                ScrambleCodec.decode(encoded);
+                fail("Expected an exception.");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage() != null);
+            }
+        }
+    }
+}
@@ -4,6 +4,12 @@ import com.aricneto.twistytimer.stats.AverageCalculator.AverageOfN;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Random;
 
 import static com.aricneto.twistytimer.stats.AverageCalculator.DNF;
@@ -842,4 +848,454 @@ public class AverageCalculatorTestCase {
         ac.addTimes(mLargeTestTimes);
     }
 
+    /**
+     * Checks that calculators sharing a buffer of recent times produce the same results as
+     * calculators that each have their own buffer.
+     */
+    @Test
+    public void testSharedRecentTimes() throws Exception {
+        final int[] ns = { 3, 5, 12, 50, 100 };
+        final RecentTimes sharedTimes = new RecentTimes(1);
+        final AverageCalculator[] sharedACs = new AverageCalculator[ns.length];
+        final AverageCalculator[] ownACs = new AverageCalculator[ns.length];
+        final Random random = new Random(7);
+
+        for (int i = 0; i < ns.length; i++) {
+            sharedACs[i] = new AverageCalculator(ns[i], 5, sharedTimes);
+            ownACs[i] = new AverageCalculator(ns[i], 5);
+        }
+
+        for (int t = 0; t < 1_000; t++) {
+            final long time = random.nextInt(20) == 0 ? DNF : 5_000 + random.nextInt(5_000);
+
+            sharedTimes.add(time);
+            for (int i = 0; i < ns.length; i++) {
+                sharedACs[i].addTime(time);
+                ownACs[i].addTime(time);
+
+                assertEquals(ownACs[i].getCurrentAverage(), sharedACs[i].getCurrentAverage());
+                assertEquals(ownACs[i].getBestAverage(), sharedACs[i].getBestAverage());
+                assertArrayEquals(ownACs[i].getAverageOfN().getTimes(),
+                        sharedACs[i].getAverageOfN().getTimes());
+            }
+        }
+    }
+
+    /**
+     * Checks that a calculator restored from a saved state continues to calculate the same results
+     * as the calculator that saved the state, and that a state for a different "n" is rejected.
+     */
+    @Test
+    public void testWriteAndReadState() throws Exception {
+        final AverageCalculator original = new AverageCalculator(12, 5);
+        final AverageCalculator restored = new AverageCalculator(12, 5);
+        final Random random = new Random(99);
+
+        for (int t = 0; t < 500; t++) {
+            original.addTime(random.nextInt(20) == 0 ? DNF : 5_000 + random.nextInt(5_000));
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        original.writeState(new DataOutputStream(bytes));
+        restored.readState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        for (int t = 0; t < 100; t++) {
+            final long time = random.nextInt(20) == 0 ? DNF : 5_000 + random.nextInt(5_000);
+
+            original.addTime(time);
+            restored.addTime(time);
+
+            assertEquals(original.getNumSolves(), restored.getNumSolves());
+            assertEquals(original.getCurrentAverage(), restored.getCurrentAverage());
+            assertEquals(original.getBestAverage(), restored.getBestAverage());
+            assertEquals(original.getBestTime(), restored.getBestTime());
+            assertEquals(original.getWorstTime(), restored.getWorstTime());
+            assertEquals(original.getStandardDeviation(), restored.getStandardDeviation());
+            assertArrayEquals(original.getAverageOfN().getTimes(),
+                    restored.getAverageOfN().getTimes());
+        }
+
+        try {
+            new AverageCalculator(5, 5).readState(
+                    new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+            fail("Expected a state for a different \"n\" to be rejected.");
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Checks that a calculator corrected by random changes, removals and insertions of times
+     * reports the same results as a new calculator fed the edited times from the start.
+     */
+    @Test
+    public void testEditTimes() throws Exception {
+        final int[][] nAndTrimPercents = { { 1, 0 }, { 3, 0 }, { 5, 5 }, { 12, 5 }, { 50, 10 } };
+        final Random random = new Random(3);
+
+        for (int[] nAndTrimPercent : nAndTrimPercents) {
+            final AverageCalculator edited = new AverageCalculator(nAndTrimPercent[0], nAndTrimPercent[1]);
+            final SolveLog log = new SolveLog();
+
+            for (int t = 0; t < 200; t++) {
+                final long time = randomTime(random);
+
+                log.add(t, time, true);
+                edited.addTime(time);
+            }
+
+            for (int e = 0; e < 300; e++) {
+                final int action = random.nextInt(3);
+
+                if (action == 0 && log.size() > 0) {
+                    final int index = random.nextInt(log.size());
+                    final long oldTime = log.getTime(index);
+                    final long newTime = randomTime(random);
+
+                    log.setTime(index, newTime);
+                    edited.editTime(log, index, oldTime, newTime);
+                } else if (action == 1 && log.size() > 0) {
+                    final int index = random.nextInt(log.size());
+                    final long oldTime = log.getTime(index);
+
+                    log.remove(index);
+                    edited.editTime(log, index, oldTime, UNKNOWN);
+                } else {
+                    final int index = random.nextInt(log.size() + 1);
+                    final long newTime = randomTime(random);
+
+                    log.insert(index, SolveLog.NO_ID, newTime, true);
+                    edited.editTime(log, index, UNKNOWN, newTime);
+                }
+
+                final AverageCalculator expected
+                        = new AverageCalculator(nAndTrimPercent[0], nAndTrimPercent[1]);
+
+                for (int i = 0; i < log.size(); i++) {
+                    expected.addTime(log.getTime(i));
+                }
+
+                assertEquals(expected.getNumSolves(), edited.getNumSolves());
+                assertEquals(expected.getNumDNFSolves(), edited.getNumDNFSolves());
+                assertEquals(expected.getTotalTime(), edited.getTotalTime());
+                assertEquals(expected.getCurrentAverage(), edited.getCurrentAverage());
+                assertEquals(expected.getBestAverage(), edited.getBestAverage());
+                assertEquals(expected.getBestTime(), edited.getBestTime());
+                assertEquals(expected.getWorstTime(), edited.getWorstTime());
+                assertEquals(expected.getMeanTime(), edited.getMeanTime(), 1);
+                assertEquals(expected.getStandardDeviation(), edited.getStandardDeviation(), 1);
+                assertArrayEquals(expected.getAverageOfN().getTimes(),
+                        edited.getAverageOfN().getTimes());
+
+                // The edited calculator must also continue correctly as new times are added.
+                if (e % 50 == 49) {
+                    final long time = randomTime(random);
+
+                    log.add(SolveLog.NO_ID, time, true);
+                    edited.addTime(time);
+                    expected.addTime(time);
+                    assertEquals(expected.getCurrentAverage(), edited.getCurrentAverage());
+                    assertEquals(expected.getBestAverage(), edited.getBestAverage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that the best average is found correctly when the edited times span several blocks
+     * of window averages, including when the calculator was restored from a saved state before
+     * the first edit.
+     */
+    @Test
+    public void testEditTimesAcrossBlocks() throws Exception {
+        final int[][] nAndTrimPercents = { { 1, 0 }, { 5, 5 }, { 100, 5 } };
+        final Random random = new Random(7);
+
+        for (int[] nAndTrimPercent : nAndTrimPercents) {
+            final AverageCalculator original
+                    = new AverageCalculator(nAndTrimPercent[0], nAndTrimPercent[1]);
+            final AverageCalculator edited
+                    = new AverageCalculator(nAndTrimPercent[0], nAndTrimPercent[1]);
+            final SolveLog log = new SolveLog();
+
+            for (int t = 0; t < 3 * WindowAverages.BLOCK_SIZE + 50; t++) {
+                final long time = randomTime(random);
+
+                log.add(t, time, true);
+                original.addTime(time);
+            }
+
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+            original.writeState(new DataOutputStream(bytes));
+            edited.readState(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+            for (int e = 0; e < 100; e++) {
+                final int action = random.nextInt(3);
+                int index = random.nextInt(log.size());
+
+                // Make the best average easy to move, so that a stale block would be noticed. The
+                // very fast times that are sometimes inserted below are soon removed again.
+                if (action == 1) {
+                    for (int i = 0; i < log.size(); i++) {
+                        if (log.getTime(i) == 1) {
+                            index = i;
+                            break;
+                        }
+                    }
+                }
+
+                if (action == 0) {
+                    final long oldTime = log.getTime(index);
+                    final long newTime = randomTime(random);
+
+                    log.setTime(index, newTime);
+                    edited.editTime(log, index, oldTime, newTime);
+                } else if (action == 1) {
+                    final long oldTime = log.getTime(index);
+
+                    log.remove(index);
+                    edited.editTime(log, index, oldTime, UNKNOWN);
+                } else {
+                    final long newTime = random.nextInt(4) == 0 ? 1 : randomTime(random);
+
+                    log.insert(index, SolveLog.NO_ID, newTime, true);
+                    edited.editTime(log, index, UNKNOWN, newTime);
+                }
+
+                final AverageCalculator expected
+                        = new AverageCalculator(nAndTrimPercent[0], nAndTrimPercent[1]);
+
+                for (int i = 0; i < log.size(); i++) {
+                    expected.addTime(log.getTime(i));
+                }
+
+                assertEquals(expected.getNumSolves(), edited.getNumSolves());
+                assertEquals(expected.getCurrentAverage(), edited.getCurrentAverage());
+                assertEquals(expected.getBestAverage(), edited.getBestAverage());
+                assertEquals(expected.getBestTime(), edited.getBestTime());
+
+                final long time = randomTime(random);
+
+                log.add(SolveLog.NO_ID, time, true);
+                edited.addTime(time);
+                expected.addTime(time);
+                assertEquals(expected.getBestAverage(), edited.getBestAverage());
+            }
+        }
+    }
+
+    /**
+     * Checks that the mean and standard deviation after many random edits are exactly those of a
+     * calculator to which the edited times are added afresh, so that no error accumulates.
+     */
+    @Test
+    public void testEditTimesMeanAndDeviation() throws Exception {
+        final Random random = new Random(17);
+        final AverageCalculator edited = new AverageCalculator(5, 5);
+        final SolveLog log = new SolveLog();
+
+        for (int t = 0; t < 500; t++) {
+            final long time = randomTime(random);
+
+            log.add(t, time, true);
+            edited.addTime(time);
+        }
+
+        for (int e = 0; e < 2_000; e++) {
+            final int action = log.size() < 10 ? 2 : random.nextInt(3);
+            final int index = random.nextInt(log.size());
+
+            if (action == 0) {
+                final long oldTime = log.getTime(index);
+                final long newTime = randomTime(random);
+
+                log.setTime(index, newTime);
+                edited.editTime(log, index, oldTime, newTime);
+            } else if (action == 1) {
+                final long oldTime = log.getTime(index);
+
+                log.remove(index);
+                edited.editTime(log, index, oldTime, UNKNOWN);
+            } else {
+                final long newTime = randomTime(random);
+
+                log.insert(index, SolveLog.NO_ID, newTime, true);
+                edited.editTime(log, index, UNKNOWN, newTime);
+            }
+
+            final AverageCalculator expected = new AverageCalculator(5, 5);
+
+            for (int i = 0; i < log.size(); i++) {
+                expected.addTime(log.getTime(i));
+            }
+
+            assertEquals(expected.getMeanTime(), edited.getMeanTime());
+            assertEquals(expected.getStandardDeviation(), edited.getStandardDeviation());
+            assertEquals(expected.getTotalTime(), edited.getTotalTime());
+            assertEquals(expected.getNumDNFSolves(), edited.getNumDNFSolves());
+        }
+    }
+
+    /**
+     * Checks that calculators sharing a buffer of recent times report exactly the same results
+     * when runs of times are added with {@code addTimes(long[], int, int)} as when each time is
+     * added with {@code addTime(long)}.
+     */
+    @Test
+    public void testAddRunsOfTimes() throws Exception {
+        final int[][] nAndTrimPercents = { { 1, 0 }, { 3, 0 }, { 5, 5 }, { 12, 5 }, { 50, 10 } };
+        final Random random = new Random(11);
+        final RecentTimes sharedTimes = new RecentTimes(1);
+        final AverageCalculator[] bulk = new AverageCalculator[nAndTrimPercents.length];
+        final AverageCalculator[] serial = new AverageCalculator[nAndTrimPercents.length];
+
+        for (int c = 0; c < nAndTrimPercents.length; c++) {
+            bulk[c] = new AverageCalculator(nAndTrimPercents[c][0], nAndTrimPercents[c][1], sharedTimes);
+            serial[c] = new AverageCalculator(nAndTrimPercents[c][0], nAndTrimPercents[c][1]);
+        }
+
+        for (int run = 0; run < 40; run++) {
+            // Runs of different lengths, some shorter than "N", are added after single times.
+            final long[] times = new long[random.nextInt(120)];
+
+            for (int i = 0; i < times.length; i++) {
+                times[i] = randomTime(random);
+            }
+
+            for (final AverageCalculator ac : bulk) {
+                ac.addTimes(times, 0, times.length);
+            }
+            for (final long time : times) {
+                sharedTimes.add(time);
+            }
+
+            final long single = randomTime(random);
+
+            sharedTimes.add(single);
+            for (final AverageCalculator ac : bulk) {
+                ac.addTime(single);
+            }
+
+            for (int c = 0; c < serial.length; c++) {
+                serial[c].addTimes(times);
+                serial[c].addTime(single);
+
+                assertEquals(serial[c].getNumSolves(), bulk[c].getNumSolves());
+                assertEquals(serial[c].getNumDNFSolves(), bulk[c].getNumDNFSolves());
+                assertEquals(serial[c].getCurrentAverage(), bulk[c].getCurrentAverage());
+                assertEquals(serial[c].getBestAverage(), bulk[c].getBestAverage());
+                assertEquals(serial[c].getBestTime(), bulk[c].getBestTime());
+                assertEquals(serial[c].getWorstTime(), bulk[c].getWorstTime());
+                assertEquals(serial[c].getTotalTime(), bulk[c].getTotalTime());
+                assertEquals(serial[c].getMeanTime(), bulk[c].getMeanTime());
+                assertEquals(serial[c].getStandardDeviation(), bulk[c].getStandardDeviation());
+                assertArrayEquals(serial[c].getAverageOfN().getTimes(),
+                        bulk[c].getAverageOfN().getTimes());
+            }
+        }
+    }
+
+    /**
+     * Checks that an average query over a long sequence of times reports the same best and current
+     * averages as a calculator fed the same times. The sequence is long enough for the query to
+     * split the scan across several threads.
+     */
+    @Test
+    public void testAverageQuery() throws Exception {
+        final int[][] nAndTrimPercents = { { 1, 0 }, { 3, 0 }, { 5, 5 }, { 25, 5 }, { 100, 10 } };
+        final Random random = new Random(7);
+        final long[] times = new long[60_000];
+        final long[] ids = new long[times.length];
+
+        for (int i = 0; i < times.length; i++) {
+            times[i] = randomTime(random);
+            ids[i] = 1_000 + i;
+        }
+
+        for (int[] nAndTrimPercent : nAndTrimPercents) {
+            final int n = nAndTrimPercent[0];
+            final AverageCalculator ac = new AverageCalculator(n, nAndTrimPercent[1]);
+            int bestStart = -1;
+
+            for (int i = 0; i < times.length; i++) {
+                final long bestAverage = ac.getBestAverage();
+
+                ac.addTime(times[i]);
+                if (ac.getBestAverage() != bestAverage && ac.getBestAverage() != DNF) {
+                    bestStart = i + 1 - n;
+                }
+            }
+
+            final AverageQuery.Result result
+                    = new AverageQuery(times, ids, n, nAndTrimPercent[1]).run();
+
+            assertEquals(n, result.getN());
+            assertEquals(times.length, result.getNumSolves());
+            assertEquals(ac.getBestAverage(), result.getBestAverage());
+            assertEquals(ac.getCurrentAverage(), result.getCurrentAverage());
+            assertEquals(bestStart, result.getBestAverageStart());
+            assertEquals(1_000 + bestStart, result.getBestAverageStartSolveID());
+            assertEquals(ac.getBestAverage(), result.getBestAverageOfN().getAverage());
+            assertArrayEquals(ac.getAverageOfN().getTimes(),
+                    result.getCurrentAverageOfN().getTimes());
+        }
+
+        // Too few times for any average.
+        final AverageQuery.Result result = new AverageQuery(new long[] { 1_000, 2_000 },
+                new long[] { 1, 2 }, 3, 0).run();
+
+        assertEquals(UNKNOWN, result.getBestAverage());
+        assertEquals(UNKNOWN, result.getCurrentAverage());
+        assertEquals(-1, result.getBestAverageStart());
+        assertNull(result.getBestAverageOfN());
+        assertNull(result.getCurrentAverageOfN());
+    }
+
+    private static long randomTime(Random random) {
+        return random.nextInt(10) == 0 ? DNF : 5_000 + random.nextInt(5_000);
+    }
+
+    /**
+     * Compares the truncated means for several trim sizes with those calculated by sorting each
+     * window of times from scratch.
+     */
+    @Test
+    public void testTrimmedMeansMatchSortedWindows() throws Exception {
+        final int[][] nAndTrimPercents = { { 5, 5 }, { 12, 5 }, { 50, 10 }, { 100, 5 }, { 100, 20 } };
+        final Random random = new Random(42);
+        final long[] times = new long[2_000];
+
+        for (int i = 0; i < times.length; i++) {
+            // A narrow range of values ensures that there are many repeated values.
+            times[i] = 8_000 + random.nextInt(200) * 10;
+        }
+
+        for (int[] nAndTrimPercent : nAndTrimPercents) {
+            final int n = nAndTrimPercent[0];
+            final int trim = (int) Math.ceil(n * (nAndTrimPercent[1] / 100f));
+            final AverageCalculator ac = new AverageCalculator(n, nAndTrimPercent[1]);
+
+            for (int i = 0; i < times.length; i++) {
+                ac.addTime(times[i]);
+
+                if (i + 1 >= n) {
+                    final long[] window = Arrays.copyOfRange(times, i + 1 - n, i + 1);
+                    long middleSum = 0;
+
+                    Arrays.sort(window);
+                    for (int j = trim; j < n - trim; j++) {
+                        middleSum += window[j];
+                    }
+
+                    final AverageOfN aoN = ac.getAverageOfN();
+
+                    assertEquals(middleSum / (n - 2 * trim), ac.getCurrentAverage());
+                    assertEquals(middleSum, aoN.getmMiddleTrimSum());
+                    assertEquals(window[0], aoN.getTimes()[aoN.getBestTimeIndex()]);
+                    assertEquals(window[n - 1], aoN.getTimes()[aoN.getWorstTimeIndex()]);
+                }
+            }
+        }
+    }
 }
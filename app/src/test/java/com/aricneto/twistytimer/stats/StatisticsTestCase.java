@@ -0,0 +1,170 @@
+package com.aricneto.twistytimer.stats;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static com.aricneto.twistytimer.stats.AverageCalculator.DNF;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link Statistics} class. Statistics restored from a snapshot must support the
+ * editing and deletion of solves, with only the solves added after the snapshot was written
+ * added to them, and must then report the same results as statistics loaded from all of the
+ * edited solves.
+ */
+public class StatisticsTestCase {
+    private static final int TRIM_SIZE = 5;
+
+    private static final int NUM_SOLVES = 1_500;
+
+    private static final int NUM_SESSION_SOLVES = 200;
+
+    // The solves, in order. A deleted solve is removed from the lists.
+    private final List<Long> mIDs = new ArrayList<>();
+    private final List<Long> mTimes = new ArrayList<>();
+    private final List<Boolean> mIsForCurrentSession = new ArrayList<>();
+
+    private final long[] mSnapshotIDs = new long[NUM_SOLVES];
+    private final long[] mSnapshotTimes = new long[NUM_SOLVES];
+    private final boolean[] mSnapshotIsForCurrentSession = new boolean[NUM_SOLVES];
+
+    /**
+     * Creates statistics for the initial solves and writes a snapshot of them.
+     *
+     * @return The snapshot.
+     */
+    private byte[] writeSnapshot() {
+        final Random random = new Random(11);
+        final Statistics original = Statistics.newAllTimeStatistics(TRIM_SIZE);
+
+        for (int i = 0; i < NUM_SOLVES; i++) {
+            mSnapshotIDs[i] = i + 1;
+            mSnapshotTimes[i] = random.nextInt(20) == 0 ? DNF : 5_000 + random.nextInt(5_000);
+            mSnapshotIsForCurrentSession[i] = i >= NUM_SOLVES - NUM_SESSION_SOLVES;
+            addExpected(mSnapshotIDs[i], mSnapshotTimes[i], mSnapshotIsForCurrentSession[i]);
+        }
+        original.addSolves(
+                mSnapshotIDs, mSnapshotTimes, mSnapshotIsForCurrentSession, NUM_SOLVES);
+
+        return original.writeSnapshot();
+    }
+
+    private void addExpected(long solveID, long time, boolean isForCurrentSession) {
+        mIDs.add(solveID);
+        mTimes.add(time);
+        mIsForCurrentSession.add(isForCurrentSession);
+    }
+
+    private void assertMatchesExpected(Statistics actual) {
+        final Statistics expected = Statistics.newAllTimeStatistics(TRIM_SIZE);
+
+        for (int i = 0; i < mIDs.size(); i++) {
+            expected.addSolve(mIDs.get(i), mTimes.get(i), mIsForCurrentSession.get(i));
+        }
+
+        assertEquals(expected.getAllTimeNumSolves(), actual.getAllTimeNumSolves());
+        assertEquals(expected.getAllTimeNumDNFSolves(), actual.getAllTimeNumDNFSolves());
+        assertEquals(expected.getAllTimeBestTime(), actual.getAllTimeBestTime());
+        assertEquals(expected.getAllTimeWorstTime(), actual.getAllTimeWorstTime());
+        assertEquals(expected.getAllTimeTotalTime(), actual.getAllTimeTotalTime());
+        assertEquals(expected.getAllTimeTimeFrequencies(), actual.getAllTimeTimeFrequencies());
+        assertEquals(expected.getSessionNumSolves(), actual.getSessionNumSolves());
+        assertEquals(expected.getSessionBestTime(), actual.getSessionBestTime());
+        assertEquals(expected.getSessionTotalTime(), actual.getSessionTotalTime());
+        assertEquals(expected.getSessionTimeFrequencies(), actual.getSessionTimeFrequencies());
+
+        for (int n : expected.getNsOfAverages()) {
+            for (boolean isForCurrentSessionOnly : new boolean[] { false, true }) {
+                final AverageCalculator e = expected.getAverageOf(n, isForCurrentSessionOnly);
+                final AverageCalculator a = actual.getAverageOf(n, isForCurrentSessionOnly);
+
+                assertEquals(e.getCurrentAverage(), a.getCurrentAverage());
+                assertEquals(e.getBestAverage(), a.getBestAverage());
+            }
+        }
+    }
+
+    @Test
+    public void testEditSolvesAfterRestore() throws Exception {
+        final byte[] snapshot = writeSnapshot();
+        final Statistics restored = Statistics.newAllTimeStatistics(TRIM_SIZE);
+
+        // Only the solve added after the snapshot was written is added, as a restored load
+        // reads only the solves with a higher ID than those in the snapshot.
+        assertTrue(restored.readSnapshot(snapshot));
+        assertNotNull(restored.newAverageQuery(5, false));
+        restored.addSolves(new long[] { NUM_SOLVES + 1 }, new long[] { 7_000 },
+                new boolean[] { true }, 1);
+        addExpected(NUM_SOLVES + 1, 7_000, true);
+        assertMatchesExpected(restored);
+
+        // A penalty on an old solve and on a session solve.
+        assertTrue(restored.updateSolve(10, 1_000, false));
+        mTimes.set(9, 1_000L);
+        assertTrue(restored.updateSolve(NUM_SOLVES - 5, DNF, true));
+        mTimes.set(NUM_SOLVES - 6, DNF);
+        assertMatchesExpected(restored);
+
+        // A session solve moved to the history.
+        assertTrue(restored.updateSolve(NUM_SOLVES - 10, mTimes.get(NUM_SOLVES - 11), false));
+        mIsForCurrentSession.set(NUM_SOLVES - 11, false);
+        assertMatchesExpected(restored);
+
+        // Deletions of an old solve, a session solve and the solve added after the snapshot.
+        assertTrue(restored.deleteSolve(100));
+        assertTrue(restored.deleteSolve(NUM_SOLVES));
+        assertTrue(restored.deleteSolve(NUM_SOLVES + 1));
+        for (int i = mIDs.size() - 1; i >= 0; i--) {
+            if (mIDs.get(i) == 100 || mIDs.get(i) == NUM_SOLVES || mIDs.get(i) == NUM_SOLVES + 1) {
+                mIDs.remove(i);
+                mTimes.remove(i);
+                mIsForCurrentSession.remove(i);
+            }
+        }
+        assertMatchesExpected(restored);
+
+        assertFalse(restored.deleteSolve(NUM_SOLVES + 2));
+    }
+
+    @Test
+    public void testCompactSnapshot() throws Exception {
+        final Statistics stats = Statistics.newAllTimeStatistics(TRIM_SIZE);
+        final Random random = new Random(13);
+
+        for (int i = 0; i < NUM_SOLVES; i++) {
+            stats.addSolve(i + 1, 5_000 + random.nextInt(5_000), false);
+        }
+
+        final int size = stats.writeSnapshot().length;
+
+        // The buffers of recent times are already full, so only the log grows. It takes a few
+        // bytes for each solve, not the sixteen or more held in memory.
+        for (int i = NUM_SOLVES; i < 2 * NUM_SOLVES; i++) {
+            stats.addSolve(i + 1, 5_000 + random.nextInt(5_000), false);
+        }
+        assertTrue(stats.writeSnapshot().length - size <= NUM_SOLVES * 4);
+    }
+
+    @Test
+    public void testInvalidSnapshot() throws Exception {
+        final byte[] snapshot = writeSnapshot();
+        final Statistics restored = Statistics.newAllTimeStatistics(TRIM_SIZE);
+
+        // Truncated part way through the solve log.
+        assertFalse(restored.readSnapshot(Arrays.copyOf(snapshot, snapshot.length - 10)));
+        assertEquals(0, restored.getAllTimeNumSolves());
+        assertFalse(restored.updateSolve(10, 1_000, false));
+
+        // The statistics are left reset, so they can be loaded from every solve instead.
+        restored.addSolves(
+                mSnapshotIDs, mSnapshotTimes, mSnapshotIsForCurrentSession, NUM_SOLVES);
+        assertMatchesExpected(restored);
+    }
+}
@@ -0,0 +1,137 @@
+package com.aricneto.twistytimer.structures;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the {@link LongOrderStatisticTree} class. A sorted list is used as a reference model to
+ * check the results of random sequences of insertions and removals, including repeated values.
+ */
+public class LongOrderStatisticTreeTestCase {
+    @Test
+    public void testEmpty() throws Exception {
+        final LongOrderStatisticTree tree = new LongOrderStatisticTree();
+
+        assertTrue(tree.isEmpty());
+        assertEquals(0, tree.size());
+        assertFalse(tree.contains(1));
+        assertFalse(tree.remove(1));
+        assertEquals(0, tree.rank(1));
+        assertTrue(tree.validate());
+
+        try {
+            tree.getLeast();
+            fail("Expected an exception for an empty tree.");
+        } catch (NoSuchElementException ignored) {
+        }
+
+        try {
+            tree.select(0);
+            fail("Expected an exception for an empty tree.");
+        } catch (IndexOutOfBoundsException ignored) {
+        }
+    }
+
+    @Test
+    public void testRepeatedValues() throws Exception {
+        final LongOrderStatisticTree tree = new LongOrderStatisticTree(2);
+
+        tree.add(5);
+        tree.add(3);
+        tree.add(5);
+        tree.add(9);
+        tree.add(5);
+
+        assertEquals(5, tree.size());
+        assertArrayEquals(new long[] { 3, 5, 5, 5, 9 }, tree.toArray());
+        assertEquals(1, tree.rank(5));
+        assertEquals(4, tree.rank(6));
+        assertEquals(5, tree.select(3));
+        assertEquals(3, tree.getLeast());
+        assertEquals(9, tree.getGreatest());
+
+        assertTrue(tree.remove(5));
+        assertTrue(tree.remove(5));
+        assertArrayEquals(new long[] { 3, 5, 9 }, tree.toArray());
+        assertTrue(tree.remove(5));
+        assertFalse(tree.contains(5));
+        assertFalse(tree.remove(5));
+        assertTrue(tree.validate());
+    }
+
+    @Test
+    public void testClearRetainsStorage() throws Exception {
+        final LongOrderStatisticTree tree = new LongOrderStatisticTree(4);
+
+        for (int i = 0; i < 100; i++) {
+            tree.add(i);
+        }
+        tree.clear();
+
+        assertTrue(tree.isEmpty());
+        tree.add(42);
+        assertEquals(1, tree.size());
+        assertEquals(42, tree.getGreatest());
+        assertTrue(tree.validate());
+    }
+
+    @Test
+    public void testRandomAgainstSortedList() throws Exception {
+        final LongOrderStatisticTree tree = new LongOrderStatisticTree();
+        final List<Long> model = new ArrayList<>();
+        final Random random = new Random(1234L);
+
+        for (int i = 0; i < 20_000; i++) {
+            // A narrow range of values ensures that there are many repeated values.
+            final long value = random.nextInt(500);
+
+            if (model.isEmpty() || random.nextInt(3) != 0) {
+                tree.add(value);
+                model.add(value);
+            } else {
+                assertEquals(model.remove(value), tree.remove(value));
+            }
+
+            if (i % 1_000 == 0) {
+                assertTrue(tree.validate());
+            }
+        }
+
+        Collections.sort(model);
+
+        assertTrue(tree.validate());
+        assertEquals(model.size(), tree.size());
+        assertEquals((long) model.get(0), tree.getLeast());
+        assertEquals((long) model.get(model.size() - 1), tree.getGreatest());
+
+        long prefixSum = 0;
+
+        for (int rank = 0; rank < model.size(); rank++) {
+            assertEquals(prefixSum, tree.sumOfSmallest(rank));
+            assertEquals((long) model.get(rank), tree.select(rank));
+            prefixSum += model.get(rank);
+        }
+        assertEquals(prefixSum, tree.sumOfSmallest(model.size()));
+        assertEquals(prefixSum - model.get(0), tree.sumOfRange(1, model.size()));
+
+        for (long value = -1; value <= 501; value++) {
+            int expectedRank = 0;
+
+            while (expectedRank < model.size() && model.get(expectedRank) < value) {
+                expectedRank++;
+            }
+            assertEquals(expectedRank, tree.rank(value));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.aricneto.twistytimer.utils;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import java.util.Random;
+
+/**
+ * A microbenchmark that compares {@link IsoDateTimeParser#parseMillis(String)} with
+ * {@code DateTime.parse(String)} for values like those in files exported in the external format.
+ * This is not a test case; run its {@code main} method on a quiet machine. Each parser is warmed
+ * up before it is timed, and the result of every parse is used, so that it is not optimised away.
+ */
+public class IsoDateTimeParserBenchmark {
+    private static final int NUM_VALUES = 10_000;
+    private static final int NUM_WARM_UP_ROUNDS = 50;
+    private static final int NUM_TIMED_ROUNDS = 100;
+
+    public static void main(String[] args) {
+        final String[] values = createValues();
+
+        for (int round = 0; round < NUM_WARM_UP_ROUNDS; round++) {
+            parseWithJoda(values);
+            parseDirectly(values);
+        }
+
+        long jodaNanos = 0;
+        long directNanos = 0;
+        long checksum = 0;
+
+        for (int round = 0; round < NUM_TIMED_ROUNDS; round++) {
+            long start = System.nanoTime();
+
+            checksum += parseWithJoda(values);
+            jodaNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            checksum -= parseDirectly(values);
+            directNanos += System.nanoTime() - start;
+        }
+
+        final long numParsed = (long) NUM_VALUES * NUM_TIMED_ROUNDS;
+
+        System.out.printf("DateTime.parse:                 %7.1f ns/value%n",
+                (double) jodaNanos / numParsed);
+        System.out.printf("IsoDateTimeParser.parseMillis:  %7.1f ns/value%n",
+                (double) directNanos / numParsed);
+        System.out.printf("Speed-up: %.1fx (checksum %d should be 0)%n",
+                (double) jodaNanos / directNanos, checksum);
+    }
+
+    /**
+     * Creates values in the format written by an export, with a variety of dates and offsets.
+     *
+     * @return The values.
+     */
+    private static String[] createValues() {
+        final Random random = new Random(1L);
+        final String[] values = new String[NUM_VALUES];
+        final long start = new DateTime(2015, 1, 1, 0, 0, DateTimeZone.UTC).getMillis();
+
+        for (int i = 0; i < NUM_VALUES; i++) {
+            final DateTimeZone zone
+                    = DateTimeZone.forOffsetMillis((random.nextInt(27) - 12) * 3_600_000);
+
+            values[i] = new DateTime(
+                    start + (long) (random.nextDouble() * 5 * 365 * 86_400_000L), zone).toString();
+        }
+        return values;
+    }
+
+    private static long parseWithJoda(String[] values) {
+        long sum = 0;
+
+        for (String value : values) {
+            sum += DateTime.parse(value).getMillis();
+        }
+        return sum;
+    }
+
+    private static long parseDirectly(String[] values) {
+        long sum = 0;
+
+        for (String value : values) {
+            sum += IsoDateTimeParser.parseMillis(value);
+        }
+        return sum;
+    }
+}
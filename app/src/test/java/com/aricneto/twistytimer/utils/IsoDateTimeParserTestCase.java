@@ -0,0 +1,96 @@
+package com.aricneto.twistytimer.utils;
+
+import org.junit.Test;
+
+import java.time.OffsetDateTime;
+import java.util.Random;
+
+import static com.aricneto.twistytimer.utils.IsoDateTimeParser.NOT_PARSED;
+import static com.aricneto.twistytimer.utils.IsoDateTimeParser.parseFast;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the {@link IsoDateTimeParser} class. The values that are parsed directly are checked
+ * against the parser of the {@code java.time} API, which is independent of Joda-Time.
+ */
+public class IsoDateTimeParserTestCase {
+    private static long expected(String text) {
+        return OffsetDateTime.parse(text).toInstant().toEpochMilli();
+    }
+
+    @Test
+    public void testExportedValues() throws Exception {
+        final String[] values = {
+                "2016-06-19T10:37:09.619+01:00",
+                "1970-01-01T00:00:00.000Z",
+                "1969-12-31T23:59:59.999Z",
+                "2000-02-29T12:00:00.000-05:30",
+                "2100-02-28T23:59:59.001+14:00",
+                "0001-01-01T00:00:00.000+00:00",
+                "9999-12-31T23:59:59.999-18:00",
+        };
+
+        for (String value : values) {
+            assertEquals(value, expected(value), parseFast(value));
+            assertEquals(value, expected(value), IsoDateTimeParser.parseMillis(value));
+        }
+    }
+
+    @Test
+    public void testFractions() throws Exception {
+        assertEquals(expected("2016-06-19T10:37:09Z"), parseFast("2016-06-19T10:37:09Z"));
+        assertEquals(expected("2016-06-19T10:37:09.6Z"), parseFast("2016-06-19T10:37:09.6Z"));
+        assertEquals(expected("2016-06-19T10:37:09.61Z"), parseFast("2016-06-19T10:37:09.61Z"));
+        // Digits beyond milliseconds are truncated.
+        assertEquals(expected("2016-06-19T10:37:09.619Z"),
+                parseFast("2016-06-19T10:37:09.619999999Z"));
+    }
+
+    @Test
+    public void testRandomValues() throws Exception {
+        final Random random = new Random(1L);
+
+        for (int i = 0; i < 100_000; i++) {
+            final String value = String.format("%04d-%02d-%02dT%02d:%02d:%02d.%03d%s%02d:%02d",
+                    random.nextInt(10_000), random.nextInt(12) + 1, random.nextInt(28) + 1,
+                    random.nextInt(24), random.nextInt(60), random.nextInt(60),
+                    random.nextInt(1_000), random.nextBoolean() ? "+" : "-",
+                    random.nextInt(18), random.nextInt(60));
+
+            assertEquals(value, expected(value), parseFast(value));
+        }
+    }
+
+    @Test
+    public void testUnusualValuesAreNotParsedDirectly() throws Exception {
+        final String[] values = {
+                "",
+                "2016-06-19",
+                "2016-06-19T10:37:09",          // No offset: the default time zone applies.
+                "2016-06-19T10:37:09.619",
+                "2016-06-19T10:37:09+0100",
+                "2016-06-19T10:37:09+01",
+                "2016-06-19T10:37:09.Z",
+                "2016-06-19T10:37:09.1234567891Z",
+                "2016-02-30T10:37:09Z",
+                "2016-13-19T10:37:09Z",
+                "2016-06-19T24:00:00Z",
+                "2016-06-19T10:60:09Z",
+                "2016-06-19T10:37:09+24:00",
+                "2016-06-19 10:37:09Z",
+                "2016-06-19T10:37:09z",
+                "+2016-06-19T10:37:09Z",
+        };
+
+        for (String value : values) {
+            assertEquals(value, NOT_PARSED, parseFast(value));
+        }
+    }
+
+    @Test
+    public void testFallback() throws Exception {
+        // An offset without a colon is passed to Joda-Time, which gives the same instant.
+        assertEquals(IsoDateTimeParser.parseMillis("2016-06-19T10:37:09+01:00"),
+                IsoDateTimeParser.parseMillis("2016-06-19T10:37:09+0100"));
+    }
+}